@@ -158,7 +158,18 @@ whereClause
     ;
 
 showWhereClause
-    : WHERE (property | containsExpression)
+    : WHERE tagOrExpression
+    ;
+tagOrExpression
+    : tagAndExpression (OPERATOR_OR tagAndExpression)*
+    ;
+tagAndExpression
+    : tagPredicate (OPERATOR_AND tagPredicate)*
+    ;
+tagPredicate
+    : property
+    | containsExpression
+    | LR_BRACKET tagOrExpression RR_BRACKET
     ;
 containsExpression
     : name=ID OPERATOR_CONTAINS value=propertyValue
@@ -183,11 +194,17 @@ inClause
     ;
 
 fromClause
-    : FROM prefixPath (COMMA prefixPath)*
+    : FROM prefixPath (COMMA prefixPath)* fromTagClause?
+    ;
+
+fromTagClause
+    : TAGS LR_BRACKET tagOrExpression RR_BRACKET
     ;
 
 specialClause
     : specialLimit
+    | orderByTimeClause specialLimit?
+    | orderByValueClause specialLimit?
     | groupByClause specialLimit?
     | groupByFillClause
     | fillClause slimitClause? alignByDeviceClauseOrDisableAlign?
@@ -200,6 +217,14 @@ specialLimit
     | alignByDeviceClauseOrDisableAlign
     ;
 
+orderByTimeClause
+    : ORDER BY TIME (ASC | DESC)?
+    ;
+
+orderByValueClause
+    : ORDER BY VALUE (ASC | DESC)?
+    ;
+
 limitClause
     : LIMIT INT offsetClause?
     | offsetClause? LIMIT INT
@@ -475,6 +500,18 @@ LIMIT
     : L I M I T
     ;
 
+ORDER
+    : O R D E R
+    ;
+
+ASC
+    : A S C
+    ;
+
+DESC
+    : D E S C
+    ;
+
 UNLINK
     : U N L I N K
     ;
@@ -620,6 +657,10 @@ VALUES
     : V A L U E S
     ;
 
+VALUE
+    : V A L U E
+    ;
+
 NOW
     : N O W
     ;
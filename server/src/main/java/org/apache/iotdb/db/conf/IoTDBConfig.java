@@ -28,6 +28,7 @@ import org.apache.iotdb.db.metadata.MManager;
 import org.apache.iotdb.db.service.TSServiceImpl;
 import org.apache.iotdb.tsfile.common.conf.TSFileDescriptor;
 import org.apache.iotdb.tsfile.file.metadata.enums.TSEncoding;
+import org.apache.iotdb.tsfile.fileSystem.FSFactoryProducer;
 import org.apache.iotdb.tsfile.fileSystem.FSType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -230,6 +231,20 @@ public class IoTDBConfig {
    */
   private long tsFileSizeThreshold = 512 * 1024 * 1024L;
 
+  /**
+   * The max number of sealed sequence TsFiles in each storage group that keep the start and end
+   * time of each device in memory. The device times of older files are degraded into the time
+   * range of the whole file and read back from the resource files when needed. -1 means no limit.
+   */
+  private int maxDeviceTimeIndexFileNum = -1;
+
+  /**
+   * Whether to load the sealed files of the time partitions other than the latest one at startup
+   * with only their time ranges recorded in the resource index, leaving their device times in the
+   * resource files until they are needed.
+   */
+  private boolean lazyLoadColdPartitionResources = false;
+
   /**
    * When a memTable's size (in byte) exceeds this, the memtable is flushed to disk.
    */
@@ -240,6 +255,12 @@ public class IoTDBConfig {
    */
   private boolean metaDataCacheEnable = true;
 
+  /**
+   * Memory allocated for the data read by running queries, the rest of allocateMemoryForRead after
+   * the caches
+   */
+  private long allocateMemoryForQuery = allocateMemoryForRead * 19 / 39;
+
   /**
    * Memory allocated for timeSeriesMetaData cache in read process
    */
@@ -279,6 +300,17 @@ public class IoTDBConfig {
    */
   private int mManagerCacheSize = 400000;
 
+  /**
+   * Create a snapshot of the MTree when at least this number of metadata operations are logged
+   * after the last snapshot. 0 means no periodic snapshot.
+   */
+  private int mtreeSnapshotInterval = 100000;
+
+  /**
+   * The max number of timeseries paths cached for the path patterns of queries. 0 means no cache.
+   */
+  private int pathPatternCacheSize = 100000;
+
   /**
    * Is external sort enable.
    */
@@ -413,6 +445,12 @@ public class IoTDBConfig {
    */
   private int mergeChunkSubThreadNum = 4;
 
+  /**
+   * How many threads will be set up to merge the series of a merge task in parallel, each taking
+   * the series of a device at a time.
+   */
+  private int mergeSeriesSubThreadNum = 1;
+
   /**
    * If one merge file selection runs for more than this time, it will be ended and its current
    * selection will be used as final selection. Unit: millis. When < 0, it means time is unbounded.
@@ -446,6 +484,55 @@ public class IoTDBConfig {
    */
   private int chunkMergePointThreshold = 20480;
 
+  /**
+   * When a time partition has at least this number of adjacent sealed sequence files that are
+   * smaller than tsFileSizeThreshold and whose total size does not exceed it, they are compacted
+   * into one file. When less than 2, the compaction is disabled.
+   */
+  private int seqCompactionFileNum = 0;
+
+  /**
+   * When the modification file of a sealed sequence file reaches this size in bytes, the file is
+   * compacted alone to drop the deleted data. When less than or equal to 0, it is disabled.
+   */
+  private long compactionModificationSize = 65536;
+
+  /**
+   * The max memory in bytes taken by the modifications cached for queries and merges. When less
+   * than or equal to 0, the modifications are read from their files every time.
+   */
+  private long modificationCacheSize = 16L * 1024 * 1024;
+
+  /**
+   * The max IO throughput of all merges and compactions in MB/s, including their reads and writes.
+   * When less than or equal to 0, it is not limited. It can be changed at runtime through JMX.
+   */
+  private int mergeThroughputMbPerSec = 0;
+
+  /**
+   * The max time in ms a merge IO waits for the running flushes and queries to finish before it is
+   * issued. When less than or equal to 0, merges do not give way to flushes and queries.
+   */
+  private long mergeYieldTimeMs = 0;
+
+  /**
+   * The directories of the cold tier, to which the sealed TsFiles older than coldDataAge are
+   * migrated from dataDirs. A directory is either a local one, e.g., on a cheaper disk, or an HDFS
+   * one given with the hdfs scheme. When empty, no file is migrated.
+   */
+  private String[] coldDataDirs = {};
+
+  /**
+   * A sealed TsFile is migrated to the cold tier once its latest data is older than this in ms.
+   */
+  private long coldDataAge = 7 * 24 * 3600 * 1000L;
+
+  /**
+   * The max throughput in MB/s of copying the files to the cold tier. When less than or equal to
+   * 0, it is not limited.
+   */
+  private int coldDataMigrationThroughputMbPerSec = 16;
+
   private MergeFileStrategy mergeFileStrategy = MergeFileStrategy.MAX_SERIES_NUM;
 
   /**
@@ -523,6 +610,16 @@ public class IoTDBConfig {
    */
   private int defaultFillInterval = -1;
 
+  /**
+   * whether to admit a query only when allocateMemoryForQuery can hold its estimated memory
+   */
+  private boolean enableQueryMemoryControl = false;
+
+  /**
+   * how long a query may wait for free query memory before it is rejected, in ms
+   */
+  private long queryMemoryWaitTimeInMs = 60000;
+
   /**
    * default TTL for storage groups that are not set TTL by statements, in ms
    * Notice: if this property is changed, previous created storage group which are not set TTL will
@@ -568,6 +665,22 @@ public class IoTDBConfig {
     this.defaultFillInterval = defaultFillInterval;
   }
 
+  public boolean isEnableQueryMemoryControl() {
+    return enableQueryMemoryControl;
+  }
+
+  public void setEnableQueryMemoryControl(boolean enableQueryMemoryControl) {
+    this.enableQueryMemoryControl = enableQueryMemoryControl;
+  }
+
+  public long getQueryMemoryWaitTimeInMs() {
+    return queryMemoryWaitTimeInMs;
+  }
+
+  public void setQueryMemoryWaitTimeInMs(long queryMemoryWaitTimeInMs) {
+    this.queryMemoryWaitTimeInMs = queryMemoryWaitTimeInMs;
+  }
+
   public long getPartitionInterval() {
     return partitionInterval;
   }
@@ -598,6 +711,11 @@ public class IoTDBConfig {
     schemaDir = addHomeDir(schemaDir);
     syncDir = addHomeDir(syncDir);
     walFolder = addHomeDir(walFolder);
+    for (int i = 0; i < coldDataDirs.length; i++) {
+      if (!coldDataDirs[i].startsWith(FSFactoryProducer.HDFS_SCHEME)) {
+        coldDataDirs[i] = addHomeDir(coldDataDirs[i]);
+      }
+    }
 
     if (TSFileDescriptor.getInstance().getConfig().getTSFileStorageFs().equals(FSType.HDFS)) {
       String hdfsDir = getHdfsDir();
@@ -844,6 +962,22 @@ public class IoTDBConfig {
     this.tsFileSizeThreshold = tsFileSizeThreshold;
   }
 
+  public int getMaxDeviceTimeIndexFileNum() {
+    return maxDeviceTimeIndexFileNum;
+  }
+
+  public void setMaxDeviceTimeIndexFileNum(int maxDeviceTimeIndexFileNum) {
+    this.maxDeviceTimeIndexFileNum = maxDeviceTimeIndexFileNum;
+  }
+
+  public boolean isLazyLoadColdPartitionResources() {
+    return lazyLoadColdPartitionResources;
+  }
+
+  public void setLazyLoadColdPartitionResources(boolean lazyLoadColdPartitionResources) {
+    this.lazyLoadColdPartitionResources = lazyLoadColdPartitionResources;
+  }
+
   public int getBackLoopPeriodSec() {
     return backLoopPeriodSec;
   }
@@ -892,6 +1026,22 @@ public class IoTDBConfig {
     this.mManagerCacheSize = mManagerCacheSize;
   }
 
+  public int getMtreeSnapshotInterval() {
+    return mtreeSnapshotInterval;
+  }
+
+  public void setMtreeSnapshotInterval(int mtreeSnapshotInterval) {
+    this.mtreeSnapshotInterval = mtreeSnapshotInterval;
+  }
+
+  public int getPathPatternCacheSize() {
+    return pathPatternCacheSize;
+  }
+
+  public void setPathPatternCacheSize(int pathPatternCacheSize) {
+    this.pathPatternCacheSize = pathPatternCacheSize;
+  }
+
   public boolean isSyncEnable() {
     return isSyncEnable;
   }
@@ -1084,6 +1234,70 @@ public class IoTDBConfig {
     this.chunkMergePointThreshold = chunkMergePointThreshold;
   }
 
+  public int getSeqCompactionFileNum() {
+    return seqCompactionFileNum;
+  }
+
+  public void setSeqCompactionFileNum(int seqCompactionFileNum) {
+    this.seqCompactionFileNum = seqCompactionFileNum;
+  }
+
+  public long getCompactionModificationSize() {
+    return compactionModificationSize;
+  }
+
+  public void setCompactionModificationSize(long compactionModificationSize) {
+    this.compactionModificationSize = compactionModificationSize;
+  }
+
+  public long getModificationCacheSize() {
+    return modificationCacheSize;
+  }
+
+  public void setModificationCacheSize(long modificationCacheSize) {
+    this.modificationCacheSize = modificationCacheSize;
+  }
+
+  public int getMergeThroughputMbPerSec() {
+    return mergeThroughputMbPerSec;
+  }
+
+  public void setMergeThroughputMbPerSec(int mergeThroughputMbPerSec) {
+    this.mergeThroughputMbPerSec = mergeThroughputMbPerSec;
+  }
+
+  public long getMergeYieldTimeMs() {
+    return mergeYieldTimeMs;
+  }
+
+  public void setMergeYieldTimeMs(long mergeYieldTimeMs) {
+    this.mergeYieldTimeMs = mergeYieldTimeMs;
+  }
+
+  public String[] getColdDataDirs() {
+    return coldDataDirs;
+  }
+
+  public void setColdDataDirs(String[] coldDataDirs) {
+    this.coldDataDirs = coldDataDirs;
+  }
+
+  public long getColdDataAge() {
+    return coldDataAge;
+  }
+
+  public void setColdDataAge(long coldDataAge) {
+    this.coldDataAge = coldDataAge;
+  }
+
+  public int getColdDataMigrationThroughputMbPerSec() {
+    return coldDataMigrationThroughputMbPerSec;
+  }
+
+  public void setColdDataMigrationThroughputMbPerSec(int coldDataMigrationThroughputMbPerSec) {
+    this.coldDataMigrationThroughputMbPerSec = coldDataMigrationThroughputMbPerSec;
+  }
+
   public long getMemtableSizeThreshold() {
     return memtableSizeThreshold;
   }
@@ -1109,6 +1323,14 @@ public class IoTDBConfig {
     this.mergeChunkSubThreadNum = mergeChunkSubThreadNum;
   }
 
+  public int getMergeSeriesSubThreadNum() {
+    return mergeSeriesSubThreadNum;
+  }
+
+  public void setMergeSeriesSubThreadNum(int mergeSeriesSubThreadNum) {
+    this.mergeSeriesSubThreadNum = mergeSeriesSubThreadNum;
+  }
+
   public long getMergeFileSelectionTimeBudget() {
     return mergeFileSelectionTimeBudget;
   }
@@ -1133,6 +1355,14 @@ public class IoTDBConfig {
     this.metaDataCacheEnable = metaDataCacheEnable;
   }
 
+  public long getAllocateMemoryForQuery() {
+    return allocateMemoryForQuery;
+  }
+
+  void setAllocateMemoryForQuery(long allocateMemoryForQuery) {
+    this.allocateMemoryForQuery = allocateMemoryForQuery;
+  }
+
   public long getAllocateMemoryForTimeSeriesMetaDataCache() {
     return allocateMemoryForTimeSeriesMetaDataCache;
   }
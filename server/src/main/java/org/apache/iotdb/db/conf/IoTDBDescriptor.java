@@ -33,6 +33,7 @@ import org.apache.commons.cli.Option;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
 import org.apache.iotdb.db.conf.directories.DirectoryManager;
+import org.apache.iotdb.db.engine.merge.selector.MergeFileStrategy;
 import org.apache.iotdb.db.exception.query.QueryProcessException;
 import org.apache.iotdb.db.utils.FilePathUtils;
 import org.apache.iotdb.tsfile.common.conf.TSFileDescriptor;
@@ -233,6 +234,14 @@ public class IoTDBDescriptor {
         conf.setTsFileSizeThreshold(tsfileSizeThreshold);
       }
 
+      conf.setMaxDeviceTimeIndexFileNum(Integer.parseInt(properties
+          .getProperty("max_device_time_index_file_num",
+              Integer.toString(conf.getMaxDeviceTimeIndexFileNum())).trim()));
+
+      conf.setLazyLoadColdPartitionResources(Boolean.parseBoolean(properties
+          .getProperty("lazy_load_cold_partition_resources",
+              Boolean.toString(conf.isLazyLoadColdPartitionResources())).trim()));
+
       long memTableSizeThreshold = Long.parseLong(properties
           .getProperty("memtable_size_threshold",
               Long.toString(conf.getMemtableSizeThreshold())).trim());
@@ -270,6 +279,14 @@ public class IoTDBDescriptor {
           .parseInt(properties.getProperty("metadata_node_cache_size",
               Integer.toString(conf.getmManagerCacheSize())).trim()));
 
+      conf.setMtreeSnapshotInterval(Integer
+          .parseInt(properties.getProperty("mtree_snapshot_interval",
+              Integer.toString(conf.getMtreeSnapshotInterval())).trim()));
+
+      conf.setPathPatternCacheSize(Integer
+          .parseInt(properties.getProperty("path_pattern_cache_size",
+              Integer.toString(conf.getPathPatternCacheSize())).trim()));
+
       conf.setLanguageVersion(properties.getProperty("language_version",
           conf.getLanguageVersion()).trim());
 
@@ -295,6 +312,9 @@ public class IoTDBDescriptor {
       conf.setMergeChunkSubThreadNum(Integer.parseInt(properties.getProperty
           ("merge_chunk_subthread_num",
               Integer.toString(conf.getMergeChunkSubThreadNum()))));
+      conf.setMergeSeriesSubThreadNum(Integer.parseInt(properties.getProperty
+          ("merge_series_subthread_num",
+              Integer.toString(conf.getMergeSeriesSubThreadNum()))));
       conf.setContinueMergeAfterReboot(Boolean.parseBoolean(properties.getProperty(
           "continue_merge_after_reboot", Boolean.toString(conf.isContinueMergeAfterReboot()))));
       conf.setMergeFileSelectionTimeBudget(Long.parseLong(properties.getProperty
@@ -306,6 +326,35 @@ public class IoTDBDescriptor {
           Boolean.toString(conf.isForceFullMerge()))));
       conf.setChunkMergePointThreshold(Integer.parseInt(properties.getProperty(
           "chunk_merge_point_threshold", Integer.toString(conf.getChunkMergePointThreshold()))));
+      conf.setMergeFileStrategy(MergeFileStrategy.valueOf(properties.getProperty(
+          "merge_file_strategy", conf.getMergeFileStrategy().name()).trim()));
+      conf.setSeqCompactionFileNum(Integer.parseInt(properties.getProperty(
+          "seq_compaction_file_num", Integer.toString(conf.getSeqCompactionFileNum())).trim()));
+      conf.setCompactionModificationSize(Long.parseLong(properties.getProperty(
+          "compaction_modification_size",
+          Long.toString(conf.getCompactionModificationSize())).trim()));
+      conf.setModificationCacheSize(Long.parseLong(properties.getProperty(
+          "modification_cache_size",
+          Long.toString(conf.getModificationCacheSize())).trim()));
+      conf.setMergeThroughputMbPerSec(Integer.parseInt(properties.getProperty(
+          "merge_throughput_mb_per_sec",
+          Integer.toString(conf.getMergeThroughputMbPerSec())).trim()));
+      conf.setMergeYieldTimeMs(Long.parseLong(properties.getProperty("merge_yield_time_ms",
+          Long.toString(conf.getMergeYieldTimeMs())).trim()));
+
+      String coldDataDirs = properties.getProperty("cold_data_dirs", "").trim();
+      if (!coldDataDirs.isEmpty()) {
+        String[] dirs = coldDataDirs.split(",");
+        for (int i = 0; i < dirs.length; i++) {
+          dirs[i] = dirs[i].trim();
+        }
+        conf.setColdDataDirs(dirs);
+      }
+      conf.setColdDataAge(Long.parseLong(properties.getProperty("cold_data_age",
+          Long.toString(conf.getColdDataAge())).trim()));
+      conf.setColdDataMigrationThroughputMbPerSec(Integer.parseInt(properties.getProperty(
+          "cold_data_migration_throughput_mb_per_sec",
+          Integer.toString(conf.getColdDataMigrationThroughputMbPerSec())).trim()));
 
       conf.setEnablePerformanceStat(Boolean
           .parseBoolean(properties.getProperty("enable_performance_stat",
@@ -380,6 +429,14 @@ public class IoTDBDescriptor {
           Integer.parseInt(properties.getProperty("default_fill_interval",
               String.valueOf(conf.getDefaultFillInterval()))));
 
+      conf.setEnableQueryMemoryControl(
+          Boolean.parseBoolean(properties.getProperty("enable_query_memory_control",
+              Boolean.toString(conf.isEnableQueryMemoryControl()))));
+
+      conf.setQueryMemoryWaitTimeInMs(
+          Long.parseLong(properties.getProperty("query_memory_wait_time_in_ms",
+              Long.toString(conf.getQueryMemoryWaitTimeInMs()))));
+
       conf.setTagAttributeTotalSize(
           Integer.parseInt(properties.getProperty("tag_attribute_total_size",
               String.valueOf(conf.getTagAttributeTotalSize())))
@@ -620,6 +677,7 @@ public class IoTDBDescriptor {
     logger.info("allocateMemoryForWrite = " + conf.getAllocateMemoryForWrite());
 
     if (!conf.isMetaDataCacheEnable()) {
+      conf.setAllocateMemoryForQuery(conf.getAllocateMemoryForRead());
       return;
     }
 
@@ -639,6 +697,8 @@ public class IoTDBDescriptor {
             maxMemoryAvailable * Integer.parseInt(proportions[1].trim()) / proportionSum);
         conf.setAllocateMemoryForTimeSeriesMetaDataCache(
             maxMemoryAvailable * Integer.parseInt(proportions[2].trim()) / proportionSum);
+        conf.setAllocateMemoryForQuery(
+            maxMemoryAvailable * Integer.parseInt(proportions[3].trim()) / proportionSum);
       } catch (Exception e) {
         throw new RuntimeException(
             "Each subsection of configuration item chunkmeta_chunk_timeseriesmeta_free_memory_proportion"
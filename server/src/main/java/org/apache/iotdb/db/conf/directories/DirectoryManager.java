@@ -22,6 +22,7 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.iotdb.db.conf.IoTDBConstant;
 import org.apache.iotdb.db.conf.IoTDBDescriptor;
 import org.apache.iotdb.db.conf.directories.strategy.DirectoryStrategy;
@@ -42,6 +43,7 @@ public class DirectoryManager {
   private List<String> unsequenceFileFolders;
   private DirectoryStrategy sequenceStrategy;
   private DirectoryStrategy unsequenceStrategy;
+  private final AtomicInteger nextColdFolderIndex = new AtomicInteger();
 
   private DirectoryManager() {
     sequenceFileFolders =
@@ -186,4 +188,55 @@ public class DirectoryManager {
     return new ArrayList<>(unsequenceFileFolders);
   }
 
+  /**
+   * @return the sequence folders of the cold tier, i.e., those in the cold data dirs, which are
+   * read from the config each time as the cold data dirs are not managed by the strategy
+   */
+  public List<String> getAllColdSequenceFileFolders() {
+    return getColdFileFolders(IoTDBConstant.SEQUENCE_FLODER_NAME);
+  }
+
+  public List<String> getAllColdUnSequenceFileFolders() {
+    return getColdFileFolders(IoTDBConstant.UNSEQUENCE_FLODER_NAME);
+  }
+
+  private List<String> getColdFileFolders(String folderName) {
+    String[] coldDataDirs = IoTDBDescriptor.getInstance().getConfig().getColdDataDirs();
+    List<String> folders = new ArrayList<>(coldDataDirs.length);
+    for (String coldDataDir : coldDataDirs) {
+      folders.add(coldDataDir + File.separator + folderName);
+    }
+    return folders;
+  }
+
+  /**
+   * The cold folders are chosen in turn, as the disk space of HDFS cannot be checked like that of
+   * the local disks.
+   *
+   * @return the next folder of the cold tier for a sequence or unsequence file, if there are cold
+   * data dirs
+   */
+  public String getNextFolderForColdFile(boolean sequence) {
+    List<String> folders = sequence ? getAllColdSequenceFileFolders()
+        : getAllColdUnSequenceFileFolders();
+    return folders.get(Math.floorMod(nextColdFolderIndex.getAndIncrement(), folders.size()));
+  }
+
+  /**
+   * The modification file of a TsFile in the cold tier stays in the first data dir, as it is
+   * appended to by deletions and read by every query of the file.
+   *
+   * @return the path in the first data dir with the same folder, storage group, time partition and
+   * name as the TsFile in the cold tier
+   */
+  public String getHotPath(File coldFile) {
+    File partitionFolder = coldFile.getParentFile();
+    File storageGroupFolder = partitionFolder.getParentFile();
+    String folderName = storageGroupFolder.getParentFile().getName();
+    String hotFolder = IoTDBConstant.SEQUENCE_FLODER_NAME.equals(folderName)
+        ? sequenceFileFolders.get(0) : unsequenceFileFolders.get(0);
+    return hotFolder + File.separator + storageGroupFolder.getName() + File.separator
+        + partitionFolder.getName() + File.separator + coldFile.getName();
+  }
+
 }
@@ -75,6 +75,7 @@ public class StorageEngine implements IService {
   private final Logger logger;
   private static final IoTDBConfig config = IoTDBDescriptor.getInstance().getConfig();
   private static final long TTL_CHECK_INTERVAL = 60 * 1000L;
+  private static final long COLD_DATA_CHECK_INTERVAL = 60 * 1000L;
 
   /**
    * a folder (system/storage_groups/ by default) that persist system info. Each Storage Processor
@@ -104,6 +105,8 @@ public class StorageEngine implements IService {
   }
 
   private ScheduledExecutorService ttlCheckThread;
+  // moves the cold files of all storage groups to the cold tier one at a time
+  private ScheduledExecutorService coldDataMigrationThread;
   private TsFileFlushPolicy fileFlushPolicy = new DirectFlushPolicy();
 
   /**
@@ -175,6 +178,21 @@ public class StorageEngine implements IService {
     ttlCheckThread = Executors.newSingleThreadScheduledExecutor();
     ttlCheckThread.scheduleAtFixedRate(this::checkTTL, TTL_CHECK_INTERVAL, TTL_CHECK_INTERVAL
         , TimeUnit.MILLISECONDS);
+    if (config.getColdDataDirs().length > 0) {
+      coldDataMigrationThread = Executors.newSingleThreadScheduledExecutor();
+      coldDataMigrationThread.scheduleWithFixedDelay(this::migrateColdData,
+          COLD_DATA_CHECK_INTERVAL, COLD_DATA_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  private void migrateColdData() {
+    try {
+      for (StorageGroupProcessor processor : processorMap.values()) {
+        processor.migrateColdFiles();
+      }
+    } catch (Exception e) {
+      logger.error("An error occurred when moving files to the cold tier", e);
+    }
   }
 
   private void checkTTL() {
@@ -200,6 +218,14 @@ public class StorageEngine implements IService {
         logger.warn("TTL check thread still doesn't exit after 30s");
       }
     }
+    if (coldDataMigrationThread != null) {
+      coldDataMigrationThread.shutdownNow();
+      try {
+        coldDataMigrationThread.awaitTermination(30, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        logger.warn("Cold data migration thread still doesn't exit after 30s");
+      }
+    }
     recoveryThreadPool.shutdownNow();
     this.reset();
   }
@@ -338,9 +364,17 @@ public class StorageEngine implements IService {
    */
   public void delete(String deviceId, String measurementId, long timestamp)
       throws StorageEngineException {
+    delete(deviceId, measurementId, Long.MIN_VALUE, timestamp);
+  }
+
+  /**
+   * delete data of timeseries "{deviceId}.{measurementId}" with startTime <= time <= endTime.
+   */
+  public void delete(String deviceId, String measurementId, long startTime, long endTime)
+      throws StorageEngineException {
     StorageGroupProcessor storageGroupProcessor = getProcessor(deviceId);
     try {
-      storageGroupProcessor.delete(deviceId, measurementId, timestamp);
+      storageGroupProcessor.delete(deviceId, measurementId, startTime, endTime);
     } catch (IOException e) {
       throw new StorageEngineException(e.getMessage());
     }
@@ -20,6 +20,7 @@ package org.apache.iotdb.db.engine.cache;
 
 import org.apache.iotdb.db.conf.IoTDBConstant;
 import org.apache.iotdb.db.exception.StartupException;
+import org.apache.iotdb.db.metadata.MManager;
 import org.apache.iotdb.db.service.IService;
 import org.apache.iotdb.db.service.JMXService;
 import org.apache.iotdb.db.service.ServiceType;
@@ -127,6 +128,11 @@ public class CacheHitRatioMonitor implements CacheHitRatioMonitorMXBean, IServic
     return TimeSeriesMetadataCache.getInstance().getAverageSize();
   }
 
+  @Override
+  public double getPathPatternHitRatio() {
+    return MManager.getInstance().getPathPatternCacheHitRatio();
+  }
+
   public static CacheHitRatioMonitor getInstance() {
     return instance;
   }
@@ -52,4 +52,6 @@ public interface CacheHitRatioMonitorMXBean {
 
   long getTimeSeriesMetaDataCacheAverageSize();
 
+  double getPathPatternHitRatio();
+
 }
@@ -86,7 +86,8 @@ public class ChunkCache {
   public Chunk get(ChunkMetadata chunkMetaData, TsFileSequenceReader reader) throws IOException {
     if (!CACHE_ENABLE) {
       Chunk chunk = reader.readMemChunk(chunkMetaData);
-      return new Chunk(chunk.getHeader(), chunk.getData().duplicate(), chunk.getDeletedAt());
+      return new Chunk(chunk.getHeader(), chunk.getData().duplicate(),
+          chunk.getDeleteIntervalList());
     }
 
     cacheRequestNum.incrementAndGet();
@@ -97,7 +98,8 @@ public class ChunkCache {
         cacheHitNum.incrementAndGet();
         printCacheLog(true);
         Chunk chunk = lruCache.get(chunkMetaData);
-        return new Chunk(chunk.getHeader(), chunk.getData().duplicate(), chunk.getDeletedAt());
+        return new Chunk(chunk.getHeader(), chunk.getData().duplicate(),
+          chunk.getDeleteIntervalList());
       }
     } finally {
       lock.readLock().unlock();
@@ -116,12 +118,14 @@ public class ChunkCache {
         cacheHitNum.incrementAndGet();
         printCacheLog(true);
         Chunk chunk = lruCache.get(chunkMetaData);
-        return new Chunk(chunk.getHeader(), chunk.getData().duplicate(), chunk.getDeletedAt());
+        return new Chunk(chunk.getHeader(), chunk.getData().duplicate(),
+          chunk.getDeleteIntervalList());
       }
       printCacheLog(false);
       Chunk chunk = reader.readMemChunk(chunkMetaData);
       lruCache.put(chunkMetaData, chunk);
-      return new Chunk(chunk.getHeader(), chunk.getData().duplicate(), chunk.getDeletedAt());
+      return new Chunk(chunk.getHeader(), chunk.getData().duplicate(),
+          chunk.getDeleteIntervalList());
     } catch (IOException e) {
       logger.error("something wrong happened while reading {}", reader.getFileName());
       throw e;
@@ -33,7 +33,7 @@ public abstract class LRULinkedHashMap<K extends Accountable, V> {
   private static final float LOAD_FACTOR_MAP = 0.75f;
   private static final int INITIAL_CAPACITY = 128;
   private static final float RETAIN_PERCENT = 0.9f;
-  private static final int MAP_ENTRY_SIZE = 40;
+  static final int MAP_ENTRY_SIZE = 40;
 
   private final LinkedHashMap<K, V> linkedHashMap;
 
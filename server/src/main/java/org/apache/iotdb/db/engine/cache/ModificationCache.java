@@ -0,0 +1,165 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.engine.cache;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.apache.iotdb.db.conf.IoTDBDescriptor;
+import org.apache.iotdb.db.engine.modification.Modification;
+import org.apache.iotdb.db.utils.TestOnly;
+import org.apache.iotdb.tsfile.utils.RamUsageEstimator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class is used to cache the modifications of modification files in IoTDB, indexed by their
+ * timeseries, so that a file is not read again for each series queried or merged. The caching
+ * strategy is LRU, and a file is read again once its modifications are evicted.
+ */
+public class ModificationCache {
+
+  private static final Logger logger = LoggerFactory.getLogger(ModificationCache.class);
+  private static final long MEMORY_THRESHOLD_IN_B = IoTDBDescriptor.getInstance().getConfig()
+      .getModificationCacheSize();
+
+  /**
+   * key: the path of a modification file.
+   * <p>
+   * value: timeseries -> its modifications in the file in the order they are written.
+   */
+  private final LRULinkedHashMap<AccountableString, Map<String, List<Modification>>> lruCache;
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  private ModificationCache(long memoryThreshold) {
+    logger.info("ModificationCache size = {}", memoryThreshold);
+    lruCache = new LRULinkedHashMap<AccountableString, Map<String, List<Modification>>>(
+        memoryThreshold) {
+      @Override
+      protected long calEntrySize(AccountableString key,
+          Map<String, List<Modification>> value) {
+        return ModificationCache.calEntrySize(key, value);
+      }
+    };
+  }
+
+  /**
+   * The size of an entry only depends on the entry, so that it can be calculated again when the
+   * entry is removed.
+   */
+  private static long calEntrySize(AccountableString key, Map<String, List<Modification>> value) {
+    long entrySize = RamUsageEstimator.sizeOf(key) + RamUsageEstimator.shallowSizeOf(value);
+    // the modifications of a file usually differ only in their paths, so one of them is measured
+    // and the paths are counted by their lengths
+    long modificationSize = -1;
+    for (Entry<String, List<Modification>> entry : value.entrySet()) {
+      List<Modification> modifications = entry.getValue();
+      if (modificationSize < 0) {
+        modificationSize = RamUsageEstimator.sizeOf(modifications.get(0));
+      }
+      entrySize += RamUsageEstimator.sizeOf(entry.getKey())
+          + RamUsageEstimator.shallowSizeOf(modifications)
+          + (modificationSize + RamUsageEstimator.NUM_BYTES_OBJECT_REF) * modifications.size();
+    }
+    return entrySize;
+  }
+
+  public static ModificationCache getInstance() {
+    return ModificationCacheSingleton.INSTANCE;
+  }
+
+  /**
+   * @return the cached modifications of the file, which must not be modified, or null if they are
+   * not cached
+   */
+  public Map<String, List<Modification>> get(String filePath) {
+    lock.readLock().lock();
+    try {
+      return lruCache.get(new AccountableString(filePath));
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  public void put(String filePath, Map<String, List<Modification>> pathModifications) {
+    if (lruCache.getMaxMemory() <= 0) {
+      return;
+    }
+    lock.writeLock().lock();
+    try {
+      remove(new AccountableString(filePath));
+      lruCache.put(new AccountableString(filePath), pathModifications);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Drop the modifications of the file, which is called when the file is changed or removed.
+   */
+  public void remove(String filePath) {
+    lock.writeLock().lock();
+    try {
+      remove(new AccountableString(filePath));
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  private void remove(AccountableString key) {
+    Map<String, List<Modification>> pathModifications = lruCache.get(key);
+    if (pathModifications != null) {
+      // the used memory is reduced by the size carried by the given key
+      key.setRamSize(calEntrySize(key, pathModifications) + LRULinkedHashMap.MAP_ENTRY_SIZE);
+      lruCache.remove(key);
+    }
+  }
+
+  public long getUsedMemory() {
+    return lruCache.getUsedMemory();
+  }
+
+  /**
+   * clear LRUCache.
+   */
+  public void clear() {
+    lock.writeLock().lock();
+    try {
+      lruCache.clear();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @TestOnly
+  public boolean isEmpty() {
+    return lruCache.isEmpty();
+  }
+
+  /**
+   * singleton pattern.
+   */
+  private static class ModificationCacheSingleton {
+
+    private static final ModificationCache INSTANCE = new ModificationCache(MEMORY_THRESHOLD_IN_B);
+  }
+}
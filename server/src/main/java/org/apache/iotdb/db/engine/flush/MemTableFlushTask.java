@@ -27,6 +27,8 @@ import org.apache.iotdb.db.conf.adapter.ActiveTimeSeriesCounter;
 import org.apache.iotdb.db.engine.flush.pool.FlushSubTaskPoolManager;
 import org.apache.iotdb.db.engine.memtable.IMemTable;
 import org.apache.iotdb.db.engine.memtable.IWritableMemChunk;
+import org.apache.iotdb.db.engine.merge.manage.MergeRateLimiter;
+import org.apache.iotdb.db.engine.storagegroup.timeindex.UnseqOverlapIndex;
 import org.apache.iotdb.db.exception.runtime.FlushRunTimeException;
 import org.apache.iotdb.db.utils.datastructure.TVList;
 import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
@@ -52,12 +54,20 @@ public class MemTableFlushTask {
   private String storageGroup;
 
   private IMemTable memTable;
+  // null if the file is sequence or its overlap index is not maintained
+  private UnseqOverlapIndex overlapIndex;
 
   private volatile boolean noMoreEncodingTask = false;
   private volatile boolean noMoreIOTask = false;
 
   public MemTableFlushTask(IMemTable memTable, RestorableTsFileIOWriter writer, String storageGroup) {
+    this(memTable, writer, storageGroup, null);
+  }
+
+  public MemTableFlushTask(IMemTable memTable, RestorableTsFileIOWriter writer, String storageGroup,
+      UnseqOverlapIndex overlapIndex) {
     this.memTable = memTable;
+    this.overlapIndex = overlapIndex;
     this.writer = writer;
     this.storageGroup = storageGroup;
     this.encodingTaskFuture = subTaskPoolManager.submit(encodingTask);
@@ -71,6 +81,16 @@ public class MemTableFlushTask {
    * the function for flushing memtable.
    */
   public void syncFlushMemTable() throws ExecutionException, InterruptedException {
+    // merges give way to flushes
+    MergeRateLimiter.getInstance().startFlush();
+    try {
+      doFlushMemTable();
+    } finally {
+      MergeRateLimiter.getInstance().endFlush();
+    }
+  }
+
+  private void doFlushMemTable() throws ExecutionException, InterruptedException {
     long start = System.currentTimeMillis();
     long sortTime = 0;
     for (String deviceId : memTable.getMemTableMap().keySet()) {
@@ -80,6 +100,9 @@ public class MemTableFlushTask {
         IWritableMemChunk series = memTable.getMemTableMap().get(deviceId).get(measurementId);
         MeasurementSchema desc = series.getSchema();
         TVList tvList = series.getSortedTVList();
+        if (overlapIndex != null) {
+          overlapIndex.update(deviceId, measurementId, tvList);
+        }
         sortTime += System.currentTimeMillis() - startTime;
         encodingTaskQueue.add(new Pair<>(tvList, desc));
         // register active time series to the ActiveTimeSeriesCounter
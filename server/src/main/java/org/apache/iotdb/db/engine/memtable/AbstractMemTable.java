@@ -68,19 +68,27 @@ public abstract class AbstractMemTable implements IMemTable {
    * @return true if seriesPath is within this memtable
    */
   private boolean checkPath(String deviceId, String measurement) {
-    return memTableMap.containsKey(deviceId) && memTableMap.get(deviceId).containsKey(measurement);
+    Map<String, IWritableMemChunk> memSeries = memTableMap.get(deviceId);
+    return memSeries != null && memSeries.containsKey(measurement);
   }
 
+  /**
+   * Get the chunk of the series with one lookup of the device and one of the measurement, as it is
+   * called for each series of every insertion.
+   */
   private IWritableMemChunk createIfNotExistAndGet(String deviceId, String measurement,
       MeasurementSchema schema) {
-    if (!memTableMap.containsKey(deviceId)) {
-      memTableMap.put(deviceId, new HashMap<>());
-    }
     Map<String, IWritableMemChunk> memSeries = memTableMap.get(deviceId);
-    if (!memSeries.containsKey(measurement)) {
-      memSeries.put(measurement, genMemSeries(schema));
+    if (memSeries == null) {
+      memSeries = new HashMap<>();
+      memTableMap.put(deviceId, memSeries);
     }
-    return memSeries.get(measurement);
+    IWritableMemChunk memChunk = memSeries.get(measurement);
+    if (memChunk == null) {
+      memChunk = genMemSeries(schema);
+      memSeries.put(measurement, memChunk);
+    }
+    return memChunk;
   }
 
   protected abstract IWritableMemChunk genMemSeries(MeasurementSchema schema);
@@ -125,10 +133,18 @@ public abstract class AbstractMemTable implements IMemTable {
 
   @Override
   public void write(InsertTabletPlan insertTabletPlan, int start, int end) {
+    Map<String, IWritableMemChunk> memSeries = memTableMap.get(insertTabletPlan.getDeviceId());
+    if (memSeries == null) {
+      memSeries = new HashMap<>();
+      memTableMap.put(insertTabletPlan.getDeviceId(), memSeries);
+    }
     for (int i = 0; i < insertTabletPlan.getMeasurements().length; i++) {
-      IWritableMemChunk memSeries = createIfNotExistAndGet(insertTabletPlan.getDeviceId(),
-          insertTabletPlan.getMeasurements()[i], insertTabletPlan.getSchemas()[i]);
-      memSeries.write(insertTabletPlan.getTimes(), insertTabletPlan.getColumns()[i],
+      IWritableMemChunk memChunk = memSeries.get(insertTabletPlan.getMeasurements()[i]);
+      if (memChunk == null) {
+        memChunk = genMemSeries(insertTabletPlan.getSchemas()[i]);
+        memSeries.put(insertTabletPlan.getMeasurements()[i], memChunk);
+      }
+      memChunk.write(insertTabletPlan.getTimes(), insertTabletPlan.getColumns()[i],
           insertTabletPlan.getDataTypes()[i], start, end);
     }
   }
@@ -174,33 +190,52 @@ public abstract class AbstractMemTable implements IMemTable {
     TVList chunkCopy = memChunk.getTVList().clone();
 
     chunkCopy.setTimeOffset(undeletedTime);
+    // the deletions of time ranges are applied to the copy
+    for (Modification modification : modifications) {
+      if (isRangeDeletionOf(modification, deviceId, measurement)) {
+        Deletion deletion = (Deletion) modification;
+        chunkCopy.delete(deletion.getStartTime(), deletion.getEndTime());
+      }
+    }
     return new ReadOnlyMemChunk(measurement, dataType, encoding, chunkCopy, props, getVersion());
   }
 
 
+  /**
+   * @return the min time of the data not deleted by the deletions without a start time
+   */
   private long findUndeletedTime(String deviceId, String measurement, long timeLowerBound) {
     long undeletedTime = Long.MIN_VALUE;
     for (Modification modification : modifications) {
       if (modification instanceof Deletion) {
         Deletion deletion = (Deletion) modification;
         if (deletion.getDevice().equals(deviceId) && deletion.getMeasurement().equals(measurement)
-            && deletion.getTimestamp() > undeletedTime) {
-          undeletedTime = deletion.getTimestamp();
+            && deletion.getStartTime() == Long.MIN_VALUE
+            && deletion.getEndTime() > undeletedTime) {
+          undeletedTime = deletion.getEndTime();
         }
       }
     }
     return Math.max(undeletedTime + 1, timeLowerBound);
   }
 
+  private static boolean isRangeDeletionOf(Modification modification, String deviceId,
+      String measurement) {
+    return modification instanceof Deletion
+        && ((Deletion) modification).getStartTime() != Long.MIN_VALUE
+        && modification.getDevice().equals(deviceId)
+        && modification.getMeasurement().equals(measurement);
+  }
+
   @Override
-  public void delete(String deviceId, String measurementId, long timestamp) {
+  public void delete(String deviceId, String measurementId, long startTime, long endTime) {
     Map<String, IWritableMemChunk> deviceMap = memTableMap.get(deviceId);
     if (deviceMap != null) {
       IWritableMemChunk chunk = deviceMap.get(measurementId);
       if (chunk == null) {
         return;
       }
-      chunk.delete(timestamp);
+      chunk.delete(startTime, endTime);
     }
   }
 
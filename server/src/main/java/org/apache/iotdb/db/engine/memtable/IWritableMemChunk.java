@@ -98,5 +98,8 @@ public interface IWritableMemChunk {
     return Long.MIN_VALUE;
   }
 
-  void delete(long upperBound);
+  /**
+   * Delete the data whose timestamp is within [lowerBound, upperBound].
+   */
+  void delete(long lowerBound, long upperBound);
 }
@@ -19,9 +19,9 @@
 
 package org.apache.iotdb.db.engine.merge.manage;
 
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import org.apache.iotdb.db.engine.storagegroup.TsFileResource;
@@ -32,9 +32,10 @@ import org.apache.iotdb.tsfile.read.common.Path;
  */
 public class MergeContext {
 
-  private Map<TsFileResource, Integer> mergedChunkCnt = new HashMap<>();
-  private Map<TsFileResource, Integer> unmergedChunkCnt = new HashMap<>();
-  private Map<TsFileResource, Map<Path, List<Long>>> unmergedChunkStartTimes = new HashMap<>();
+  private Map<TsFileResource, Integer> mergedChunkCnt = new ConcurrentHashMap<>();
+  private Map<TsFileResource, Integer> unmergedChunkCnt = new ConcurrentHashMap<>();
+  private Map<TsFileResource, Map<Path, List<Long>>> unmergedChunkStartTimes =
+      new ConcurrentHashMap<>();
 
   private AtomicInteger totalChunkWritten = new AtomicInteger();
   private AtomicLong totalPointWritten = new AtomicLong();
@@ -29,18 +29,21 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.iotdb.db.conf.IoTDBDescriptor;
 import org.apache.iotdb.db.engine.StorageEngine;
+import org.apache.iotdb.db.engine.merge.task.CompactionTask;
 import org.apache.iotdb.db.engine.merge.task.MergeTask;
 import org.apache.iotdb.db.exception.StorageEngineException;
 import org.apache.iotdb.db.service.IService;
+import org.apache.iotdb.db.service.JMXService;
 import org.apache.iotdb.db.service.ServiceType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * MergeManager provides a ThreadPool to queue and run all merge tasks to restrain the total
- * resources occupied by merge and manages a Timer to periodically issue a global merge.
+ * resources occupied by merge and manages a Timer to periodically issue a global merge. The IO of
+ * the tasks is limited by the MergeRateLimiter, whose throughput can be adjusted through JMX.
  */
-public class MergeManager implements IService {
+public class MergeManager implements IService, MergeManagerMBean {
 
   private static final Logger logger = LoggerFactory.getLogger(MergeManager.class);
   private static final MergeManager INSTANCE = new MergeManager();
@@ -48,6 +51,7 @@ public class MergeManager implements IService {
   private AtomicInteger threadCnt = new AtomicInteger();
   private ThreadPoolExecutor mergeTaskPool;
   private ThreadPoolExecutor mergeChunkSubTaskPool;
+  private ThreadPoolExecutor mergeSeriesSubTaskPool;
   private ScheduledExecutorService timedMergeThreadPool;
 
   private MergeManager() {
@@ -61,10 +65,28 @@ public class MergeManager implements IService {
     mergeTaskPool.submit(mergeTask);
   }
 
+  /**
+   * Compactions share the threads of merges so that they do not add to the IO of merges.
+   */
+  public void submitCompactionTask(CompactionTask compactionTask) {
+    mergeTaskPool.submit(compactionTask);
+  }
+
+  public boolean isStarted() {
+    return mergeTaskPool != null;
+  }
+
   public Future submitChunkSubTask(Callable callable) {
     return mergeChunkSubTaskPool.submit(callable);
   }
 
+  /**
+   * The series sub-tasks wait for the chunk sub-tasks they submit, so they run in another pool.
+   */
+  public Future submitSeriesSubTask(Callable callable) {
+    return mergeSeriesSubTaskPool.submit(callable);
+  }
+
   @Override
   public void start() {
     if (mergeTaskPool == null) {
@@ -78,12 +100,21 @@ public class MergeManager implements IService {
         chunkSubThreadNum = 1;
       }
 
+      int seriesSubThreadNum = IoTDBDescriptor.getInstance().getConfig()
+          .getMergeSeriesSubThreadNum();
+      if (seriesSubThreadNum <= 0) {
+        seriesSubThreadNum = 1;
+      }
+
       mergeTaskPool =
           (ThreadPoolExecutor) Executors.newFixedThreadPool(threadNum,
               r -> new Thread(r, "MergeThread-" + threadCnt.getAndIncrement()));
       mergeChunkSubTaskPool =
           (ThreadPoolExecutor) Executors.newFixedThreadPool(threadNum * chunkSubThreadNum,
               r -> new Thread(r, "MergeChunkSubThread-" + threadCnt.getAndIncrement()));
+      mergeSeriesSubTaskPool =
+          (ThreadPoolExecutor) Executors.newFixedThreadPool(threadNum * seriesSubThreadNum,
+              r -> new Thread(r, "MergeSeriesSubThread-" + threadCnt.getAndIncrement()));
       long mergeInterval = IoTDBDescriptor.getInstance().getConfig().getMergeIntervalSec();
       if (mergeInterval > 0) {
         timedMergeThreadPool = Executors.newSingleThreadScheduledExecutor( r -> new Thread(r,
@@ -91,6 +122,7 @@ public class MergeManager implements IService {
         timedMergeThreadPool.scheduleAtFixedRate(this::mergeAll, mergeInterval,
             mergeInterval, TimeUnit.SECONDS);
       }
+      JMXService.registerMBean(this, ServiceType.MERGE_SERVICE.getJmxName());
       logger.info("MergeManager started");
     }
   }
@@ -104,9 +136,11 @@ public class MergeManager implements IService {
       }
       mergeTaskPool.shutdownNow();
       mergeChunkSubTaskPool.shutdownNow();
+      mergeSeriesSubTaskPool.shutdownNow();
       logger.info("Waiting for task pool to shut down");
       long startTime = System.currentTimeMillis();
-      while (!mergeTaskPool.isTerminated() || !mergeChunkSubTaskPool.isTerminated() ) {
+      while (!mergeTaskPool.isTerminated() || !mergeChunkSubTaskPool.isTerminated()
+          || !mergeSeriesSubTaskPool.isTerminated()) {
         // wait
         long time = System.currentTimeMillis() - startTime;
         if (time % 60_000 == 0) {
@@ -114,6 +148,7 @@ public class MergeManager implements IService {
         }
       }
       mergeTaskPool = null;
+      JMXService.deregisterMBean(ServiceType.MERGE_SERVICE.getJmxName());
       logger.info("MergeManager stopped");
     }
   }
@@ -126,10 +161,12 @@ public class MergeManager implements IService {
         timedMergeThreadPool = null;
       }
       awaitTermination(mergeTaskPool, millseconds);
+      awaitTermination(mergeSeriesSubTaskPool, millseconds);
       awaitTermination(mergeChunkSubTaskPool, millseconds);
       logger.info("Waiting for task pool to shut down");
       long startTime = System.currentTimeMillis();
-      while (!mergeTaskPool.isTerminated() || !mergeChunkSubTaskPool.isTerminated() ) {
+      while (!mergeTaskPool.isTerminated() || !mergeChunkSubTaskPool.isTerminated()
+          || !mergeSeriesSubTaskPool.isTerminated()) {
         // wait
         long time = System.currentTimeMillis() - startTime;
         if (time % 60_000 == 0) {
@@ -137,6 +174,7 @@ public class MergeManager implements IService {
         }
       }
       mergeTaskPool = null;
+      JMXService.deregisterMBean(ServiceType.MERGE_SERVICE.getJmxName());
       logger.info("MergeManager stopped");
     }
   }
@@ -157,6 +195,45 @@ public class MergeManager implements IService {
     return ServiceType.MERGE_SERVICE;
   }
 
+  @Override
+  public int getNumberOfWorkingTasks() {
+    ThreadPoolExecutor pool = mergeTaskPool;
+    return pool == null ? 0 : pool.getActiveCount();
+  }
+
+  @Override
+  public int getNumberOfPendingTasks() {
+    ThreadPoolExecutor pool = mergeTaskPool;
+    return pool == null ? 0 : pool.getQueue().size();
+  }
+
+  @Override
+  public int getMergeThroughputMbPerSec() {
+    return MergeRateLimiter.getInstance().getThroughputMbPerSec();
+  }
+
+  @Override
+  public void setMergeThroughputMbPerSec(int throughputMbPerSec) {
+    IoTDBDescriptor.getInstance().getConfig().setMergeThroughputMbPerSec(throughputMbPerSec);
+    MergeRateLimiter.getInstance().setThroughputMbPerSec(throughputMbPerSec);
+    logger.info("The merge throughput is set to {}MB/s", throughputMbPerSec);
+  }
+
+  @Override
+  public long getMergeReadWriteBytes() {
+    return MergeRateLimiter.getInstance().getAcquiredBytes();
+  }
+
+  @Override
+  public long getMergeThrottledTimeMs() {
+    return MergeRateLimiter.getInstance().getThrottledTimeMs();
+  }
+
+  @Override
+  public long getMergeYieldedTimeMs() {
+    return MergeRateLimiter.getInstance().getYieldedTimeMs();
+  }
+
   private void mergeAll() {
     try {
       StorageEngine.getInstance().mergeAll(IoTDBDescriptor.getInstance().getConfig().isForceFullMerge());
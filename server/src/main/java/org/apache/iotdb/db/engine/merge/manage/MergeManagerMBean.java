@@ -0,0 +1,45 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.engine.merge.manage;
+
+public interface MergeManagerMBean {
+
+  int getNumberOfWorkingTasks();
+
+  int getNumberOfPendingTasks();
+
+  /**
+   * @return the max IO throughput of merges and compactions in MB/s, 0 for unlimited
+   */
+  int getMergeThroughputMbPerSec();
+
+  void setMergeThroughputMbPerSec(int throughputMbPerSec);
+
+  long getMergeReadWriteBytes();
+
+  /**
+   * @return the total time merges have waited for the throughput limit
+   */
+  long getMergeThrottledTimeMs();
+
+  /**
+   * @return the total time merges have waited for flushes and queries
+   */
+  long getMergeYieldedTimeMs();
+}
@@ -0,0 +1,176 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.engine.merge.manage;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.iotdb.db.conf.IoTDBDescriptor;
+
+/**
+ * MergeRateLimiter limits the IO of merges and compactions with a token bucket shared by all their
+ * threads, so that they do not saturate the disks. Each read or write of a merge acquires its
+ * bytes from the bucket, which is refilled at mergeThroughputMbPerSec and holds at most one
+ * second of tokens. A thread may take more bytes than there are, and the debt is paid by waiting.
+ *
+ * Flushes and data queries have priority over merges: while any of them is running, a merge IO
+ * first waits until they finish, but no longer than mergeYieldTimeMs each time so that merges
+ * still make progress under a constant foreground load. A query only counts while it is being
+ * executed or its results are being fetched, not while its result set is open and idle.
+ */
+public class MergeRateLimiter {
+
+  private static final MergeRateLimiter INSTANCE = new MergeRateLimiter();
+
+  private static final long BYTES_PER_MB = 1024L * 1024L;
+
+  // bytes per second, a non-positive value means unlimited
+  private volatile long bytesPerSecond;
+  private double storedBytes;
+  private long lastRefillTime = System.nanoTime();
+
+  private final AtomicInteger runningFlushNum = new AtomicInteger();
+  private final AtomicInteger runningQueryNum = new AtomicInteger();
+  private final Object foregroundMonitor = new Object();
+
+  private final AtomicLong acquiredBytes = new AtomicLong();
+  private final AtomicLong throttledTimeNs = new AtomicLong();
+  private final AtomicLong yieldedTimeNs = new AtomicLong();
+
+  private MergeRateLimiter() {
+    setThroughputMbPerSec(IoTDBDescriptor.getInstance().getConfig().getMergeThroughputMbPerSec());
+  }
+
+  public static MergeRateLimiter getInstance() {
+    return INSTANCE;
+  }
+
+  public synchronized void setThroughputMbPerSec(int throughputMbPerSec) {
+    bytesPerSecond = throughputMbPerSec * BYTES_PER_MB;
+    storedBytes = 0;
+    lastRefillTime = System.nanoTime();
+  }
+
+  public int getThroughputMbPerSec() {
+    return (int) (bytesPerSecond / BYTES_PER_MB);
+  }
+
+  /**
+   * Wait until the flushes and queries give way and the bytes can be read or written by a merge.
+   *
+   * @throws IOException if the thread is interrupted when waiting, e.g., the merge is aborted
+   */
+  public void acquire(long bytes) throws IOException {
+    if (bytes <= 0) {
+      return;
+    }
+    acquiredBytes.addAndGet(bytes);
+    try {
+      yieldToForeground();
+      long waitTime = reserve(bytes);
+      if (waitTime > 0) {
+        TimeUnit.NANOSECONDS.sleep(waitTime);
+        throttledTimeNs.addAndGet(waitTime);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted when waiting for the merge IO quota", e);
+    }
+  }
+
+  /**
+   * @return how long the caller should wait in nanoseconds for the reserved bytes
+   */
+  private synchronized long reserve(long bytes) {
+    long rate = bytesPerSecond;
+    if (rate <= 0) {
+      return 0;
+    }
+    long now = System.nanoTime();
+    storedBytes = Math.min(rate, storedBytes + (double) (now - lastRefillTime) * rate / 1e9);
+    lastRefillTime = now;
+    storedBytes -= bytes;
+    return storedBytes >= 0 ? 0 : (long) (-storedBytes * 1e9 / rate);
+  }
+
+  private void yieldToForeground() throws InterruptedException {
+    long maxYieldTime = IoTDBDescriptor.getInstance().getConfig().getMergeYieldTimeMs();
+    if (maxYieldTime <= 0 || !hasForegroundTask()) {
+      return;
+    }
+    long startTime = System.nanoTime();
+    long deadline = startTime + TimeUnit.MILLISECONDS.toNanos(maxYieldTime);
+    synchronized (foregroundMonitor) {
+      long remaining;
+      while (hasForegroundTask() && (remaining = deadline - System.nanoTime()) > 0) {
+        TimeUnit.NANOSECONDS.timedWait(foregroundMonitor, remaining);
+      }
+    }
+    yieldedTimeNs.addAndGet(System.nanoTime() - startTime);
+  }
+
+  private boolean hasForegroundTask() {
+    return runningFlushNum.get() > 0 || runningQueryNum.get() > 0;
+  }
+
+  private void notifyForegroundEnd() {
+    if (!hasForegroundTask()) {
+      synchronized (foregroundMonitor) {
+        foregroundMonitor.notifyAll();
+      }
+    }
+  }
+
+  public void startFlush() {
+    runningFlushNum.incrementAndGet();
+  }
+
+  public void endFlush() {
+    runningFlushNum.decrementAndGet();
+    notifyForegroundEnd();
+  }
+
+  /**
+   * Called when a query starts to be executed or its results start to be fetched.
+   */
+  public void startQuery() {
+    runningQueryNum.incrementAndGet();
+  }
+
+  /**
+   * Called when the execution or the fetch started by startQuery() ends.
+   */
+  public void endQuery() {
+    runningQueryNum.decrementAndGet();
+    notifyForegroundEnd();
+  }
+
+  public long getAcquiredBytes() {
+    return acquiredBytes.get();
+  }
+
+  public long getThrottledTimeMs() {
+    return TimeUnit.NANOSECONDS.toMillis(throttledTimeNs.get());
+  }
+
+  public long getYieldedTimeMs() {
+    return TimeUnit.NANOSECONDS.toMillis(yieldedTimeNs.get());
+  }
+}
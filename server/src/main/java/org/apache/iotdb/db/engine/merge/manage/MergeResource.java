@@ -22,15 +22,12 @@ package org.apache.iotdb.db.engine.merge.manage;
 import static org.apache.iotdb.db.engine.merge.task.MergeTask.MERGE_SUFFIX;
 
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 import org.apache.iotdb.db.engine.modification.Modification;
 import org.apache.iotdb.db.engine.storagegroup.TsFileResource;
@@ -43,14 +40,13 @@ import org.apache.iotdb.tsfile.fileSystem.FSFactoryProducer;
 import org.apache.iotdb.tsfile.read.TsFileSequenceReader;
 import org.apache.iotdb.tsfile.read.common.Chunk;
 import org.apache.iotdb.tsfile.read.common.Path;
-import org.apache.iotdb.tsfile.write.chunk.ChunkWriterImpl;
-import org.apache.iotdb.tsfile.write.chunk.IChunkWriter;
 import org.apache.iotdb.tsfile.write.schema.MeasurementSchema;
 import org.apache.iotdb.tsfile.write.writer.RestorableTsFileIOWriter;
 
 /**
  * MergeResource manages files and caches of readers, writers, MeasurementSchemas and
- * modifications to avoid unnecessary object creations and file openings.
+ * modifications to avoid unnecessary object creations and file openings. The caches may be
+ * accessed by the series sub-tasks of a merge concurrently.
  */
 public class MergeResource {
 
@@ -59,9 +55,7 @@ public class MergeResource {
 
   private Map<TsFileResource, TsFileSequenceReader> fileReaderCache = new HashMap<>();
   private Map<TsFileResource, RestorableTsFileIOWriter> fileWriterCache = new HashMap<>();
-  private Map<TsFileResource, List<Modification>> modificationCache = new HashMap<>();
   private Map<Path, MeasurementSchema> measurementSchemaMap = new HashMap<>(); //is this too waste?
-  private Map<MeasurementSchema, IChunkWriter> chunkWriterCache = new ConcurrentHashMap<>();
 
   private long timeLowerBound = Long.MIN_VALUE;
 
@@ -97,9 +91,7 @@ public class MergeResource {
 
     fileReaderCache.clear();
     fileWriterCache.clear();
-    modificationCache.clear();
     measurementSchemaMap.clear();
-    chunkWriterCache.clear();
   }
 
   public MeasurementSchema getSchema(Path path) {
@@ -111,7 +103,8 @@ public class MergeResource {
    * SeqFile. The path of the merge temp file will be the seqFile's + ".merge".
    * @return A RestorableTsFileIOWriter of a merge temp file for a SeqFile.
    */
-  public RestorableTsFileIOWriter getMergeFileWriter(TsFileResource resource) throws IOException {
+  public synchronized RestorableTsFileIOWriter getMergeFileWriter(TsFileResource resource)
+      throws IOException {
     RestorableTsFileIOWriter writer = fileWriterCache.get(resource);
     if (writer == null) {
       writer = new RestorableTsFileIOWriter(FSFactoryProducer.getFSFactory()
@@ -136,7 +129,8 @@ public class MergeResource {
    * Construct the a new or get an existing TsFileSequenceReader of a TsFile.
    * @return a TsFileSequenceReader
    */
-  public TsFileSequenceReader getFileReader(TsFileResource tsFileResource) throws IOException {
+  public synchronized TsFileSequenceReader getFileReader(TsFileResource tsFileResource)
+      throws IOException {
     TsFileSequenceReader reader = fileReaderCache.get(tsFileResource);
     if (reader == null) {
       reader = new TsFileSequenceReader(tsFileResource.getPath(), true, cacheDeviceMeta);
@@ -162,34 +156,14 @@ public class MergeResource {
   }
 
   /**
-   * Construct the a new or get an existing ChunkWriter of a measurement. Different timeseries of
-   * the same measurement and data type shares the same instance.
-   */
-  public IChunkWriter getChunkWriter(MeasurementSchema measurementSchema) {
-    return chunkWriterCache.computeIfAbsent(measurementSchema, ChunkWriterImpl::new);
-  }
-
-  /**
-   * Get the modifications of a timeseries in the ModificationFile of a TsFile. Once the
-   * modifications of the timeseries are found out, they will be removed from the list to boost
-   * the next query, so two calls of the same file and timeseries are forbidden.
+   * Get the modifications of a timeseries in the ModificationFile of a TsFile, which are indexed by
+   * timeseries in the ModificationFile.
    * @param path name of the time series
    */
-  public List<Modification> getModifications(TsFileResource tsFileResource, Path path) {
-    // copy from TsFileResource so queries are not affected
-    List<Modification> modifications = modificationCache.computeIfAbsent(tsFileResource,
-        resource -> new LinkedList<>(resource.getModFile().getModifications()));
-    List<Modification> pathModifications = new ArrayList<>();
-    Iterator<Modification> modificationIterator = modifications.iterator();
-    // each path is visited only once in a merge, so the modifications can be removed after visiting
-    while (modificationIterator.hasNext()) {
-      Modification modification = modificationIterator.next();
-      if (modification.getPath().equals(path)) {
-        pathModifications.add(modification);
-        modificationIterator.remove();
-      }
-    }
-    return pathModifications;
+  public synchronized List<Modification> getModifications(TsFileResource tsFileResource,
+      Path path) {
+    // a copy from the ModificationFile so queries are not affected
+    return tsFileResource.getModFile().getModifications(path.getFullPath());
   }
 
   /**
@@ -255,8 +229,4 @@ public class MergeResource {
     this.measurementSchemaMap = measurementSchemaMap;
   }
 
-  public void clearChunkWriterCache() {
-    this.chunkWriterCache.clear();
-  }
-
 }
@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.engine.merge.selector;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import org.apache.iotdb.db.engine.storagegroup.TsFileResource;
+
+/**
+ * CompactionFileSelector chooses adjacent small sequence files of the same time partition to be
+ * compacted into one file, i.e., a size-tiered strategy: a run of files that are sealed and
+ * smaller than the target file size is selected once it has at least minFileNum files and their
+ * total size does not exceed the target file size. The oldest such run is selected first.
+ *
+ * If there is no such run, a single sealed file whose modification file has grown beyond
+ * modificationSizeThreshold is selected regardless of its size, so that rewriting it drops the
+ * deleted data and the modifications that every query on the file has to apply.
+ *
+ * Otherwise, a single sealed file of which at least half of the time range is out of TTL is
+ * selected, so that the compaction trims the expired data that queries would have to filter out.
+ * Requiring half of the range to be expired keeps a file from being rewritten each time the TTL
+ * bound moves a little.
+ *
+ * The files in the cold tier are never selected, as the target file is written next to the last
+ * source file, which may be on HDFS.
+ */
+public class CompactionFileSelector {
+
+  private int minFileNum;
+  private long targetFileSize;
+  private long timeLowerBound;
+  private long modificationSizeThreshold;
+
+  public CompactionFileSelector(int minFileNum, long targetFileSize, long timeLowerBound) {
+    this(minFileNum, targetFileSize, timeLowerBound, Long.MAX_VALUE);
+  }
+
+  public CompactionFileSelector(int minFileNum, long targetFileSize, long timeLowerBound,
+      long modificationSizeThreshold) {
+    this.minFileNum = minFileNum;
+    this.targetFileSize = targetFileSize;
+    this.timeLowerBound = timeLowerBound;
+    this.modificationSizeThreshold = modificationSizeThreshold;
+  }
+
+  /**
+   * @param seqFiles the sequence files of a storage group ordered by their partitions and versions
+   * @return the files to be compacted, or an empty list if there are neither enough small files
+   * nor a file with too many modifications or expired data
+   */
+  public List<TsFileResource> select(Collection<TsFileResource> seqFiles) {
+    List<TsFileResource> run = new ArrayList<>();
+    long runSize = 0;
+    long runPartition = Long.MIN_VALUE;
+    for (TsFileResource seqFile : seqFiles) {
+      long partition = seqFile.getTimePartition();
+      long fileSize = seqFile.getFileSize();
+      if (partition != runPartition || !isCandidate(seqFile, fileSize)) {
+        if (run.size() >= minFileNum) {
+          return run;
+        }
+        run.clear();
+        runSize = 0;
+        runPartition = partition;
+        if (!isCandidate(seqFile, fileSize)) {
+          continue;
+        }
+      }
+      if (runSize + fileSize > targetFileSize) {
+        if (run.size() >= minFileNum) {
+          return run;
+        }
+        // slide the run until the new file fits in
+        while (!run.isEmpty() && runSize + fileSize > targetFileSize) {
+          runSize -= run.remove(0).getFileSize();
+        }
+      }
+      run.add(seqFile);
+      runSize += fileSize;
+    }
+    if (run.size() >= minFileNum) {
+      return run;
+    }
+    List<TsFileResource> modifiedFile = selectModifiedFile(seqFiles);
+    return modifiedFile.isEmpty() ? selectExpiredFile(seqFiles) : modifiedFile;
+  }
+
+  private List<TsFileResource> selectModifiedFile(Collection<TsFileResource> seqFiles) {
+    for (TsFileResource seqFile : seqFiles) {
+      if (isSelectable(seqFile)
+          && seqFile.getModFile().getFileSize() >= modificationSizeThreshold) {
+        return Collections.singletonList(seqFile);
+      }
+    }
+    return Collections.emptyList();
+  }
+
+  private List<TsFileResource> selectExpiredFile(Collection<TsFileResource> seqFiles) {
+    for (TsFileResource seqFile : seqFiles) {
+      if (isSelectable(seqFile)
+          && seqFile.getFileStartTime() < timeLowerBound
+          && timeLowerBound - seqFile.getFileStartTime()
+          >= seqFile.getFileEndTime() - timeLowerBound) {
+        return Collections.singletonList(seqFile);
+      }
+    }
+    return Collections.emptyList();
+  }
+
+  private boolean isCandidate(TsFileResource seqFile, long fileSize) {
+    return isSelectable(seqFile) && fileSize < targetFileSize;
+  }
+
+  private boolean isSelectable(TsFileResource seqFile) {
+    return seqFile.isClosed() && !seqFile.isMerging() && !seqFile.isDeleted()
+        && !seqFile.isCold() && seqFile.stillLives(timeLowerBound);
+  }
+}
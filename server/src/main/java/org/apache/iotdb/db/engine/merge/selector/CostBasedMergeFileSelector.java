@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.engine.merge.selector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import org.apache.iotdb.db.engine.merge.manage.MergeResource;
+import org.apache.iotdb.db.engine.storagegroup.TsFileResource;
+import org.apache.iotdb.db.exception.MergeException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * CostBasedMergeFileSelector ranks the unseqFiles by how much query cost merging each of them
+ * cuts for each byte rewritten, and then selects them in that order under the memory budget like
+ * MaxFileMergeFileSelector. The score of an unseqFile is
+ *
+ * overlapped bytes / rewritten bytes * (1 + query heat)
+ *
+ * where the overlapped bytes are estimated by the proportion of the time ranges of its devices
+ * that overlap the seqFiles, the rewritten bytes are the sizes of the unseqFile and the seqFiles
+ * it overlaps, and the query heat is how many times these files are read by queries recently.
+ */
+public class CostBasedMergeFileSelector extends MaxFileMergeFileSelector {
+
+  private static final Logger logger = LoggerFactory.getLogger(CostBasedMergeFileSelector.class);
+
+  private long currentTime = System.currentTimeMillis();
+
+  /**
+   * device -> the start times, end times and indexes of the seqFiles containing the device, in
+   * the order of the seqFiles, so the times are ascending
+   */
+  private Map<String, long[][]> seqDeviceTimes = new HashMap<>();
+
+  public CostBasedMergeFileSelector(MergeResource resource, long memoryBudget) {
+    super(resource, memoryBudget);
+  }
+
+  @Override
+  public List[] select() throws MergeException {
+    List<TsFileResource> unseqFiles = resource.getUnseqFiles();
+    Map<TsFileResource, Integer> positions = new HashMap<>();
+    for (int i = 0; i < unseqFiles.size(); i++) {
+      positions.put(unseqFiles.get(i), i);
+    }
+    resource.setUnseqFiles(rank(unseqFiles));
+    List[] result = super.select();
+    // the data of the unseqFiles are merged with the priorities of their order, which must be the
+    // order of their versions
+    selectedUnseqFiles.sort(Comparator.comparingInt(positions::get));
+    return result;
+  }
+
+  /**
+   * @return the unseqFiles ordered by their scores descendingly
+   */
+  public List<TsFileResource> rank(List<TsFileResource> unseqFiles) {
+    Map<TsFileResource, Double> scores = new HashMap<>();
+    for (TsFileResource unseqFile : unseqFiles) {
+      scores.put(unseqFile, score(unseqFile));
+    }
+    List<TsFileResource> rankedFiles = new ArrayList<>(unseqFiles);
+    rankedFiles.sort((o1, o2) -> Double.compare(scores.get(o2), scores.get(o1)));
+    if (logger.isDebugEnabled()) {
+      for (TsFileResource unseqFile : rankedFiles) {
+        logger.debug("The merge score of {} is {}", unseqFile, scores.get(unseqFile));
+      }
+    }
+    return rankedFiles;
+  }
+
+  double score(TsFileResource unseqFile) {
+    double totalTime = 0;
+    double overlappedTime = 0;
+    Set<Integer> overlappedSeqFiles = new HashSet<>();
+    for (Entry<String, Long> entry : unseqFile.getStartTimeMap().entrySet()) {
+      String device = entry.getKey();
+      long unseqStartTime = entry.getValue();
+      long unseqEndTime = unseqFile.getEndTime(device);
+      if (unseqEndTime < unseqStartTime) {
+        continue;
+      }
+      totalTime += (double) unseqEndTime - unseqStartTime + 1;
+
+      long[][] times = getSeqDeviceTimes(device);
+      long[] startTimes = times[0];
+      long[] endTimes = times[1];
+      // the first seqFile that does not end before the unseqFile starts
+      int i = Arrays.binarySearch(endTimes, unseqStartTime);
+      i = i < 0 ? -i - 1 : i;
+      // a device may end at the same time in several files, find the first one
+      while (i > 0 && endTimes[i - 1] >= unseqStartTime) {
+        i--;
+      }
+      for (; i < startTimes.length && startTimes[i] <= unseqEndTime; i++) {
+        long overlapStartTime = Math.max(unseqStartTime, startTimes[i]);
+        long overlapEndTime = Math.min(unseqEndTime, endTimes[i]);
+        if (overlapStartTime <= overlapEndTime) {
+          overlappedTime += (double) overlapEndTime - overlapStartTime + 1;
+          overlappedSeqFiles.add((int) times[2][i]);
+        }
+      }
+    }
+    if (totalTime == 0) {
+      return 0;
+    }
+
+    long unseqFileSize = unseqFile.getFileSize();
+    double overlappedBytes = unseqFileSize * Math.min(1.0, overlappedTime / totalTime);
+    long rewrittenBytes = unseqFileSize;
+    double queryHeat = unseqFile.getQueryHeat(currentTime);
+    for (Integer seqIndex : overlappedSeqFiles) {
+      TsFileResource seqFile = resource.getSeqFiles().get(seqIndex);
+      rewrittenBytes += seqFile.getFileSize();
+      queryHeat += seqFile.getQueryHeat(currentTime);
+    }
+    return rewrittenBytes == 0 ? 0 : overlappedBytes / rewrittenBytes * (1 + queryHeat);
+  }
+
+  private long[][] getSeqDeviceTimes(String device) {
+    return seqDeviceTimes.computeIfAbsent(device, d -> {
+      List<TsFileResource> seqFiles = resource.getSeqFiles();
+      int num = 0;
+      long[][] times = new long[3][seqFiles.size()];
+      for (int i = 0; i < seqFiles.size(); i++) {
+        TsFileResource seqFile = seqFiles.get(i);
+        // a degraded seqFile counts with the time range of the whole file, which only affects the
+        // ranking, as the seqFiles to merge with are chosen by their exact device times
+        long startTime = seqFile.getStartTime(d);
+        if (startTime == Long.MAX_VALUE) {
+          continue;
+        }
+        long endTime = seqFile.getEndTime(d);
+        times[0][num] = startTime;
+        // the end time of an unsealed file is unknown
+        times[1][num] = endTime == Long.MIN_VALUE ? Long.MAX_VALUE : endTime;
+        times[2][num] = i;
+        num++;
+      }
+      return new long[][]{Arrays.copyOf(times[0], num), Arrays.copyOf(times[1], num),
+          Arrays.copyOf(times[2], num)};
+    });
+  }
+}
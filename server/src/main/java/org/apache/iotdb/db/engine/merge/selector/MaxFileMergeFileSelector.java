@@ -221,10 +221,16 @@ public class MaxFileMergeFileSelector implements IMergeFileSelector {
       boolean noMoreOverlap = false;
       for (int i = 0; i < resource.getSeqFiles().size() && !noMoreOverlap; i++) {
         TsFileResource seqFile = resource.getSeqFiles().get(i);
-        if (seqSelected[i] || !seqFile.getEndTimeMap().containsKey(deviceId)) {
+        if (seqSelected[i]) {
+          continue;
+        }
+        // the time index of a degraded seqFile is only read back if the device may overlap it
+        long seqEndTime = seqFile.isTimeIndexDegraded()
+            && seqFile.getFileEndTime() < unseqStartTime ? Long.MIN_VALUE
+            : seqFile.getExactEndTime(deviceId);
+        if (seqEndTime == Long.MIN_VALUE) {
           continue;
         }
-        long seqEndTime = seqFile.getEndTimeMap().get(deviceId);
         if (unseqEndTime <= seqEndTime) {
           // the unseqFile overlaps current seqFile
           tmpSelectedSeqFiles.add(i);
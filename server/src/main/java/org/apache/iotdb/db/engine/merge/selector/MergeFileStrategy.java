@@ -22,6 +22,8 @@ package org.apache.iotdb.db.engine.merge.selector;
 public enum MergeFileStrategy {
   MAX_SERIES_NUM,
   MAX_FILE_NUM,
+  // prefer the unseqFiles that overlap the most and are queried the most for each byte rewritten
+  COST_BASED,
   // TODO: HOW?
   TRADE_OFF,
 }
@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.engine.merge.task;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import org.apache.iotdb.tsfile.file.header.ChunkHeader;
+import org.apache.iotdb.tsfile.file.metadata.ChunkGroupMetadata;
+import org.apache.iotdb.tsfile.file.metadata.ChunkMetadata;
+import org.apache.iotdb.tsfile.read.common.Chunk;
+import org.apache.iotdb.tsfile.utils.PublicBAOS;
+import org.apache.iotdb.tsfile.write.writer.TsFileIOWriter;
+import org.apache.iotdb.tsfile.write.writer.TsFileOutput;
+
+/**
+ * ChunkGroupBuffer is a TsFileIOWriter in memory, into which a merge worker writes the chunk
+ * groups of its series, so that the workers do not interleave in the merge temp file. The buffered
+ * chunk groups are stitched into the temp file as a whole by stitchInto().
+ */
+class ChunkGroupBuffer extends TsFileIOWriter {
+
+  private final PublicBAOS buffer;
+
+  ChunkGroupBuffer() throws IOException {
+    this(new PublicBAOS());
+  }
+
+  private ChunkGroupBuffer(PublicBAOS buffer) throws IOException {
+    super(new MemoryOutput(buffer));
+    this.buffer = buffer;
+  }
+
+  /**
+   * @return the bytes of the buffered chunks
+   */
+  long getBufferedSize() {
+    return buffer.size();
+  }
+
+  boolean isEmpty() {
+    return chunkGroupMetadataList.isEmpty();
+  }
+
+  /**
+   * Write the buffered chunk groups into the writer with their chunks copied as they are, and
+   * empty the buffer.
+   *
+   * @return the number of bytes written into the writer
+   */
+  long stitchInto(TsFileIOWriter writer) throws IOException {
+    long startPosition = writer.getPos();
+    byte[] bytes = buffer.getBuf();
+    for (ChunkGroupMetadata chunkGroupMetadata : chunkGroupMetadataList) {
+      writer.startChunkGroup(chunkGroupMetadata.getDevice());
+      for (ChunkMetadata chunkMetadata : chunkGroupMetadata.getChunkMetadataList()) {
+        int offset = (int) chunkMetadata.getOffsetOfChunkHeader();
+        ChunkHeader header = ChunkHeader.deserializeFrom(
+            new ByteArrayInputStream(bytes, offset, bytes.length - offset), false);
+        // a TsFileOutput may write the whole backing array of a buffer, so the data is copied
+        int dataOffset = offset + header.getSerializedSize();
+        ByteBuffer data = ByteBuffer.wrap(
+            Arrays.copyOfRange(bytes, dataOffset, dataOffset + header.getDataSize()));
+        writer.writeChunk(new Chunk(header, data, null), chunkMetadata);
+      }
+      writer.writeVersion(0L);
+      writer.endChunkGroup();
+    }
+    chunkGroupMetadataList.clear();
+    buffer.reset();
+    // keep the offsets of the chunks buffered later consistent with the positions of the buffer
+    startFile();
+    return writer.getPos() - startPosition;
+  }
+
+  private static class MemoryOutput implements TsFileOutput {
+
+    private final PublicBAOS buffer;
+
+    private MemoryOutput(PublicBAOS buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public void write(byte[] b) throws IOException {
+      buffer.write(b);
+    }
+
+    @Override
+    public void write(ByteBuffer b) {
+      if (b.hasArray()) {
+        buffer.write(b.array(), b.arrayOffset() + b.position(), b.remaining());
+        b.position(b.limit());
+      } else {
+        byte[] bytes = new byte[b.remaining()];
+        b.get(bytes);
+        buffer.write(bytes, 0, bytes.length);
+      }
+    }
+
+    @Override
+    public long getPosition() {
+      return buffer.size();
+    }
+
+    @Override
+    public void close() {
+      // nothing to release in memory
+    }
+
+    @Override
+    public OutputStream wrapAsStream() {
+      return buffer;
+    }
+
+    @Override
+    public void flush() {
+      // everything is in memory
+    }
+
+    @Override
+    public void truncate(long position) {
+      throw new UnsupportedOperationException("A chunk group buffer cannot be truncated");
+    }
+  }
+}
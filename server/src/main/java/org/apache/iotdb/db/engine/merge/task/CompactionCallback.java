@@ -0,0 +1,38 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.engine.merge.task;
+
+import java.io.File;
+import java.util.List;
+import org.apache.iotdb.db.engine.storagegroup.TsFileResource;
+
+@FunctionalInterface
+public interface CompactionCallback {
+
+  /**
+   * On calling this method, the callee should:
+   *    1. write the modifications made during the compaction into the target file.
+   *    2. replace the sourceFiles with the targetFile in the sequence file list.
+   *    3. remove the sourceFiles and the log file.
+   *    4. exit compacting status
+   * @param sourceFiles the compacted sequence files
+   * @param targetFile the new file, or null if the compaction fails and nothing is replaced
+   */
+  void call(List<TsFileResource> sourceFiles, TsFileResource targetFile, File logFile);
+}
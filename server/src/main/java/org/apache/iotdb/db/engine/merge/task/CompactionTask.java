@@ -0,0 +1,399 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.engine.merge.task;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import org.apache.iotdb.db.conf.IoTDBDescriptor;
+import org.apache.iotdb.db.engine.merge.manage.MergeRateLimiter;
+import org.apache.iotdb.db.engine.merge.recover.CompactionLogger;
+import org.apache.iotdb.db.engine.modification.Modification;
+import org.apache.iotdb.db.engine.storagegroup.TsFileResource;
+import org.apache.iotdb.db.utils.MergeUtils;
+import org.apache.iotdb.db.utils.QueryUtils;
+import org.apache.iotdb.tsfile.exception.write.PageException;
+import org.apache.iotdb.tsfile.file.header.ChunkHeader;
+import org.apache.iotdb.tsfile.file.header.PageHeader;
+import org.apache.iotdb.tsfile.file.metadata.ChunkMetadata;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
+import org.apache.iotdb.tsfile.read.TsFileSequenceReader;
+import org.apache.iotdb.tsfile.read.common.BatchData;
+import org.apache.iotdb.tsfile.read.common.Chunk;
+import org.apache.iotdb.tsfile.read.common.Path;
+import org.apache.iotdb.tsfile.read.reader.chunk.ChunkReader;
+import org.apache.iotdb.tsfile.write.chunk.ChunkWriterImpl;
+import org.apache.iotdb.tsfile.write.chunk.IChunkWriter;
+import org.apache.iotdb.tsfile.write.schema.MeasurementSchema;
+import org.apache.iotdb.tsfile.write.writer.TsFileIOWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * CompactionTask compacts adjacent sequence files of a time partition into one new file. For each
+ * timeseries, the chunks of the source files are read in order with their modifications applied
+ * and rewritten into chunks of chunkMergePointThreshold points, so that queries open fewer files
+ * and read fewer but larger chunks. Its IO is limited by the MergeRateLimiter shared with merges
+ * so that it does not starve flushes and queries.
+ *
+ * The target file takes the name of the last source file with its merge count increased, so that
+ * it stays at the position of the source files in the sequence file list.
+ *
+ * The points before timeLowerBound are out of TTL and dropped like the deleted ones, so that the
+ * partially expired files are trimmed and queries no longer read the expired data.
+ *
+ * Queries and merges let the chunk of the higher version win when data overlaps. So the chunks of
+ * a device are rewritten with the highest version among them only if no unsequence file overlaps
+ * them, as the later unsequence data gets higher versions anyway. Otherwise, the chunks of each
+ * version are rewritten into a chunk group of their own version, and are not merged with the
+ * chunks of other versions.
+ */
+public class CompactionTask implements Callable<Void> {
+
+  private static final Logger logger = LoggerFactory.getLogger(CompactionTask.class);
+
+  private List<TsFileResource> sourceFiles;
+  private TsFileResource targetFile;
+  private String storageGroupSysDir;
+  private CompactionCallback callback;
+  private String taskName;
+  private long timeLowerBound;
+  private Set<String> unseqOverlappedDevices;
+
+  private Map<TsFileResource, TsFileSequenceReader> readers = new LinkedHashMap<>();
+  private Map<TsFileResource, List<Modification>> modifications = new LinkedHashMap<>();
+  private TsFileIOWriter writer;
+  private long startTime;
+  private long totalChunkRead;
+  private long totalChunkWritten;
+  private long totalPageAppended;
+  private long totalPageDecoded;
+
+  public CompactionTask(List<TsFileResource> sourceFiles, String storageGroupSysDir,
+      CompactionCallback callback, String taskName) {
+    this(sourceFiles, storageGroupSysDir, callback, taskName, Long.MIN_VALUE,
+        Collections.emptySet());
+  }
+
+  /**
+   * @param unseqOverlappedDevices the devices whose data in the source files some unsequence
+   * files overlap
+   */
+  public CompactionTask(List<TsFileResource> sourceFiles, String storageGroupSysDir,
+      CompactionCallback callback, String taskName, long timeLowerBound,
+      Set<String> unseqOverlappedDevices) {
+    this.sourceFiles = sourceFiles;
+    this.targetFile = new TsFileResource(
+        MergeFileTask.getNextMergeVersionFile(sourceFiles.get(sourceFiles.size() - 1).getFile()));
+    this.storageGroupSysDir = storageGroupSysDir;
+    this.callback = callback;
+    this.taskName = taskName;
+    this.timeLowerBound = timeLowerBound;
+    this.unseqOverlappedDevices = unseqOverlappedDevices;
+  }
+
+  @Override
+  public Void call() throws Exception {
+    File logFile = new File(storageGroupSysDir, CompactionLogger.COMPACTION_LOG_NAME);
+    try {
+      doCompaction();
+    } catch (Exception e) {
+      logger.error("Exception in compaction {}", taskName, e);
+      closeReaders();
+      if (writer != null && writer.canWrite()) {
+        writer.close();
+      }
+      targetFile.remove();
+      logFile.delete();
+      // the source files are kept
+      callback.call(sourceFiles, null, logFile);
+      throw e;
+    }
+    // make sure the log is not deleted until the source files are removed so that when the system
+    // reboots, the undeleted files can be deleted again
+    callback.call(sourceFiles, targetFile, logFile);
+    return null;
+  }
+
+  private void doCompaction() throws IOException {
+    logger.info("{} starts to compact {} seqFiles into {}", taskName, sourceFiles.size(),
+        targetFile.getFile().getName());
+    startTime = System.currentTimeMillis();
+    long totalFileSize = MergeUtils.collectFileSizes(sourceFiles, Collections.emptyList());
+
+    CompactionLogger compactionLogger = new CompactionLogger(storageGroupSysDir);
+    try {
+      compactionLogger.logFiles(sourceFiles, targetFile.getFile());
+
+      Set<String> devices = new TreeSet<>();
+      Map<TsFileResource, Set<String>> fileDevices = new LinkedHashMap<>();
+      for (TsFileResource sourceFile : sourceFiles) {
+        TsFileSequenceReader reader = new TsFileSequenceReader(sourceFile.getPath());
+        readers.put(sourceFile, reader);
+        Set<String> sourceDevices = new HashSet<>(reader.getAllDevices());
+        fileDevices.put(sourceFile, sourceDevices);
+        devices.addAll(sourceDevices);
+      }
+
+      writer = new TsFileIOWriter(targetFile.getFile());
+      for (String device : devices) {
+        compactDevice(device, fileDevices);
+      }
+      writer.endFile();
+      closeReaders();
+
+      Set<Long> historicalVersions = new HashSet<>();
+      for (TsFileResource sourceFile : sourceFiles) {
+        historicalVersions.addAll(sourceFile.getHistoricalVersions());
+      }
+      targetFile.setHistoricalVersions(historicalVersions);
+      targetFile.serialize();
+      targetFile.close();
+      compactionLogger.logCompactionEnd();
+    } finally {
+      compactionLogger.close();
+    }
+
+    if (logger.isInfoEnabled()) {
+      double elapsedTime = (double) (System.currentTimeMillis() - startTime) / 1000.0;
+      logger.info("{} ends after {}s, {} bytes are compacted into {} bytes, {} chunks are "
+              + "rewritten into {} chunks, {} pages are appended and {} pages are decoded",
+          taskName, elapsedTime, totalFileSize, targetFile.getFileSize(), totalChunkRead,
+          totalChunkWritten, totalPageAppended, totalPageDecoded);
+    }
+  }
+
+  private void compactDevice(String device, Map<TsFileResource, Set<String>> fileDevices)
+      throws IOException {
+    // source file -> measurement -> chunks
+    Map<TsFileResource, Map<String, List<ChunkMetadata>>> fileChunks = new LinkedHashMap<>();
+    Set<String> measurements = new TreeSet<>();
+    TreeSet<Long> versions = new TreeSet<>();
+    for (TsFileResource sourceFile : sourceFiles) {
+      if (!fileDevices.get(sourceFile).contains(device)) {
+        continue;
+      }
+      Map<String, List<ChunkMetadata>> chunks = readers.get(sourceFile)
+          .readChunkMetadataInDevice(device);
+      for (Map.Entry<String, List<ChunkMetadata>> entry : chunks.entrySet()) {
+        List<ChunkMetadata> chunkMetadataList = entry.getValue();
+        for (ChunkMetadata chunkMetadata : chunkMetadataList) {
+          versions.add(chunkMetadata.getVersion());
+        }
+        List<Modification> modifications = getModifications(sourceFile,
+            new Path(device, entry.getKey()));
+        if (!modifications.isEmpty()) {
+          QueryUtils.modifyChunkMetaData(chunkMetadataList, modifications);
+        }
+        trimExpiredChunks(chunkMetadataList);
+      }
+      fileChunks.put(sourceFile, chunks);
+      measurements.addAll(chunks.keySet());
+    }
+    if (versions.isEmpty()) {
+      return;
+    }
+
+    if (unseqOverlappedDevices.contains(device)) {
+      // keep the priority of each version over the overlapping unsequence data
+      for (long version : versions) {
+        compactChunkGroup(device, measurements, fileChunks, version, version);
+      }
+    } else {
+      compactChunkGroup(device, measurements, fileChunks, null,
+          versions.last());
+    }
+  }
+
+  /**
+   * Rewrite the chunks of the device into one chunk group with the given version.
+   *
+   * @param chunkVersion only the chunks of this version are rewritten, or all chunks if it is null
+   */
+  private void compactChunkGroup(String device, Set<String> measurements,
+      Map<TsFileResource, Map<String, List<ChunkMetadata>>> fileChunks, Long chunkVersion,
+      long groupVersion) throws IOException {
+    writer.startChunkGroup(device);
+    for (String measurement : measurements) {
+      MeasurementSchema schema = null;
+      ChunkWriterImpl chunkWriter = null;
+      int pointNum = 0;
+      for (Map.Entry<TsFileResource, Map<String, List<ChunkMetadata>>> entry :
+          fileChunks.entrySet()) {
+        List<ChunkMetadata> chunkMetadataList = entry.getValue().get(measurement);
+        if (chunkMetadataList == null) {
+          continue;
+        }
+        TsFileSequenceReader reader = readers.get(entry.getKey());
+        for (ChunkMetadata chunkMetadata : chunkMetadataList) {
+          if (chunkVersion != null && chunkMetadata.getVersion() != chunkVersion) {
+            continue;
+          }
+          Chunk chunk = reader.readMemChunk(chunkMetadata);
+          totalChunkRead++;
+          ChunkHeader header = chunk.getHeader();
+          MergeRateLimiter.getInstance()
+              .acquire((long) header.getSerializedSize() + header.getDataSize());
+          if (chunkWriter == null) {
+            schema = new MeasurementSchema(measurement, header.getDataType(),
+                header.getEncodingType(), header.getCompressionType());
+            chunkWriter = new ChunkWriterImpl(schema);
+          }
+          if (isAppendable(header, chunkMetadata, schema)) {
+            pointNum += appendChunk(device, chunk, chunkWriter);
+          } else {
+            pointNum += writeChunk(device, chunk, chunkWriter);
+          }
+          if (pointNum >= IoTDBDescriptor.getInstance().getConfig()
+              .getChunkMergePointThreshold()) {
+            flushChunk(chunkWriter);
+            pointNum = 0;
+          }
+        }
+      }
+      if (pointNum > 0) {
+        flushChunk(chunkWriter);
+      }
+    }
+    writer.writeVersion(groupVersion);
+    writer.endChunkGroup();
+  }
+
+  /**
+   * Mark the points before timeLowerBound deleted and remove the chunks that are entirely expired.
+   */
+  private void trimExpiredChunks(List<ChunkMetadata> chunkMetadataList) {
+    for (ChunkMetadata chunkMetadata : chunkMetadataList) {
+      if (chunkMetadata.getStartTime() < timeLowerBound) {
+        chunkMetadata.insertIntoSortedDeletions(Long.MIN_VALUE, timeLowerBound - 1);
+        chunkMetadata.setModified(true);
+      }
+    }
+    chunkMetadataList.removeIf(ChunkMetadata::isFullyDeleted);
+  }
+
+  private List<Modification> getModifications(TsFileResource sourceFile, Path path) {
+    List<Modification> pathModifications = new ArrayList<>();
+    List<Modification> fileModifications = modifications.computeIfAbsent(sourceFile,
+        file -> new ArrayList<>(file.getModFile().getModifications()));
+    for (Modification modification : fileModifications) {
+      if (modification.getPath().equals(path)) {
+        pathModifications.add(modification);
+      }
+    }
+    return pathModifications;
+  }
+
+  /**
+   * A chunk can be appended without being decoded if it is encoded and compressed in the same way
+   * as the chunk being written and none of its points is deleted. The sequence files of a
+   * partition do not overlap, so the pages of such a chunk can follow the written ones directly.
+   */
+  private boolean isAppendable(ChunkHeader header, ChunkMetadata chunkMetadata,
+      MeasurementSchema schema) {
+    return header.getDataType() == schema.getType()
+        && header.getEncodingType() == schema.getEncodingType()
+        && header.getCompressionType() == schema.getCompressor()
+        && chunkMetadata.getDeleteIntervalList() == null;
+  }
+
+  /**
+   * Copy the compressed pages of the chunk into the chunk writer with their statistics, without
+   * decoding them, and update the time range of the device in the target file.
+   *
+   * @return the number of points appended
+   */
+  private int appendChunk(String device, Chunk chunk, ChunkWriterImpl chunkWriter)
+      throws IOException {
+    // the points written by decoding must be sealed into a page before the appended pages
+    chunkWriter.sealCurrentPage();
+    ByteBuffer chunkData = chunk.getData();
+    TSDataType dataType = chunk.getHeader().getDataType();
+    int pointNum = 0;
+    while (chunkData.remaining() > 0) {
+      PageHeader pageHeader = PageHeader.deserializeFrom(chunkData, dataType);
+      ByteBuffer pageData = chunkData.slice();
+      pageData.limit(pageHeader.getCompressedSize());
+      chunkData.position(chunkData.position() + pageHeader.getCompressedSize());
+      try {
+        chunkWriter.writePageHeaderAndDataIntoBuff(pageData, pageHeader);
+      } catch (PageException e) {
+        throw new IOException(e);
+      }
+      targetFile.updateStartTime(device, pageHeader.getStartTime());
+      targetFile.updateEndTime(device, pageHeader.getEndTime());
+      pointNum += pageHeader.getNumOfValues();
+      totalPageAppended++;
+    }
+    return pointNum;
+  }
+
+  /**
+   * Write the undeleted points of the chunk into the chunk writer and update the time range of
+   * the device in the target file.
+   *
+   * @return the number of points written
+   */
+  private int writeChunk(String device, Chunk chunk, IChunkWriter chunkWriter)
+      throws IOException {
+    ChunkReader chunkReader = new ChunkReader(chunk, null);
+    int pointNum = 0;
+    while (chunkReader.hasNextSatisfiedPage()) {
+      BatchData batchData = chunkReader.nextPageData();
+      if (batchData.length() == 0) {
+        continue;
+      }
+      for (int i = 0; i < batchData.length(); i++) {
+        MergeUtils.writeBatchPoint(batchData, i, chunkWriter);
+      }
+      totalPageDecoded++;
+      targetFile.updateStartTime(device, batchData.getTimeByIndex(0));
+      targetFile.updateEndTime(device, batchData.getTimeByIndex(batchData.length() - 1));
+      pointNum += batchData.length();
+    }
+    return pointNum;
+  }
+
+  private void flushChunk(IChunkWriter chunkWriter) throws IOException {
+    long position = writer.getPos();
+    chunkWriter.writeToFileWriter(writer);
+    totalChunkWritten++;
+    MergeRateLimiter.getInstance().acquire(writer.getPos() - position);
+  }
+
+  private void closeReaders() throws IOException {
+    for (TsFileSequenceReader reader : readers.values()) {
+      reader.close();
+    }
+    readers.clear();
+  }
+
+  public TsFileResource getTargetFile() {
+    return targetFile;
+  }
+}
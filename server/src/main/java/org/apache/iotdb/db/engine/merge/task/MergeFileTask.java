@@ -31,6 +31,7 @@ import java.util.Set;
 import org.apache.iotdb.db.conf.IoTDBConstant;
 import org.apache.iotdb.db.engine.cache.ChunkMetadataCache;
 import org.apache.iotdb.db.engine.merge.manage.MergeContext;
+import org.apache.iotdb.db.engine.merge.manage.MergeRateLimiter;
 import org.apache.iotdb.db.engine.merge.manage.MergeResource;
 import org.apache.iotdb.db.engine.merge.recover.MergeLogger;
 import org.apache.iotdb.db.engine.storagegroup.TsFileResource;
@@ -208,6 +209,7 @@ class MergeFileTask {
     fileWriter.startChunkGroup(device);
     long maxVersion = 0;
     for (ChunkMetadata chunkMetaData : chunkMetadataList) {
+      // not limited by MergeRateLimiter, as the file is locked against queries
       Chunk chunk = reader.readMemChunk(chunkMetaData);
       fileWriter.writeChunk(chunk, chunkMetaData);
       maxVersion =
@@ -278,11 +280,19 @@ class MergeFileTask {
     }
   }
 
-  private File getNextMergeVersionFile(File seqFile) {
+  /**
+   * A chunk copied from one file into another is both read and written.
+   */
+  private static void acquireCopyQuota(Chunk chunk) throws IOException {
+    long chunkSize = (long) chunk.getHeader().getSerializedSize() + chunk.getHeader().getDataSize();
+    MergeRateLimiter.getInstance().acquire(2 * chunkSize);
+  }
+
+  static File getNextMergeVersionFile(File seqFile) {
     String[] splits = seqFile.getName().replace(TSFILE_SUFFIX, "")
         .split(IoTDBConstant.TSFILE_NAME_SEPARATOR);
     int mergeVersion = Integer.parseInt(splits[2]) + 1;
-    return fsFactory.getFile(seqFile.getParentFile(),
+    return FSFactoryProducer.getFSFactory().getFile(seqFile.getParentFile(),
         splits[0] + IoTDBConstant.TSFILE_NAME_SEPARATOR + splits[1]
             + IoTDBConstant.TSFILE_NAME_SEPARATOR + mergeVersion + TSFILE_SUFFIX);
   }
@@ -298,6 +308,7 @@ class MergeFileTask {
         if (metaData.getStartTime() == startTime) {
           Chunk chunk = reader.readMemChunk(metaData);
           fileWriter.writeChunk(chunk, metaData);
+          acquireCopyQuota(chunk);
           maxVersion = metaData.getVersion() > maxVersion ? metaData.getVersion() : maxVersion;
           context.incTotalPointWritten(metaData.getNumOfPoints());
           break;
@@ -17,6 +17,7 @@
  * under the License.
  */
 
+
 package org.apache.iotdb.db.engine.merge.task;
 
 import static org.apache.iotdb.db.utils.MergeUtils.writeBatchPoint;
@@ -25,15 +26,24 @@ import static org.apache.iotdb.db.utils.QueryUtils.modifyChunkMetaData;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import org.apache.iotdb.db.conf.IoTDBConfig;
 import org.apache.iotdb.db.conf.IoTDBDescriptor;
 import org.apache.iotdb.db.engine.merge.manage.MergeContext;
 import org.apache.iotdb.db.engine.merge.manage.MergeManager;
+import org.apache.iotdb.db.engine.merge.manage.MergeRateLimiter;
 import org.apache.iotdb.db.engine.merge.manage.MergeResource;
 import org.apache.iotdb.db.engine.merge.recover.MergeLogger;
 import org.apache.iotdb.db.engine.merge.selector.IMergePathSelector;
@@ -50,6 +60,7 @@ import org.apache.iotdb.tsfile.read.common.BatchData;
 import org.apache.iotdb.tsfile.read.common.Chunk;
 import org.apache.iotdb.tsfile.read.common.Path;
 import org.apache.iotdb.tsfile.read.reader.chunk.ChunkReader;
+import org.apache.iotdb.tsfile.write.chunk.ChunkWriterImpl;
 import org.apache.iotdb.tsfile.write.chunk.IChunkWriter;
 import org.apache.iotdb.tsfile.write.schema.MeasurementSchema;
 import org.apache.iotdb.tsfile.write.writer.RestorableTsFileIOWriter;
@@ -57,29 +68,42 @@ import org.apache.iotdb.tsfile.write.writer.TsFileIOWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * MergeMultiChunkTask merges the series of a merge task into the merge temp files. The series are
+ * split into batches of the same device, which are merged by up to mergeSeriesSubThreadNum series
+ * sub-tasks in parallel, while the sub-tasks together merge no more than concurrentMergeSeriesNum
+ * series at the same time, the number that the file selector finds affordable under the memory
+ * budget. A sub-task writes the chunk groups of its batch into ChunkGroupBuffers, which are
+ * stitched into the temp files by one sub-task at a time, so the temp files and the merge log look
+ * the same as those of a sequential merge. A single sub-task writes into the temp files directly.
+ */
 class MergeMultiChunkTask {
 
   private static final Logger logger = LoggerFactory.getLogger(MergeMultiChunkTask.class);
   private static int minChunkPointNum = IoTDBDescriptor.getInstance().getConfig()
       .getChunkMergePointThreshold();
+  // the file selector fills the memory budget with the worst-case cost of reading, which is rarely
+  // reached, so the chunk group buffers share a part of the budget instead of being estimated
+  private static final double BUFFER_BUDGET_RATIO = 0.25;
 
   private MergeLogger mergeLogger;
   private List<Path> unmergedSeries;
 
   private String taskName;
   private MergeResource resource;
-  private TimeValuePair[] currTimeValuePairs;
   private boolean fullMerge;
 
   private MergeContext mergeContext;
 
-  private AtomicInteger mergedChunkNum = new AtomicInteger();
-  private AtomicInteger unmergedChunkNum = new AtomicInteger();
   private int mergedSeriesCnt;
   private double progress;
 
   private int concurrentMergeSeriesNum;
-  private List<Path> currMergingPaths = new ArrayList<>();
+
+  // a sub-task holds the lock from its first stitching until its batch ends, so that the chunk
+  // groups and the logs of a batch are not interleaved with those of the others
+  private ReentrantLock commitLock = new ReentrantLock();
+  private volatile boolean aborted = false;
 
   MergeMultiChunkTask(MergeContext context, String taskName, MergeLogger mergeLogger,
       MergeResource mergeResource, boolean fullMerge, List<Path> unmergedSeries,
@@ -99,21 +123,40 @@ class MergeMultiChunkTask {
     }
     long startTime = System.currentTimeMillis();
     for (TsFileResource seqFile : resource.getSeqFiles()) {
-      mergeContext.getUnmergedChunkStartTimes().put(seqFile, new HashMap<>());
+      mergeContext.getUnmergedChunkStartTimes().put(seqFile, new ConcurrentHashMap<>());
     }
-    // merge each series and write data into each seqFile's corresponding temp merge file
     List<List<Path>> devicePaths = MergeUtils.splitPathsByDevice(unmergedSeries);
+    IoTDBConfig config = IoTDBDescriptor.getInstance().getConfig();
+    int subTaskNum = Math.min(config.getMergeSeriesSubThreadNum(),
+        Math.min(concurrentMergeSeriesNum, devicePaths.size()));
+    subTaskNum = Math.max(subTaskNum, 1);
+    int seriesNumPerSubTask = Math.max(concurrentMergeSeriesNum / subTaskNum, 1);
+
+    // TODO: use statistics of queries to better rearrange series
+    Queue<List<Path>> batches = new ConcurrentLinkedQueue<>();
     for (List<Path> pathList : devicePaths) {
-      // TODO: use statistics of queries to better rearrange series
-      IMergePathSelector pathSelector = new NaivePathSelector(pathList, concurrentMergeSeriesNum);
+      IMergePathSelector pathSelector = new NaivePathSelector(pathList, seriesNumPerSubTask);
       while (pathSelector.hasNext()) {
-        currMergingPaths = pathSelector.next();
-        mergePaths();
-        resource.clearChunkWriterCache();
-        mergedSeriesCnt += currMergingPaths.size();
-        logMergeProgress();
+        batches.add(pathSelector.next());
+      }
+    }
+
+    if (subTaskNum == 1) {
+      // write each file of a batch into its temp file directly, as a sequential merge does
+      new MergeSeriesSubTask(batches, 0, true).call();
+    } else {
+      long bufferLimit = (long) (config.getMergeMemoryBudget() * BUFFER_BUDGET_RATIO
+          / subTaskNum);
+      logger.info("{} merges the series with {} sub-tasks, each merging {} series at a time",
+          taskName, subTaskNum, seriesNumPerSubTask);
+      List<Future> futures = new ArrayList<>();
+      for (int i = 0; i < subTaskNum; i++) {
+        futures.add(MergeManager.getINSTANCE()
+            .submitSeriesSubTask(new MergeSeriesSubTask(batches, bufferLimit, false)));
       }
+      waitSubTasks(futures);
     }
+
     if (logger.isInfoEnabled()) {
       logger.info("{} all series are merged after {}ms", taskName,
           System.currentTimeMillis() - startTime);
@@ -121,7 +164,32 @@ class MergeMultiChunkTask {
     mergeLogger.logAllTsEnd();
   }
 
-  private void logMergeProgress() {
+  private void waitSubTasks(List<Future> futures) throws IOException {
+    IOException exception = null;
+    // wait for all sub-tasks even if one fails, so that no one writes when the task cleans up
+    for (Future future : futures) {
+      try {
+        future.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        aborted = true;
+        exception = new IOException(e);
+        break;
+      } catch (ExecutionException e) {
+        aborted = true;
+        if (exception == null) {
+          exception = e.getCause() instanceof IOException ? (IOException) e.getCause()
+              : new IOException(e);
+        }
+      }
+    }
+    if (exception != null) {
+      throw exception;
+    }
+  }
+
+  private synchronized void logMergeProgress(int newlyMergedSeriesCnt) {
+    mergedSeriesCnt += newlyMergedSeriesCnt;
     if (logger.isInfoEnabled()) {
       double newProgress = 100 * mergedSeriesCnt / (double) (unmergedSeries.size());
       if (newProgress - progress >= 1.0) {
@@ -131,311 +199,438 @@ class MergeMultiChunkTask {
     }
   }
 
-  private void mergePaths() throws IOException {
-    mergeLogger.logTSStart(currMergingPaths);
-    IPointReader[] unseqReaders;
-    unseqReaders = resource.getUnseqReaders(currMergingPaths);
-    currTimeValuePairs = new TimeValuePair[currMergingPaths.size()];
-    for (int i = 0; i < currMergingPaths.size(); i++) {
-      if (unseqReaders[i].hasNextTimeValuePair()) {
-        currTimeValuePairs[i] = unseqReaders[i].currentTimeValuePair();
-      }
-    }
-
-    for (int i = 0; i < resource.getSeqFiles().size(); i++) {
-      pathsMergeOneFile(i, unseqReaders);
-    }
-    mergeLogger.logTSEnd();
+  private static long getChunkSize(Chunk chunk) {
+    return (long) chunk.getHeader().getSerializedSize() + chunk.getHeader().getDataSize();
   }
 
-  private void pathsMergeOneFile(int seqFileIdx, IPointReader[] unseqReaders)
-      throws IOException {
-    TsFileResource currTsFile = resource.getSeqFiles().get(seqFileIdx);
-    String deviceId = currMergingPaths.get(0).getDevice();
-    Long currDeviceMinTime = currTsFile.getStartTimeMap().get(deviceId);
-    //COMMENTS: is this correct? how about if there are other devices (in the currMergingPaths) that have unseq data?
-    if (currDeviceMinTime == null) {
-      return;
+  /**
+   * MergeSeriesSubTask takes batches of series from the queue and merges them until the queue is
+   * empty. The chunk groups of a batch are buffered until they exceed bufferLimit or the batch
+   * ends, from when the sub-task stitches each file of the batch into its temp file as soon as it
+   * is merged. A sub-task running alone writes into the temp files directly without buffering.
+   */
+  private class MergeSeriesSubTask implements Callable<Void> {
+
+    private Queue<List<Path>> batches;
+    private long bufferLimit;
+    private boolean directWrite;
+
+    private List<Path> currMergingPaths;
+    private TimeValuePair[] currTimeValuePairs;
+    private Map<MeasurementSchema, IChunkWriter> chunkWriterCache = new ConcurrentHashMap<>();
+    private Map<TsFileResource, ChunkGroupBuffer> buffers = new LinkedHashMap<>();
+    private boolean committing = false;
+
+    private AtomicInteger mergedChunkNum = new AtomicInteger();
+    private AtomicInteger unmergedChunkNum = new AtomicInteger();
+
+    private MergeSeriesSubTask(Queue<List<Path>> batches, long bufferLimit,
+        boolean directWrite) {
+      this.batches = batches;
+      this.bufferLimit = bufferLimit;
+      this.directWrite = directWrite;
     }
 
-    for (Path path : currMergingPaths) {
-      mergeContext.getUnmergedChunkStartTimes().get(currTsFile).put(path, new ArrayList<>());
+    @Override
+    public Void call() throws IOException {
+      List<Path> batch;
+      while (!aborted && (batch = batches.poll()) != null) {
+        currMergingPaths = batch;
+        try {
+          mergePaths();
+        } finally {
+          if (committing) {
+            committing = false;
+            commitLock.unlock();
+          }
+          buffers.clear();
+          chunkWriterCache.clear();
+        }
+        logMergeProgress(batch.size());
+      }
+      return null;
     }
 
-    // if this TsFile receives data later than fileLimitTime, it will overlap the next TsFile,
-    // which is forbidden
-    for (TimeValuePair timeValuePair : currTimeValuePairs) {
-      if (timeValuePair != null && timeValuePair.getTimestamp() < currDeviceMinTime) {
-        currDeviceMinTime = timeValuePair.getTimestamp();
+    private void mergePaths() throws IOException {
+      IPointReader[] unseqReaders;
+      unseqReaders = resource.getUnseqReaders(currMergingPaths);
+      currTimeValuePairs = new TimeValuePair[currMergingPaths.size()];
+      for (int i = 0; i < currMergingPaths.size(); i++) {
+        if (unseqReaders[i].hasNextTimeValuePair()) {
+          currTimeValuePairs[i] = unseqReaders[i].currentTimeValuePair();
+        }
+      }
+
+      if (directWrite) {
+        mergeLogger.logTSStart(currMergingPaths);
+        for (int i = 0; i < resource.getSeqFiles().size(); i++) {
+          pathsMergeOneFile(i, unseqReaders);
+        }
+        mergeLogger.logTSEnd();
+        return;
       }
-    }
-    boolean isLastFile = seqFileIdx + 1 == resource.getSeqFiles().size();
-
-    TsFileSequenceReader fileSequenceReader = resource.getFileReader(currTsFile);
-    List<Modification>[] modifications = new List[currMergingPaths.size()];
-    List<ChunkMetadata>[] seqChunkMeta = new List[currMergingPaths.size()];
-    for (int i = 0; i < currMergingPaths.size(); i++) {
-      modifications[i] = resource.getModifications(currTsFile, currMergingPaths.get(i));
-      seqChunkMeta[i] = resource.queryChunkMetadata(currMergingPaths.get(i), currTsFile);
-      modifyChunkMetaData(seqChunkMeta[i], modifications[i]);
-    }
 
-    List<Integer> unskippedPathIndices = filterNoDataPaths(seqChunkMeta, seqFileIdx);
-    if (unskippedPathIndices.isEmpty()) {
-      return;
+      for (int i = 0; i < resource.getSeqFiles().size(); i++) {
+        pathsMergeOneFile(i, unseqReaders);
+        if (committing || getBufferedSize() > bufferLimit) {
+          stitchBuffers();
+        }
+      }
+      stitchBuffers();
+      mergeLogger.logTSEnd();
     }
 
-    RestorableTsFileIOWriter mergeFileWriter = resource.getMergeFileWriter(currTsFile);
-    for (Path path : currMergingPaths) {
-      MeasurementSchema schema = resource.getSchema(path);
-      mergeFileWriter.addSchema(path, schema);
-    }
-    // merge unseq data with seq data in this file or small chunks in this file into a larger chunk
-    mergeFileWriter.startChunkGroup(deviceId);
-    boolean dataWritten = mergeChunks(seqChunkMeta, isLastFile, fileSequenceReader, unseqReaders,
-        mergeFileWriter, currTsFile);
-    if (dataWritten) {
-      mergeFileWriter.writeVersion(0L);
-      mergeFileWriter.endChunkGroup();
-      mergeLogger.logFilePosition(mergeFileWriter.getFile());
-      currTsFile.getStartTimeMap().put(deviceId, currDeviceMinTime);
+    private long getBufferedSize() {
+      long size = 0;
+      for (ChunkGroupBuffer buffer : buffers.values()) {
+        size += buffer.getBufferedSize();
+      }
+      return size;
     }
-  }
 
-  private List<Integer> filterNoDataPaths(List[] seqChunkMeta, int seqFileIdx) {
-    // if the last seqFile does not contains this series but the unseqFiles do, data of this
-    // series should also be written into a new chunk
-    List<Integer> ret = new ArrayList<>();
-    for (int i = 0; i < currMergingPaths.size(); i++) {
-      if (seqChunkMeta[i].isEmpty()
-          && !(seqFileIdx + 1 == resource.getSeqFiles().size() && currTimeValuePairs[i] != null)) {
-        continue;
+    /**
+     * Write the buffered chunk groups into the temp files, after taking the commit lock and
+     * logging the start of the batch if this is the first time in the batch.
+     */
+    private void stitchBuffers() throws IOException {
+      if (!committing) {
+        commitLock.lock();
+        committing = true;
+        mergeLogger.logTSStart(currMergingPaths);
+      }
+      for (Entry<TsFileResource, ChunkGroupBuffer> entry : buffers.entrySet()) {
+        ChunkGroupBuffer buffer = entry.getValue();
+        if (buffer.isEmpty()) {
+          continue;
+        }
+        RestorableTsFileIOWriter mergeFileWriter = resource.getMergeFileWriter(entry.getKey());
+        for (Path path : currMergingPaths) {
+          mergeFileWriter.addSchema(path, resource.getSchema(path));
+        }
+        long writtenBytes = buffer.stitchInto(mergeFileWriter);
+        mergeLogger.logFilePosition(mergeFileWriter.getFile());
+        MergeRateLimiter.getInstance().acquire(writtenBytes);
       }
-      ret.add(i);
+      buffers.clear();
     }
-    return ret;
-  }
 
-  private boolean mergeChunks(List<ChunkMetadata>[] seqChunkMeta, boolean isLastFile,
-      TsFileSequenceReader reader, IPointReader[] unseqReaders,
-      RestorableTsFileIOWriter mergeFileWriter, TsFileResource currFile)
-      throws IOException {
-    int[] ptWrittens = new int[seqChunkMeta.length];
-    int mergeChunkSubTaskNum = IoTDBDescriptor.getInstance().getConfig()
-        .getMergeChunkSubThreadNum();
-    PriorityQueue<MetaListEntry>[] chunkMetaHeaps = new PriorityQueue[mergeChunkSubTaskNum];
-    for (int i = 0; i < mergeChunkSubTaskNum; i++) {
-      chunkMetaHeaps[i] = new PriorityQueue<>();
+    private IChunkWriter getChunkWriter(MeasurementSchema measurementSchema) {
+      return chunkWriterCache.computeIfAbsent(measurementSchema, ChunkWriterImpl::new);
     }
-    int idx = 0;
-    for (int i = 0; i < currMergingPaths.size(); i++) {
-      if (seqChunkMeta[i].isEmpty()) {
-        continue;
-      }
-      MetaListEntry entry = new MetaListEntry(i, seqChunkMeta[i]);
-      entry.next();
 
-      chunkMetaHeaps[idx % mergeChunkSubTaskNum].add(entry);
-      idx++;
-      ptWrittens[i] = 0;
-    }
+    private void pathsMergeOneFile(int seqFileIdx, IPointReader[] unseqReaders)
+        throws IOException {
+      TsFileResource currTsFile = resource.getSeqFiles().get(seqFileIdx);
+      String deviceId = currMergingPaths.get(0).getDevice();
+      Long currDeviceMinTime = currTsFile.getStartTimeMap().get(deviceId);
+      //COMMENTS: is this correct? how about if there are other devices (in the currMergingPaths) that have unseq data?
+      if (currDeviceMinTime == null) {
+        return;
+      }
 
-    mergedChunkNum.set(0);
-    unmergedChunkNum.set(0);
-
-    List<Future> futures = new ArrayList<>();
-    for (int i = 0; i < mergeChunkSubTaskNum; i++) {
-      int finalI = i;
-      futures.add(MergeManager.getINSTANCE().submitChunkSubTask(() -> {
-        mergeChunkHeap(chunkMetaHeaps[finalI], ptWrittens, reader, mergeFileWriter, unseqReaders,
-            currFile,
-            isLastFile);
-        return null;
-      }));
-    }
-    for (int i = 0; i < mergeChunkSubTaskNum; i++) {
-      try {
-        futures.get(i).get();
-      } catch (InterruptedException | ExecutionException e) {
-        throw new IOException(e);
+      for (Path path : currMergingPaths) {
+        mergeContext.getUnmergedChunkStartTimes().get(currTsFile).put(path, new ArrayList<>());
       }
-    }
 
-    // add merge and unmerged chunk statistic
-    mergeContext.getMergedChunkCnt().compute(currFile, (tsFileResource, anInt) -> anInt == null ?
-        mergedChunkNum.get() : anInt + mergedChunkNum.get());
-    mergeContext.getUnmergedChunkCnt().compute(currFile, (tsFileResource, anInt) -> anInt == null ?
-        unmergedChunkNum.get() : anInt + unmergedChunkNum.get());
+      // if this TsFile receives data later than fileLimitTime, it will overlap the next TsFile,
+      // which is forbidden
+      for (TimeValuePair timeValuePair : currTimeValuePairs) {
+        if (timeValuePair != null && timeValuePair.getTimestamp() < currDeviceMinTime) {
+          currDeviceMinTime = timeValuePair.getTimestamp();
+        }
+      }
+      boolean isLastFile = seqFileIdx + 1 == resource.getSeqFiles().size();
+
+      TsFileSequenceReader fileSequenceReader = resource.getFileReader(currTsFile);
+      List<Modification>[] modifications = new List[currMergingPaths.size()];
+      List<ChunkMetadata>[] seqChunkMeta = new List[currMergingPaths.size()];
+      for (int i = 0; i < currMergingPaths.size(); i++) {
+        modifications[i] = resource.getModifications(currTsFile, currMergingPaths.get(i));
+        seqChunkMeta[i] = resource.queryChunkMetadata(currMergingPaths.get(i), currTsFile);
+        modifyChunkMetaData(seqChunkMeta[i], modifications[i]);
+      }
 
-    return mergedChunkNum.get() > 0;
-  }
+      List<Integer> unskippedPathIndices = filterNoDataPaths(seqChunkMeta, seqFileIdx);
+      if (unskippedPathIndices.isEmpty()) {
+        return;
+      }
 
-  private void mergeChunkHeap(PriorityQueue<MetaListEntry> chunkMetaHeap, int[] ptWrittens,
-      TsFileSequenceReader reader,
-      RestorableTsFileIOWriter mergeFileWriter, IPointReader[] unseqReaders,
-      TsFileResource currFile,
-      boolean isLastFile) throws IOException {
-    while (!chunkMetaHeap.isEmpty()) {
-      MetaListEntry metaListEntry = chunkMetaHeap.poll();
-      ChunkMetadata currMeta = metaListEntry.current();
-      int pathIdx = metaListEntry.getPathId();
-      boolean isLastChunk = !metaListEntry.hasNext();
-      Path path = currMergingPaths.get(pathIdx);
-      MeasurementSchema measurementSchema = resource.getSchema(path);
-      IChunkWriter chunkWriter = resource.getChunkWriter(measurementSchema);
-
-      boolean chunkOverflowed = MergeUtils.isChunkOverflowed(currTimeValuePairs[pathIdx], currMeta);
-      boolean chunkTooSmall = MergeUtils
-          .isChunkTooSmall(ptWrittens[pathIdx], currMeta, isLastChunk, minChunkPointNum);
-
-      Chunk chunk;
-      synchronized (reader) {
-        chunk = reader.readMemChunk(currMeta);
-      }
-      ptWrittens[pathIdx] = mergeChunkV2(currMeta, chunkOverflowed, chunkTooSmall, chunk,
-          ptWrittens[pathIdx], pathIdx, mergeFileWriter, unseqReaders[pathIdx], chunkWriter,
-          currFile);
-
-      if (!isLastChunk) {
-        metaListEntry.next();
-        chunkMetaHeap.add(metaListEntry);
+      TsFileIOWriter writer;
+      RestorableTsFileIOWriter mergeFileWriter = null;
+      if (directWrite) {
+        mergeFileWriter = resource.getMergeFileWriter(currTsFile);
+        for (Path path : currMergingPaths) {
+          mergeFileWriter.addSchema(path, resource.getSchema(path));
+        }
+        writer = mergeFileWriter;
       } else {
-        // this only happens when the seqFiles do not contain this series, otherwise the remaining
-        // data will be merged with the last chunk in the seqFiles
-        if (isLastFile && currTimeValuePairs[pathIdx] != null) {
-          ptWrittens[pathIdx] += writeRemainingUnseq(chunkWriter, unseqReaders[pathIdx],
-              Long.MAX_VALUE,
-              pathIdx);
-          mergedChunkNum.incrementAndGet();
+        ChunkGroupBuffer buffer = buffers.get(currTsFile);
+        if (buffer == null) {
+          buffer = new ChunkGroupBuffer();
+          buffers.put(currTsFile, buffer);
         }
-        // the last merged chunk may still be smaller than the threshold, flush it anyway
-        if (ptWrittens[pathIdx] > 0) {
-          synchronized (mergeFileWriter) {
-            chunkWriter.writeToFileWriter(mergeFileWriter);
-          }
+        writer = buffer;
+      }
+      long startPosition = writer.getPos();
+      // merge unseq data with seq data in this file or small chunks in this file into a larger
+      // chunk
+      writer.startChunkGroup(deviceId);
+      boolean dataWritten = mergeChunks(seqChunkMeta, isLastFile, fileSequenceReader,
+          unseqReaders, writer, currTsFile);
+      if (dataWritten) {
+        if (mergeFileWriter != null) {
+          mergeFileWriter.writeVersion(0L);
+          mergeFileWriter.endChunkGroup();
+          mergeLogger.logFilePosition(mergeFileWriter.getFile());
+          MergeRateLimiter.getInstance().acquire(mergeFileWriter.getPos() - startPosition);
+        } else {
+          // the version is written when the buffer is stitched
+          writer.endChunkGroup();
         }
+        // other batches of the device may be merged at the same time, so only lower it
+        currTsFile.updateStartTime(deviceId, currDeviceMinTime);
       }
     }
-  }
 
-  /**
-   * merge a sequence chunk SK
-   * <p>
-   * 1. no need to write the chunk to .merge file when: isn't full merge & there isn't unclosed
-   * chunk before & SK is big enough & SK isn't overflowed & SK isn't modified
-   * <p>
-   * <p>
-   * 2. write SK to .merge.file without compressing when: is full merge & there isn't unclosed chunk
-   * before & SK is big enough & SK isn't overflowed & SK isn't modified
-   * <p>
-   * 3. other cases: need to unCompress the chunk and write 3.1 SK isn't overflowed 3.2 SK is
-   * overflowed
-   */
-  private int mergeChunkV2(ChunkMetadata currMeta, boolean chunkOverflowed,
-      boolean chunkTooSmall, Chunk chunk, int lastUnclosedChunkPoint, int pathIdx,
-      TsFileIOWriter mergeFileWriter, IPointReader unseqReader,
-      IChunkWriter chunkWriter, TsFileResource currFile) throws IOException {
-
-    int unclosedChunkPoint = lastUnclosedChunkPoint;
-    boolean chunkModified = currMeta.getDeletedAt() > Long.MIN_VALUE;
-
-    // no need to write the chunk to .merge file
-    if (!fullMerge && lastUnclosedChunkPoint == 0 && !chunkTooSmall && !chunkOverflowed
-        && !chunkModified) {
-      unmergedChunkNum.incrementAndGet();
-      mergeContext.getUnmergedChunkStartTimes().get(currFile).get(currMergingPaths.get(pathIdx))
-          .add(currMeta.getStartTime());
-      return 0;
+    private List<Integer> filterNoDataPaths(List[] seqChunkMeta, int seqFileIdx) {
+      // if the last seqFile does not contains this series but the unseqFiles do, data of this
+      // series should also be written into a new chunk
+      List<Integer> ret = new ArrayList<>();
+      for (int i = 0; i < currMergingPaths.size(); i++) {
+        if (seqChunkMeta[i].isEmpty()
+            && !(seqFileIdx + 1 == resource.getSeqFiles().size()
+            && currTimeValuePairs[i] != null)) {
+          continue;
+        }
+        ret.add(i);
+      }
+      return ret;
     }
 
-    // write SK to .merge.file without compressing
-    if (fullMerge && lastUnclosedChunkPoint == 0 && !chunkTooSmall && !chunkOverflowed
-        && !chunkModified) {
-      synchronized (mergeFileWriter) {
-        mergeFileWriter.writeChunk(chunk, currMeta);
+    private boolean mergeChunks(List<ChunkMetadata>[] seqChunkMeta, boolean isLastFile,
+        TsFileSequenceReader reader, IPointReader[] unseqReaders,
+        TsFileIOWriter mergeFileWriter, TsFileResource currFile)
+        throws IOException {
+      int[] ptWrittens = new int[seqChunkMeta.length];
+      int mergeChunkSubTaskNum = IoTDBDescriptor.getInstance().getConfig()
+          .getMergeChunkSubThreadNum();
+      PriorityQueue<MetaListEntry>[] chunkMetaHeaps = new PriorityQueue[mergeChunkSubTaskNum];
+      for (int i = 0; i < mergeChunkSubTaskNum; i++) {
+        chunkMetaHeaps[i] = new PriorityQueue<>();
       }
-      mergeContext.incTotalPointWritten(currMeta.getNumOfPoints());
-      mergeContext.incTotalChunkWritten();
-      mergedChunkNum.incrementAndGet();
-      return 0;
-    }
+      int idx = 0;
+      for (int i = 0; i < currMergingPaths.size(); i++) {
+        if (seqChunkMeta[i].isEmpty()) {
+          continue;
+        }
+        MetaListEntry entry = new MetaListEntry(i, seqChunkMeta[i]);
+        entry.next();
 
-    // 3.1 SK isn't overflowed, just uncompress and write sequence chunk
-    if (!chunkOverflowed) {
-      unclosedChunkPoint += MergeUtils.writeChunkWithoutUnseq(chunk, chunkWriter);
-      mergedChunkNum.incrementAndGet();
-    } else {
-      // 3.2 SK is overflowed, uncompress sequence chunk and merge with unseq chunk, then write
-      unclosedChunkPoint += writeChunkWithUnseq(chunk, chunkWriter, unseqReader,
-          currMeta.getEndTime(), pathIdx);
-      mergedChunkNum.incrementAndGet();
-    }
+        chunkMetaHeaps[idx % mergeChunkSubTaskNum].add(entry);
+        idx++;
+        ptWrittens[i] = 0;
+      }
 
-    // update points written statistics
-    mergeContext.incTotalPointWritten(unclosedChunkPoint - lastUnclosedChunkPoint);
-    if (minChunkPointNum > 0 && unclosedChunkPoint >= minChunkPointNum
-        || unclosedChunkPoint > 0 && minChunkPointNum < 0) {
-      // the new chunk's size is large enough and it should be flushed
-      synchronized (mergeFileWriter) {
-        chunkWriter.writeToFileWriter(mergeFileWriter);
+      mergedChunkNum.set(0);
+      unmergedChunkNum.set(0);
+
+      List<Future> futures = new ArrayList<>();
+      for (int i = 0; i < mergeChunkSubTaskNum; i++) {
+        int finalI = i;
+        futures.add(MergeManager.getINSTANCE().submitChunkSubTask(() -> {
+          mergeChunkHeap(chunkMetaHeaps[finalI], ptWrittens, reader, mergeFileWriter,
+              unseqReaders, currFile, isLastFile);
+          return null;
+        }));
       }
-      unclosedChunkPoint = 0;
+      for (int i = 0; i < mergeChunkSubTaskNum; i++) {
+        try {
+          futures.get(i).get();
+        } catch (InterruptedException | ExecutionException e) {
+          throw new IOException(e);
+        }
+      }
+
+      // add merge and unmerged chunk statistic
+      mergeContext.getMergedChunkCnt().compute(currFile, (tsFileResource, anInt) -> anInt == null ?
+          mergedChunkNum.get() : anInt + mergedChunkNum.get());
+      mergeContext.getUnmergedChunkCnt().compute(currFile, (tsFileResource, anInt) -> anInt == null ?
+          unmergedChunkNum.get() : anInt + unmergedChunkNum.get());
+
+      return mergedChunkNum.get() > 0;
     }
-    return unclosedChunkPoint;
-  }
 
-  private int writeRemainingUnseq(IChunkWriter chunkWriter,
-      IPointReader unseqReader, long timeLimit, int pathIdx) throws IOException {
-    int ptWritten = 0;
-    while (currTimeValuePairs[pathIdx] != null
-        && currTimeValuePairs[pathIdx].getTimestamp() < timeLimit) {
-      writeTVPair(currTimeValuePairs[pathIdx], chunkWriter);
-      ptWritten++;
-      unseqReader.nextTimeValuePair();
-      currTimeValuePairs[pathIdx] =
-          unseqReader.hasNextTimeValuePair() ? unseqReader.currentTimeValuePair() : null;
+    private void mergeChunkHeap(PriorityQueue<MetaListEntry> chunkMetaHeap, int[] ptWrittens,
+        TsFileSequenceReader reader, TsFileIOWriter mergeFileWriter,
+        IPointReader[] unseqReaders, TsFileResource currFile, boolean isLastFile)
+        throws IOException {
+      while (!chunkMetaHeap.isEmpty()) {
+        MetaListEntry metaListEntry = chunkMetaHeap.poll();
+        ChunkMetadata currMeta = metaListEntry.current();
+        int pathIdx = metaListEntry.getPathId();
+        boolean isLastChunk = !metaListEntry.hasNext();
+        Path path = currMergingPaths.get(pathIdx);
+        MeasurementSchema measurementSchema = resource.getSchema(path);
+        IChunkWriter chunkWriter = getChunkWriter(measurementSchema);
+
+        boolean chunkOverflowed = MergeUtils
+            .isChunkOverflowed(currTimeValuePairs[pathIdx], currMeta);
+        boolean chunkTooSmall = MergeUtils
+            .isChunkTooSmall(ptWrittens[pathIdx], currMeta, isLastChunk, minChunkPointNum);
+
+        Chunk chunk;
+        synchronized (reader) {
+          chunk = reader.readMemChunk(currMeta);
+        }
+        MergeRateLimiter.getInstance().acquire(getChunkSize(chunk));
+        ptWrittens[pathIdx] = mergeChunkV2(currMeta, chunkOverflowed, chunkTooSmall, chunk,
+            ptWrittens[pathIdx], pathIdx, mergeFileWriter, unseqReaders[pathIdx], chunkWriter,
+            currFile);
+
+        if (!isLastChunk) {
+          metaListEntry.next();
+          chunkMetaHeap.add(metaListEntry);
+        } else {
+          // this only happens when the seqFiles do not contain this series, otherwise the
+          // remaining data will be merged with the last chunk in the seqFiles
+          if (isLastFile && currTimeValuePairs[pathIdx] != null) {
+            ptWrittens[pathIdx] += writeRemainingUnseq(chunkWriter, unseqReaders[pathIdx],
+                Long.MAX_VALUE, pathIdx);
+            mergedChunkNum.incrementAndGet();
+          }
+          // the last merged chunk may still be smaller than the threshold, flush it anyway
+          if (ptWrittens[pathIdx] > 0) {
+            writeChunkToFileWriter(chunkWriter, mergeFileWriter);
+          }
+        }
+      }
     }
-    return ptWritten;
-  }
 
-  private int writeChunkWithUnseq(Chunk chunk, IChunkWriter chunkWriter, IPointReader unseqReader,
-      long chunkLimitTime, int pathIdx) throws IOException {
-    int cnt = 0;
-    ChunkReader chunkReader = new ChunkReader(chunk, null);
-    while (chunkReader.hasNextSatisfiedPage()) {
-      BatchData batchData = chunkReader.nextPageData();
-      cnt += mergeWriteBatch(batchData, chunkWriter, unseqReader, pathIdx);
+    /**
+     * merge a sequence chunk SK
+     * <p>
+     * 1. no need to write the chunk to .merge file when: isn't full merge & there isn't unclosed
+     * chunk before & SK is big enough & SK isn't overflowed & SK isn't modified
+     * <p>
+     * <p>
+     * 2. write SK to .merge.file without compressing when: is full merge & there isn't unclosed chunk
+     * before & SK is big enough & SK isn't overflowed & SK isn't modified
+     * <p>
+     * 3. other cases: need to unCompress the chunk and write 3.1 SK isn't overflowed 3.2 SK is
+     * overflowed
+     */
+    private int mergeChunkV2(ChunkMetadata currMeta, boolean chunkOverflowed,
+        boolean chunkTooSmall, Chunk chunk, int lastUnclosedChunkPoint, int pathIdx,
+        TsFileIOWriter mergeFileWriter, IPointReader unseqReader,
+        IChunkWriter chunkWriter, TsFileResource currFile) throws IOException {
+
+      int unclosedChunkPoint = lastUnclosedChunkPoint;
+      boolean chunkModified = currMeta.getDeleteIntervalList() != null;
+
+      // no need to write the chunk to .merge file
+      if (!fullMerge && lastUnclosedChunkPoint == 0 && !chunkTooSmall && !chunkOverflowed
+          && !chunkModified) {
+        unmergedChunkNum.incrementAndGet();
+        mergeContext.getUnmergedChunkStartTimes().get(currFile).get(currMergingPaths.get(pathIdx))
+            .add(currMeta.getStartTime());
+        return 0;
+      }
+
+      // write SK to .merge.file without compressing
+      if (fullMerge && lastUnclosedChunkPoint == 0 && !chunkTooSmall && !chunkOverflowed
+          && !chunkModified) {
+        synchronized (mergeFileWriter) {
+          mergeFileWriter.writeChunk(chunk, currMeta);
+        }
+        mergeContext.incTotalPointWritten(currMeta.getNumOfPoints());
+        mergeContext.incTotalChunkWritten();
+        mergedChunkNum.incrementAndGet();
+        return 0;
+      }
+
+      // 3.1 SK isn't overflowed, just uncompress and write sequence chunk
+      if (!chunkOverflowed) {
+        unclosedChunkPoint += MergeUtils.writeChunkWithoutUnseq(chunk, chunkWriter);
+        mergedChunkNum.incrementAndGet();
+      } else {
+        // 3.2 SK is overflowed, uncompress sequence chunk and merge with unseq chunk, then write
+        unclosedChunkPoint += writeChunkWithUnseq(chunk, chunkWriter, unseqReader,
+            currMeta.getEndTime(), pathIdx);
+        mergedChunkNum.incrementAndGet();
+      }
+
+      // update points written statistics
+      mergeContext.incTotalPointWritten(unclosedChunkPoint - lastUnclosedChunkPoint);
+      if (minChunkPointNum > 0 && unclosedChunkPoint >= minChunkPointNum
+          || unclosedChunkPoint > 0 && minChunkPointNum < 0) {
+        // the new chunk's size is large enough and it should be flushed
+        writeChunkToFileWriter(chunkWriter, mergeFileWriter);
+        unclosedChunkPoint = 0;
+      }
+      return unclosedChunkPoint;
     }
-    cnt += writeRemainingUnseq(chunkWriter, unseqReader, chunkLimitTime, pathIdx);
-    return cnt;
-  }
 
-  private int mergeWriteBatch(BatchData batchData, IChunkWriter chunkWriter,
-      IPointReader unseqReader, int pathIdx) throws IOException {
-    int cnt = 0;
-    for (int i = 0; i < batchData.length(); i++) {
-      long time = batchData.getTimeByIndex(i);
-      // merge data in batch and data in unseqReader
+    private void writeChunkToFileWriter(IChunkWriter chunkWriter,
+        TsFileIOWriter mergeFileWriter) throws IOException {
+      // the IO of the chunk is limited when its chunk group is finished or stitched
+      synchronized (mergeFileWriter) {
+        chunkWriter.writeToFileWriter(mergeFileWriter);
+      }
+    }
 
-      boolean overwriteSeqPoint = false;
-      // unseq point.time <= sequence point.time, write unseq point
+    private int writeRemainingUnseq(IChunkWriter chunkWriter,
+        IPointReader unseqReader, long timeLimit, int pathIdx) throws IOException {
+      int ptWritten = 0;
       while (currTimeValuePairs[pathIdx] != null
-          && currTimeValuePairs[pathIdx].getTimestamp() <= time) {
+          && currTimeValuePairs[pathIdx].getTimestamp() < timeLimit) {
         writeTVPair(currTimeValuePairs[pathIdx], chunkWriter);
-        if (currTimeValuePairs[pathIdx].getTimestamp() == time) {
-          overwriteSeqPoint = true;
-        }
+        ptWritten++;
         unseqReader.nextTimeValuePair();
         currTimeValuePairs[pathIdx] =
             unseqReader.hasNextTimeValuePair() ? unseqReader.currentTimeValuePair() : null;
-        cnt++;
       }
-      // unseq point.time > sequence point.time, write seq point
-      if (!overwriteSeqPoint) {
-        writeBatchPoint(batchData, i, chunkWriter);
-        cnt++;
+      return ptWritten;
+    }
+
+    private int writeChunkWithUnseq(Chunk chunk, IChunkWriter chunkWriter, IPointReader unseqReader,
+        long chunkLimitTime, int pathIdx) throws IOException {
+      int cnt = 0;
+      ChunkReader chunkReader = new ChunkReader(chunk, null);
+      while (chunkReader.hasNextSatisfiedPage()) {
+        BatchData batchData = chunkReader.nextPageData();
+        cnt += mergeWriteBatch(batchData, chunkWriter, unseqReader, pathIdx);
+      }
+      cnt += writeRemainingUnseq(chunkWriter, unseqReader, chunkLimitTime, pathIdx);
+      return cnt;
+    }
+
+    private int mergeWriteBatch(BatchData batchData, IChunkWriter chunkWriter,
+        IPointReader unseqReader, int pathIdx) throws IOException {
+      int cnt = 0;
+      for (int i = 0; i < batchData.length(); i++) {
+        long time = batchData.getTimeByIndex(i);
+        // merge data in batch and data in unseqReader
+
+        boolean overwriteSeqPoint = false;
+        // unseq point.time <= sequence point.time, write unseq point
+        while (currTimeValuePairs[pathIdx] != null
+            && currTimeValuePairs[pathIdx].getTimestamp() <= time) {
+          writeTVPair(currTimeValuePairs[pathIdx], chunkWriter);
+          if (currTimeValuePairs[pathIdx].getTimestamp() == time) {
+            overwriteSeqPoint = true;
+          }
+          unseqReader.nextTimeValuePair();
+          currTimeValuePairs[pathIdx] =
+              unseqReader.hasNextTimeValuePair() ? unseqReader.currentTimeValuePair() : null;
+          cnt++;
+        }
+        // unseq point.time > sequence point.time, write seq point
+        if (!overwriteSeqPoint) {
+          writeBatchPoint(batchData, i, chunkWriter);
+          cnt++;
+        }
       }
+      return cnt;
     }
-    return cnt;
   }
 }
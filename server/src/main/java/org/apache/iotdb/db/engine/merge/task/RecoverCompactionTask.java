@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.engine.merge.task;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.iotdb.db.engine.merge.recover.CompactionLogger;
+import org.apache.iotdb.db.engine.modification.Modification;
+import org.apache.iotdb.db.engine.modification.ModificationFile;
+import org.apache.iotdb.db.engine.storagegroup.TsFileResource;
+import org.apache.iotdb.tsfile.fileSystem.FSFactoryProducer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * RecoverCompactionTask finishes or rolls back the compaction interrupted by the last shutdown by
+ * scanning compaction.log before the files of the storage group are loaded. If the target file is
+ * complete, the modifications made during the compaction are written into it and the remaining
+ * source files are removed, otherwise the target file is removed and the source files stay.
+ */
+public class RecoverCompactionTask {
+
+  private static final Logger logger = LoggerFactory.getLogger(RecoverCompactionTask.class);
+
+  public static final String COMPACTION_MODIFICATION_FILE_NAME = "compaction.mods";
+
+  private String storageGroupSysDir;
+
+  public RecoverCompactionTask(String storageGroupSysDir) {
+    this.storageGroupSysDir = storageGroupSysDir;
+  }
+
+  public void recoverCompaction() throws IOException {
+    File logFile = new File(storageGroupSysDir, CompactionLogger.COMPACTION_LOG_NAME);
+    if (!logFile.exists()) {
+      return;
+    }
+
+    List<File> sourceFiles = new ArrayList<>();
+    File targetFile = null;
+    boolean isCompleted = false;
+    try (BufferedReader reader = new BufferedReader(new FileReader(logFile))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.startsWith(CompactionLogger.STR_SOURCE + " ")) {
+          sourceFiles.add(FSFactoryProducer.getFSFactory()
+              .getFile(line.substring(CompactionLogger.STR_SOURCE.length() + 1)));
+        } else if (line.startsWith(CompactionLogger.STR_TARGET + " ")) {
+          targetFile = FSFactoryProducer.getFSFactory()
+              .getFile(line.substring(CompactionLogger.STR_TARGET.length() + 1));
+        } else if (line.equals(CompactionLogger.STR_COMPACTION_END)) {
+          isCompleted = true;
+        }
+      }
+    }
+
+    File modsFile = new File(storageGroupSysDir, COMPACTION_MODIFICATION_FILE_NAME);
+    if (targetFile != null) {
+      TsFileResource target = new TsFileResource(targetFile);
+      if (isCompleted) {
+        logger.info("Compaction into {} is completed, remove its {} source files", targetFile,
+            sourceFiles.size());
+        writeModifications(modsFile, target);
+        for (File sourceFile : sourceFiles) {
+          new TsFileResource(sourceFile).remove();
+        }
+      } else {
+        logger.info("Compaction into {} is not completed, remove the target file", targetFile);
+        target.remove();
+      }
+    }
+    modsFile.delete();
+    logFile.delete();
+  }
+
+  private void writeModifications(File modsFile, TsFileResource target) throws IOException {
+    if (!modsFile.exists()) {
+      return;
+    }
+    // the modifications may already be written before the shutdown, which is harmless
+    ModificationFile compactionModification = new ModificationFile(modsFile.getPath());
+    try (ModificationFile targetModification = target.getModFile()) {
+      for (Modification modification : compactionModification.getModifications()) {
+        targetModification.write(modification);
+      }
+    } finally {
+      compactionModification.close();
+    }
+  }
+}
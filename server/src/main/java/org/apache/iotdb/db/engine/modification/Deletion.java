@@ -23,26 +23,41 @@ import java.util.Objects;
 import org.apache.iotdb.tsfile.read.common.Path;
 
 /**
- * Deletion is a delete operation on a timeseries.
+ * Deletion is a delete operation on a timeseries, which deletes the data within a closed time
+ * range. A deletion without a start time deletes all data before its end time.
  */
 public class Deletion extends Modification {
 
   /**
-   * data whose timestamp <= this field are to be deleted.
+   * data whose timestamp >= startTime and <= endTime are to be deleted.
    */
-  private long timestamp;
+  private long startTime;
+  private long endTime;
 
-  public Deletion(Path path, long versionNum, long timestamp) {
+  public Deletion(Path path, long versionNum, long endTime) {
+    this(path, versionNum, Long.MIN_VALUE, endTime);
+  }
+
+  public Deletion(Path path, long versionNum, long startTime, long endTime) {
     super(Type.DELETION, path, versionNum);
-    this.timestamp = timestamp;
+    this.startTime = startTime;
+    this.endTime = endTime;
+  }
+
+  public long getStartTime() {
+    return startTime;
+  }
+
+  public void setStartTime(long startTime) {
+    this.startTime = startTime;
   }
 
-  public long getTimestamp() {
-    return timestamp;
+  public long getEndTime() {
+    return endTime;
   }
 
-  public void setTimestamp(long timestamp) {
-    this.timestamp = timestamp;
+  public void setEndTime(long endTime) {
+    this.endTime = endTime;
   }
 
   @Override
@@ -54,11 +69,11 @@ public class Deletion extends Modification {
       return false;
     }
     Deletion del = (Deletion) obj;
-    return super.equals(obj) && del.timestamp == this.timestamp;
+    return super.equals(obj) && del.startTime == this.startTime && del.endTime == this.endTime;
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(super.hashCode(), timestamp);
+    return Objects.hash(super.hashCode(), startTime, endTime);
   }
 }
@@ -19,51 +19,77 @@
 
 package org.apache.iotdb.db.engine.modification;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
+import org.apache.iotdb.db.engine.cache.ModificationCache;
+import org.apache.iotdb.db.engine.modification.io.LocalBinaryModificationAccessor;
 import org.apache.iotdb.db.engine.modification.io.LocalTextModificationAccessor;
 import org.apache.iotdb.db.engine.modification.io.ModificationReader;
 import org.apache.iotdb.db.engine.modification.io.ModificationWriter;
 import org.apache.iotdb.tsfile.fileSystem.FSFactoryProducer;
+import org.apache.iotdb.tsfile.fileSystem.FSType;
+import org.apache.iotdb.tsfile.common.conf.TSFileDescriptor;
 
 /**
  * ModificationFile stores the Modifications of a TsFile or unseq file in another file in the same
  * directory. Methods in this class are highly synchronized for concurrency safety.
+ *
+ * The modifications read are indexed by their timeseries and kept in ModificationCache, so that
+ * queries do not read the file again and only go through the modifications of the series they
+ * read. The file is read again once its modifications are evicted from the cache or changed.
  */
 public class ModificationFile implements AutoCloseable {
 
   public static final String FILE_SUFFIX = ".mods";
 
-  private List<Modification> modifications;
   private ModificationWriter writer;
   private ModificationReader reader;
   private String filePath;
 
   /**
-   * Construct a ModificationFile using a file as its storage.
+   * Construct a ModificationFile using a file as its storage. A new local file is in the binary
+   * format, while an existing file is accessed in the format it is written in.
    *
    * @param filePath the path of the storage file.
    */
   public ModificationFile(String filePath) {
-    LocalTextModificationAccessor accessor = new LocalTextModificationAccessor(filePath);
-    this.writer = accessor;
-    this.reader = accessor;
-    this.filePath = filePath;
-  }
-
-  private void init() {
-    synchronized (this) {
-      modifications = (List<Modification>) reader.read();
+    File file = FSFactoryProducer.getFSFactory().getFile(filePath);
+    boolean isLocal = TSFileDescriptor.getInstance().getConfig().getTSFileStorageFs()
+        == FSType.LOCAL;
+    if (isLocal && (file.length() == 0 || LocalBinaryModificationAccessor.isBinaryFile(file))) {
+      LocalBinaryModificationAccessor accessor = new LocalBinaryModificationAccessor(filePath);
+      this.writer = accessor;
+      this.reader = accessor;
+    } else {
+      LocalTextModificationAccessor accessor = new LocalTextModificationAccessor(filePath);
+      this.writer = accessor;
+      this.reader = accessor;
     }
+    this.filePath = filePath;
   }
 
-  private void checkInit() {
-    if (modifications == null) {
-      init();
+  /**
+   * @return timeseries -> its modifications in the order they are written, which must not be
+   * modified
+   */
+  private Map<String, List<Modification>> getPathModifications() {
+    Map<String, List<Modification>> pathModifications =
+        ModificationCache.getInstance().get(filePath);
+    if (pathModifications == null) {
+      pathModifications = new HashMap<>();
+      for (Modification mod : reader.read()) {
+        pathModifications.computeIfAbsent(mod.getPathString(), p -> new ArrayList<>()).add(mod);
+      }
+      ModificationCache.getInstance().put(filePath, pathModifications);
     }
+    return pathModifications;
   }
 
   /**
@@ -72,31 +98,47 @@ public class ModificationFile implements AutoCloseable {
   public void close() throws IOException {
     synchronized (this) {
       writer.close();
-      modifications = null;
+      ModificationCache.getInstance().remove(filePath);
     }
   }
 
+  /**
+   * Abort the last modification.
+   */
   public void abort() throws IOException {
     synchronized (this) {
+      List<Modification> modifications = new ArrayList<>(reader.read());
       if (!modifications.isEmpty()) {
-        writer.abort();
-        modifications.remove(modifications.size() - 1);
+        abort(modifications.get(modifications.size() - 1));
+      }
+    }
+  }
+
+  /**
+   * Abort a modification written into this file, which may be followed by the ones written by
+   * other deletions.
+   */
+  public void abort(Modification mod) throws IOException {
+    synchronized (this) {
+      List<Modification> mods = getPathModifications().get(mod.getPathString());
+      if (mods != null && mods.contains(mod)) {
+        writer.abort(mod);
+        ModificationCache.getInstance().remove(filePath);
       }
     }
   }
 
   /**
-   * Write a modification in this file. The modification will first be written to the persistent
-   * store then the memory cache.
+   * Write a modification in this file. The modification will be written to the persistent store
+   * and the cached modifications of this file are dropped.
    *
    * @param mod the modification to be written.
    * @throws IOException if IOException is thrown when writing the modification to the store.
    */
   public void write(Modification mod) throws IOException {
     synchronized (this) {
-      checkInit();
       writer.write(mod);
-      modifications.add(mod);
+      ModificationCache.getInstance().remove(filePath);
     }
   }
 
@@ -107,22 +149,41 @@ public class ModificationFile implements AutoCloseable {
    */
   public Collection<Modification> getModifications() {
     synchronized (this) {
-      checkInit();
-      return new ArrayList<>(modifications);
+      return new ArrayList<>(reader.read());
     }
   }
 
+  /**
+   * @return the modifications of a timeseries in the order they are written
+   */
+  public List<Modification> getModifications(String path) {
+    synchronized (this) {
+      List<Modification> mods = getPathModifications().get(path);
+      return mods == null ? Collections.emptyList() : new ArrayList<>(mods);
+    }
+  }
+
+  /**
+   * @return the size of the storage file in bytes
+   */
+  public long getFileSize() {
+    return FSFactoryProducer.getFSFactory().getFile(filePath).length();
+  }
+
   public String getFilePath() {
     return filePath;
   }
 
   public void setFilePath(String filePath) {
+    ModificationCache.getInstance().remove(this.filePath);
     this.filePath = filePath;
   }
 
   public void remove() throws IOException {
-    close();
-    FSFactoryProducer.getFSFactory().getFile(filePath).delete();
+    synchronized (this) {
+      close();
+      FSFactoryProducer.getFSFactory().getFile(filePath).delete();
+    }
   }
 
 }
@@ -0,0 +1,209 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.engine.modification.io;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import org.apache.iotdb.db.engine.modification.Deletion;
+import org.apache.iotdb.db.engine.modification.Modification;
+import org.apache.iotdb.tsfile.fileSystem.FSFactoryProducer;
+import org.apache.iotdb.tsfile.read.common.Path;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * LocalBinaryModificationAccessor stores the modifications in a local file in a binary format,
+ * which is read without parsing text and appended without rewriting the file. The file starts
+ * with MAGIC_STRING, followed by records of [type, path, version, end time], where the path is
+ * its length and UTF-8 bytes, and the record of a deletion with a start time is followed by the
+ * start time. An abort record carries the fields of the modification it aborts, so a modification
+ * can be aborted even if others have been appended after it.
+ *
+ * A record partially written before a crash is ignored when the file is read and truncated
+ * before the next record is appended.
+ */
+public class LocalBinaryModificationAccessor implements ModificationReader, ModificationWriter,
+    AutoCloseable {
+
+  private static final Logger logger =
+      LoggerFactory.getLogger(LocalBinaryModificationAccessor.class);
+
+  public static final byte[] MAGIC_STRING = "IoTDBMods".getBytes(StandardCharsets.UTF_8);
+
+  private static final byte DELETION = 0;
+  private static final byte ABORT = 1;
+  private static final byte RANGE_DELETION = 2;
+  private static final byte RANGE_ABORT = 3;
+
+  private String filePath;
+  private DataOutputStream writer;
+  // the length of the complete records read, or -1 if the file is not read
+  private long validLength = -1;
+  // whether the incomplete record left by a crash has been dropped before appending
+  private boolean tailChecked = false;
+
+  public LocalBinaryModificationAccessor(String filePath) {
+    this.filePath = filePath;
+  }
+
+  /**
+   * @return whether the file is in this format, i.e., it starts with MAGIC_STRING
+   */
+  public static boolean isBinaryFile(File file) {
+    if (file.length() < MAGIC_STRING.length) {
+      return false;
+    }
+    byte[] head = new byte[MAGIC_STRING.length];
+    try (DataInputStream inputStream = new DataInputStream(
+        FSFactoryProducer.getFSFactory().getBufferedInputStream(file.getPath()))) {
+      inputStream.readFully(head);
+    } catch (IOException e) {
+      return false;
+    }
+    return Arrays.equals(head, MAGIC_STRING);
+  }
+
+  @Override
+  public Collection<Modification> read() {
+    List<Modification> modificationList = new ArrayList<>();
+    File file = FSFactoryProducer.getFSFactory().getFile(filePath);
+    if (!file.exists()) {
+      logger.debug("No modification has been written to this file");
+      validLength = 0;
+      return modificationList;
+    }
+
+    long length = 0;
+    try (DataInputStream inputStream = new DataInputStream(
+        FSFactoryProducer.getFSFactory().getBufferedInputStream(filePath))) {
+      byte[] head = new byte[MAGIC_STRING.length];
+      inputStream.readFully(head);
+      if (!Arrays.equals(head, MAGIC_STRING)) {
+        throw new IOException("The modification file " + filePath + " is not in binary format");
+      }
+      length = MAGIC_STRING.length;
+      int type;
+      while ((type = inputStream.read()) >= 0) {
+        int pathLength = inputStream.readInt();
+        if (pathLength < 0) {
+          throw new IOException("Illegal path length " + pathLength + " in " + filePath);
+        }
+        byte[] pathBytes = new byte[pathLength];
+        inputStream.readFully(pathBytes);
+        long versionNum = inputStream.readLong();
+        long endTime = inputStream.readLong();
+        long startTime = Long.MIN_VALUE;
+        length += 1 + Integer.BYTES + pathLength + 2 * Long.BYTES;
+        if (type == RANGE_DELETION || type == RANGE_ABORT) {
+          startTime = inputStream.readLong();
+          length += Long.BYTES;
+        }
+        Deletion deletion = new Deletion(new Path(new String(pathBytes, StandardCharsets.UTF_8)),
+            versionNum, startTime, endTime);
+        if (type == DELETION || type == RANGE_DELETION) {
+          modificationList.add(deletion);
+        } else if (type == ABORT || type == RANGE_ABORT) {
+          int index = modificationList.lastIndexOf(deletion);
+          if (index >= 0) {
+            modificationList.remove(index);
+          }
+        } else {
+          throw new IOException("Unknown modification type " + type + " in " + filePath);
+        }
+      }
+      validLength = length;
+    } catch (EOFException e) {
+      logger.warn("The last modification in {} is incomplete and ignored", filePath);
+      validLength = length;
+    } catch (IOException e) {
+      logger.error("An error occurred when reading modifications, and the remaining modifications "
+          + "were ignored.", e);
+    }
+    return modificationList;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (writer != null) {
+      writer.close();
+      writer = null;
+    }
+  }
+
+  @Override
+  public void abort(Modification mod) throws IOException {
+    writeRecord(ABORT, RANGE_ABORT, (Deletion) mod);
+  }
+
+  @Override
+  public void write(Modification mod) throws IOException {
+    writeRecord(DELETION, RANGE_DELETION, (Deletion) mod);
+  }
+
+  private void writeRecord(byte type, byte rangeType, Deletion deletion) throws IOException {
+    if (writer == null) {
+      openWriter();
+    }
+    boolean hasStartTime = deletion.getStartTime() != Long.MIN_VALUE;
+    byte[] pathBytes = deletion.getPathString().getBytes(StandardCharsets.UTF_8);
+    writer.write(hasStartTime ? rangeType : type);
+    writer.writeInt(pathBytes.length);
+    writer.write(pathBytes);
+    writer.writeLong(deletion.getVersionNum());
+    writer.writeLong(deletion.getEndTime());
+    if (hasStartTime) {
+      writer.writeLong(deletion.getStartTime());
+    }
+    writer.flush();
+  }
+
+  private void openWriter() throws IOException {
+    File file = FSFactoryProducer.getFSFactory().getFile(filePath);
+    if (!tailChecked) {
+      if (validLength < 0) {
+        read();
+      }
+      if (validLength >= 0 && file.length() > validLength) {
+        // drop the incomplete record
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+          randomAccessFile.setLength(validLength);
+        }
+      }
+      // the records appended by this accessor are complete, so later reopenings keep them
+      tailChecked = true;
+    }
+    boolean isNew = file.length() == 0;
+    writer = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+    if (isNew) {
+      writer.write(MAGIC_STRING);
+    }
+  }
+}
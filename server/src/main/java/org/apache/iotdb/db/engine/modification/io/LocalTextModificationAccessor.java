@@ -35,7 +35,9 @@ import java.util.List;
 
 /**
  * LocalTextModificationAccessor uses a file on local file system to store the modifications
- * in text format, and writes modifications by appending to the tail of the file.
+ * in text format, and writes modifications by appending to the tail of the file. New modification
+ * files are in the format of LocalBinaryModificationAccessor unless the files are not local, and
+ * the text format is kept for the files written before.
  */
 public class LocalTextModificationAccessor implements ModificationReader, ModificationWriter, AutoCloseable {
 
@@ -87,8 +89,11 @@ public class LocalTextModificationAccessor implements ModificationReader, Modifi
     }
   }
 
+  /**
+   * The text format can only abort the last modification, so mod must be the last one written.
+   */
   @Override
-  public void abort() throws IOException {
+  public void abort(Modification mod) throws IOException {
     if (writer == null) {
       writer = FSFactoryProducer.getFSFactory().getBufferedWriter(filePath, true);
     }
@@ -121,31 +126,43 @@ public class LocalTextModificationAccessor implements ModificationReader, Modifi
     throw new IOException("Unknown modification type: " + fields[0]);
   }
 
+  /**
+   * The start time is appended only if the deletion has one, so that a file without range
+   * deletions can still be read by the older versions.
+   */
   private static String encodeDeletion(Deletion del) {
-    return del.getType().toString() + SEPARATOR + del.getPathString()
+    String encoded = del.getType().toString() + SEPARATOR + del.getPathString()
         + SEPARATOR + del.getVersionNum() + SEPARATOR
-        + del.getTimestamp();
+        + del.getEndTime();
+    if (del.getStartTime() != Long.MIN_VALUE) {
+      encoded += SEPARATOR + del.getStartTime();
+    }
+    return encoded;
   }
 
   private static Deletion decodeDeletion(String[] fields) throws IOException {
-    if (fields.length != 4) {
+    if (fields.length != 4 && fields.length != 5) {
       throw new IOException("Incorrect deletion fields number: " + fields.length);
     }
 
     String path = fields[1];
     long versionNum;
-    long timestamp;
+    long endTime;
+    long startTime = Long.MIN_VALUE;
     try {
       versionNum = Long.parseLong(fields[2]);
     } catch (NumberFormatException e) {
       throw new IOException("Invalid version number: " + fields[2]);
     }
     try {
-      timestamp = Long.parseLong(fields[3]);
+      endTime = Long.parseLong(fields[3]);
+      if (fields.length == 5) {
+        startTime = Long.parseLong(fields[4]);
+      }
     } catch (NumberFormatException e) {
-      throw new IOException("Invalid timestamp: " + fields[3]);
+      throw new IOException("Invalid timestamp: " + String.join(SEPARATOR, fields));
     }
 
-    return new Deletion(new Path(path), versionNum, timestamp);
+    return new Deletion(new Path(path), versionNum, startTime, endTime);
   }
 }
@@ -42,7 +42,10 @@ public interface ModificationWriter {
   void close() throws IOException;
 
   /**
-   * Abort last modification.
+   * Abort a modification written before.
+   *
+   * @param mod the modification to be aborted, which must be the last one if the medium can only
+   *            abort the last modification
    */
-  void abort() throws IOException;
+  void abort(Modification mod) throws IOException;
 }
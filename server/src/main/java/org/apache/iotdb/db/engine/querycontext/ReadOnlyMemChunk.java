@@ -120,6 +120,14 @@ public class ReadOnlyMemChunk {
     return chunkPointReader;
   }
 
+  /**
+   * @return a new reader over the whole chunk, so that the chunk can be read by more than one
+   * series reader of a query
+   */
+  public IPointReader newPointReader() {
+    return chunkData.getIterator(floatPrecision, encoding);
+  }
+
   public long getVersion() {
     return version;
   }
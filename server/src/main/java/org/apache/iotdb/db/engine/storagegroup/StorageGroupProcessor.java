@@ -31,6 +31,7 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -38,28 +39,40 @@ import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import org.apache.commons.io.FileUtils;
+import org.apache.iotdb.db.conf.IoTDBConfig;
 import org.apache.iotdb.db.conf.IoTDBConstant;
 import org.apache.iotdb.db.conf.IoTDBDescriptor;
 import org.apache.iotdb.db.conf.directories.DirectoryManager;
 import org.apache.iotdb.db.engine.StorageEngine;
+import org.apache.iotdb.db.engine.cache.ChunkMetadataCache;
 import org.apache.iotdb.db.engine.fileSystem.SystemFileFactory;
 import org.apache.iotdb.db.engine.flush.TsFileFlushPolicy;
 import org.apache.iotdb.db.engine.merge.manage.MergeManager;
 import org.apache.iotdb.db.engine.merge.manage.MergeResource;
+import org.apache.iotdb.db.engine.merge.recover.MergeLogger;
+import org.apache.iotdb.db.engine.merge.selector.CompactionFileSelector;
+import org.apache.iotdb.db.engine.merge.selector.CostBasedMergeFileSelector;
 import org.apache.iotdb.db.engine.merge.selector.IMergeFileSelector;
 import org.apache.iotdb.db.engine.merge.selector.MaxFileMergeFileSelector;
 import org.apache.iotdb.db.engine.merge.selector.MaxSeriesMergeFileSelector;
 import org.apache.iotdb.db.engine.merge.selector.MergeFileStrategy;
+import org.apache.iotdb.db.engine.merge.task.CompactionTask;
 import org.apache.iotdb.db.engine.merge.task.MergeTask;
+import org.apache.iotdb.db.engine.merge.task.RecoverCompactionTask;
 import org.apache.iotdb.db.engine.merge.task.RecoverMergeTask;
 import org.apache.iotdb.db.engine.modification.Deletion;
 import org.apache.iotdb.db.engine.modification.Modification;
 import org.apache.iotdb.db.engine.modification.ModificationFile;
 import org.apache.iotdb.db.engine.querycontext.QueryDataSource;
 import org.apache.iotdb.db.engine.querycontext.ReadOnlyMemChunk;
+import org.apache.iotdb.db.engine.storagegroup.timeindex.FileIntervalIndex;
+import org.apache.iotdb.db.engine.tier.ColdFileMover;
 import org.apache.iotdb.db.engine.version.SimpleFileVersionController;
 import org.apache.iotdb.db.engine.version.VersionController;
 import org.apache.iotdb.db.exception.DiskSpaceInsufficientException;
@@ -79,6 +92,7 @@ import org.apache.iotdb.db.qp.physical.crud.DeletePlan;
 import org.apache.iotdb.db.qp.physical.crud.InsertPlan;
 import org.apache.iotdb.db.qp.physical.crud.InsertTabletPlan;
 import org.apache.iotdb.db.query.context.QueryContext;
+import org.apache.iotdb.db.query.control.FileReaderManager;
 import org.apache.iotdb.db.query.control.QueryFileManager;
 import org.apache.iotdb.db.utils.CopyOnReadLinkedList;
 import org.apache.iotdb.db.writelog.recover.TsFileRecoverPerformer;
@@ -172,6 +186,15 @@ public class StorageGroupProcessor {
   private List<TsFileResource> upgradeUnseqFileList = new LinkedList<>();
 
   private CopyOnReadLinkedList<TsFileProcessor> closingUnSequenceTsFileProcessor = new CopyOnReadLinkedList<>();
+
+  /**
+   * the version of sequenceFileTreeSet and unSequenceFileList, increased when a file is added,
+   * removed, closed or merged, after which the interval indexes of the files are rebuilt by the
+   * next query
+   */
+  private final AtomicLong fileListVersion = new AtomicLong();
+  private volatile FileIntervalIndex seqFileIntervalIndex;
+  private volatile FileIntervalIndex unseqFileIntervalIndex;
   /*
    * time partition id -> map, which contains
    * device -> global latest timestamp of each device latestTimeForEachDevice caches non-flushed
@@ -205,7 +228,13 @@ public class StorageGroupProcessor {
    * deletion/update such that after they are persisted, the order of insertions, deletions and
    * updates can be re-determined.
    */
-  private HashMap<Long, VersionController> timePartitionIdVersionControllerMap = new HashMap<>();
+  private Map<Long, VersionController> timePartitionIdVersionControllerMap =
+      new ConcurrentHashMap<>();
+  /**
+   * time partition id -> the lock that orders the deletions on the partition, which are not
+   * serialized by the locks of the whole storage group.
+   */
+  private Map<Long, ReentrantLock> partitionDeletionLocks = new ConcurrentHashMap<>();
   /**
    * mergeLock is to be used in the merge process. Concurrent queries, deletions and merges may
    * result in losing some deletion in the merged new file, so a lock is necessary.
@@ -218,6 +247,12 @@ public class StorageGroupProcessor {
   private ModificationFile mergingModification;
   private volatile boolean isMerging = false;
   private long mergeStartTime;
+  /**
+   * This is the modification file of the compaction of sequence files, as deletions during the
+   * compaction are written into the source files only.
+   */
+  private ModificationFile compactionModification;
+  private volatile boolean isCompacting = false;
   /**
    * when the data in a storage group is older than dataTTL, it is considered invalid and will be
    * eventually removed.
@@ -266,22 +301,36 @@ public class StorageGroupProcessor {
 
   private void recover() throws StorageGroupProcessorException {
     logger.info("recover Storage Group  {}", storageGroupName);
+    TsFileResourceLoader seqResourceLoader = new TsFileResourceLoader(storageGroupSysDir, true);
+    TsFileResourceLoader unseqResourceLoader = new TsFileResourceLoader(storageGroupSysDir,
+        false);
 
     try {
+      // finish or roll back the compaction interrupted by the last shutdown before listing files
+      new RecoverCompactionTask(storageGroupSysDir.getPath()).recoverCompaction();
+
       // collect candidate TsFiles from sequential and unsequential data directory
       Pair<List<TsFileResource>, List<TsFileResource>> seqTsFilesPair = getAllFiles(
               DirectoryManager.getInstance().getAllSequenceFileFolders());
-      List<TsFileResource> tmpSeqTsFiles = seqTsFilesPair.left;
+      List<TsFileResource> tmpSeqTsFiles = addColdFiles(seqTsFilesPair.left,
+          DirectoryManager.getInstance().getAllColdSequenceFileFolders());
       List<TsFileResource> oldSeqTsFiles = seqTsFilesPair.right;
       upgradeSeqFileList.addAll(oldSeqTsFiles);
       Pair<List<TsFileResource>, List<TsFileResource>> unseqTsFilesPair = getAllFiles(
               DirectoryManager.getInstance().getAllUnSequenceFileFolders());
-      List<TsFileResource> tmpUnseqTsFiles = unseqTsFilesPair.left;
+      List<TsFileResource> tmpUnseqTsFiles = addColdFiles(unseqTsFilesPair.left,
+          DirectoryManager.getInstance().getAllColdUnSequenceFileFolders());
       List<TsFileResource> oldUnseqTsFiles = unseqTsFilesPair.right;
       upgradeUnseqFileList.addAll(oldUnseqTsFiles);
 
-      recoverSeqFiles(tmpSeqTsFiles);
-      recoverUnseqFiles(tmpUnseqTsFiles);
+      // a merge being recovered may change the resources, so they are recovered one by one then
+      boolean hasMergeLog = SystemFileFactory.INSTANCE.getFile(storageGroupSysDir,
+          MergeLogger.MERGE_LOG_NAME).exists();
+      boolean lazy = IoTDBDescriptor.getInstance().getConfig().isLazyLoadColdPartitionResources();
+      recoverSeqFiles(tmpSeqTsFiles, hasMergeLog ? Collections.emptySet()
+          : seqResourceLoader.load(tmpSeqTsFiles, lazy));
+      recoverUnseqFiles(tmpUnseqTsFiles, hasMergeLog ? Collections.emptySet()
+          : unseqResourceLoader.load(tmpUnseqTsFiles, lazy));
 
       for (TsFileResource resource : sequenceFileTreeSet) {
         long partitionNum = resource.getTimePartition();
@@ -316,15 +365,30 @@ public class StorageGroupProcessor {
     }
 
 
+    seqResourceLoader.writeIndexes(sequenceFileTreeSet);
+    unseqResourceLoader.writeIndexes(unSequenceFileList);
+
+    Set<Long> lazyPartitions = new HashSet<>();
     for (TsFileResource resource : sequenceFileTreeSet) {
       long timePartitionId = resource.getTimePartition();
+      Map<String, Long> endTimeMap;
+      if (seqResourceLoader.isLazyPartition(timePartitionId)) {
+        // the latest times of the whole partition are applied at once
+        if (!lazyPartitions.add(timePartitionId)) {
+          continue;
+        }
+        endTimeMap = seqResourceLoader.getLatestTimeForEachDevice(timePartitionId);
+      } else {
+        endTimeMap = resource.getEndTimeMap();
+      }
       latestTimeForEachDevice.computeIfAbsent(timePartitionId, l -> new HashMap<>())
-          .putAll(resource.getEndTimeMap());
+          .putAll(endTimeMap);
       partitionLatestFlushedTimeForEachDevice
           .computeIfAbsent(timePartitionId, id -> new HashMap<>())
-          .putAll(resource.getEndTimeMap());
-      globalLatestFlushedTimeForEachDevice.putAll(resource.getEndTimeMap());
+          .putAll(endTimeMap);
+      globalLatestFlushedTimeForEachDevice.putAll(endTimeMap);
     }
+    degradeTimeIndexes();
   }
 
   private void updatePartitionFileVersion(long partitionNum, long fileVersion) {
@@ -353,7 +417,7 @@ public class StorageGroupProcessor {
         globalLatestFlushedTimeForEachDevice.putAll(resource.getEndTimeMap());
 
         // set all the covered partition's LatestFlushedTime to Long.MAX_VALUE
-        long partitionId = StorageEngine.getTimePartition(resource.startTimeMap.get(deviceId));
+        long partitionId = StorageEngine.getTimePartition(resource.getStartTime(deviceId));
         while (partitionId <= endTimePartitionId) {
           partitionLatestFlushedTimeForEachDevice.computeIfAbsent(partitionId, l -> new HashMap<>())
                   .put(deviceId, Long.MAX_VALUE);
@@ -488,6 +552,72 @@ public class StorageGroupProcessor {
     return new Pair<>(ret, upgradeRet);
   }
 
+  /**
+   * Add the files in the cold tier to the files in the data dirs in the order of their versions. A
+   * file in both tiers was being moved when the system stopped after it had been copied, so the
+   * move is finished by removing its hot copy.
+   */
+  private List<TsFileResource> addColdFiles(List<TsFileResource> hotFiles,
+      List<String> coldFolders) throws IOException {
+    // partition folder and file name -> the file in the cold tier
+    Map<String, TsFileResource> coldFiles = new HashMap<>();
+    for (String baseDir : coldFolders) {
+      FSFactory coldFSFactory = FSFactoryProducer.getFSFactory(baseDir);
+      File fileFolder = coldFSFactory.getFile(baseDir, storageGroupName);
+      File[] partitionFolders = fileFolder.exists() ? fileFolder.listFiles() : null;
+      if (partitionFolders == null) {
+        continue;
+      }
+      for (File partitionFolder : partitionFolders) {
+        if (!partitionFolder.isDirectory()) {
+          continue;
+        }
+        // the files of an interrupted copy
+        for (File file : coldFSFactory.listFilesBySuffix(partitionFolder.getPath(),
+            ColdFileMover.MIGRATING_SUFFIX)) {
+          file.delete();
+        }
+        for (File file : coldFSFactory.listFilesBySuffix(partitionFolder.getPath(),
+            TSFILE_SUFFIX)) {
+          TsFileResource resource = new TsFileResource(file);
+          resource.setCold(true);
+          coldFiles.put(partitionFolder.getName() + File.separator + file.getName(), resource);
+        }
+      }
+    }
+    if (coldFiles.isEmpty()) {
+      return hotFiles;
+    }
+
+    List<TsFileResource> files = new ArrayList<>(coldFiles.values());
+    for (TsFileResource hotFile : hotFiles) {
+      File file = hotFile.getFile();
+      TsFileResource coldFile = coldFiles
+          .get(file.getParentFile().getName() + File.separator + file.getName());
+      if (coldFile == null) {
+        files.add(hotFile);
+      } else {
+        logger.info("{} finishes moving {} to the cold tier", storageGroupName, file);
+        hotFile.moveToColdTier(coldFile.getFile());
+      }
+    }
+    files.sort((o1, o2) -> compareFileName(o1.getFile(), o2.getFile()));
+    return files;
+  }
+
+  /**
+   * @return the index of the last file in the data dirs, which may be continued, or -1 if there is
+   * none, as the files in the cold tier are always sealed
+   */
+  static int getLastHotFileIndex(List<TsFileResource> tsFiles) {
+    for (int i = tsFiles.size() - 1; i >= 0; i--) {
+      if (!tsFiles.get(i).isCold()) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
   private void continueFailedRenames(File fileFolder, String suffix) {
     File[] files = fsFactory.listFilesBySuffix(fileFolder.getAbsolutePath(), suffix);
     if (files != null) {
@@ -502,14 +632,28 @@ public class StorageGroupProcessor {
     }
   }
 
-  private void recoverSeqFiles(List<TsFileResource> tsFiles) {
+  /**
+   * @param loadedFiles the sealed files whose resources are loaded by TsFileResourceLoader
+   */
+  private void recoverSeqFiles(List<TsFileResource> tsFiles, Set<TsFileResource> loadedFiles) {
+    int lastFileIndex = getLastHotFileIndex(tsFiles);
     for (int i = 0; i < tsFiles.size(); i++) {
       TsFileResource tsFileResource = tsFiles.get(i);
+      if (loadedFiles.contains(tsFileResource)) {
+        sequenceFileTreeSet.add(tsFileResource);
+        continue;
+      }
+      if (tsFileResource.isCold()) {
+        if (loadColdFile(tsFileResource)) {
+          sequenceFileTreeSet.add(tsFileResource);
+        }
+        continue;
+      }
       long timePartitionId = tsFileResource.getTimePartition();
 
       TsFileRecoverPerformer recoverPerformer = new TsFileRecoverPerformer(storageGroupName + "-",
           getVersionControllerByTimePartitionId(timePartitionId), tsFileResource, false,
-          i == tsFiles.size() - 1);
+          i == lastFileIndex);
 
       RestorableTsFileIOWriter writer;
       try {
@@ -518,7 +662,7 @@ public class StorageGroupProcessor {
         logger.warn("Skip TsFile: {} because of error in recover: ", tsFileResource.getPath(), e);
         continue;
       }
-      if (i != tsFiles.size() - 1 || !writer.canWrite()) {
+      if (i != lastFileIndex || !writer.canWrite()) {
         // not the last file or cannot write, just close it
         tsFileResource.setClosed(true);
       } else if (writer.canWrite()) {
@@ -530,7 +674,7 @@ public class StorageGroupProcessor {
         workSequenceTsFileProcessors
             .put(timePartitionId, tsFileProcessor);
         tsFileResource.setProcessor(tsFileProcessor);
-        tsFileResource.endTimeMap.clear();
+        tsFileResource.clearEndTimes();
         tsFileResource.removeResourceFile();
         tsFileProcessor.setTimeRangeId(timePartitionId);
         writer.makeMetadataVisible();
@@ -539,14 +683,25 @@ public class StorageGroupProcessor {
     }
   }
 
-  private void recoverUnseqFiles(List<TsFileResource> tsFiles) {
+  private void recoverUnseqFiles(List<TsFileResource> tsFiles, Set<TsFileResource> loadedFiles) {
+    int lastFileIndex = getLastHotFileIndex(tsFiles);
     for (int i = 0; i < tsFiles.size(); i++) {
       TsFileResource tsFileResource = tsFiles.get(i);
+      if (loadedFiles.contains(tsFileResource)) {
+        unSequenceFileList.add(tsFileResource);
+        continue;
+      }
+      if (tsFileResource.isCold()) {
+        if (loadColdFile(tsFileResource)) {
+          unSequenceFileList.add(tsFileResource);
+        }
+        continue;
+      }
       long timePartitionId = tsFileResource.getTimePartition();
 
       TsFileRecoverPerformer recoverPerformer = new TsFileRecoverPerformer(storageGroupName + "-",
           getVersionControllerByTimePartitionId(timePartitionId), tsFileResource, true,
-          i == tsFiles.size() - 1);
+          i == lastFileIndex);
       RestorableTsFileIOWriter writer;
       try {
         writer = recoverPerformer.recover();
@@ -554,7 +709,7 @@ public class StorageGroupProcessor {
         logger.warn("Skip TsFile: {} because of error in recover: ", tsFileResource.getPath(), e);
         continue;
       }
-      if (i != tsFiles.size() - 1 || !writer.canWrite()) {
+      if (i != lastFileIndex || !writer.canWrite()) {
         // not the last file or cannot write, just close it
         tsFileResource.setClosed(true);
       } else if (writer.canWrite()) {
@@ -574,6 +729,24 @@ public class StorageGroupProcessor {
     }
   }
 
+  /**
+   * A file in the cold tier is sealed and is not rewritten by merges, so it is loaded from its
+   * .resource file without TsFileRecoverPerformer, which would open it for writing.
+   *
+   * @return whether the file is loaded
+   */
+  private boolean loadColdFile(TsFileResource tsFileResource) {
+    try {
+      tsFileResource.deserialize();
+      tsFileResource.setClosed(true);
+      return true;
+    } catch (IOException e) {
+      logger.warn("Skip TsFile: {} because its resource cannot be loaded: ",
+          tsFileResource.getPath(), e);
+      return false;
+    }
+  }
+
   // ({systemTime}-{versionNum}-{mergeNum}.tsfile)
   private int compareFileName(File o1, File o2) {
     String[] items1 = o1.getName().replace(TSFILE_SUFFIX, "")
@@ -602,12 +775,12 @@ public class StorageGroupProcessor {
       long timePartitionId = StorageEngine.getTimePartition(insertPlan.getTime());
 
       latestTimeForEachDevice.computeIfAbsent(timePartitionId, l -> new HashMap<>());
-      partitionLatestFlushedTimeForEachDevice.computeIfAbsent(timePartitionId, id -> new HashMap<>());
+      Long lastFlushTime = partitionLatestFlushedTimeForEachDevice
+          .computeIfAbsent(timePartitionId, id -> new HashMap<>()).get(insertPlan.getDeviceId());
 
       // insert to sequence or unSequence file
       insertToTsFileProcessor(insertPlan,
-          insertPlan.getTime() > partitionLatestFlushedTimeForEachDevice.get(timePartitionId)
-              .getOrDefault(insertPlan.getDeviceId(), Long.MIN_VALUE));
+          lastFlushTime == null || insertPlan.getTime() > lastFlushTime);
 
     } finally {
       writeUnlock();
@@ -736,13 +909,11 @@ public class StorageGroupProcessor {
       return;
     }
 
-    latestTimeForEachDevice.computeIfAbsent(timePartitionId, t -> new HashMap<>());
     // try to update the latest time of the device of this tsRecord
-    if (sequence && latestTimeForEachDevice.get(timePartitionId)
-        .getOrDefault(insertTabletPlan.getDeviceId(), Long.MIN_VALUE)
-        < insertTabletPlan.getTimes()[end - 1]) {
-      latestTimeForEachDevice.get(timePartitionId)
-          .put(insertTabletPlan.getDeviceId(), insertTabletPlan.getTimes()[end - 1]);
+    if (sequence) {
+      updateLatestTime(latestTimeForEachDevice.computeIfAbsent(timePartitionId,
+          t -> new HashMap<>()), insertTabletPlan.getDeviceId(),
+          insertTabletPlan.getTimes()[end - 1]);
     }
 
     // check memtable size and may async try to flush the work memtable
@@ -751,8 +922,22 @@ public class StorageGroupProcessor {
     }
   }
 
+  /**
+   * Update the last cache of the measurements with the last row of the plan. If the plan carries
+   * the nodes of its measurements, the caller must hold the read lock of their device node, see
+   * InsertTabletPlan.setMeasurementMNodes(); otherwise the nodes are looked up and locked here.
+   */
   public void tryToUpdateBatchInsertLastCache(InsertTabletPlan plan, Long latestFlushedTime)
       throws WriteProcessException {
+    LeafMNode[] measurementMNodes = plan.getMeasurementMNodes();
+    if (measurementMNodes != null) {
+      assert isDeviceNodeReadLocked(measurementMNodes);
+      for (int i = 0; i < measurementMNodes.length; i++) {
+        measurementMNodes[i]
+            .updateCachedLast(plan.composeLastTimeValuePair(i), true, latestFlushedTime);
+      }
+      return;
+    }
     MNode node = null;
     try {
       node = MManager.getInstance().getDeviceNodeWithAutoCreateAndReadLock(plan.getDeviceId());
@@ -786,11 +971,8 @@ public class StorageGroupProcessor {
     tsFileProcessor.insert(insertPlan);
 
     // try to update the latest time of the device of this tsRecord
-    if (latestTimeForEachDevice.get(timePartitionId)
-        .getOrDefault(insertPlan.getDeviceId(), Long.MIN_VALUE) < insertPlan.getTime()) {
-      latestTimeForEachDevice.get(timePartitionId)
-          .put(insertPlan.getDeviceId(), insertPlan.getTime());
-    }
+    updateLatestTime(latestTimeForEachDevice.get(timePartitionId), insertPlan.getDeviceId(),
+        insertPlan.getTime());
 
     long globalLatestFlushTime = globalLatestFlushedTimeForEachDevice.getOrDefault(
         insertPlan.getDeviceId(), Long.MIN_VALUE);
@@ -803,8 +985,38 @@ public class StorageGroupProcessor {
     }
   }
 
+  /**
+   * Put the time as the latest time of the device if it is later, with a single lookup of the
+   * device in the common case.
+   */
+  private static void updateLatestTime(Map<String, Long> latestTimeMap, String deviceId,
+      long time) {
+    Long latestTime = latestTimeMap.get(deviceId);
+    if (latestTime == null || latestTime < time) {
+      latestTimeMap.put(deviceId, time);
+    }
+  }
+
+  /**
+   * Update the last cache of the measurements with the plan. If the plan carries the nodes of its
+   * measurements, the caller must hold the read lock of their device node, see
+   * InsertPlan.setMeasurementMNodes(); otherwise the nodes are looked up and locked here.
+   */
   public void tryToUpdateInsertLastCache(InsertPlan plan, Long latestFlushedTime)
       throws WriteProcessException {
+    LeafMNode[] measurementMNodes = plan.getMeasurementMNodes();
+    if (measurementMNodes != null) {
+      assert isDeviceNodeReadLocked(measurementMNodes);
+      try {
+        for (int i = 0; i < measurementMNodes.length; i++) {
+          measurementMNodes[i]
+              .updateCachedLast(plan.composeTimeValuePair(i), true, latestFlushedTime);
+        }
+      } catch (QueryProcessException e) {
+        throw new WriteProcessException(e);
+      }
+      return;
+    }
     MNode node = null;
     try {
       node = MManager.getInstance().getDeviceNodeWithAutoCreateAndReadLock(plan.getDeviceId());
@@ -825,6 +1037,11 @@ public class StorageGroupProcessor {
     }
   }
 
+  private static boolean isDeviceNodeReadLocked(LeafMNode[] measurementMNodes) {
+    return measurementMNodes.length == 0
+        || ((InternalMNode) measurementMNodes[0].getParent()).isReadLockedByCurrentThread();
+  }
+
   private TsFileProcessor getOrCreateTsFileProcessor(long timeRangeId, boolean sequence) {
     TsFileProcessor tsFileProcessor = null;
     try {
@@ -885,6 +1102,7 @@ public class StorageGroupProcessor {
         TsFileProcessor newProcessor = createTsFileProcessor(sequence, timeRangeId);
         tsFileProcessorTreeMap.put(timeRangeId, newProcessor);
         fileList.add(newProcessor.getTsFileResource());
+        updateFileListVersion();
         res = newProcessor;
       } else {
         res = tsFileProcessorTreeMap.get(timeRangeId);
@@ -1039,6 +1257,7 @@ public class StorageGroupProcessor {
       this.workUnsequenceTsFileProcessors.clear();
       this.sequenceFileTreeSet.clear();
       this.unSequenceFileList.clear();
+      updateFileListVersion();
       this.partitionLatestFlushedTimeForEachDevice.clear();
       this.globalLatestFlushedTimeForEachDevice.clear();
       this.latestTimeForEachDevice.clear();
@@ -1061,7 +1280,9 @@ public class StorageGroupProcessor {
   }
 
   /**
-   * Iterate each TsFile and try to lock and remove those out of TTL.
+   * Drop the time partitions that are entirely out of TTL, each as a whole, and remove the files
+   * out of TTL in the partition across the TTL bound one by one. The sequence files that are
+   * partially out of TTL are left to compact(), which trims them.
    */
   public synchronized void checkFilesTTL() {
     if (dataTTL == Long.MAX_VALUE) {
@@ -1073,11 +1294,24 @@ public class StorageGroupProcessor {
       logger.debug("{}: TTL removing files before {}", storageGroupName, new Date(timeLowerBound));
     }
 
+    // the partitions before the one of the bound are entirely out of TTL, which is only true for
+    // a positive bound because the partition of a negative time is rounded towards zero
+    long boundPartition = timeLowerBound > 0 ? StorageEngine.getTimePartition(timeLowerBound)
+        : Long.MIN_VALUE;
+    if (boundPartition != Long.MIN_VALUE) {
+      dropExpiredPartitions(boundPartition);
+    }
+
     // copy to avoid concurrent modification of deletion
     List<TsFileResource> seqFiles = new ArrayList<>(sequenceFileTreeSet);
     List<TsFileResource> unseqFiles = new ArrayList<>(unSequenceFileList);
 
     for (TsFileResource tsFileResource : seqFiles) {
+      // the sequence files are ordered by their partitions and no later partition can expire
+      if (boundPartition != Long.MIN_VALUE
+          && tsFileResource.getTimePartition() > boundPartition) {
+        break;
+      }
       checkFileTTL(tsFileResource, timeLowerBound, true);
     }
     for (TsFileResource tsFileResource : unseqFiles) {
@@ -1085,6 +1319,98 @@ public class StorageGroupProcessor {
     }
   }
 
+  /**
+   * Remove all files of each partition before boundPartition at once, so that the TTL check costs
+   * one lock per partition instead of one per file and a query never sees a partially dropped
+   * partition. The unsealed files of such partitions are closed, which removes their WALs, and the
+   * partitions are dropped by a later check after the files are sealed. A partition with a file
+   * being merged or compacted is also left to a later check.
+   */
+  private void dropExpiredPartitions(long boundPartition) {
+    List<TsFileResource> droppedFiles = new ArrayList<>();
+    writeLock();
+    mergeLock.writeLock().lock();
+    try {
+      for (TsFileProcessor processor : new ArrayList<>(
+          workSequenceTsFileProcessors.headMap(boundPartition).values())) {
+        asyncCloseOneTsFileProcessor(true, processor);
+      }
+      for (TsFileProcessor processor : new ArrayList<>(
+          workUnsequenceTsFileProcessors.headMap(boundPartition).values())) {
+        asyncCloseOneTsFileProcessor(false, processor);
+      }
+
+      // partition -> its files
+      Map<Long, List<TsFileResource>> partitionFiles = new TreeMap<>();
+      Set<Long> busyPartitions = new HashSet<>();
+      collectExpiredFiles(sequenceFileTreeSet, boundPartition, partitionFiles, busyPartitions);
+      collectExpiredFiles(unSequenceFileList, boundPartition, partitionFiles, busyPartitions);
+      for (Entry<Long, List<TsFileResource>> entry : partitionFiles.entrySet()) {
+        long partition = entry.getKey();
+        if (busyPartitions.contains(partition)) {
+          continue;
+        }
+        List<TsFileResource> files = entry.getValue();
+        for (TsFileResource resource : files) {
+          // prevent merges and deletions that have chosen this file from using it
+          resource.setDeleted(true);
+        }
+        sequenceFileTreeSet.removeAll(files);
+        unSequenceFileList.removeAll(files);
+        latestTimeForEachDevice.remove(partition);
+        partitionLatestFlushedTimeForEachDevice.remove(partition);
+        newlyFlushedPartitionLatestFlushedTimeForEachDevice.remove(partition);
+        droppedFiles.addAll(files);
+        logger.info("{} dropped time partition {} with {} files by ttl ({}ms)", storageGroupName,
+            partition, files.size(), dataTTL);
+      }
+      if (!droppedFiles.isEmpty()) {
+        updateFileListVersion();
+      }
+    } finally {
+      mergeLock.writeLock().unlock();
+      writeUnlock();
+    }
+
+    Set<File> partitionFolders = new HashSet<>();
+    for (TsFileResource resource : droppedFiles) {
+      // wait for the queries on the file
+      resource.getWriteQueryLock().writeLock().lock();
+      try {
+        ChunkMetadataCache.getInstance().remove(resource);
+        FileReaderManager.getInstance().closeFileAndRemoveReader(resource.getPath());
+        resource.remove();
+        partitionFolders.add(resource.getFile().getParentFile());
+      } catch (IOException e) {
+        logger.error("{} cannot close the readers of {}", storageGroupName, resource.getFile(),
+            e);
+      } finally {
+        resource.getWriteQueryLock().writeLock().unlock();
+      }
+    }
+    for (File partitionFolder : partitionFolders) {
+      // only an empty folder is deleted
+      if (!partitionFolder.delete()) {
+        logger.debug("{} cannot remove the folder {}", storageGroupName, partitionFolder);
+      }
+    }
+  }
+
+  private void collectExpiredFiles(Collection<TsFileResource> tsFileResources,
+      long boundPartition, Map<Long, List<TsFileResource>> partitionFiles,
+      Set<Long> busyPartitions) {
+    for (TsFileResource resource : tsFileResources) {
+      long partition = resource.getTimePartition();
+      if (partition >= boundPartition) {
+        continue;
+      }
+      partitionFiles.computeIfAbsent(partition, p -> new ArrayList<>()).add(resource);
+      if (resource.isMerging() || !resource.isClosed()) {
+        busyPartitions.add(partition);
+      }
+    }
+  }
+
   private void checkFileTTL(TsFileResource resource, long timeLowerBound, boolean isSeq) {
     if (resource.isMerging() || !resource.isClosed()
         || !resource.isDeleted() && resource.stillLives(timeLowerBound)) {
@@ -1115,6 +1441,7 @@ public class StorageGroupProcessor {
           } else {
             unSequenceFileList.remove(resource);
           }
+          updateFileListVersion();
         } finally {
           resource.getWriteQueryLock().writeLock().unlock();
         }
@@ -1124,6 +1451,74 @@ public class StorageGroupProcessor {
     }
   }
 
+  /**
+   * Move the sealed files whose data are all older than coldDataAge to the cold tier one at a time.
+   * A file is marked merging while it is copied, so that no merge, compaction or TTL check uses it,
+   * then it is replaced by its copy when no query is reading it, after which the queries read the
+   * copy.
+   */
+  public void migrateColdFiles() {
+    IoTDBConfig config = IoTDBDescriptor.getInstance().getConfig();
+    if (config.getColdDataDirs().length == 0) {
+      return;
+    }
+    long timeUpperBound = System.currentTimeMillis() - config.getColdDataAge();
+    // copy to avoid concurrent modification
+    List<TsFileResource> seqFiles;
+    List<TsFileResource> unseqFiles;
+    insertLock.readLock().lock();
+    try {
+      seqFiles = new ArrayList<>(sequenceFileTreeSet);
+      unseqFiles = new ArrayList<>(unSequenceFileList);
+    } finally {
+      insertLock.readLock().unlock();
+    }
+    long boundPartition = StorageEngine.getTimePartition(timeUpperBound);
+    for (TsFileResource resource : seqFiles) {
+      // the sequence files are ordered by their partitions and no later partition can be cold
+      if (resource.getTimePartition() > boundPartition) {
+        break;
+      }
+      migrateColdFile(resource, true, timeUpperBound);
+    }
+    for (TsFileResource resource : unseqFiles) {
+      migrateColdFile(resource, false, timeUpperBound);
+    }
+  }
+
+  private void migrateColdFile(TsFileResource resource, boolean sequence, long timeUpperBound) {
+    writeLock();
+    try {
+      if (!resource.isClosed() || resource.isMerging() || resource.isDeleted()
+          || resource.isCold() || resource.getFileEndTime() >= timeUpperBound) {
+        return;
+      }
+      resource.setMerging(true);
+    } finally {
+      writeUnlock();
+    }
+
+    try {
+      File coldFile = ColdFileMover.getInstance().copyToColdTier(resource, sequence);
+      // wait for the queries and deletions on the file
+      resource.getWriteQueryLock().writeLock().lock();
+      try {
+        String hotPath = resource.getPath();
+        ChunkMetadataCache.getInstance().remove(resource);
+        FileReaderManager.getInstance().closeFileAndRemoveReader(hotPath);
+        resource.moveToColdTier(coldFile);
+        updateFileListVersion();
+        logger.info("{} moved {} to the cold tier as {}", storageGroupName, hotPath, coldFile);
+      } finally {
+        resource.getWriteQueryLock().writeLock().unlock();
+      }
+    } catch (IOException e) {
+      logger.error("{} cannot move {} to the cold tier", storageGroupName, resource.getFile(), e);
+    } finally {
+      resource.setMerging(false);
+    }
+  }
+
   /**
    * This method will be blocked until all tsfile processors are closed.
    */
@@ -1172,9 +1567,9 @@ public class StorageGroupProcessor {
     insertLock.readLock().lock();
     mergeLock.readLock().lock();
     try {
-      List<TsFileResource> seqResources = getFileResourceListForQuery(sequenceFileTreeSet,
+      List<TsFileResource> seqResources = getFileResourceListForQuery(getFileIntervalIndex(true),
           upgradeSeqFileList, deviceId, measurementId, context, timeFilter);
-      List<TsFileResource> unseqResources = getFileResourceListForQuery(unSequenceFileList,
+      List<TsFileResource> unseqResources = getFileResourceListForQuery(getFileIntervalIndex(false),
           upgradeUnseqFileList, deviceId, measurementId, context, timeFilter);
       QueryDataSource dataSource = new QueryDataSource(new Path(deviceId, measurementId),
           seqResources, unseqResources);
@@ -1203,12 +1598,34 @@ public class StorageGroupProcessor {
   }
 
 
+  private void updateFileListVersion() {
+    fileListVersion.incrementAndGet();
+  }
+
   /**
-   * @param tsFileResources includes sealed and unsealed tsfile resources
+   * @return the interval index of the sequence or unsequence files, which is rebuilt if any file
+   * has been added, removed, closed or merged since it was built
+   */
+  private FileIntervalIndex getFileIntervalIndex(boolean sequence) {
+    long version = fileListVersion.get();
+    FileIntervalIndex index = sequence ? seqFileIntervalIndex : unseqFileIntervalIndex;
+    if (index == null || index.getVersion() != version) {
+      index = new FileIntervalIndex(sequence ? sequenceFileTreeSet : unSequenceFileList, version);
+      if (sequence) {
+        seqFileIntervalIndex = index;
+      } else {
+        unseqFileIntervalIndex = index;
+      }
+    }
+    return index;
+  }
+
+  /**
+   * @param fileIntervalIndex the index of sealed and unsealed tsfile resources
    * @return fill unsealed tsfile resources with memory data and ChunkMetadataList of data in disk
    */
   private List<TsFileResource> getFileResourceListForQuery(
-      Collection<TsFileResource> tsFileResources, List<TsFileResource> upgradeTsFileResources,
+      FileIntervalIndex fileIntervalIndex, List<TsFileResource> upgradeTsFileResources,
       String deviceId, String measurementId, QueryContext context, Filter timeFilter)
       throws MetadataException {
 
@@ -1219,7 +1636,11 @@ public class StorageGroupProcessor {
         .MIN_VALUE;
     context.setQueryTimeLowerBound(timeLowerBound);
 
-    for (TsFileResource tsFileResource : tsFileResources) {
+    // only the cost-based selector reads the heat of files
+    boolean recordQuery = IoTDBDescriptor.getInstance().getConfig().getMergeFileStrategy()
+        == MergeFileStrategy.COST_BASED;
+    long currentTime = System.currentTimeMillis();
+    for (TsFileResource tsFileResource : fileIntervalIndex.query(timeFilter, timeLowerBound)) {
       if (!isTsFileResourceSatisfied(tsFileResource, deviceId, timeFilter)) {
         continue;
       }
@@ -1227,6 +1648,10 @@ public class StorageGroupProcessor {
 
       try {
         if (tsFileResource.isClosed()) {
+          if (recordQuery) {
+            // the heat guides merges to the files that are queried more
+            tsFileResource.recordQuery(currentTime);
+          }
           tsfileResourcesForQuery.add(tsFileResource);
         } else {
           // left: in-memory data, right: meta of disk data
@@ -1236,8 +1661,7 @@ public class StorageGroupProcessor {
                       schema.getProps(), context);
 
           tsfileResourcesForQuery.add(new TsFileResource(tsFileResource.getFile(),
-              tsFileResource.getStartTimeMap(), tsFileResource.getEndTimeMap(), pair.left,
-              pair.right));
+              tsFileResource.getTimeIndex(), pair.left, pair.right));
         }
       } catch (IOException e) {
         throw new MetadataException(e);
@@ -1268,14 +1692,14 @@ public class StorageGroupProcessor {
     if (!tsFileResource.containsDevice(deviceId)) {
       return false;
     }
+    long deviceEndTime = tsFileResource.getEndTime(deviceId);
     if (dataTTL != Long.MAX_VALUE) {
-      Long deviceEndTime = tsFileResource.getEndTimeMap().get(deviceId);
-      return deviceEndTime == null || checkTTL(deviceEndTime);
+      return deviceEndTime == Long.MIN_VALUE || checkTTL(deviceEndTime);
     }
 
     if (timeFilter != null) {
-      long startTime = tsFileResource.getStartTimeMap().get(deviceId);
-      long endTime = tsFileResource.getEndTimeMap().getOrDefault(deviceId, Long.MAX_VALUE);
+      long startTime = tsFileResource.getStartTime(deviceId);
+      long endTime = deviceEndTime == Long.MIN_VALUE ? Long.MAX_VALUE : deviceEndTime;
       return timeFilter.satisfyStartEndTime(startTime, endTime);
     }
     return true;
@@ -1283,22 +1707,33 @@ public class StorageGroupProcessor {
 
 
   /**
-   * Delete data whose timestamp <= 'timestamp' and belongs to the time series
+   * Delete data whose timestamp is within [startTime, endTime] and belongs to the time series
    * deviceId.measurementId.
    *
+   * A deletion does not block the insertions and queries of the whole storage group. It holds the
+   * read locks of insertLock and mergeLock, so that the file lists do not change and no merge or
+   * compaction starts meanwhile, and the locks of the time partitions it affects, so that the
+   * deletions on the same partitions are ordered by their versions. insertLock is released before
+   * the deletion is appended to the modification files of the sealed files.
+   *
    * @param deviceId the deviceId of the timeseries to be deleted.
    * @param measurementId the measurementId of the timeseries to be deleted.
-   * @param timestamp the delete range is (0, timestamp].
+   * @param startTime the lower bound of the delete range, Long.MIN_VALUE if there is none.
+   * @param endTime the upper bound of the delete range.
    */
-  public void delete(String deviceId, String measurementId, long timestamp) throws IOException {
+  public void delete(String deviceId, String measurementId, long startTime, long endTime)
+      throws IOException {
     // TODO: how to avoid partial deletion?
     //FIXME: notice that if we may remove a SGProcessor out of memory, we need to close all opened
     //mod files in mergingModification, sequenceFileList, and unsequenceFileList
-    writeLock();
-    mergeLock.writeLock().lock();
+    insertLock.readLock().lock();
+    boolean insertLocked = true;
+    mergeLock.readLock().lock();
 
-    // record files which are updated so that we can roll back them in case of exception
-    List<ModificationFile> updatedModFiles = new ArrayList<>();
+    // record the modification written into each file so that we can roll back them in case of
+    // exception
+    Map<ModificationFile, Modification> updatedModFiles = new LinkedHashMap<>();
+    List<ReentrantLock> partitionLocks = Collections.emptyList();
 
     try {
       Long lastUpdateTime = null;
@@ -1315,46 +1750,145 @@ public class StorageGroupProcessor {
         return;
       }
 
-      // time partition to divide storage group
-      long timePartitionId = StorageEngine.getTimePartition(timestamp);
+      // time partitions to divide storage group
+      long startPartitionId = startTime == Long.MIN_VALUE ? Long.MIN_VALUE
+          : StorageEngine.getTimePartition(startTime);
+      long timePartitionId = StorageEngine.getTimePartition(endTime);
+      List<TsFileResource> affectedFiles = new ArrayList<>();
+      collectAffectedFiles(sequenceFileTreeSet, deviceId, startTime, endTime, affectedFiles);
+      collectAffectedFiles(unSequenceFileList, deviceId, startTime, endTime, affectedFiles);
+      partitionLocks = lockPartitions(affectedFiles, startPartitionId, timePartitionId);
+
       // write log to impacted working TsFileProcessors
-      logDeletion(timestamp, deviceId, measurementId, timePartitionId);
+      logDeletion(startTime, endTime, deviceId, measurementId, startPartitionId, timePartitionId);
 
       Path fullPath = new Path(deviceId, measurementId);
-      Deletion deletion = new Deletion(fullPath,
-          getVersionControllerByTimePartitionId(timePartitionId).nextVersion(), timestamp);
+      long version = getVersionControllerByTimePartitionId(timePartitionId).nextVersion();
       if (mergingModification != null) {
+        Deletion deletion = new Deletion(fullPath, version, startTime, endTime);
         mergingModification.write(deletion);
-        updatedModFiles.add(mergingModification);
+        updatedModFiles.put(mergingModification, deletion);
+      }
+      if (compactionModification != null) {
+        Deletion deletion = new Deletion(fullPath, version, startTime, endTime);
+        compactionModification.write(deletion);
+        updatedModFiles.put(compactionModification, deletion);
+      }
+
+      // the unsealed files must be handled before insertions go on, or the data inserted after
+      // the deletion may be deleted in memory
+      List<TsFileResource> sealedFiles = new ArrayList<>();
+      for (TsFileResource tsFileResource : affectedFiles) {
+        if (tsFileResource.isClosed()) {
+          sealedFiles.add(tsFileResource);
+        } else {
+          deleteDataInFile(tsFileResource, fullPath, startTime, endTime, updatedModFiles);
+        }
       }
 
-      deleteDataInFiles(sequenceFileTreeSet, deletion, updatedModFiles);
-      deleteDataInFiles(unSequenceFileList, deletion, updatedModFiles);
+      insertLock.readLock().unlock();
+      insertLocked = false;
+
+      for (TsFileResource tsFileResource : sealedFiles) {
+        deleteDataInFile(tsFileResource, fullPath, startTime, endTime, updatedModFiles);
+      }
 
+      tryToDeleteLastCache(deviceId, measurementId, startTime, endTime);
     } catch (Exception e) {
       // roll back
-      for (ModificationFile modFile : updatedModFiles) {
-        modFile.abort();
+      for (Entry<ModificationFile, Modification> entry : updatedModFiles.entrySet()) {
+        entry.getKey().abort(entry.getValue());
       }
       throw new IOException(e);
     } finally {
-      writeUnlock();
-      mergeLock.writeLock().unlock();
+      for (int i = partitionLocks.size() - 1; i >= 0; i--) {
+        partitionLocks.get(i).unlock();
+      }
+      mergeLock.readLock().unlock();
+      if (insertLocked) {
+        insertLock.readLock().unlock();
+      }
     }
+    // the modification files have grown
+    compact();
   }
 
-  private void logDeletion(long timestamp, String deviceId, String measurementId, long timePartitionId)
-      throws IOException {
+  private void collectAffectedFiles(Collection<TsFileResource> tsFileResourceList,
+      String deviceId, long startTime, long endTime, List<TsFileResource> affectedFiles) {
+    for (TsFileResource tsFileResource : tsFileResourceList) {
+      if (!tsFileResource.containsDevice(deviceId)
+          || endTime < tsFileResource.getStartTime(deviceId)) {
+        continue;
+      }
+      // the end time of an unsealed file may be unknown
+      long deviceEndTime = tsFileResource.getEndTime(deviceId);
+      if (deviceEndTime == Long.MIN_VALUE || startTime <= deviceEndTime) {
+        affectedFiles.add(tsFileResource);
+      }
+    }
+  }
+
+  /**
+   * Lock the partitions of the affected files and the partitions of the working files that the
+   * deletion is logged into, in ascending order to avoid dead locks between deletions.
+   *
+   * @return the locked locks in the order they are locked
+   */
+  private List<ReentrantLock> lockPartitions(List<TsFileResource> affectedFiles,
+      long startPartitionId, long timePartitionId) {
+    TreeSet<Long> partitions = new TreeSet<>();
+    for (TsFileResource tsFileResource : affectedFiles) {
+      partitions.add(tsFileResource.getTimePartition());
+    }
+    for (Long partition : workSequenceTsFileProcessors.keySet()) {
+      if (partition >= startPartitionId && partition <= timePartitionId) {
+        partitions.add(partition);
+      }
+    }
+    for (Long partition : workUnsequenceTsFileProcessors.keySet()) {
+      if (partition >= startPartitionId && partition <= timePartitionId) {
+        partitions.add(partition);
+      }
+    }
+    partitions.add(timePartitionId);
+
+    List<ReentrantLock> locks = new ArrayList<>(partitions.size());
+    for (Long partition : partitions) {
+      ReentrantLock lock = partitionDeletionLocks.computeIfAbsent(partition,
+          id -> new ReentrantLock());
+      lock.lock();
+      locks.add(lock);
+    }
+    return locks;
+  }
+
+  private void tryToDeleteLastCache(String deviceId, String measurementId, long startTime,
+      long endTime) {
+    try {
+      MNode node = MManager.getInstance()
+          .getNodeByPath(deviceId + IoTDBConstant.PATH_SEPARATOR + measurementId);
+      if (node instanceof LeafMNode) {
+        ((LeafMNode) node).resetCache(startTime, endTime);
+      }
+    } catch (MetadataException e) {
+      // the timeseries is not registered, so it has no cached last value
+      logger.debug("Cannot find {}.{} to reset its last cache", deviceId, measurementId);
+    }
+  }
+
+  private void logDeletion(long startTime, long endTime, String deviceId, String measurementId,
+      long startPartitionId, long timePartitionId) throws IOException {
     if (IoTDBDescriptor.getInstance().getConfig().isEnableWal()) {
-      DeletePlan deletionPlan = new DeletePlan(timestamp, new Path(deviceId, measurementId));
+      DeletePlan deletionPlan = new DeletePlan(startTime, endTime,
+          Collections.singletonList(new Path(deviceId, measurementId)));
       for (Map.Entry<Long, TsFileProcessor> entry : workSequenceTsFileProcessors.entrySet()) {
-        if (entry.getKey() <= timePartitionId) {
+        if (entry.getKey() >= startPartitionId && entry.getKey() <= timePartitionId) {
           entry.getValue().getLogNode().write(deletionPlan);
         }
       }
 
       for (Map.Entry<Long, TsFileProcessor> entry : workUnsequenceTsFileProcessors.entrySet()) {
-        if (entry.getKey() <= timePartitionId) {
+        if (entry.getKey() >= startPartitionId && entry.getKey() <= timePartitionId) {
           entry.getValue().getLogNode().write(deletionPlan);
         }
       }
@@ -1362,32 +1896,37 @@ public class StorageGroupProcessor {
   }
 
 
-  private void deleteDataInFiles(Collection<TsFileResource> tsFileResourceList, Deletion deletion,
-      List<ModificationFile> updatedModFiles)
-      throws IOException {
-    String deviceId = deletion.getDevice();
-    for (TsFileResource tsFileResource : tsFileResourceList) {
-      if (!tsFileResource.containsDevice(deviceId) ||
-          deletion.getTimestamp() < tsFileResource.getStartTimeMap().get(deviceId)) {
-        continue;
-      }
-
-      long partitionId = tsFileResource.getTimePartition();
-      deletion.setVersionNum(getVersionControllerByTimePartitionId(partitionId).nextVersion());
+  private void deleteDataInFile(TsFileResource tsFileResource, Path fullPath, long startTime,
+      long endTime, Map<ModificationFile, Modification> updatedModFiles) throws IOException {
+    // each file has its own deletion, as the modifications are cached with the file
+    Deletion deletion = new Deletion(fullPath,
+        getVersionControllerByTimePartitionId(tsFileResource.getTimePartition()).nextVersion(),
+        startTime, endTime);
 
-      // write deletion into modification file
+    if (!tsFileResource.isClosed()) {
       tsFileResource.getModFile().write(deletion);
       // remember to close mod file
       tsFileResource.getModFile().close();
+      updatedModFiles.put(tsFileResource.getModFile(), deletion);
 
       // delete data in memory of unsealed file
-      if (!tsFileResource.isClosed()) {
-        TsFileProcessor tsfileProcessor = tsFileResource.getUnsealedFileProcessor();
-        tsfileProcessor.deleteDataInMemory(deletion);
-      }
+      TsFileProcessor tsfileProcessor = tsFileResource.getUnsealedFileProcessor();
+      tsfileProcessor.deleteDataInMemory(deletion);
+      return;
+    }
 
-      // add a record in case of rollback
-      updatedModFiles.add(tsFileResource.getModFile());
+    // the file cannot be removed by TTL or a compaction while the deletion is written
+    tsFileResource.getWriteQueryLock().readLock().lock();
+    try {
+      if (tsFileResource.isDeleted()) {
+        // the file is removed by TTL
+        return;
+      }
+      tsFileResource.getModFile().write(deletion);
+      tsFileResource.getModFile().close();
+      updatedModFiles.put(tsFileResource.getModFile(), deletion);
+    } finally {
+      tsFileResource.getWriteQueryLock().readLock().unlock();
     }
   }
 
@@ -1457,15 +1996,54 @@ public class StorageGroupProcessor {
       closeQueryLock.writeLock().unlock();
     }
     //closingSequenceTsFileProcessor is a thread safety class.
-    if (closingSequenceTsFileProcessor.contains(tsFileProcessor)) {
+    boolean isSequence = closingSequenceTsFileProcessor.contains(tsFileProcessor);
+    if (isSequence) {
       closingSequenceTsFileProcessor.remove(tsFileProcessor);
     } else {
       closingUnSequenceTsFileProcessor.remove(tsFileProcessor);
     }
+    // the time range of the file is fixed from now on
+    updateFileListVersion();
     logger.info("signal closing storage group condition in {}", storageGroupName);
     synchronized (closeStorageGroupCondition) {
       closeStorageGroupCondition.notifyAll();
     }
+    if (isSequence) {
+      degradeTimeIndexes();
+      compact();
+    }
+  }
+
+  /**
+   * Degrade the device time indexes of the sealed sequence files except the latest
+   * maxDeviceTimeIndexFileNum ones. It is skipped if the file list is being modified, as the
+   * caller may be waited by the modifier, and the files are degraded when the next file is closed.
+   */
+  private void degradeTimeIndexes() {
+    int maxFileNum = IoTDBDescriptor.getInstance().getConfig().getMaxDeviceTimeIndexFileNum();
+    if (maxFileNum < 0 || !insertLock.readLock().tryLock()) {
+      return;
+    }
+    try {
+      if (!mergeLock.readLock().tryLock()) {
+        return;
+      }
+      try {
+        int fileNum = 0;
+        for (TsFileResource resource : sequenceFileTreeSet.descendingSet()) {
+          if (!resource.isClosed() || resource.isTimeIndexDegraded()) {
+            continue;
+          }
+          if (++fileNum > maxFileNum) {
+            resource.degradeTimeIndex();
+          }
+        }
+      } finally {
+        mergeLock.readLock().unlock();
+      }
+    } finally {
+      insertLock.readLock().unlock();
+    }
   }
 
   /**
@@ -1507,6 +2085,7 @@ public class StorageGroupProcessor {
       unSequenceFileList.addAll(upgradedResources);
       upgradeUnseqFileList.remove(tsFileResource);
     }
+    updateFileListVersion();
     mergeLock.writeLock().unlock();
     insertLock.writeLock().unlock();
     
@@ -1531,6 +2110,8 @@ public class StorageGroupProcessor {
 
   public void merge(boolean fullMerge) {
     writeLock();
+    // wait for the ongoing deletions, which may not have seen mergingModification
+    mergeLock.writeLock().lock();
     try {
       if (isMerging) {
         if (logger.isInfoEnabled()) {
@@ -1539,6 +2120,10 @@ public class StorageGroupProcessor {
         }
         return;
       }
+      if (isCompacting) {
+        logger.info("{} a compaction is ongoing, skip the merge", storageGroupName);
+        return;
+      }
       logger.info("{} will close all files for starting a merge (fullmerge = {})", storageGroupName,
           fullMerge);
 
@@ -1549,8 +2134,10 @@ public class StorageGroupProcessor {
 
       long budget = IoTDBDescriptor.getInstance().getConfig().getMergeMemoryBudget();
       long timeLowerBound = System.currentTimeMillis() - dataTTL;
-      MergeResource mergeResource = new MergeResource(sequenceFileTreeSet, unSequenceFileList,
-          timeLowerBound);
+      List<TsFileResource> seqFiles = new ArrayList<>();
+      List<TsFileResource> unseqFiles = new ArrayList<>();
+      selectHotFiles(seqFiles, unseqFiles);
+      MergeResource mergeResource = new MergeResource(seqFiles, unseqFiles, timeLowerBound);
 
       IMergeFileSelector fileSelector = getMergeFileSelector(budget, mergeResource);
       try {
@@ -1591,10 +2178,207 @@ public class StorageGroupProcessor {
         logger.error("{} cannot select file for merge", storageGroupName, e);
       }
     } finally {
+      mergeLock.writeLock().unlock();
       writeUnlock();
     }
   }
 
+  /**
+   * Submit a compaction of the small sequence files, or of a sequence file with too many
+   * modifications or expired data, if there is no merge or compaction ongoing. Like
+   * degradeTimeIndexes(), it is skipped if the storage group is locked and tried again after the
+   * next sequence file is closed or the next deletion.
+   */
+  private void compact() {
+    int minFileNum = IoTDBDescriptor.getInstance().getConfig().getSeqCompactionFileNum();
+    long modificationSize =
+        IoTDBDescriptor.getInstance().getConfig().getCompactionModificationSize();
+    if ((minFileNum < 2 && modificationSize <= 0 && dataTTL == Long.MAX_VALUE)
+        || !MergeManager.getINSTANCE().isStarted()
+        || !insertLock.writeLock().tryLock()) {
+      return;
+    }
+    // an ongoing deletion may not have seen compactionModification
+    if (!mergeLock.writeLock().tryLock()) {
+      insertLock.writeLock().unlock();
+      return;
+    }
+    try {
+      if (isMerging || isCompacting) {
+        return;
+      }
+      long timeLowerBound = dataTTL != Long.MAX_VALUE ? System.currentTimeMillis() - dataTTL
+          : Long.MIN_VALUE;
+      CompactionFileSelector fileSelector = new CompactionFileSelector(
+          minFileNum < 2 ? Integer.MAX_VALUE : minFileNum,
+          IoTDBDescriptor.getInstance().getConfig().getTsFileSizeThreshold(), timeLowerBound,
+          modificationSize <= 0 ? Long.MAX_VALUE : modificationSize);
+      List<TsFileResource> sourceFiles = fileSelector.select(sequenceFileTreeSet);
+      if (sourceFiles.isEmpty()) {
+        return;
+      }
+      for (TsFileResource sourceFile : sourceFiles) {
+        sourceFile.setMerging(true);
+      }
+      String taskName = storageGroupName + "-compaction-" + System.currentTimeMillis();
+      // the expired data in the source files are trimmed as well
+      CompactionTask compactionTask = new CompactionTask(new ArrayList<>(sourceFiles),
+          storageGroupSysDir.getPath(), this::compactionEndAction, taskName, timeLowerBound,
+          getUnseqOverlappedDevices(sourceFiles));
+      compactionModification = new ModificationFile(storageGroupSysDir + File.separator
+          + RecoverCompactionTask.COMPACTION_MODIFICATION_FILE_NAME);
+      isCompacting = true;
+      MergeManager.getINSTANCE().submitCompactionTask(compactionTask);
+      logger.info("{} submits a compaction task {}, compacting {} seqFiles", storageGroupName,
+          taskName, sourceFiles.size());
+    } finally {
+      mergeLock.writeLock().unlock();
+      insertLock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * The unsequence data flushed later gets higher versions than the source files of a compaction,
+   * so only the current unsequence files, including the unsealed ones, may overlap the source
+   * files with a lower version than some of their chunks. The caller should hold the insert lock.
+   *
+   * @return the devices whose data in the source files any current unsequence file overlaps
+   */
+  private Set<String> getUnseqOverlappedDevices(List<TsFileResource> sourceFiles) {
+    Map<String, Long> startTimes = new HashMap<>();
+    Map<String, Long> endTimes = new HashMap<>();
+    for (TsFileResource sourceFile : sourceFiles) {
+      for (Entry<String, Long> entry : sourceFile.getStartTimeMap().entrySet()) {
+        startTimes.merge(entry.getKey(), entry.getValue(), Math::min);
+      }
+      for (Entry<String, Long> entry : sourceFile.getEndTimeMap().entrySet()) {
+        endTimes.merge(entry.getKey(), entry.getValue(), Math::max);
+      }
+    }
+    Set<String> overlappedDevices = new HashSet<>();
+    for (TsFileResource unseqFile : unSequenceFileList) {
+      for (Entry<String, Long> entry : startTimes.entrySet()) {
+        String device = entry.getKey();
+        if (overlappedDevices.contains(device) || !unseqFile.containsDevice(device)) {
+          continue;
+        }
+        // the end times of an unsealed file may be unknown
+        if (unseqFile.getStartTime(device) <= endTimes.getOrDefault(device, Long.MAX_VALUE)
+            && (!unseqFile.isClosed() || unseqFile.getEndTime(device) >= entry.getValue())) {
+          overlappedDevices.add(device);
+        }
+      }
+    }
+    return overlappedDevices;
+  }
+
+  /**
+   * The files in the cold tier are not rewritten in place, nor are those being moved there, which
+   * are marked merging while no merge or compaction is running. So neither they nor the unsequence
+   * files whose data may go into them are merged, i.e., those with data of a device before the end
+   * of the device in any of these sequence files. Such unsequence files stay as they are.
+   */
+  private void selectHotFiles(List<TsFileResource> seqFiles, List<TsFileResource> unseqFiles) {
+    Map<String, Long> coldEndTimes = new HashMap<>();
+    for (TsFileResource resource : sequenceFileTreeSet) {
+      if (resource.isCold() || resource.isMerging()) {
+        for (Entry<String, Long> entry : resource.getEndTimeMap().entrySet()) {
+          coldEndTimes.merge(entry.getKey(), entry.getValue(), Math::max);
+        }
+      } else {
+        seqFiles.add(resource);
+      }
+    }
+    for (TsFileResource resource : unSequenceFileList) {
+      if (resource.isCold() || resource.isMerging()) {
+        continue;
+      }
+      boolean overlapsColdFiles = false;
+      for (Entry<String, Long> entry : resource.getStartTimeMap().entrySet()) {
+        Long coldEndTime = coldEndTimes.get(entry.getKey());
+        if (coldEndTime != null && entry.getValue() <= coldEndTime) {
+          overlapsColdFiles = true;
+          break;
+        }
+      }
+      if (!overlapsColdFiles) {
+        unseqFiles.add(resource);
+      }
+    }
+  }
+
+  private void compactionEndAction(List<TsFileResource> sourceFiles, TsFileResource targetFile,
+      File compactionLog) {
+    if (targetFile == null) {
+      for (TsFileResource sourceFile : sourceFiles) {
+        sourceFile.setMerging(false);
+      }
+      removeCompactionModification();
+      isCompacting = false;
+      logger.info("{} a compaction abnormally ends", storageGroupName);
+      return;
+    }
+
+    ModificationFile modificationFile;
+    mergeLock.writeLock().lock();
+    try {
+      // deletions from now on go to the target file
+      modificationFile = compactionModification;
+      compactionModification = null;
+      if (modificationFile != null && !modificationFile.getModifications().isEmpty()) {
+        for (Modification modification : modificationFile.getModifications()) {
+          targetFile.getModFile().write(modification);
+        }
+        targetFile.getModFile().close();
+      }
+      // the target file has the same position as the last source file, so remove them first
+      sequenceFileTreeSet.removeAll(sourceFiles);
+      sequenceFileTreeSet.add(targetFile);
+      updateFileListVersion();
+    } catch (IOException e) {
+      logger.error("{} cannot write the modifications during the compaction into {}",
+          storageGroupName, targetFile.getFile(), e);
+    } finally {
+      mergeLock.writeLock().unlock();
+    }
+
+    for (TsFileResource sourceFile : sourceFiles) {
+      // wait for the queries on the file
+      sourceFile.getWriteQueryLock().writeLock().lock();
+      try {
+        ChunkMetadataCache.getInstance().remove(sourceFile);
+        FileReaderManager.getInstance().closeFileAndRemoveReader(sourceFile.getPath());
+        sourceFile.remove();
+      } catch (IOException e) {
+        logger.error("{} cannot close the readers of {}", storageGroupName, sourceFile.getFile(),
+            e);
+      } finally {
+        sourceFile.getWriteQueryLock().writeLock().unlock();
+      }
+    }
+    if (modificationFile != null) {
+      try {
+        modificationFile.remove();
+      } catch (IOException e) {
+        logger.error("{} cannot remove compaction modification ", storageGroupName, e);
+      }
+    }
+    compactionLog.delete();
+    isCompacting = false;
+    logger.info("{} a compaction ends", storageGroupName);
+  }
+
+  private void removeCompactionModification() {
+    try {
+      if (compactionModification != null) {
+        compactionModification.remove();
+        compactionModification = null;
+      }
+    } catch (IOException e) {
+      logger.error("{} cannot remove compaction modification ", storageGroupName, e);
+    }
+  }
+
   private IMergeFileSelector getMergeFileSelector(long budget, MergeResource resource) {
     MergeFileStrategy strategy = IoTDBDescriptor.getInstance().getConfig().getMergeFileStrategy();
     switch (strategy) {
@@ -1602,6 +2386,8 @@ public class StorageGroupProcessor {
         return new MaxFileMergeFileSelector(resource, budget);
       case MAX_SERIES_NUM:
         return new MaxSeriesMergeFileSelector(resource, budget);
+      case COST_BASED:
+        return new CostBasedMergeFileSelector(resource, budget);
       default:
         throw new UnsupportedOperationException("Unknown MergeFileStrategy " + strategy);
     }
@@ -1611,6 +2397,8 @@ public class StorageGroupProcessor {
     mergeLock.writeLock().lock();
     try {
       unSequenceFileList.removeAll(unseqFiles);
+      // the time ranges of the merged sequence files are also updated by the merge
+      updateFileListVersion();
     } finally {
       mergeLock.writeLock().unlock();
     }
@@ -1853,13 +2641,13 @@ public class StorageGroupProcessor {
   private int compareTsFileDevices(TsFileResource fileA, TsFileResource fileB) {
     boolean hasPre = false, hasSubsequence = false;
     for (String device : fileA.getStartTimeMap().keySet()) {
-      if (!fileB.getStartTimeMap().containsKey(device)) {
+      if (!fileB.containsDevice(device)) {
         continue;
       }
-      long startTimeA = fileA.getStartTimeMap().get(device);
-      long endTimeA = fileA.getEndTimeMap().get(device);
-      long startTimeB = fileB.getStartTimeMap().get(device);
-      long endTimeB = fileB.getEndTimeMap().get(device);
+      long startTimeA = fileA.getStartTime(device);
+      long endTimeA = fileA.getEndTime(device);
+      long startTimeB = fileB.getStartTime(device);
+      long endTimeB = fileB.getEndTime(device);
       if (startTimeA > endTimeB) {
         // A's data of the device is later than to the B's data
         hasPre = true;
@@ -1914,6 +2702,7 @@ public class StorageGroupProcessor {
           && seqFile.getWriteQueryLock().writeLock().tryLock()) {
         try {
           iterator.remove();
+          updateFileListVersion();
           seqFile.remove();
         } catch (Exception e) {
           logger.error("Something gets wrong while removing FullyOverlapFiles ", e);
@@ -2035,6 +2824,7 @@ public class StorageGroupProcessor {
           return false;
         }
         unSequenceFileList.add(tsFileResource);
+        updateFileListVersion();
         logger.info("Load tsfile in unsequence list, move file from {} to {}",
             syncedTsFile.getAbsolutePath(), targetFile.getAbsolutePath());
         break;
@@ -2049,6 +2839,7 @@ public class StorageGroupProcessor {
           return false;
         }
         sequenceFileTreeSet.add(tsFileResource);
+        updateFileListVersion();
         logger.info("Load tsfile in sequence list, move file from {} to {}",
             syncedTsFile.getAbsolutePath(), targetFile.getAbsolutePath());
         break;
@@ -2127,6 +2918,7 @@ public class StorageGroupProcessor {
           }
         }
       }
+      updateFileListVersion();
     } finally {
       mergeLock.writeLock().unlock();
       writeUnlock();
@@ -2185,6 +2977,7 @@ public class StorageGroupProcessor {
           }
         }
       }
+      updateFileListVersion();
     } finally {
       mergeLock.writeLock().unlock();
       writeUnlock();
@@ -24,20 +24,21 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import org.apache.iotdb.db.conf.IoTDBConstant;
+import org.apache.iotdb.db.conf.directories.DirectoryManager;
 import org.apache.iotdb.db.engine.StorageEngine;
 import org.apache.iotdb.db.engine.modification.ModificationFile;
 import org.apache.iotdb.db.engine.querycontext.ReadOnlyMemChunk;
 import org.apache.iotdb.db.engine.storagegroup.StorageGroupProcessor.UpgradeTsFileResourceCallBack;
+import org.apache.iotdb.db.engine.storagegroup.timeindex.DeviceTimeIndex;
+import org.apache.iotdb.db.engine.storagegroup.timeindex.UnseqOverlapIndex;
 import org.apache.iotdb.db.engine.upgrade.UpgradeTask;
 import org.apache.iotdb.db.exception.PartitionViolationException;
 import org.apache.iotdb.db.service.UpgradeSevice;
@@ -65,14 +66,24 @@ public class TsFileResource {
   private static final String CLOSING_SUFFIX = ".closing";
 
   /**
-   * device -> start time
+   * the start and end time of each device. A device has no end time if the file is an unsealed
+   * sequence file. It is null if the index is degraded, when only the time range of the whole file
+   * is kept in memory.
    */
-  protected Map<String, Long> startTimeMap;
+  private volatile DeviceTimeIndex timeIndex;
 
   /**
-   * device -> end time. It is null if it's an unsealed sequence tsfile
+   * the time range of the whole file, only used when the time index is degraded
    */
-  protected Map<String, Long> endTimeMap;
+  private long fileStartTime = Long.MAX_VALUE;
+  private long fileEndTime = Long.MIN_VALUE;
+
+  /**
+   * the time ranges covered by each series, only for an unsequence file created by this process.
+   * It is null if any data of the file was not flushed through the index, e.g., the file is
+   * recovered or loaded, or if the time index is degraded.
+   */
+  private volatile UnseqOverlapIndex overlapIndex;
 
   public TsFileProcessor getProcessor() {
     return processor;
@@ -111,8 +122,15 @@ public class TsFileResource {
 
   private ReentrantReadWriteLock writeQueryLock = new ReentrantReadWriteLock();
 
+  // the factory of the file system the file is on
   private FSFactory fsFactory = FSFactoryProducer.getFSFactory();
 
+  /**
+   * Whether the file has been moved to the cold tier, in which case its modification file stays in
+   * the first data dir, see DirectoryManager.getHotPath().
+   */
+  private volatile boolean cold = false;
+
   /**
    *  generated upgraded TsFile ResourceList
    *  used for upgrading v0.9.x/v1 -> 0.10/v2
@@ -131,13 +149,25 @@ public class TsFileResource {
    */
   private boolean isSeq;
 
+  /**
+   * How many times the file is read by queries recently, which halves every
+   * QUERY_HEAT_HALF_LIFE_MS, so that merges prefer the files that are queried more.
+   */
+  private volatile QueryHeat queryHeat = QueryHeat.COLD;
+  private static final long QUERY_HEAT_HALF_LIFE_MS = 3600_000L;
+  private static final AtomicReferenceFieldUpdater<TsFileResource, QueryHeat> QUERY_HEAT_UPDATER =
+      AtomicReferenceFieldUpdater.newUpdater(TsFileResource.class, QueryHeat.class, "queryHeat");
+
   public TsFileResource() {
   }
 
   public TsFileResource(TsFileResource other) throws IOException {
     this.file = other.file;
-    this.startTimeMap = other.startTimeMap;
-    this.endTimeMap = other.endTimeMap;
+    this.timeIndex = other.timeIndex;
+    this.fileStartTime = other.fileStartTime;
+    this.fileEndTime = other.fileEndTime;
+    // the index of an unsealed file does not cover its data in memory
+    this.overlapIndex = other.closed ? other.overlapIndex : null;
     this.processor = other.processor;
     this.modFile = other.modFile;
     this.closed = other.closed;
@@ -148,6 +178,7 @@ public class TsFileResource {
     generateTimeSeriesMetadata();
     this.writeQueryLock = other.writeQueryLock;
     this.fsFactory = other.fsFactory;
+    this.cold = other.cold;
     this.historicalVersions = other.historicalVersions;
   }
 
@@ -156,8 +187,8 @@ public class TsFileResource {
    */
   public TsFileResource(File file) {
     this.file = file;
-    this.startTimeMap = new ConcurrentHashMap<>();
-    this.endTimeMap = new HashMap<>();
+    this.fsFactory = FSFactoryProducer.getFSFactory(file.getPath());
+    this.timeIndex = new DeviceTimeIndex();
   }
 
   /**
@@ -165,8 +196,8 @@ public class TsFileResource {
    */
   public TsFileResource(File file, TsFileProcessor processor) {
     this.file = file;
-    this.startTimeMap = new ConcurrentHashMap<>();
-    this.endTimeMap = new ConcurrentHashMap<>();
+    this.fsFactory = FSFactoryProducer.getFSFactory(file.getPath());
+    this.timeIndex = new DeviceTimeIndex();
     this.processor = processor;
   }
 
@@ -174,13 +205,12 @@ public class TsFileResource {
    * unsealed TsFile
    */
   public TsFileResource(File file,
-      Map<String, Long> startTimeMap,
-      Map<String, Long> endTimeMap,
+      DeviceTimeIndex timeIndex,
       List<ReadOnlyMemChunk> readOnlyMemChunk,
       List<ChunkMetadata> chunkMetadataList) throws IOException {
     this.file = file;
-    this.startTimeMap = startTimeMap;
-    this.endTimeMap = endTimeMap;
+    this.fsFactory = FSFactoryProducer.getFSFactory(file.getPath());
+    this.timeIndex = timeIndex;
     this.chunkMetadataList = chunkMetadataList;
     this.readOnlyMemChunk = readOnlyMemChunk;
     generateTimeSeriesMetadata();
@@ -224,23 +254,7 @@ public class TsFileResource {
   public void serialize() throws IOException {
     try (OutputStream outputStream = fsFactory.getBufferedOutputStream(
         file + RESOURCE_SUFFIX + TEMP_SUFFIX)) {
-      ReadWriteIOUtils.write(this.startTimeMap.size(), outputStream);
-      for (Entry<String, Long> entry : this.startTimeMap.entrySet()) {
-        ReadWriteIOUtils.write(entry.getKey(), outputStream);
-        ReadWriteIOUtils.write(entry.getValue(), outputStream);
-      }
-      ReadWriteIOUtils.write(this.endTimeMap.size(), outputStream);
-      for (Entry<String, Long> entry : this.endTimeMap.entrySet()) {
-        ReadWriteIOUtils.write(entry.getKey(), outputStream);
-        ReadWriteIOUtils.write(entry.getValue(), outputStream);
-      }
-
-      if (historicalVersions != null) {
-        ReadWriteIOUtils.write(this.historicalVersions.size(), outputStream);
-        for (Long historicalVersion : historicalVersions) {
-          ReadWriteIOUtils.write(historicalVersion, outputStream);
-        }
-      }
+      serialize(outputStream);
     }
     File src = fsFactory.getFile(file + RESOURCE_SUFFIX + TEMP_SUFFIX);
     File dest = fsFactory.getFile(file + RESOURCE_SUFFIX);
@@ -248,52 +262,152 @@ public class TsFileResource {
     fsFactory.moveFile(src, dest);
   }
 
+  /**
+   * Write the content of the .resource file into the output stream.
+   */
+  void serialize(OutputStream outputStream) throws IOException {
+    getTimeIndex().serialize(outputStream);
+
+    if (historicalVersions != null) {
+      ReadWriteIOUtils.write(this.historicalVersions.size(), outputStream);
+      for (Long historicalVersion : historicalVersions) {
+        ReadWriteIOUtils.write(historicalVersion, outputStream);
+      }
+    }
+  }
+
   public void deserialize() throws IOException {
     try (InputStream inputStream = fsFactory.getBufferedInputStream(
         file + RESOURCE_SUFFIX)) {
-      int size = ReadWriteIOUtils.readInt(inputStream);
-      Map<String, Long> startTimes = new HashMap<>();
-      for (int i = 0; i < size; i++) {
-        String path = ReadWriteIOUtils.readString(inputStream);
-        long time = ReadWriteIOUtils.readLong(inputStream);
-        startTimes.put(path, time);
-      }
-      size = ReadWriteIOUtils.readInt(inputStream);
-      Map<String, Long> endTimes = new HashMap<>();
-      for (int i = 0; i < size; i++) {
-        String path = ReadWriteIOUtils.readString(inputStream);
-        long time = ReadWriteIOUtils.readLong(inputStream);
-        endTimes.put(path, time);
+      deserialize(inputStream);
+    }
+  }
+
+  /**
+   * Read the content of the .resource file from the input stream.
+   */
+  void deserialize(InputStream inputStream) throws IOException {
+    this.timeIndex = DeviceTimeIndex.deserialize(inputStream);
+
+    if (inputStream.available() > 0) {
+      int versionSize = ReadWriteIOUtils.readInt(inputStream);
+      historicalVersions = new HashSet<>();
+      for (int i = 0; i < versionSize; i++) {
+        historicalVersions.add(ReadWriteIOUtils.readLong(inputStream));
       }
-      this.startTimeMap = startTimes;
-      this.endTimeMap = endTimes;
-
-      if (inputStream.available() > 0) {
-        int versionSize = ReadWriteIOUtils.readInt(inputStream);
-        historicalVersions = new HashSet<>();
-        for (int i = 0; i < versionSize; i++) {
-          historicalVersions.add(ReadWriteIOUtils.readLong(inputStream));
-        }
-      } else {
-        // use the version in file name as the historical version for files of old versions
-        long version = Long.parseLong(file.getName().split(IoTDBConstant.TSFILE_NAME_SEPARATOR)[1]);
-        historicalVersions = Collections.singleton(version);
+    } else {
+      // use the version in file name as the historical version for files of old versions
+      long version = Long.parseLong(file.getName().split(IoTDBConstant.TSFILE_NAME_SEPARATOR)[1]);
+      historicalVersions = Collections.singleton(version);
+    }
+  }
+
+  /**
+   * Read the device time index back from the resource file if it is degraded.
+   */
+  DeviceTimeIndex getTimeIndex() {
+    DeviceTimeIndex index = timeIndex;
+    return index != null ? index : restoreTimeIndex();
+  }
+
+  private synchronized DeviceTimeIndex restoreTimeIndex() {
+    if (timeIndex == null) {
+      try (InputStream inputStream = fsFactory.getBufferedInputStream(
+          file + RESOURCE_SUFFIX)) {
+        timeIndex = DeviceTimeIndex.deserialize(inputStream);
+      } catch (IOException e) {
+        throw new IllegalStateException("Cannot restore the device time index of " + file, e);
       }
     }
+    return timeIndex;
   }
 
-  public void updateStartTime(String device, long time) {
-    long startTime = startTimeMap.getOrDefault(device, Long.MAX_VALUE);
-    if (time < startTime) {
-      startTimeMap.put(device, time);
+  /**
+   * Replace the device time index of a closed file with the time range of the whole file to save
+   * memory. The index is read back from the resource file once the time of each device is needed
+   * again, e.g., by a merge, while queries use the range of the whole file meanwhile.
+   */
+  public synchronized void degradeTimeIndex() {
+    if (!closed || timeIndex == null || !fileExists()) {
+      return;
     }
+    fileStartTime = timeIndex.getMinStartTime();
+    fileEndTime = timeIndex.getMaxEndTime();
+    timeIndex = null;
+    overlapIndex = null;
+  }
+
+  /**
+   * Load the file with only the time range of the whole file, leaving the device time index in the
+   * resource file until it is needed.
+   */
+  synchronized void setDegradedTimeIndex(long fileStartTime, long fileEndTime) {
+    this.fileStartTime = fileStartTime;
+    this.fileEndTime = fileEndTime;
+    timeIndex = null;
+  }
+
+  public UnseqOverlapIndex getOverlapIndex() {
+    return overlapIndex;
+  }
+
+  public void setOverlapIndex(UnseqOverlapIndex overlapIndex) {
+    this.overlapIndex = overlapIndex;
+  }
+
+  public boolean isTimeIndexDegraded() {
+    return timeIndex == null;
+  }
+
+  /**
+   * @return the min start time of all devices in the file, or Long.MAX_VALUE if there is none
+   */
+  public long getFileStartTime() {
+    DeviceTimeIndex index = timeIndex;
+    return index != null ? index.getMinStartTime() : fileStartTime;
+  }
+
+  /**
+   * @return the max end time of all devices in the file, or Long.MIN_VALUE if there is none
+   */
+  public long getFileEndTime() {
+    DeviceTimeIndex index = timeIndex;
+    return index != null ? index.getMaxEndTime() : fileEndTime;
+  }
+
+  public void updateStartTime(String device, long time) {
+    getTimeIndex().updateStartTime(device, time);
   }
 
   public void updateEndTime(String device, long time) {
-    long endTime = endTimeMap.getOrDefault(device, Long.MIN_VALUE);
-    if (time > endTime) {
-      endTimeMap.put(device, time);
-    }
+    getTimeIndex().updateEndTime(device, time);
+  }
+
+  /**
+   * @return the start time of the device, Long.MAX_VALUE if the device is not in the file, or the
+   * start time of the whole file if the time index is degraded
+   */
+  public long getStartTime(String device) {
+    DeviceTimeIndex index = timeIndex;
+    return index != null ? index.getStartTime(device) : fileStartTime;
+  }
+
+  /**
+   * @return the end time of the device, Long.MIN_VALUE if it is unknown, or the end time of the
+   * whole file if the time index is degraded
+   */
+  public long getEndTime(String device) {
+    DeviceTimeIndex index = timeIndex;
+    return index != null ? index.getEndTime(device) : fileEndTime;
+  }
+
+  /**
+   * @return the end time of the device like getEndTime(), but a degraded time index is read back
+   * from the resource file first, for the callers that must not take the end of the whole file
+   * for the end of the device, e.g., a merge choosing the sequence file of unsequence data
+   */
+  public long getExactEndTime(String device) {
+    return getTimeIndex().getEndTime(device);
   }
 
   public boolean fileExists() {
@@ -301,7 +415,14 @@ public class TsFileResource {
   }
 
   void forceUpdateEndTime(String device, long time) {
-    endTimeMap.put(device, time);
+    getTimeIndex().putEndTime(device, time);
+  }
+
+  /**
+   * Forget the end times, when an unsealed sequence file is reopened for writing.
+   */
+  void clearEndTimes() {
+    getTimeIndex().clearEndTimes();
   }
 
   public List<ChunkMetadata> getChunkMetadataList() {
@@ -314,17 +435,62 @@ public class TsFileResource {
 
   public synchronized ModificationFile getModFile() {
     if (modFile == null) {
-      modFile = new ModificationFile(file.getAbsolutePath() + ModificationFile.FILE_SUFFIX);
+      modFile = new ModificationFile(getModFilePath());
     }
     return modFile;
   }
 
+  private String getModFilePath() {
+    return cold ? DirectoryManager.getInstance().getHotPath(file) + ModificationFile.FILE_SUFFIX
+        : file.getAbsolutePath() + ModificationFile.FILE_SUFFIX;
+  }
+
   public void setFile(File file) {
     this.file = file;
+    this.fsFactory = FSFactoryProducer.getFSFactory(file.getPath());
+  }
+
+  public boolean isCold() {
+    return cold;
+  }
+
+  public void setCold(boolean cold) {
+    this.cold = cold;
+  }
+
+  /**
+   * Replace the file with its copy in the cold tier, whose .resource file is also copied, then
+   * move the modification file into the first data dir and remove the hot copy. The caller should
+   * hold the write query lock so that no query is reading the hot copy.
+   */
+  synchronized void moveToColdTier(File coldFile) throws IOException {
+    FSFactory hotFSFactory = fsFactory;
+    File hotFile = file;
+    File hotModFile = FSFactoryProducer.getFSFactory().getFile(getModFilePath());
+    if (modFile != null) {
+      modFile.close();
+      modFile = null;
+    }
+    setFile(coldFile);
+    cold = true;
+    File coldModFile = FSFactoryProducer.getFSFactory().getFile(getModFilePath());
+    // deletions append to the modification file, whose folder may be in no other data dir
+    coldModFile.getParentFile().mkdirs();
+    if (hotModFile.exists() && !hotModFile.getAbsolutePath()
+        .equals(coldModFile.getAbsolutePath())) {
+      FSFactoryProducer.getFSFactory().moveFile(hotModFile, coldModFile);
+    }
+    hotFile.delete();
+    hotFSFactory.getFile(hotFile.getPath() + RESOURCE_SUFFIX).delete();
   }
 
-  boolean containsDevice(String deviceId) {
-    return startTimeMap.containsKey(deviceId);
+  /**
+   * @return true if the file contains the device, or it may contain the device because the time
+   * index is degraded
+   */
+  public boolean containsDevice(String deviceId) {
+    DeviceTimeIndex index = timeIndex;
+    return index == null || index.containsDevice(deviceId);
   }
 
   public File getFile() {
@@ -339,12 +505,20 @@ public class TsFileResource {
     return file.length();
   }
 
+  /**
+   * @return a map view of the start time of each device, which restores a degraded time index.
+   * getStartTime() is cheaper for a single device.
+   */
   public Map<String, Long> getStartTimeMap() {
-    return startTimeMap;
+    return getTimeIndex().getStartTimeMap();
   }
 
+  /**
+   * @return a map view of the end time of each device, which restores a degraded time index.
+   * getEndTime() is cheaper for a single device.
+   */
   public Map<String, Long> getEndTimeMap() {
-    return endTimeMap;
+    return getTimeIndex().getEndTimeMap();
   }
 
   public boolean isClosed() {
@@ -359,6 +533,10 @@ public class TsFileResource {
     }
     processor = null;
     chunkMetadataList = null;
+    DeviceTimeIndex index = timeIndex;
+    if (index != null) {
+      index.compact();
+    }
   }
 
   TsFileProcessor getUnsealedFileProcessor() {
@@ -383,7 +561,9 @@ public class TsFileResource {
   public void remove() {
     file.delete();
     fsFactory.getFile(file.getPath() + RESOURCE_SUFFIX).delete();
-    fsFactory.getFile(file.getPath() + ModificationFile.FILE_SUFFIX).delete();
+    FSFactoryProducer.getFSFactory().getFile(getModFilePath()).delete();
+    // the removed modifications are cached in the ModificationFile
+    modFile = null;
   }
 
   public void removeResourceFile() {
@@ -394,7 +574,8 @@ public class TsFileResource {
     fsFactory.moveFile(file, fsFactory.getFile(targetDir, file.getName()));
     fsFactory.moveFile(fsFactory.getFile(file.getPath() + RESOURCE_SUFFIX),
         fsFactory.getFile(targetDir, file.getName() + RESOURCE_SUFFIX));
-    fsFactory.getFile(file.getPath() + ModificationFile.FILE_SUFFIX).delete();
+    FSFactoryProducer.getFSFactory().getFile(getModFilePath()).delete();
+    modFile = null;
   }
 
   @Override
@@ -431,10 +612,28 @@ public class TsFileResource {
     this.deleted = deleted;
   }
 
-  boolean isMerging() {
+  public boolean isMerging() {
     return isMerging;
   }
 
+  /**
+   * Lock-free, as it is called for every closed file of every query. A concurrent update is
+   * retried against the heat it lost to.
+   */
+  public void recordQuery(long currentTime) {
+    QueryHeat oldHeat;
+    QueryHeat newHeat;
+    do {
+      oldHeat = queryHeat;
+      newHeat = new QueryHeat(oldHeat.decay(currentTime) + 1,
+          Math.max(currentTime, oldHeat.updateTime));
+    } while (!QUERY_HEAT_UPDATER.compareAndSet(this, oldHeat, newHeat));
+  }
+
+  public double getQueryHeat(long currentTime) {
+    return queryHeat.decay(currentTime);
+  }
+
   public void setMerging(boolean merging) {
     isMerging = merging;
   }
@@ -446,21 +645,8 @@ public class TsFileResource {
     if (timeLowerBound == Long.MAX_VALUE) {
       return true;
     }
-    for (long endTime : endTimeMap.values()) {
-      // the file cannot be deleted if any device still lives
-      if (endTime >= timeLowerBound) {
-        return true;
-      }
-    }
-    return false;
-  }
-
-  protected void setStartTimeMap(Map<String, Long> startTimeMap) {
-    this.startTimeMap = startTimeMap;
-  }
-
-  protected void setEndTimeMap(Map<String, Long> endTimeMap) {
-    this.endTimeMap = endTimeMap;
+    // the file cannot be deleted if any device still lives
+    return getFileEndTime() >= timeLowerBound;
   }
 
   /**
@@ -531,12 +717,13 @@ public class TsFileResource {
   }
 
   /**
-   * make sure Either the startTimeMap is not empty
+   * make sure Either the time index is not empty
    *           Or the path contains a partition folder
    */
   public long getTimePartition() {
-    if (startTimeMap != null && !startTimeMap.isEmpty()) {
-      return StorageEngine.getTimePartition(startTimeMap.values().iterator().next());
+    long startTime = getFileStartTime();
+    if (startTime != Long.MAX_VALUE) {
+      return StorageEngine.getTimePartition(startTime);
     }
     String[] splits = FilePathUtils.splitTsFilePath(this);
     return Long.parseLong(splits[splits.length - 2]);
@@ -550,7 +737,7 @@ public class TsFileResource {
    */
   public long getTimePartitionWithCheck() throws PartitionViolationException {
     long partitionId = -1;
-    for (Long startTime : startTimeMap.values()) {
+    for (Long startTime : getStartTimeMap().values()) {
       long p = StorageEngine.getTimePartition(startTime);
       if (partitionId == -1) {
         partitionId = p;
@@ -560,7 +747,7 @@ public class TsFileResource {
         }
       }
     }
-    for (Long endTime : endTimeMap.values()) {
+    for (Long endTime : getEndTimeMap().values()) {
       long p = StorageEngine.getTimePartition(endTime);
       if (partitionId == -1) {
         partitionId = p;
@@ -575,4 +762,24 @@ public class TsFileResource {
     }
     return partitionId;
   }
+
+  private static class QueryHeat {
+
+    private static final QueryHeat COLD = new QueryHeat(0, Long.MIN_VALUE);
+
+    private final double heat;
+    private final long updateTime;
+
+    private QueryHeat(double heat, long updateTime) {
+      this.heat = heat;
+      this.updateTime = updateTime;
+    }
+
+    private double decay(long currentTime) {
+      if (heat == 0 || currentTime <= updateTime) {
+        return heat;
+      }
+      return heat * Math.pow(0.5, (double) (currentTime - updateTime) / QUERY_HEAT_HALF_LIFE_MS);
+    }
+  }
 }
@@ -0,0 +1,265 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.engine.storagegroup;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.apache.iotdb.db.engine.fileSystem.SystemFileFactory;
+import org.apache.iotdb.tsfile.fileSystem.FSFactoryProducer;
+import org.apache.iotdb.tsfile.utils.ReadWriteIOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * TsFileResourceIndex gathers the .resource files of the sealed sequence or unsequence TsFiles of
+ * a time partition into one file in the system directory of the storage group, so that a restart
+ * reads one file per partition instead of one per TsFile. Each entry also records the time range
+ * of the file, and the index of sequence files records the latest time of each device in the
+ * partition, with which the files of a cold partition can be loaded without their device times.
+ *
+ * An entry is only used if the length and the modification time of the TsFile and its .resource
+ * file are still the same as when the index was written, otherwise the .resource file is read.
+ */
+public class TsFileResourceIndex {
+
+  private static final Logger logger = LoggerFactory.getLogger(TsFileResourceIndex.class);
+
+  static final String SEQUENCE_INDEX_NAME = "sequence" + TsFileResource.RESOURCE_SUFFIX + "s.index";
+  static final String UNSEQUENCE_INDEX_NAME =
+      "unsequence" + TsFileResource.RESOURCE_SUFFIX + "s.index";
+  private static final String TEMP_SUFFIX = ".tmp";
+  // an index of another version is ignored and the .resource files are read instead
+  private static final int VERSION = 1;
+
+  private File file;
+
+  // the path of a TsFile -> its entry
+  private Map<String, Entry> entries = new HashMap<>();
+
+  private Map<String, Long> latestTimeForEachDevice = new HashMap<>();
+
+  /**
+   * @param partitionSysDir the directory of the time partition in the system directory of the
+   *                        storage group, where the version files are
+   */
+  public TsFileResourceIndex(File partitionSysDir, boolean sequence) {
+    this.file = SystemFileFactory.INSTANCE.getFile(partitionSysDir,
+        sequence ? SEQUENCE_INDEX_NAME : UNSEQUENCE_INDEX_NAME);
+  }
+
+  /**
+   * Read the index if it exists. A broken index is treated as an empty one.
+   */
+  public void read() {
+    if (!file.exists()) {
+      return;
+    }
+    try (InputStream inputStream = new BufferedInputStream(new FileInputStream(file))) {
+      int version = ReadWriteIOUtils.readInt(inputStream);
+      if (version != VERSION) {
+        logger.info("Ignore TsFile resource index {} of version {}", file, version);
+        return;
+      }
+      int entryNum = ReadWriteIOUtils.readInt(inputStream);
+      Map<String, Entry> newEntries = new HashMap<>(entryNum * 2);
+      for (int i = 0; i < entryNum; i++) {
+        Entry entry = Entry.deserialize(inputStream);
+        newEntries.put(entry.tsFilePath, entry);
+      }
+      int deviceNum = ReadWriteIOUtils.readInt(inputStream);
+      Map<String, Long> newLatestTimes = new HashMap<>(deviceNum * 2);
+      for (int i = 0; i < deviceNum; i++) {
+        newLatestTimes.put(ReadWriteIOUtils.readString(inputStream),
+            ReadWriteIOUtils.readLong(inputStream));
+      }
+      entries = newEntries;
+      latestTimeForEachDevice = newLatestTimes;
+    } catch (IOException | RuntimeException e) {
+      logger.warn("Cannot read TsFile resource index {}, ignore it", file, e);
+    }
+  }
+
+  /**
+   * Write the entries of the resources into a temporary file and then replace the index with it.
+   *
+   * @param resources the sealed files of the partition in the order of their versions
+   * @param sequence  whether the files are sequence files, of which the latest time of each device
+   *                  is recorded
+   */
+  public void write(List<TsFileResource> resources, boolean sequence) throws IOException {
+    Map<String, Long> latestTimes = new HashMap<>();
+    File tempFile = SystemFileFactory.INSTANCE.getFile(file.getPath() + TEMP_SUFFIX);
+    try (OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(tempFile))) {
+      ReadWriteIOUtils.write(VERSION, outputStream);
+      ReadWriteIOUtils.write(resources.size(), outputStream);
+      for (TsFileResource resource : resources) {
+        Entry.of(resource).serialize(outputStream);
+        if (sequence) {
+          latestTimes.putAll(resource.getEndTimeMap());
+        }
+      }
+      ReadWriteIOUtils.write(latestTimes.size(), outputStream);
+      for (Map.Entry<String, Long> entry : latestTimes.entrySet()) {
+        ReadWriteIOUtils.write(entry.getKey(), outputStream);
+        ReadWriteIOUtils.write(entry.getValue(), outputStream);
+      }
+    }
+    Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  /**
+   * @return the entry of the file if it is still valid, or null
+   */
+  public Entry getEntry(TsFileResource resource) {
+    Entry entry = entries.get(resource.getPath());
+    return entry != null && entry.isValid(resource) ? entry : null;
+  }
+
+  /**
+   * @return whether the index has a valid entry for each of the files and no others, so that the
+   * latest times of the devices in the index are the same as those of the files
+   */
+  public boolean coversExactly(List<TsFileResource> resources) {
+    if (resources.size() != entries.size()) {
+      return false;
+    }
+    for (TsFileResource resource : resources) {
+      if (getEntry(resource) == null) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public Map<String, Long> getLatestTimeForEachDevice() {
+    return latestTimeForEachDevice;
+  }
+
+  public void delete() {
+    try {
+      Files.deleteIfExists(file.toPath());
+    } catch (IOException e) {
+      logger.warn("Cannot delete TsFile resource index {}", file, e);
+    }
+  }
+
+  public static class Entry {
+
+    private String tsFilePath;
+    private long tsFileLength;
+    private long resourceLength;
+    private long resourceModifiedTime;
+    private long fileStartTime;
+    private long fileEndTime;
+    private Set<Long> historicalVersions;
+    // the content of the .resource file
+    private byte[] content;
+
+    private static Entry of(TsFileResource resource) throws IOException {
+      Entry entry = new Entry();
+      entry.tsFilePath = resource.getPath();
+      entry.tsFileLength = resource.getFile().length();
+      File resourceFile = getResourceFile(resource);
+      entry.resourceLength = resourceFile.length();
+      entry.resourceModifiedTime = resourceFile.lastModified();
+      entry.fileStartTime = resource.getFileStartTime();
+      entry.fileEndTime = resource.getFileEndTime();
+      entry.historicalVersions = resource.getHistoricalVersions();
+      ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+      resource.serialize(outputStream);
+      entry.content = outputStream.toByteArray();
+      return entry;
+    }
+
+    private static File getResourceFile(TsFileResource resource) {
+      return FSFactoryProducer.getFSFactory()
+          .getFile(resource.getPath() + TsFileResource.RESOURCE_SUFFIX);
+    }
+
+    private boolean isValid(TsFileResource resource) {
+      File resourceFile = getResourceFile(resource);
+      return resource.getFile().length() == tsFileLength
+          && resourceFile.length() == resourceLength
+          && resourceFile.lastModified() == resourceModifiedTime;
+    }
+
+    /**
+     * Load the device times and historical versions of the file as if its .resource file is read.
+     */
+    public void load(TsFileResource resource) throws IOException {
+      resource.deserialize(new ByteArrayInputStream(content));
+    }
+
+    /**
+     * Load the time range and historical versions of the file, leaving its device times in the
+     * .resource file.
+     */
+    public void loadLazily(TsFileResource resource) {
+      resource.setDegradedTimeIndex(fileStartTime, fileEndTime);
+      resource.setHistoricalVersions(new HashSet<>(historicalVersions));
+    }
+
+    private void serialize(OutputStream outputStream) throws IOException {
+      ReadWriteIOUtils.write(tsFilePath, outputStream);
+      ReadWriteIOUtils.write(tsFileLength, outputStream);
+      ReadWriteIOUtils.write(resourceLength, outputStream);
+      ReadWriteIOUtils.write(resourceModifiedTime, outputStream);
+      ReadWriteIOUtils.write(fileStartTime, outputStream);
+      ReadWriteIOUtils.write(fileEndTime, outputStream);
+      ReadWriteIOUtils.write(historicalVersions.size(), outputStream);
+      for (Long historicalVersion : historicalVersions) {
+        ReadWriteIOUtils.write(historicalVersion, outputStream);
+      }
+      ReadWriteIOUtils.write(content.length, outputStream);
+      outputStream.write(content);
+    }
+
+    private static Entry deserialize(InputStream inputStream) throws IOException {
+      Entry entry = new Entry();
+      entry.tsFilePath = ReadWriteIOUtils.readString(inputStream);
+      entry.tsFileLength = ReadWriteIOUtils.readLong(inputStream);
+      entry.resourceLength = ReadWriteIOUtils.readLong(inputStream);
+      entry.resourceModifiedTime = ReadWriteIOUtils.readLong(inputStream);
+      entry.fileStartTime = ReadWriteIOUtils.readLong(inputStream);
+      entry.fileEndTime = ReadWriteIOUtils.readLong(inputStream);
+      int versionNum = ReadWriteIOUtils.readInt(inputStream);
+      entry.historicalVersions = new HashSet<>(versionNum * 2);
+      for (int i = 0; i < versionNum; i++) {
+        entry.historicalVersions.add(ReadWriteIOUtils.readLong(inputStream));
+      }
+      entry.content = ReadWriteIOUtils.readBytes(inputStream, ReadWriteIOUtils.readInt(inputStream));
+      return entry;
+    }
+  }
+}
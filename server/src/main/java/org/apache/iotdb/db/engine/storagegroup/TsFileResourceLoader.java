@@ -0,0 +1,236 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.engine.storagegroup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.apache.iotdb.db.concurrent.IoTThreadFactory;
+import org.apache.iotdb.db.engine.fileSystem.SystemFileFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * TsFileResourceLoader loads the resources of the sealed TsFiles of a storage group at startup
+ * from the TsFileResourceIndex of each time partition or their .resource files, in parallel and
+ * without opening the TsFiles. A file is sealed if its .resource file exists without a closing
+ * flag, as the .resource file is written before the file is ended and the flag is cleaned after.
+ * The last file in the data dirs is always left to the TsFileRecoverPerformer, as it may be
+ * continued.
+ *
+ * The files of a cold partition, i.e., neither the latest partition nor the partition of the last
+ * file, can be loaded lazily if its index covers them exactly, in which case only the time ranges
+ * of the files are loaded and the latest time of each device comes from the index.
+ */
+class TsFileResourceLoader {
+
+  private static final Logger logger = LoggerFactory.getLogger(TsFileResourceLoader.class);
+
+  private static final ThreadPoolExecutor loadingPool;
+
+  static {
+    int threadNum = Runtime.getRuntime().availableProcessors();
+    loadingPool = new ThreadPoolExecutor(threadNum, threadNum, 60, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<>(), new IoTThreadFactory("Resource-Loading"));
+    // the pool is only busy at startup
+    loadingPool.allowCoreThreadTimeOut(true);
+  }
+
+  private final File storageGroupSysDir;
+  private final boolean sequence;
+
+  private final Map<Long, TsFileResourceIndex> indexes = new HashMap<>();
+  // the partitions whose indexes cover their files exactly and need no rewriting
+  private final Set<Long> upToDatePartitions = new HashSet<>();
+  private final Set<Long> lazyPartitions = new HashSet<>();
+
+  TsFileResourceLoader(File storageGroupSysDir, boolean sequence) {
+    this.storageGroupSysDir = storageGroupSysDir;
+    this.sequence = sequence;
+  }
+
+  /**
+   * Load the resources of the sealed files, which are then closed.
+   *
+   * @param tsFiles the files in the order of their versions
+   * @param lazy    whether the files of cold partitions can be loaded lazily
+   * @return the files that are loaded, the others are to be recovered by TsFileRecoverPerformer
+   */
+  Set<TsFileResource> load(List<TsFileResource> tsFiles, boolean lazy) {
+    if (tsFiles.isEmpty()) {
+      return Collections.emptySet();
+    }
+    Map<Long, List<TsFileResource>> partitionFiles = new LinkedHashMap<>();
+    for (TsFileResource tsFile : tsFiles) {
+      partitionFiles.computeIfAbsent(tsFile.getTimePartition(), p -> new ArrayList<>())
+          .add(tsFile);
+    }
+    // the files in the cold tier are always sealed, so the last file that may be continued is the
+    // last one in the data dirs
+    int lastFileIndex = StorageGroupProcessor.getLastHotFileIndex(tsFiles);
+    TsFileResource lastFile = lastFileIndex >= 0 ? tsFiles.get(lastFileIndex) : null;
+    long lastFilePartition = lastFile != null ? lastFile.getTimePartition() : Long.MIN_VALUE;
+    long latestPartition = Collections.max(partitionFiles.keySet());
+
+    Set<TsFileResource> loadedFiles = new HashSet<>();
+    List<Future<TsFileResource>> futures = new ArrayList<>();
+    for (Entry<Long, List<TsFileResource>> entry : partitionFiles.entrySet()) {
+      long partition = entry.getKey();
+      List<TsFileResource> files = entry.getValue();
+      TsFileResourceIndex index = getIndex(partition);
+      index.read();
+      boolean isSealed = !files.contains(lastFile) && allSealed(files);
+      if (isSealed && index.coversExactly(files)) {
+        upToDatePartitions.add(partition);
+        if (lazy && partition != lastFilePartition && partition != latestPartition) {
+          lazyPartitions.add(partition);
+          for (TsFileResource file : files) {
+            index.getEntry(file).loadLazily(file);
+            file.setClosed(true);
+            loadedFiles.add(file);
+          }
+          continue;
+        }
+      }
+      for (TsFileResource file : files) {
+        if (file != lastFile && isSealed(file)) {
+          futures.add(loadingPool.submit(() -> load(file, index)));
+        }
+      }
+    }
+
+    for (Future<TsFileResource> future : futures) {
+      try {
+        TsFileResource file = future.get();
+        if (file != null) {
+          loadedFiles.add(file);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        logger.warn("Interrupted when loading the resources of TsFiles in {}",
+            storageGroupSysDir, e);
+      } catch (ExecutionException e) {
+        logger.warn("Cannot load the resource of a TsFile in {}", storageGroupSysDir, e);
+      }
+    }
+    logger.info("{} of {} {} TsFiles of {} are loaded from their resources, {} partitions lazily",
+        loadedFiles.size(), tsFiles.size(), sequence ? "sequence" : "unsequence",
+        storageGroupSysDir.getName(), lazyPartitions.size());
+    return loadedFiles;
+  }
+
+  private static boolean allSealed(List<TsFileResource> files) {
+    for (TsFileResource file : files) {
+      if (!isSealed(file)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isSealed(TsFileResource file) {
+    return file.fileExists() && !file.isCloseFlagSet();
+  }
+
+  /**
+   * @return the file if it is loaded, or null if it is to be recovered by TsFileRecoverPerformer
+   */
+  private static TsFileResource load(TsFileResource file, TsFileResourceIndex index) {
+    try {
+      TsFileResourceIndex.Entry entry = index.getEntry(file);
+      if (entry != null) {
+        entry.load(file);
+      } else {
+        file.deserialize();
+      }
+      file.setClosed(true);
+      return file;
+    } catch (IOException | RuntimeException e) {
+      logger.warn("Cannot load the resource of {}, recover it instead", file.getFile(), e);
+      return null;
+    }
+  }
+
+  private TsFileResourceIndex getIndex(long partition) {
+    return indexes.computeIfAbsent(partition, p -> new TsFileResourceIndex(
+        SystemFileFactory.INSTANCE.getFile(storageGroupSysDir, String.valueOf(p)), sequence));
+  }
+
+  boolean isLazyPartition(long partition) {
+    return lazyPartitions.contains(partition);
+  }
+
+  /**
+   * @return the latest time of each device in a lazily loaded partition
+   */
+  Map<String, Long> getLatestTimeForEachDevice(long partition) {
+    return getIndex(partition).getLatestTimeForEachDevice();
+  }
+
+  /**
+   * Rewrite the indexes that do not cover the sealed files of their partitions exactly after the
+   * recovery, so that the next startup can use them. The index of a partition without sealed files
+   * is deleted.
+   *
+   * @param resources all files of the storage group in the order of their versions
+   */
+  void writeIndexes(Collection<TsFileResource> resources) {
+    Map<Long, List<TsFileResource>> partitionFiles = new LinkedHashMap<>();
+    for (TsFileResource resource : resources) {
+      long partition = resource.getTimePartition();
+      List<TsFileResource> files = partitionFiles.computeIfAbsent(partition,
+          p -> new ArrayList<>());
+      if (resource.isClosed() && resource.fileExists()) {
+        files.add(resource);
+      }
+    }
+    for (Entry<Long, List<TsFileResource>> entry : partitionFiles.entrySet()) {
+      long partition = entry.getKey();
+      if (upToDatePartitions.contains(partition)) {
+        continue;
+      }
+      TsFileResourceIndex index = getIndex(partition);
+      if (entry.getValue().isEmpty()) {
+        index.delete();
+        continue;
+      }
+      try {
+        index.write(entry.getValue(), sequence);
+      } catch (IOException | RuntimeException e) {
+        logger.warn("Cannot write the resource index of partition {} in {}", partition,
+            storageGroupSysDir, e);
+        index.delete();
+      }
+    }
+  }
+}
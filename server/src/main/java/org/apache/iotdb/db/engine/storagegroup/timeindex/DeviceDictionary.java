@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.engine.storagegroup.timeindex;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * DeviceDictionary assigns each device an integer id, so that the time indexes of TsFiles refer
+ * to the devices by their ids and the name of a device is kept only once in memory however many
+ * files contain it. The ids are not persisted and a device keeps its id until the server stops.
+ */
+public class DeviceDictionary {
+
+  private static final int INIT_CAPACITY = 1024;
+
+  private final Map<String, Integer> deviceIds = new ConcurrentHashMap<>();
+  // id -> device
+  private String[] devices = new String[INIT_CAPACITY];
+  private int size = 0;
+
+  private DeviceDictionary() {
+  }
+
+  public static DeviceDictionary getInstance() {
+    return InstanceHolder.INSTANCE;
+  }
+
+  /**
+   * @return the id of the device, or -1 if the device has no id
+   */
+  public int getId(String device) {
+    Integer id = deviceIds.get(device);
+    return id == null ? -1 : id;
+  }
+
+  public synchronized int getOrCreateId(String device) {
+    Integer id = deviceIds.get(device);
+    if (id != null) {
+      return id;
+    }
+    if (size == devices.length) {
+      devices = Arrays.copyOf(devices, devices.length * 2);
+    }
+    devices[size] = device;
+    deviceIds.put(device, size);
+    return size++;
+  }
+
+  public synchronized String getDevice(int id) {
+    return devices[id];
+  }
+
+  private static class InstanceHolder {
+
+    private static final DeviceDictionary INSTANCE = new DeviceDictionary();
+
+    private InstanceHolder() {
+    }
+  }
+}
@@ -0,0 +1,367 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.engine.storagegroup.timeindex;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.AbstractMap;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import org.apache.iotdb.tsfile.utils.ReadWriteIOUtils;
+
+/**
+ * DeviceTimeIndex keeps the start and end time of each device in a TsFile in primitive arrays,
+ * referring to the devices by their ids in the DeviceDictionary, which takes about 20 bytes per
+ * device instead of two map entries with boxed times and a copy of the device name.
+ *
+ * The index of an unsealed file is mutable: the devices are in the order they are written and are
+ * located through a map. Once the file is sealed, compact() sorts the devices by their ids and
+ * drops the map, after which the devices are located by binary search. A device without a start
+ * time has Long.MAX_VALUE and one without an end time has Long.MIN_VALUE.
+ *
+ * The min start time and max end time of all devices are kept up to date by the updates, so that
+ * the time range of the file is read without locking the index or scanning its devices. They are
+ * only recalculated after a time is put, as it may narrow the range.
+ */
+public class DeviceTimeIndex {
+
+  private static final int INIT_CAPACITY = 16;
+
+  private final DeviceDictionary dictionary = DeviceDictionary.getInstance();
+
+  // the ids of the devices, sorted if the index is compact
+  private int[] deviceIds;
+  private long[] startTimes;
+  private long[] endTimes;
+  private int size = 0;
+  // device -> its position in the arrays, only for a mutable index
+  private Map<String, Integer> positions;
+
+  private volatile long minStartTime = Long.MAX_VALUE;
+  private volatile long maxEndTime = Long.MIN_VALUE;
+  // whether minStartTime and maxEndTime should be recalculated
+  private volatile boolean timeRangeOutdated = false;
+
+  public DeviceTimeIndex() {
+    deviceIds = new int[INIT_CAPACITY];
+    startTimes = new long[INIT_CAPACITY];
+    endTimes = new long[INIT_CAPACITY];
+    positions = new HashMap<>();
+  }
+
+  public synchronized void updateStartTime(String device, long time) {
+    int position = getOrCreatePosition(device);
+    if (time < startTimes[position]) {
+      startTimes[position] = time;
+      if (time < minStartTime) {
+        minStartTime = time;
+      }
+    }
+  }
+
+  public synchronized void updateEndTime(String device, long time) {
+    int position = getOrCreatePosition(device);
+    if (time > endTimes[position]) {
+      endTimes[position] = time;
+      if (time > maxEndTime) {
+        maxEndTime = time;
+      }
+    }
+  }
+
+  public synchronized void putStartTime(String device, long time) {
+    // the arrays may be grown when the position is created
+    int position = getOrCreatePosition(device);
+    startTimes[position] = time;
+    timeRangeOutdated = true;
+  }
+
+  public synchronized void putEndTime(String device, long time) {
+    int position = getOrCreatePosition(device);
+    endTimes[position] = time;
+    timeRangeOutdated = true;
+  }
+
+  public synchronized void clearEndTimes() {
+    Arrays.fill(endTimes, 0, size, Long.MIN_VALUE);
+    maxEndTime = Long.MIN_VALUE;
+  }
+
+  /**
+   * @return the start time of the device, or Long.MAX_VALUE if the device is not in the file
+   */
+  public synchronized long getStartTime(String device) {
+    int position = positionOf(device);
+    return position < 0 ? Long.MAX_VALUE : startTimes[position];
+  }
+
+  /**
+   * @return the end time of the device, or Long.MIN_VALUE if it is unknown, e.g., the file is an
+   * unsealed sequence file
+   */
+  public synchronized long getEndTime(String device) {
+    int position = positionOf(device);
+    return position < 0 ? Long.MIN_VALUE : endTimes[position];
+  }
+
+  public boolean containsDevice(String device) {
+    return getStartTime(device) != Long.MAX_VALUE;
+  }
+
+  /**
+   * @return the min start time of all devices, or Long.MAX_VALUE if there is none
+   */
+  public long getMinStartTime() {
+    if (timeRangeOutdated) {
+      recalculateTimeRange();
+    }
+    return minStartTime;
+  }
+
+  /**
+   * @return the max end time of all devices, or Long.MIN_VALUE if there is none
+   */
+  public long getMaxEndTime() {
+    if (timeRangeOutdated) {
+      recalculateTimeRange();
+    }
+    return maxEndTime;
+  }
+
+  private synchronized void recalculateTimeRange() {
+    if (!timeRangeOutdated) {
+      return;
+    }
+    long newMinStartTime = Long.MAX_VALUE;
+    long newMaxEndTime = Long.MIN_VALUE;
+    for (int i = 0; i < size; i++) {
+      newMinStartTime = Math.min(newMinStartTime, startTimes[i]);
+      newMaxEndTime = Math.max(newMaxEndTime, endTimes[i]);
+    }
+    minStartTime = newMinStartTime;
+    maxEndTime = newMaxEndTime;
+    timeRangeOutdated = false;
+  }
+
+  /**
+   * Sort the devices by their ids and trim the arrays, after the file is sealed. The time range is
+   * also recalculated if times have been put.
+   */
+  public synchronized void compact() {
+    if (positions == null) {
+      return;
+    }
+    // the id in the higher bits and the position in the lower bits
+    long[] order = new long[size];
+    for (int i = 0; i < size; i++) {
+      order[i] = ((long) deviceIds[i] << 32) | i;
+    }
+    Arrays.sort(order);
+    int[] newDeviceIds = new int[size];
+    long[] newStartTimes = new long[size];
+    long[] newEndTimes = new long[size];
+    for (int i = 0; i < size; i++) {
+      int position = (int) order[i];
+      newDeviceIds[i] = deviceIds[position];
+      newStartTimes[i] = startTimes[position];
+      newEndTimes[i] = endTimes[position];
+    }
+    deviceIds = newDeviceIds;
+    startTimes = newStartTimes;
+    endTimes = newEndTimes;
+    positions = null;
+    recalculateTimeRange();
+  }
+
+  private int positionOf(String device) {
+    if (positions != null) {
+      Integer position = positions.get(device);
+      return position == null ? -1 : position;
+    }
+    int id = dictionary.getId(device);
+    if (id < 0) {
+      return -1;
+    }
+    int position = Arrays.binarySearch(deviceIds, 0, size, id);
+    return position < 0 ? -1 : position;
+  }
+
+  private int getOrCreatePosition(String device) {
+    int position = positionOf(device);
+    if (position >= 0) {
+      return position;
+    }
+    if (positions == null) {
+      // a device is added after the file is sealed, e.g., by a merge
+      positions = new HashMap<>(size * 2);
+      for (int i = 0; i < size; i++) {
+        positions.put(dictionary.getDevice(deviceIds[i]), i);
+      }
+    }
+    if (size == deviceIds.length) {
+      int capacity = Math.max(INIT_CAPACITY, size * 2);
+      deviceIds = Arrays.copyOf(deviceIds, capacity);
+      startTimes = Arrays.copyOf(startTimes, capacity);
+      endTimes = Arrays.copyOf(endTimes, capacity);
+    }
+    deviceIds[size] = dictionary.getOrCreateId(device);
+    startTimes[size] = Long.MAX_VALUE;
+    endTimes[size] = Long.MIN_VALUE;
+    positions.put(device, size);
+    return size++;
+  }
+
+  /**
+   * Serialize the start times and then the end times, each as the number of devices followed by
+   * the devices and their times.
+   */
+  public synchronized void serialize(OutputStream outputStream) throws IOException {
+    serializeTimes(startTimes, Long.MAX_VALUE, outputStream);
+    serializeTimes(endTimes, Long.MIN_VALUE, outputStream);
+  }
+
+  private void serializeTimes(long[] times, long absentTime, OutputStream outputStream)
+      throws IOException {
+    int count = 0;
+    for (int i = 0; i < size; i++) {
+      if (times[i] != absentTime) {
+        count++;
+      }
+    }
+    ReadWriteIOUtils.write(count, outputStream);
+    for (int i = 0; i < size; i++) {
+      if (times[i] != absentTime) {
+        ReadWriteIOUtils.write(dictionary.getDevice(deviceIds[i]), outputStream);
+        ReadWriteIOUtils.write(times[i], outputStream);
+      }
+    }
+  }
+
+  /**
+   * @return the compact index read from the input stream
+   */
+  public static DeviceTimeIndex deserialize(InputStream inputStream) throws IOException {
+    DeviceTimeIndex index = new DeviceTimeIndex();
+    int size = ReadWriteIOUtils.readInt(inputStream);
+    for (int i = 0; i < size; i++) {
+      index.putStartTime(ReadWriteIOUtils.readString(inputStream),
+          ReadWriteIOUtils.readLong(inputStream));
+    }
+    size = ReadWriteIOUtils.readInt(inputStream);
+    for (int i = 0; i < size; i++) {
+      index.putEndTime(ReadWriteIOUtils.readString(inputStream),
+          ReadWriteIOUtils.readLong(inputStream));
+    }
+    index.compact();
+    return index;
+  }
+
+  /**
+   * @return a map view of the start times, where putting a time updates the index
+   */
+  public Map<String, Long> getStartTimeMap() {
+    return new TimeMapView(true);
+  }
+
+  /**
+   * @return a map view of the end times, where putting a time updates the index
+   */
+  public Map<String, Long> getEndTimeMap() {
+    return new TimeMapView(false);
+  }
+
+  private synchronized List<Entry<String, Long>> getEntries(boolean isStartTime) {
+    long[] times = isStartTime ? startTimes : endTimes;
+    long absentTime = isStartTime ? Long.MAX_VALUE : Long.MIN_VALUE;
+    List<Entry<String, Long>> entries = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      if (times[i] != absentTime) {
+        entries.add(new SimpleImmutableEntry<>(dictionary.getDevice(deviceIds[i]), times[i]));
+      }
+    }
+    return entries;
+  }
+
+  /**
+   * The start or end times as a map, for the callers that are not on critical paths. Removing from
+   * it is not supported.
+   */
+  private class TimeMapView extends AbstractMap<String, Long> {
+
+    private final boolean isStartTime;
+
+    private TimeMapView(boolean isStartTime) {
+      this.isStartTime = isStartTime;
+    }
+
+    @Override
+    public Long get(Object key) {
+      if (!(key instanceof String)) {
+        return null;
+      }
+      if (isStartTime) {
+        long time = getStartTime((String) key);
+        return time == Long.MAX_VALUE ? null : time;
+      }
+      long time = getEndTime((String) key);
+      return time == Long.MIN_VALUE ? null : time;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+      return get(key) != null;
+    }
+
+    @Override
+    public Long put(String key, Long value) {
+      Long previous = get(key);
+      if (isStartTime) {
+        putStartTime(key, value);
+      } else {
+        putEndTime(key, value);
+      }
+      return previous;
+    }
+
+    @Override
+    public Set<Entry<String, Long>> entrySet() {
+      List<Entry<String, Long>> entries = getEntries(isStartTime);
+      return new AbstractSet<Entry<String, Long>>() {
+        @Override
+        public Iterator<Entry<String, Long>> iterator() {
+          return entries.iterator();
+        }
+
+        @Override
+        public int size() {
+          return entries.size();
+        }
+      };
+    }
+  }
+}
@@ -0,0 +1,233 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.engine.storagegroup.timeindex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import org.apache.iotdb.db.engine.storagegroup.TsFileResource;
+import org.apache.iotdb.tsfile.read.filter.GroupByFilter;
+import org.apache.iotdb.tsfile.read.filter.basic.Filter;
+import org.apache.iotdb.tsfile.read.filter.basic.UnaryFilter;
+import org.apache.iotdb.tsfile.read.filter.factory.FilterType;
+import org.apache.iotdb.tsfile.read.filter.operator.AndFilter;
+import org.apache.iotdb.tsfile.read.filter.operator.Eq;
+import org.apache.iotdb.tsfile.read.filter.operator.Gt;
+import org.apache.iotdb.tsfile.read.filter.operator.GtEq;
+import org.apache.iotdb.tsfile.read.filter.operator.Lt;
+import org.apache.iotdb.tsfile.read.filter.operator.LtEq;
+import org.apache.iotdb.tsfile.read.filter.operator.OrFilter;
+
+/**
+ * FileIntervalIndex is an immutable interval index over the time ranges of a list of TsFiles, so
+ * that the files which may contain data in a time range are found in O(log(n) + k) instead of
+ * checking every file. A query checks the devices of the returned files afterwards.
+ *
+ * The files are sorted by their start times, with a segment tree of the max end times over them.
+ * The files overlapping [minTime, maxTime] are those in the prefix whose start times are no larger
+ * than maxTime, and whose end times are no less than minTime, found by descending the subtrees of
+ * the prefix whose max end times are no less than minTime. An unsealed file is always returned as
+ * its time range is still growing.
+ */
+public class FileIntervalIndex {
+
+  private final long version;
+
+  // the files in the order of the list the index is built from
+  private final TsFileResource[] files;
+  // the positions of the files in the list, sorted by the start times of the files
+  private final int[] positions;
+  // the start times of positions
+  private final long[] startTimes;
+  // the max end time of each node of the segment tree over positions
+  private final long[] maxEndTimes;
+
+  /**
+   * @param version the version of the file list, with which the caller finds out whether the index
+   *                is outdated
+   */
+  public FileIntervalIndex(Collection<TsFileResource> resources, long version) {
+    this.version = version;
+    files = resources.toArray(new TsFileResource[0]);
+    int fileNum = files.length;
+    long[] fileStartTimes = new long[fileNum];
+    long[] fileEndTimes = new long[fileNum];
+    Integer[] order = new Integer[fileNum];
+    for (int i = 0; i < fileNum; i++) {
+      TsFileResource resource = files[i];
+      if (resource.isClosed()) {
+        fileStartTimes[i] = resource.getFileStartTime();
+        long endTime = resource.getFileEndTime();
+        // a device without an end time may have data anywhere after its start time
+        fileEndTimes[i] = endTime == Long.MIN_VALUE ? Long.MAX_VALUE : endTime;
+      } else {
+        fileStartTimes[i] = Long.MIN_VALUE;
+        fileEndTimes[i] = Long.MAX_VALUE;
+      }
+      order[i] = i;
+    }
+    Arrays.sort(order, (a, b) -> Long.compare(fileStartTimes[a], fileStartTimes[b]));
+
+    positions = new int[fileNum];
+    startTimes = new long[fileNum];
+    for (int i = 0; i < fileNum; i++) {
+      positions[i] = order[i];
+      startTimes[i] = fileStartTimes[order[i]];
+    }
+    maxEndTimes = new long[Math.max(1, 4 * fileNum)];
+    if (fileNum > 0) {
+      build(0, 0, fileNum, fileEndTimes);
+    }
+  }
+
+  private long build(int node, int low, int high, long[] fileEndTimes) {
+    if (high - low == 1) {
+      maxEndTimes[node] = fileEndTimes[positions[low]];
+    } else {
+      int mid = (low + high) >>> 1;
+      maxEndTimes[node] = Math.max(build(2 * node + 1, low, mid, fileEndTimes),
+          build(2 * node + 2, mid, high, fileEndTimes));
+    }
+    return maxEndTimes[node];
+  }
+
+  public long getVersion() {
+    return version;
+  }
+
+  public int size() {
+    return files.length;
+  }
+
+  /**
+   * @return the files that may contain data satisfying the time filter and not earlier than
+   * minTime, in the order of the list the index is built from
+   */
+  public List<TsFileResource> query(Filter timeFilter, long minTime) {
+    long[] range = {minTime, Long.MAX_VALUE};
+    if (timeFilter != null) {
+      intersect(range, getTimeRange(timeFilter));
+    }
+    return query(range[0], range[1]);
+  }
+
+  /**
+   * @return the files that may contain data in [minTime, maxTime], in the order of the list the
+   * index is built from
+   */
+  public List<TsFileResource> query(long minTime, long maxTime) {
+    if (minTime > maxTime || files.length == 0) {
+      return new ArrayList<>();
+    }
+    if (minTime == Long.MIN_VALUE && maxTime == Long.MAX_VALUE) {
+      return new ArrayList<>(Arrays.asList(files));
+    }
+    // the number of files whose start times are no larger than maxTime
+    int limit = upperBound(maxTime);
+    List<Integer> selected = new ArrayList<>();
+    collect(0, 0, files.length, limit, minTime, selected);
+    // restore the order of the list
+    Collections.sort(selected);
+    List<TsFileResource> result = new ArrayList<>(selected.size());
+    for (int position : selected) {
+      result.add(files[position]);
+    }
+    return result;
+  }
+
+  private void collect(int node, int low, int high, int limit, long minTime,
+      List<Integer> selected) {
+    if (low >= limit || maxEndTimes[node] < minTime) {
+      return;
+    }
+    if (high - low == 1) {
+      selected.add(positions[low]);
+      return;
+    }
+    int mid = (low + high) >>> 1;
+    collect(2 * node + 1, low, mid, limit, minTime, selected);
+    collect(2 * node + 2, mid, high, limit, minTime, selected);
+  }
+
+  private int upperBound(long time) {
+    int low = 0;
+    int high = startTimes.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (startTimes[mid] <= time) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * @return the smallest [min, max] containing every time satisfying the filter. Filters other
+   * than the comparisons of time, AND, OR and GROUP BY are considered to be satisfied by any time.
+   */
+  static long[] getTimeRange(Filter filter) {
+    if (filter instanceof AndFilter) {
+      long[] range = getTimeRange(((AndFilter) filter).getLeft());
+      intersect(range, getTimeRange(((AndFilter) filter).getRight()));
+      return range;
+    }
+    if (filter instanceof OrFilter) {
+      long[] range = getTimeRange(((OrFilter) filter).getLeft());
+      long[] rightRange = getTimeRange(((OrFilter) filter).getRight());
+      if (range[0] > range[1]) {
+        return rightRange;
+      } else if (rightRange[0] > rightRange[1]) {
+        return range;
+      }
+      range[0] = Math.min(range[0], rightRange[0]);
+      range[1] = Math.max(range[1], rightRange[1]);
+      return range;
+    }
+    if (filter instanceof GroupByFilter) {
+      return new long[]{((GroupByFilter) filter).getStartTime(),
+          ((GroupByFilter) filter).getEndTime()};
+    }
+    if (filter instanceof UnaryFilter
+        && ((UnaryFilter<?>) filter).getFilterType() == FilterType.TIME_FILTER) {
+      long time = (Long) ((UnaryFilter<?>) filter).getValue();
+      if (filter instanceof Eq) {
+        return new long[]{time, time};
+      } else if (filter instanceof Gt) {
+        // an empty range if nothing is after the time
+        return time == Long.MAX_VALUE ? new long[]{1, 0} : new long[]{time + 1, Long.MAX_VALUE};
+      } else if (filter instanceof GtEq) {
+        return new long[]{time, Long.MAX_VALUE};
+      } else if (filter instanceof Lt) {
+        return time == Long.MIN_VALUE ? new long[]{1, 0} : new long[]{Long.MIN_VALUE, time - 1};
+      } else if (filter instanceof LtEq) {
+        return new long[]{Long.MIN_VALUE, time};
+      }
+    }
+    return new long[]{Long.MIN_VALUE, Long.MAX_VALUE};
+  }
+
+  private static void intersect(long[] range, long[] other) {
+    range[0] = Math.max(range[0], other[0]);
+    range[1] = Math.min(range[1], other[1]);
+  }
+}
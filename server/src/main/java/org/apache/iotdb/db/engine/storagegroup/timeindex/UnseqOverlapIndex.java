@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.engine.storagegroup.timeindex;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.iotdb.db.utils.datastructure.TVList;
+
+/**
+ * UnseqOverlapIndex records the time ranges covered by each series in an unsequence file, which
+ * is maintained when memtables are flushed into the file. The points of a series are split at
+ * the largest gaps into at most MAX_RANGE_NUM ranges, so that sparse out-of-order data, e.g., a
+ * few late points scattered over a long time, does not cover the whole time range of its device.
+ *
+ * The ranges of a series are a sorted array of [start0, end0, start1, end1, ...]. They may cover
+ * more than the data, e.g., after deletions, but never less, so a series reader can skip the
+ * sequence data outside them without merging it with this file. The index only exists for the
+ * files whose every flush is recorded in this process.
+ */
+public class UnseqOverlapIndex {
+
+  static final int MAX_RANGE_NUM = 8;
+
+  // device -> measurement -> ranges
+  private final Map<String, Map<String, long[]>> seriesRanges = new ConcurrentHashMap<>();
+
+  /**
+   * Add the points of a flushed series.
+   *
+   * @param tvList the sorted points of the series
+   */
+  public void update(String device, String measurement, TVList tvList) {
+    if (tvList.size() == 0) {
+      return;
+    }
+    long[] ranges = split(tvList);
+    seriesRanges.computeIfAbsent(device, d -> new ConcurrentHashMap<>())
+        .merge(measurement, ranges, UnseqOverlapIndex::union);
+  }
+
+  /**
+   * @return the ranges covered by the series, or null if the series is not in the file
+   */
+  public long[] getRanges(String device, String measurement) {
+    Map<String, long[]> measurementRanges = seriesRanges.get(device);
+    return measurementRanges == null ? null : measurementRanges.get(measurement);
+  }
+
+  /**
+   * Split the sorted points at the MAX_RANGE_NUM - 1 largest gaps between neighbours.
+   */
+  private static long[] split(TVList tvList) {
+    int size = tvList.size();
+    // the positions after the largest gaps, in the descending order of the gaps
+    int[] cuts = new int[MAX_RANGE_NUM - 1];
+    long[] gaps = new long[MAX_RANGE_NUM - 1];
+    int cutNum = 0;
+    long prevTime = tvList.getTime(0);
+    for (int i = 1; i < size; i++) {
+      long time = tvList.getTime(i);
+      long gap = time - prevTime;
+      prevTime = time;
+      if (gap <= 1 || cutNum == cuts.length && gap <= gaps[cutNum - 1]) {
+        continue;
+      }
+      int j = cutNum == cuts.length ? cutNum - 1 : cutNum++;
+      for (; j > 0 && gaps[j - 1] < gap; j--) {
+        gaps[j] = gaps[j - 1];
+        cuts[j] = cuts[j - 1];
+      }
+      gaps[j] = gap;
+      cuts[j] = i;
+    }
+    Arrays.sort(cuts, 0, cutNum);
+
+    long[] ranges = new long[(cutNum + 1) * 2];
+    int start = 0;
+    for (int i = 0; i <= cutNum; i++) {
+      int end = i < cutNum ? cuts[i] : size;
+      ranges[2 * i] = tvList.getTime(start);
+      ranges[2 * i + 1] = tvList.getTime(end - 1);
+      start = end;
+    }
+    return ranges;
+  }
+
+  /**
+   * Merge two sorted range arrays and join the closest neighbours until there are at most
+   * MAX_RANGE_NUM ranges.
+   */
+  static long[] union(long[] ranges1, long[] ranges2) {
+    long[] merged = new long[ranges1.length + ranges2.length];
+    int size = 0;
+    int i = 0;
+    int j = 0;
+    while (i < ranges1.length || j < ranges2.length) {
+      long[] next;
+      if (j >= ranges2.length || i < ranges1.length && ranges1[i] <= ranges2[j]) {
+        next = ranges1;
+      } else {
+        next = ranges2;
+      }
+      int k = next == ranges1 ? i : j;
+      if (size > 0 && next[k] <= merged[size - 1] + 1) {
+        merged[size - 1] = Math.max(merged[size - 1], next[k + 1]);
+      } else {
+        merged[size++] = next[k];
+        merged[size++] = next[k + 1];
+      }
+      if (next == ranges1) {
+        i += 2;
+      } else {
+        j += 2;
+      }
+    }
+
+    while (size > MAX_RANGE_NUM * 2) {
+      // join the two ranges with the smallest gap between them
+      int joined = 1;
+      for (int k = 3; k < size - 1; k += 2) {
+        if (merged[k + 1] - merged[k] < merged[joined + 1] - merged[joined]) {
+          joined = k;
+        }
+      }
+      System.arraycopy(merged, joined + 2, merged, joined, size - joined - 2);
+      size -= 2;
+    }
+    return size == merged.length ? merged : Arrays.copyOf(merged, size);
+  }
+}
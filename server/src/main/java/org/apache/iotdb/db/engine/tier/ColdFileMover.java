@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.engine.tier;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import org.apache.iotdb.db.conf.IoTDBDescriptor;
+import org.apache.iotdb.db.conf.directories.DirectoryManager;
+import org.apache.iotdb.db.engine.storagegroup.TsFileResource;
+import org.apache.iotdb.tsfile.fileSystem.FSFactoryProducer;
+import org.apache.iotdb.tsfile.fileSystem.fsFactory.FSFactory;
+
+/**
+ * ColdFileMover copies the sealed TsFiles from the data dirs to the cold tier, i.e., the cold data
+ * dirs, which are either local or on HDFS. A file keeps its storage group, time partition and name
+ * in the cold tier, and its .resource file is copied before it, so that a TsFile in the cold tier
+ * always has its resource. Each file is written with MIGRATING_SUFFIX and renamed after it is
+ * complete, and the leftovers of an interrupted copy are removed by the recovery.
+ *
+ * All copies share a token bucket refilled at coldDataMigrationThroughputMbPerSec, which holds at
+ * most one second of tokens, so that the migration does not saturate the disks or the network.
+ */
+public class ColdFileMover {
+
+  public static final String MIGRATING_SUFFIX = ".migrating";
+
+  private static final ColdFileMover INSTANCE = new ColdFileMover();
+
+  private static final long BYTES_PER_MB = 1024L * 1024L;
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  // bytes per second, a non-positive value means unlimited
+  private volatile long bytesPerSecond;
+  private double storedBytes;
+  private long lastRefillTime = System.nanoTime();
+
+  private ColdFileMover() {
+    setThroughputMbPerSec(
+        IoTDBDescriptor.getInstance().getConfig().getColdDataMigrationThroughputMbPerSec());
+  }
+
+  public static ColdFileMover getInstance() {
+    return INSTANCE;
+  }
+
+  public synchronized void setThroughputMbPerSec(int throughputMbPerSec) {
+    bytesPerSecond = throughputMbPerSec * BYTES_PER_MB;
+    storedBytes = 0;
+    lastRefillTime = System.nanoTime();
+  }
+
+  /**
+   * Copy a sealed file and its .resource file into the next folder of the cold tier.
+   *
+   * @param sequence whether the file is a sequence file
+   * @return the copy of the file in the cold tier
+   */
+  public File copyToColdTier(TsFileResource resource, boolean sequence) throws IOException {
+    File hotFile = resource.getFile();
+    File partitionFolder = hotFile.getParentFile();
+    String coldFolder = DirectoryManager.getInstance().getNextFolderForColdFile(sequence)
+        + File.separator + partitionFolder.getParentFile().getName() + File.separator
+        + partitionFolder.getName();
+    FSFactory hotFSFactory = FSFactoryProducer.getFSFactory(hotFile.getPath());
+    FSFactory coldFSFactory = FSFactoryProducer.getFSFactory(coldFolder);
+    coldFSFactory.getFile(coldFolder).mkdirs();
+    File coldFile = coldFSFactory.getFile(coldFolder, hotFile.getName());
+
+    copy(hotFSFactory, hotFile.getPath() + TsFileResource.RESOURCE_SUFFIX, coldFSFactory,
+        coldFile.getPath() + TsFileResource.RESOURCE_SUFFIX);
+    copy(hotFSFactory, hotFile.getPath(), coldFSFactory, coldFile.getPath());
+    return coldFile;
+  }
+
+  private void copy(FSFactory srcFSFactory, String srcPath, FSFactory destFSFactory,
+      String destPath) throws IOException {
+    File tempFile = destFSFactory.getFile(destPath + MIGRATING_SUFFIX);
+    byte[] buffer = new byte[BUFFER_SIZE];
+    try (InputStream inputStream = srcFSFactory.getBufferedInputStream(srcPath);
+        OutputStream outputStream = destFSFactory.getBufferedOutputStream(tempFile.getPath())) {
+      if (inputStream == null || outputStream == null) {
+        throw new IOException("Cannot copy " + srcPath + " to " + destPath);
+      }
+      int length;
+      while ((length = inputStream.read(buffer)) > 0) {
+        acquire(length);
+        outputStream.write(buffer, 0, length);
+      }
+    } catch (IOException e) {
+      tempFile.delete();
+      throw e;
+    }
+    File destFile = destFSFactory.getFile(destPath);
+    // a file left by an interrupted migration is replaced
+    destFile.delete();
+    destFSFactory.moveFile(tempFile, destFile);
+    if (!destFile.exists()) {
+      tempFile.delete();
+      throw new IOException("Cannot rename " + tempFile + " to " + destFile);
+    }
+  }
+
+  /**
+   * Wait until the bytes can be copied.
+   *
+   * @throws IOException if the thread is interrupted when waiting, e.g., the server is stopping
+   */
+  private void acquire(long bytes) throws IOException {
+    long waitTime = reserve(bytes);
+    if (waitTime <= 0) {
+      return;
+    }
+    try {
+      TimeUnit.NANOSECONDS.sleep(waitTime);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted when waiting for the migration quota", e);
+    }
+  }
+
+  /**
+   * @return how long the caller should wait in nanoseconds for the reserved bytes
+   */
+  private synchronized long reserve(long bytes) {
+    long rate = bytesPerSecond;
+    if (rate <= 0) {
+      return 0;
+    }
+    long now = System.nanoTime();
+    storedBytes = Math.min(rate, storedBytes + (double) (now - lastRefillTime) * rate / 1e9);
+    lastRefillTime = now;
+    storedBytes -= bytes;
+    return storedBytes >= 0 ? 0 : (long) (-storedBytes * 1e9 / rate);
+  }
+}
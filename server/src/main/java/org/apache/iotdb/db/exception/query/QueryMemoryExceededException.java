@@ -0,0 +1,33 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.exception.query;
+
+import org.apache.iotdb.rpc.TSStatusCode;
+
+/**
+ * Thrown when a query is rejected because the query memory budget is not freed in time.
+ */
+public class QueryMemoryExceededException extends QueryProcessException {
+
+  private static final long serialVersionUID = 4530219183728345367L;
+
+  public QueryMemoryExceededException(String message) {
+    super(message, TSStatusCode.QUERY_MEMORY_EXCEEDED_ERROR.getStatusCode());
+  }
+}
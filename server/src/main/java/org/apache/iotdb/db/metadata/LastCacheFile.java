@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.metadata;
+
+import org.apache.iotdb.db.engine.fileSystem.SystemFileFactory;
+import org.apache.iotdb.db.metadata.mnode.LeafMNode;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
+import org.apache.iotdb.tsfile.read.TimeValuePair;
+import org.apache.iotdb.tsfile.utils.ReadWriteIOUtils;
+import org.apache.iotdb.tsfile.utils.TsPrimitiveType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * LastCacheFile persists the cached last values of all timeseries when IoTDB stops normally, so
+ * that they need not be computed from the TsFiles again after a restart. The file is removed once
+ * it is loaded, because the values in it become stale as soon as new data is written.
+ */
+public class LastCacheFile {
+
+  private static final Logger logger = LoggerFactory.getLogger(LastCacheFile.class);
+  private static final String TEMP_SUFFIX = ".tmp";
+
+  private File file;
+
+  public LastCacheFile(String schemaDir, String fileName) {
+    this.file = SystemFileFactory.INSTANCE.getFile(schemaDir + File.separator + fileName);
+  }
+
+  /**
+   * Write the cached last values of the given nodes. The content is written into a temporary file
+   * first so that a crash during the writing never leaves a partial snapshot.
+   */
+  public void write(List<LeafMNode> leafMNodes) throws IOException {
+    File tempFile = SystemFileFactory.INSTANCE.getFile(file.getPath() + TEMP_SUFFIX);
+    try (OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(tempFile))) {
+      for (LeafMNode leafMNode : leafMNodes) {
+        TimeValuePair cachedLast = leafMNode.getCachedLast();
+        if (cachedLast == null) {
+          continue;
+        }
+        ReadWriteIOUtils.write(true, outputStream);
+        ReadWriteIOUtils.write(leafMNode.getFullPath(), outputStream);
+        ReadWriteIOUtils.write(cachedLast.getValue().getDataType(), outputStream);
+        ReadWriteIOUtils.write(cachedLast.getTimestamp(), outputStream);
+        writeValue(cachedLast.getValue(), outputStream);
+      }
+      // the end mark
+      ReadWriteIOUtils.write(false, outputStream);
+    }
+    Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  /**
+   * @return full path -> last value, or an empty map if there is no snapshot
+   */
+  public Map<String, TimeValuePair> read() throws IOException {
+    Map<String, TimeValuePair> lastValues = new HashMap<>();
+    if (!file.exists()) {
+      return lastValues;
+    }
+    try (InputStream inputStream = new BufferedInputStream(new FileInputStream(file))) {
+      while (ReadWriteIOUtils.readBool(inputStream)) {
+        String path = ReadWriteIOUtils.readString(inputStream);
+        TSDataType dataType = ReadWriteIOUtils.readDataType(inputStream);
+        long time = ReadWriteIOUtils.readLong(inputStream);
+        lastValues.put(path, new TimeValuePair(time, readValue(dataType, inputStream)));
+      }
+    }
+    return lastValues;
+  }
+
+  public void delete() {
+    try {
+      Files.deleteIfExists(file.toPath());
+    } catch (IOException e) {
+      logger.warn("Cannot delete last cache file {}", file, e);
+    }
+  }
+
+  private static void writeValue(TsPrimitiveType value, OutputStream outputStream)
+      throws IOException {
+    switch (value.getDataType()) {
+      case BOOLEAN:
+        ReadWriteIOUtils.write(value.getBoolean(), outputStream);
+        break;
+      case INT32:
+        ReadWriteIOUtils.write(value.getInt(), outputStream);
+        break;
+      case INT64:
+        ReadWriteIOUtils.write(value.getLong(), outputStream);
+        break;
+      case FLOAT:
+        ReadWriteIOUtils.write(value.getFloat(), outputStream);
+        break;
+      case DOUBLE:
+        ReadWriteIOUtils.write(value.getDouble(), outputStream);
+        break;
+      case TEXT:
+        ReadWriteIOUtils.write(value.getBinary(), outputStream);
+        break;
+      default:
+        throw new IOException("Unsupported data type: " + value.getDataType());
+    }
+  }
+
+  private static TsPrimitiveType readValue(TSDataType dataType, InputStream inputStream)
+      throws IOException {
+    switch (dataType) {
+      case BOOLEAN:
+        return new TsPrimitiveType.TsBoolean(ReadWriteIOUtils.readBool(inputStream));
+      case INT32:
+        return new TsPrimitiveType.TsInt(ReadWriteIOUtils.readInt(inputStream));
+      case INT64:
+        return new TsPrimitiveType.TsLong(ReadWriteIOUtils.readLong(inputStream));
+      case FLOAT:
+        return new TsPrimitiveType.TsFloat(ReadWriteIOUtils.readFloat(inputStream));
+      case DOUBLE:
+        return new TsPrimitiveType.TsDouble(ReadWriteIOUtils.readDouble(inputStream));
+      case TEXT:
+        return new TsPrimitiveType.TsBinary(ReadWriteIOUtils.readBinary(inputStream));
+      default:
+        throw new IOException("Unsupported data type: " + dataType);
+    }
+  }
+}
@@ -20,21 +20,33 @@ package org.apache.iotdb.db.metadata;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import org.apache.iotdb.db.engine.fileSystem.SystemFileFactory;
 import org.apache.iotdb.db.qp.physical.sys.CreateTimeSeriesPlan;
 import org.apache.iotdb.tsfile.fileSystem.FSFactoryProducer;
+import org.apache.iotdb.tsfile.utils.Pair;
+import org.apache.iotdb.tsfile.utils.ReadWriteIOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class MLogWriter {
 
   private static final Logger logger = LoggerFactory.getLogger(MLogWriter.class);
+  // written by synchronized methods, as timeseries of different storage groups are created
+  // concurrently
   private BufferedWriter writer;
+  // the number of operations written by this writer
+  private long lineNumber = 0;
 
   public MLogWriter(String schemaDir, String logFileName) throws IOException {
     File metadataDir = SystemFileFactory.INSTANCE.getFile(schemaDir);
@@ -54,11 +66,41 @@ public class MLogWriter {
   }
 
 
-  public void close() throws IOException {
+  public synchronized void close() throws IOException {
     writer.close();
   }
 
-  public void createTimeseries(CreateTimeSeriesPlan plan, long offset) throws IOException {
+  private void newLine() throws IOException {
+    writer.newLine();
+    writer.flush();
+    lineNumber++;
+  }
+
+  public synchronized long getLineNumber() {
+    return lineNumber;
+  }
+
+  public synchronized void createTimeseries(CreateTimeSeriesPlan plan, long offset) throws IOException {
+    writeCreateTimeseries(plan, offset);
+    newLine();
+  }
+
+  /**
+   * Log the creation of the timeseries, one line each as createTimeseries() does, with one flush.
+   *
+   * @param offsets the offset of each timeseries in the tag file, or -1
+   */
+  public synchronized void createTimeseries(List<CreateTimeSeriesPlan> plans, long[] offsets)
+      throws IOException {
+    for (int i = 0; i < plans.size(); i++) {
+      writeCreateTimeseries(plans.get(i), offsets[i]);
+      writer.newLine();
+      lineNumber++;
+    }
+    writer.flush();
+  }
+
+  private void writeCreateTimeseries(CreateTimeSeriesPlan plan, long offset) throws IOException {
     writer.write(String.format("%s,%s,%s,%s,%s", MetadataOperationType.CREATE_TIMESERIES,
         plan.getPath().getFullPath(), plan.getDataType().serialize(), plan.getEncoding().serialize(),
         plan.getCompressor().serialize()));
@@ -85,39 +127,68 @@ public class MLogWriter {
     if (offset >= 0) {
       writer.write(String.valueOf(offset));
     }
-
-    writer.newLine();
-    writer.flush();
   }
 
-  public void deleteTimeseries(String path) throws IOException {
+  public synchronized void deleteTimeseries(String path) throws IOException {
     writer.write(MetadataOperationType.DELETE_TIMESERIES + "," + path);
-    writer.newLine();
-    writer.flush();
+    newLine();
   }
 
-  public void setStorageGroup(String storageGroup) throws IOException {
+  public synchronized void setStorageGroup(String storageGroup) throws IOException {
     writer.write(MetadataOperationType.SET_STORAGE_GROUP + "," + storageGroup);
-    writer.newLine();
-    writer.flush();
+    newLine();
   }
 
-  public void deleteStorageGroup(String storageGroup) throws IOException {
+  public synchronized void deleteStorageGroup(String storageGroup) throws IOException {
     writer.write(MetadataOperationType.DELETE_STORAGE_GROUP + "," + storageGroup);
-    writer.newLine();
-    writer.flush();
+    newLine();
   }
 
-  public void setTTL(String storageGroup, long ttl) throws IOException {
+  public synchronized void setTTL(String storageGroup, long ttl) throws IOException {
     writer.write(String.format("%s,%s,%s", MetadataOperationType.SET_TTL, storageGroup, ttl));
-    writer.newLine();
-    writer.flush();
+    newLine();
   }
 
-  public void changeOffset(String path, long offset) throws IOException {
+  public synchronized void changeOffset(String path, long offset) throws IOException {
     writer.write(String.format("%s,%s,%s", MetadataOperationType.CHANGE_OFFSET, path, offset));
-    writer.newLine();
-    writer.flush();
+    newLine();
+  }
+
+  /**
+   * Log the tags removed from and added to a timeseries whose tags are altered in place. The tags
+   * are serialized and encoded in Base64, as they may contain the separators of the log.
+   */
+  public synchronized void alterTags(String path, Map<String, String> removedTags,
+      Map<String, String> addedTags) throws IOException {
+    writer.write(String.format("%s,%s,%s", MetadataOperationType.ALTER_TAGS, path,
+        encodeTags(removedTags, addedTags)));
+    newLine();
+  }
+
+  static String encodeTags(Map<String, String> removedTags, Map<String, String> addedTags)
+      throws IOException {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    writeTags(removedTags, outputStream);
+    writeTags(addedTags, outputStream);
+    return Base64.getEncoder().encodeToString(outputStream.toByteArray());
+  }
+
+  private static void writeTags(Map<String, String> tags, OutputStream outputStream)
+      throws IOException {
+    ReadWriteIOUtils.write(tags.size(), outputStream);
+    for (Entry<String, String> entry : tags.entrySet()) {
+      ReadWriteIOUtils.write(entry.getKey(), outputStream);
+      ReadWriteIOUtils.write(entry.getValue(), outputStream);
+    }
+  }
+
+  /**
+   * @return the removed tags and the added tags encoded by encodeTags()
+   */
+  static Pair<Map<String, String>, Map<String, String>> decodeTags(String encodedTags) {
+    ByteBuffer buffer = ByteBuffer.wrap(Base64.getDecoder().decode(encodedTags));
+    Map<String, String> removedTags = ReadWriteIOUtils.readMap(buffer);
+    return new Pair<>(removedTags, ReadWriteIOUtils.readMap(buffer));
   }
 
   public static void upgradeMLog(String schemaDir, String logFileName) throws IOException {
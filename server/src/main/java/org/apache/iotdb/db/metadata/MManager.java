@@ -18,7 +18,10 @@
  */
 package org.apache.iotdb.db.metadata;
 
+import org.apache.iotdb.db.concurrent.IoTDBThreadPoolFactory;
+import org.apache.iotdb.db.concurrent.ThreadName;
 import org.apache.iotdb.db.conf.IoTDBConfig;
+import org.apache.iotdb.db.conf.IoTDBConstant;
 import org.apache.iotdb.db.conf.IoTDBDescriptor;
 import org.apache.iotdb.db.conf.adapter.ActiveTimeSeriesCounter;
 import org.apache.iotdb.db.conf.adapter.IoTDBConfigDynamicAdapter;
@@ -30,6 +33,9 @@ import org.apache.iotdb.db.metadata.mnode.InternalMNode;
 import org.apache.iotdb.db.metadata.mnode.LeafMNode;
 import org.apache.iotdb.db.metadata.mnode.MNode;
 import org.apache.iotdb.db.metadata.mnode.StorageGroupMNode;
+import org.apache.iotdb.db.metadata.tag.PostingList;
+import org.apache.iotdb.db.metadata.tag.TagFilter;
+import org.apache.iotdb.db.metadata.tag.TagIndex;
 import org.apache.iotdb.db.monitor.MonitorConstants;
 import org.apache.iotdb.db.qp.constant.SQLConstant;
 import org.apache.iotdb.db.qp.physical.sys.CreateTimeSeriesPlan;
@@ -41,6 +47,7 @@ import org.apache.iotdb.tsfile.exception.cache.CacheException;
 import org.apache.iotdb.tsfile.file.metadata.enums.CompressionType;
 import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
 import org.apache.iotdb.tsfile.file.metadata.enums.TSEncoding;
+import org.apache.iotdb.tsfile.read.TimeValuePair;
 import org.apache.iotdb.tsfile.read.common.Path;
 import org.apache.iotdb.tsfile.utils.Pair;
 import org.apache.iotdb.tsfile.write.schema.MeasurementSchema;
@@ -48,10 +55,15 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
@@ -63,8 +75,13 @@ public class MManager {
 
   private static final Logger logger = LoggerFactory.getLogger(MManager.class);
   private static final String TIME_SERIES_TREE_HEADER = "===  Timeseries Tree  ===\n\n";
+  private static final long MTREE_SNAPSHOT_CHECK_INTERVAL_IN_S = 10;
 
-  // the lock for read/insert
+  // the lock of the storage groups and their ancestors in MTree. The subtree of each storage group
+  // is guarded by the schema lock of the storage group node in addition, so that an operation in
+  // one storage group holds the read lock of this lock and the schema lock of the storage group,
+  // and does not block those in other storage groups. Operations that change storage groups, or
+  // are rare such as deleting timeseries and altering tags, hold the write lock.
   private ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
   // the log file seriesPath
   private String logFilePath;
@@ -75,15 +92,25 @@ public class MManager {
   // device -> DeviceMNode
   private RandomDeleteCache<String, MNode> mNodeCache;
 
-  // tag key -> tag value -> LeafMNode
-  private Map<String, Map<String, Set<LeafMNode>>> tagIndex = new HashMap<>();
+  // path pattern -> the timeseries it resolves to
+  private PathPatternCache pathPatternCache;
 
-  // storage group name -> the series number
+  // the inverted index of tags, synchronized on itself when creating timeseries
+  private TagIndex tagIndex;
+
+  // storage group name -> the series number, synchronized on itself when creating timeseries
   private Map<String, Integer> seriesNumberInStorageGroups = new HashMap<>();
-  private long maxSeriesNumberAmongStorageGroup;
+  private volatile long maxSeriesNumberAmongStorageGroup;
   private boolean initialized;
   private IoTDBConfig config;
 
+  private MTreeSnapshot mtreeSnapshot;
+  private ScheduledExecutorService mtreeSnapshotService;
+  // the number of operations replayed from the tail of the log when initializing
+  private long replayedLineNumber;
+  // the line number of logWriter when the last snapshot is created
+  private long snapshotLineNumber;
+
   private static class MManagerHolder {
 
     private MManagerHolder() {
@@ -105,6 +132,9 @@ public class MManager {
       }
     }
     logFilePath = schemaDir + File.separator + MetadataConstant.METADATA_LOG;
+    mtreeSnapshot = new MTreeSnapshot(schemaDir, MetadataConstant.MTREE_SNAPSHOT);
+    tagIndex = new TagIndex(config.getTagAttributeTotalSize());
+    pathPatternCache = new PathPatternCache(config.getPathPatternCacheSize());
 
     // do not write log when recover
     writeToLog = false;
@@ -116,11 +146,13 @@ public class MManager {
           @Override
           public MNode loadObjectByKey(String key) throws CacheException {
             lock.readLock().lock();
+            Lock storageGroupLock = readLockStorageGroup(key);
             try {
               return mtree.getNodeByPathWithStorageGroupCheck(key);
             } catch (MetadataException e) {
               throw new CacheException(e);
             } finally {
+              unlock(storageGroupLock);
               lock.readLock().unlock();
             }
           }
@@ -138,6 +170,7 @@ public class MManager {
       return;
     }
     File logFile = SystemFileFactory.INSTANCE.getFile(logFilePath);
+    pathPatternCache = new PathPatternCache(config.getPathPatternCacheSize());
 
     try {
       tagLogFile = new TagLogFile(config.getSchemaDir(), MetadataConstant.TAG_LOG);
@@ -156,6 +189,14 @@ public class MManager {
 
       logWriter = new MLogWriter(config.getSchemaDir(), MetadataConstant.METADATA_LOG);
       writeToLog = true;
+      snapshotLineNumber = 0;
+      if (config.getMtreeSnapshotInterval() > 0) {
+        mtreeSnapshotService = IoTDBThreadPoolFactory
+            .newSingleThreadScheduledExecutor(ThreadName.MTREE_SNAPSHOT_SERVICE.getName());
+        mtreeSnapshotService.scheduleWithFixedDelay(this::checkMTreeSnapshot,
+            MTREE_SNAPSHOT_CHECK_INTERVAL_IN_S, MTREE_SNAPSHOT_CHECK_INTERVAL_IN_S,
+            TimeUnit.SECONDS);
+      }
     } catch (IOException | MetadataException e) {
       mtree = new MTree();
       logger.error("Cannot read MTree from file, using an empty new one", e);
@@ -164,13 +205,17 @@ public class MManager {
   }
 
   private void initFromLog(File logFile) throws IOException {
-    // init the metadata from the operation log
-    mtree = new MTree();
+    // init the metadata from the snapshot and the operations logged after it
+    long logOffset = loadMTreeSnapshot(logFile);
+    replayedLineNumber = 0;
     if (logFile.exists()) {
-      try (FileReader fr = new FileReader(logFile);
-          BufferedReader br = new BufferedReader(fr)) {
+      try (FileInputStream fis = new FileInputStream(logFile);
+          BufferedReader br = new BufferedReader(new InputStreamReader(fis))) {
+        // nothing is read before positioning, the reader is lazy
+        fis.getChannel().position(logOffset);
         String cmd;
         while ((cmd = br.readLine()) != null) {
+          replayedLineNumber++;
           try {
             operation(cmd);
           } catch (Exception e) {
@@ -181,21 +226,172 @@ public class MManager {
     }
   }
 
+  /**
+   * Load the MTree and the tag index from the snapshot, or create an empty MTree if there is no
+   * valid snapshot.
+   *
+   * @return the length of the log covered by the snapshot, from where the log should be replayed
+   */
+  private long loadMTreeSnapshot(File logFile) {
+    mtree = new MTree();
+    if (!mtreeSnapshot.exists()) {
+      return 0;
+    }
+    long startTime = System.currentTimeMillis();
+    MNode root;
+    try {
+      root = mtreeSnapshot.read(tagIndex);
+    } catch (IOException e) {
+      logger.warn("Cannot read MTree snapshot, replay the whole metadata log instead", e);
+      tagIndex.clear();
+      return 0;
+    }
+    if (mtreeSnapshot.getLogLength() > logFile.length()) {
+      logger.warn("MTree snapshot covers {} bytes of metadata log but the log has only {}, replay "
+          + "the whole log instead", mtreeSnapshot.getLogLength(), logFile.length());
+      tagIndex.clear();
+      return 0;
+    }
+
+    mtree = new MTree(root);
+    for (StorageGroupMNode storageGroupMNode : mtree.getAllStorageGroupNodes()) {
+      try {
+        IoTDBConfigDynamicAdapter.getInstance().addOrDeleteStorageGroup(1);
+        if (config.isEnableParameterAdapter()) {
+          ActiveTimeSeriesCounter.getInstance().init(storageGroupMNode.getFullPath());
+          seriesNumberInStorageGroups
+              .put(storageGroupMNode.getFullPath(), storageGroupMNode.getLeafCount());
+        }
+        IoTDBConfigDynamicAdapter.getInstance()
+            .addOrDeleteTimeSeries(storageGroupMNode.getLeafCount());
+      } catch (ConfigAdjusterException e) {
+        logger.error("Cannot adapt parameters for storage group {}",
+            storageGroupMNode.getFullPath(), e);
+      }
+    }
+    logger.info("MTree snapshot is loaded in {} ms", System.currentTimeMillis() - startTime);
+    return mtreeSnapshot.getLogLength();
+  }
+
+  /**
+   * Save a snapshot of the MTree if any operation is logged after the last one, so that the next
+   * startup only replays the operations logged after it. The MTree cannot be modified until the
+   * snapshot is written.
+   */
+  public void createMTreeSnapshot() {
+    createMTreeSnapshot(1);
+  }
+
+  private void checkMTreeSnapshot() {
+    createMTreeSnapshot(config.getMtreeSnapshotInterval());
+  }
+
+  /**
+   * @param minNewLineNumber the snapshot is created only if at least this number of operations are
+   *                         logged after the last one
+   */
+  private synchronized void createMTreeSnapshot(long minNewLineNumber) {
+    lock.readLock().lock();
+    List<Lock> storageGroupLocks = readLockAllStorageGroups();
+    try {
+      if (!initialized || logWriter == null
+          || replayedLineNumber + logWriter.getLineNumber() - snapshotLineNumber
+          < minNewLineNumber) {
+        return;
+      }
+      long startTime = System.currentTimeMillis();
+      // all operations are flushed into the log while holding the write locks
+      long logLength = SystemFileFactory.INSTANCE.getFile(logFilePath).length();
+      mtreeSnapshot.write(mtree.getRoot(), logLength, tagIndex);
+      replayedLineNumber = 0;
+      snapshotLineNumber = logWriter.getLineNumber();
+      logger.info("MTree snapshot covering {} bytes of metadata log is created in {} ms",
+          logLength, System.currentTimeMillis() - startTime);
+    } catch (IOException e) {
+      logger.error("Cannot create MTree snapshot", e);
+    } finally {
+      unlockAll(storageGroupLocks);
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Warm up the last cache with the snapshot saved by saveLastCacheSnapshot() and remove the
+   * snapshot.
+   */
+  public void loadLastCacheSnapshot() {
+    LastCacheFile lastCacheFile =
+        new LastCacheFile(config.getSchemaDir(), MetadataConstant.LAST_CACHE_SNAPSHOT);
+    lock.readLock().lock();
+    List<Lock> storageGroupLocks = readLockAllStorageGroups();
+    try {
+      for (Entry<String, TimeValuePair> entry : lastCacheFile.read().entrySet()) {
+        try {
+          MNode node = mtree.getNodeByPath(entry.getKey());
+          // the timeseries may be deleted and created again with another type
+          if (node instanceof LeafMNode && ((LeafMNode) node).getSchema().getType()
+              == entry.getValue().getValue().getDataType()) {
+            ((LeafMNode) node).updateCachedLast(entry.getValue(), false, Long.MIN_VALUE);
+          }
+        } catch (MetadataException e) {
+          logger.debug("Timeseries {} of the last cache snapshot no longer exists", entry.getKey());
+        }
+      }
+    } catch (IOException e) {
+      logger.warn("Cannot load the last cache snapshot, last values will be computed on demand", e);
+    } finally {
+      unlockAll(storageGroupLocks);
+      lock.readLock().unlock();
+      // new data will be written after loading, so the snapshot must not be used again
+      lastCacheFile.delete();
+    }
+  }
+
+  /**
+   * Persist the cached last values of all timeseries so that the last cache need not be warmed up
+   * from the TsFiles after a restart. This should only be called when IoTDB is stopped normally and
+   * all the data has been flushed.
+   */
+  public void saveLastCacheSnapshot() {
+    LastCacheFile lastCacheFile =
+        new LastCacheFile(config.getSchemaDir(), MetadataConstant.LAST_CACHE_SNAPSHOT);
+    lock.readLock().lock();
+    List<Lock> storageGroupLocks = readLockAllStorageGroups();
+    try {
+      if (initialized) {
+        lastCacheFile.write(mtree.getAllLeafMNodes());
+      }
+    } catch (IOException e) {
+      logger.warn("Cannot save the last cache snapshot", e);
+      lastCacheFile.delete();
+    } finally {
+      unlockAll(storageGroupLocks);
+      lock.readLock().unlock();
+    }
+  }
+
   /**
    * function for clearing MTree
    */
   public void clear() {
+    if (mtreeSnapshotService != null) {
+      mtreeSnapshotService.shutdownNow();
+      mtreeSnapshotService = null;
+    }
     lock.writeLock().lock();
     try {
       this.mtree = new MTree();
       this.mNodeCache.clear();
       this.tagIndex.clear();
+      this.pathPatternCache.clear();
       this.seriesNumberInStorageGroups.clear();
       this.maxSeriesNumberAmongStorageGroup = 0;
       if (logWriter != null) {
         logWriter.close();
         logWriter = null;
       }
+      // do not write log when recover
+      writeToLog = false;
       if (tagLogFile != null) {
         tagLogFile.close();
         tagLogFile = null;
@@ -263,6 +459,12 @@ public class MManager {
       case MetadataOperationType.CHANGE_OFFSET:
         changeOffset(args[1], Long.parseLong(args[2]));
         break;
+      case MetadataOperationType.ALTER_TAGS:
+        Pair<Map<String, String>, Map<String, String>> alteredTags = MLogWriter
+            .decodeTags(args[2]);
+        alterTagIndex((LeafMNode) mtree.getNodeByPath(args[1]), alteredTags.left,
+            alteredTags.right);
+        break;
       default:
         logger.error("Unrecognizable command {}", cmd);
     }
@@ -273,69 +475,333 @@ public class MManager {
   }
 
   public void createTimeseries(CreateTimeSeriesPlan plan, long offset) throws MetadataException {
-    lock.writeLock().lock();
     String path = plan.getPath().getFullPath();
+    /*
+     * auto create the storage group
+     */
+    setStorageGroupIfAbsent(path, config.isAutoCreateSchemaEnabled(),
+        config.getDefaultStorageGroupLevel());
+    lock.readLock().lock();
     try {
-      /*
-       * get the storage group with auto create schema
-       */
-      String storageGroupName;
+      StorageGroupMNode storageGroupMNode = getStorageGroupNodeOnPath(path);
+      String storageGroupName = storageGroupMNode.getFullPath();
+
+      ReadWriteLock schemaLock = storageGroupMNode.getSchemaLock();
+      schemaLock.writeLock().lock();
       try {
-        storageGroupName = mtree.getStorageGroupName(path);
-      } catch (StorageGroupNotSetException e) {
-        if (!config.isAutoCreateSchemaEnabled()) {
+        // create time series in MTree
+        LeafMNode leafMNode = mtree
+            .createTimeseries(path, plan.getDataType(), plan.getEncoding(), plan.getCompressor(),
+                plan.getProps(), plan.getAlias());
+        // no query can resolve a pattern before the storage group is unlocked
+        pathPatternCache.invalidate(MetaUtils.getNodeNames(path), plan.getAlias());
+        try {
+          // check memory
+          IoTDBConfigDynamicAdapter.getInstance().addOrDeleteTimeSeries(1);
+        } catch (ConfigAdjusterException e) {
+          removeFromTagInvertedIndex(mtree.deleteTimeseriesAndReturnEmptyStorageGroup(path).right);
           throw e;
         }
-        storageGroupName =
-            MetaUtils.getStorageGroupNameByLevel(path, config.getDefaultStorageGroupLevel());
-        setStorageGroup(storageGroupName);
+
+        // the id of the timeseries in the tag index is derived from its offset in the tag file
+        if (writeToLog) {
+          // either tags or attributes is not empty
+          if ((plan.getTags() != null && !plan.getTags().isEmpty())
+              || (plan.getAttributes() != null && !plan.getAttributes().isEmpty())) {
+            offset = tagLogFile.write(plan.getTags(), plan.getAttributes());
+          }
+        }
+        leafMNode.setOffset(offset);
+
+        // update tag index
+        if (plan.getTags() != null) {
+          synchronized (tagIndex) {
+            tagIndex.addTags(leafMNode, plan.getTags());
+          }
+        }
+
+        // update statistics
+        if (config.isEnableParameterAdapter()) {
+          synchronized (seriesNumberInStorageGroups) {
+            int size = seriesNumberInStorageGroups.get(storageGroupName);
+            seriesNumberInStorageGroups.put(storageGroupName, size + 1);
+            if (size + 1 > maxSeriesNumberAmongStorageGroup) {
+              maxSeriesNumberAmongStorageGroup = size + 1;
+            }
+          }
+        }
+
+        // write log
+        if (writeToLog) {
+          logWriter.createTimeseries(plan, offset);
+        }
+      } finally {
+        schemaLock.writeLock().unlock();
+      }
+    } catch (IOException | ConfigAdjusterException e) {
+      throw new MetadataException(e.getMessage());
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Create the timeseries as a batch. The timeseries of one storage group are created while holding
+   * its write lock once and are logged with one flush of the metadata log, so that a batch with
+   * many new timeseries, e.g., the schema auto-creation of insertTablets, does not pay a lock
+   * acquisition and a flush for each of them. A timeseries that fails, e.g., as it already exists,
+   * does not affect the others.
+   *
+   * @return the failure of each plan, which is null if the timeseries is created
+   */
+  public MetadataException[] createTimeseries(List<CreateTimeSeriesPlan> plans) {
+    MetadataException[] failures = new MetadataException[plans.size()];
+    for (int i = 0; i < plans.size(); i++) {
+      try {
+        setStorageGroupIfAbsent(plans.get(i).getPath().getFullPath(),
+            config.isAutoCreateSchemaEnabled(), config.getDefaultStorageGroupLevel());
+      } catch (MetadataException e) {
+        failures[i] = e;
+      }
+    }
+    lock.readLock().lock();
+    try {
+      // storage group -> the indexes of the plans in it
+      Map<StorageGroupMNode, List<Integer>> storageGroupPlans = new LinkedHashMap<>();
+      for (int i = 0; i < plans.size(); i++) {
+        if (failures[i] != null) {
+          continue;
+        }
+        try {
+          StorageGroupMNode storageGroupMNode = getStorageGroupNodeOnPath(
+              plans.get(i).getPath().getFullPath());
+          storageGroupPlans.computeIfAbsent(storageGroupMNode, k -> new ArrayList<>()).add(i);
+        } catch (MetadataException e) {
+          failures[i] = e;
+        }
+      }
+      for (Entry<StorageGroupMNode, List<Integer>> entry : storageGroupPlans.entrySet()) {
+        createTimeseriesInStorageGroup(entry.getKey(), plans, entry.getValue(), failures);
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+    return failures;
+  }
+
+  /**
+   * Create the timeseries of the plans at the indexes, which are all in the storage group. The read
+   * lock of lock must be held.
+   */
+  private void createTimeseriesInStorageGroup(StorageGroupMNode storageGroupMNode,
+      List<CreateTimeSeriesPlan> plans, List<Integer> indexes, MetadataException[] failures) {
+    List<Integer> createdIndexes = new ArrayList<>(indexes.size());
+    List<LeafMNode> leafMNodes = new ArrayList<>(indexes.size());
+    ReadWriteLock schemaLock = storageGroupMNode.getSchemaLock();
+    schemaLock.writeLock().lock();
+    try {
+      for (int i : indexes) {
+        CreateTimeSeriesPlan plan = plans.get(i);
+        String path = plan.getPath().getFullPath();
+        try {
+          // the storage group may be deleted while setting another one in this batch
+          if (mtree.getStorageGroupNodeOnPath(path) != storageGroupMNode) {
+            throw new StorageGroupNotSetException(path);
+          }
+          LeafMNode leafMNode = mtree
+              .createTimeseries(path, plan.getDataType(), plan.getEncoding(), plan.getCompressor(),
+                  plan.getProps(), plan.getAlias());
+          pathPatternCache.invalidate(MetaUtils.getNodeNames(path), plan.getAlias());
+          createdIndexes.add(i);
+          leafMNodes.add(leafMNode);
+        } catch (MetadataException e) {
+          failures[i] = e;
+        }
+      }
+      if (createdIndexes.isEmpty()) {
+        return;
       }
 
-      // create time series in MTree
-      LeafMNode leafMNode = mtree
-          .createTimeseries(path, plan.getDataType(), plan.getEncoding(), plan.getCompressor(),
-              plan.getProps(), plan.getAlias());
       try {
         // check memory
-        IoTDBConfigDynamicAdapter.getInstance().addOrDeleteTimeSeries(1);
+        IoTDBConfigDynamicAdapter.getInstance().addOrDeleteTimeSeries(createdIndexes.size());
       } catch (ConfigAdjusterException e) {
-        removeFromTagInvertedIndex(mtree.deleteTimeseriesAndReturnEmptyStorageGroup(path).right);
-        throw e;
+        for (int i : createdIndexes) {
+          failures[i] = new MetadataException(e.getMessage());
+          removeCreatedTimeseries(plans.get(i));
+        }
+        return;
+      }
+
+      // the tag file is written after the memory check, as in createTimeseries(), so that nothing
+      // is left in it by the timeseries rejected
+      if (writeToLog) {
+        for (int k = createdIndexes.size() - 1; k >= 0; k--) {
+          CreateTimeSeriesPlan plan = plans.get(createdIndexes.get(k));
+          if ((plan.getTags() == null || plan.getTags().isEmpty())
+              && (plan.getAttributes() == null || plan.getAttributes().isEmpty())) {
+            continue;
+          }
+          try {
+            leafMNodes.get(k).setOffset(tagLogFile.write(plan.getTags(), plan.getAttributes()));
+          } catch (IOException e) {
+            failures[createdIndexes.get(k)] = new MetadataException(e.getMessage());
+            removeCreatedTimeseries(plan);
+            createdIndexes.remove(k);
+            leafMNodes.remove(k);
+            try {
+              IoTDBConfigDynamicAdapter.getInstance().addOrDeleteTimeSeries(-1);
+            } catch (ConfigAdjusterException ex) {
+              logger.error("Cannot adapt parameters after removing timeseries {}",
+                  plan.getPath(), ex);
+            }
+          }
+        }
       }
 
       // update tag index
-      if (plan.getTags() != null) {
-        // tag key, tag value
-        for (Entry<String, String> entry : plan.getTags().entrySet()) {
-          tagIndex.computeIfAbsent(entry.getKey(), k -> new HashMap<>())
-              .computeIfAbsent(entry.getValue(), v -> new HashSet<>()).add(leafMNode);
+      List<CreateTimeSeriesPlan> createdPlans = new ArrayList<>(createdIndexes.size());
+      long[] offsets = new long[createdIndexes.size()];
+      for (int k = 0; k < createdIndexes.size(); k++) {
+        CreateTimeSeriesPlan plan = plans.get(createdIndexes.get(k));
+        LeafMNode leafMNode = leafMNodes.get(k);
+        if (plan.getTags() != null) {
+          synchronized (tagIndex) {
+            tagIndex.addTags(leafMNode, plan.getTags());
+          }
         }
+        createdPlans.add(plan);
+        offsets[k] = leafMNode.getOffset();
       }
 
       // update statistics
       if (config.isEnableParameterAdapter()) {
-        int size = seriesNumberInStorageGroups.get(storageGroupName);
-        seriesNumberInStorageGroups.put(storageGroupName, size + 1);
-        if (size + 1 > maxSeriesNumberAmongStorageGroup) {
-          maxSeriesNumberAmongStorageGroup = size + 1;
+        String storageGroupName = storageGroupMNode.getFullPath();
+        synchronized (seriesNumberInStorageGroups) {
+          int size = seriesNumberInStorageGroups.get(storageGroupName) + createdIndexes.size();
+          seriesNumberInStorageGroups.put(storageGroupName, size);
+          if (size > maxSeriesNumberAmongStorageGroup) {
+            maxSeriesNumberAmongStorageGroup = size;
+          }
         }
       }
 
       // write log
       if (writeToLog) {
-        // either tags or attributes is not empty
-        if ((plan.getTags() != null && !plan.getTags().isEmpty())
-            || (plan.getAttributes() != null && !plan.getAttributes().isEmpty())) {
-          offset = tagLogFile.write(plan.getTags(), plan.getAttributes());
+        try {
+          logWriter.createTimeseries(createdPlans, offsets);
+        } catch (IOException e) {
+          for (int i : createdIndexes) {
+            failures[i] = new MetadataException(e.getMessage());
+          }
         }
-        logWriter.createTimeseries(plan, offset);
       }
-      leafMNode.setOffset(offset);
+    } finally {
+      schemaLock.writeLock().unlock();
+    }
+  }
 
-    } catch (IOException | ConfigAdjusterException e) {
-      throw new MetadataException(e.getMessage());
+  /**
+   * Remove the timeseries of the plan from the MTree, which is created in a batch but fails before
+   * being logged. The schema lock of its storage group must be held.
+   */
+  private void removeCreatedTimeseries(CreateTimeSeriesPlan plan) {
+    try {
+      mtree.deleteTimeseriesAndReturnEmptyStorageGroup(plan.getPath().getFullPath());
+    } catch (MetadataException e) {
+      logger.error("Cannot remove timeseries {} which is not created", plan.getPath(), e);
+    }
+  }
+
+  /**
+   * Set the storage group of the path if it is not set and autoCreateSchema is true. The caller
+   * must not hold the read lock of lock, as a storage group is set with the write lock.
+   *
+   * @throws StorageGroupAlreadySetException if the storage group conflicts with another one
+   */
+  private void setStorageGroupIfAbsent(String path, boolean autoCreateSchema, int sgLevel)
+      throws MetadataException {
+    if (!autoCreateSchema) {
+      return;
+    }
+    lock.readLock().lock();
+    try {
+      if (mtree.getStorageGroupNodeOnPath(path) != null) {
+        return;
+      }
     } finally {
-      lock.writeLock().unlock();
+      lock.readLock().unlock();
+    }
+    try {
+      setStorageGroup(MetaUtils.getStorageGroupNameByLevel(path, sgLevel));
+    } catch (StorageGroupAlreadySetException e) {
+      // the storage group may be set concurrently, otherwise it conflicts with another one
+      lock.readLock().lock();
+      try {
+        if (mtree.getStorageGroupNodeOnPath(path) == null) {
+          throw e;
+        }
+      } finally {
+        lock.readLock().unlock();
+      }
+    }
+  }
+
+  /**
+   * The read lock of lock must be held.
+   *
+   * @throws StorageGroupNotSetException if the path is in no storage group, e.g., it is not auto
+   *                                     created or is deleted just after being set
+   */
+  private StorageGroupMNode getStorageGroupNodeOnPath(String path)
+      throws StorageGroupNotSetException {
+    StorageGroupMNode storageGroupMNode = mtree.getStorageGroupNodeOnPath(path);
+    if (storageGroupMNode == null) {
+      throw new StorageGroupNotSetException(path);
+    }
+    return storageGroupMNode;
+  }
+
+  /**
+   * Lock the subtree of the storage group on the path for reading. The read lock of lock must be
+   * held.
+   *
+   * @return the locked lock, or null if there is no storage group on the path
+   */
+  private Lock readLockStorageGroup(String path) {
+    StorageGroupMNode storageGroupMNode = mtree.getStorageGroupNodeOnPath(path);
+    if (storageGroupMNode == null) {
+      return null;
+    }
+    Lock storageGroupLock = storageGroupMNode.getSchemaLock().readLock();
+    storageGroupLock.lock();
+    return storageGroupLock;
+  }
+
+  /**
+   * Lock the subtrees of all storage groups for reading, for the operations that read across
+   * storage groups. The read lock of lock must be held.
+   */
+  private List<Lock> readLockAllStorageGroups() {
+    List<StorageGroupMNode> storageGroupMNodes = mtree.getAllStorageGroupNodes();
+    List<Lock> storageGroupLocks = new ArrayList<>(storageGroupMNodes.size());
+    for (StorageGroupMNode storageGroupMNode : storageGroupMNodes) {
+      Lock storageGroupLock = storageGroupMNode.getSchemaLock().readLock();
+      storageGroupLock.lock();
+      storageGroupLocks.add(storageGroupLock);
+    }
+    return storageGroupLocks;
+  }
+
+  private static void unlock(Lock storageGroupLock) {
+    if (storageGroupLock != null) {
+      storageGroupLock.unlock();
+    }
+  }
+
+  private static void unlockAll(List<Lock> storageGroupLocks) {
+    for (Lock storageGroupLock : storageGroupLocks) {
+      storageGroupLock.unlock();
     }
   }
 
@@ -419,15 +885,7 @@ public class MManager {
     Map<String, String> tagMap =
         tagLogFile.readTag(config.getTagAttributeTotalSize(), node.getOffset());
     if (tagMap != null) {
-      for (Entry<String, String> entry : tagMap.entrySet()) {
-        tagIndex.get(entry.getKey()).get(entry.getValue()).remove(node);
-        if (tagIndex.get(entry.getKey()).get(entry.getValue()).isEmpty()) {
-          tagIndex.get(entry.getKey()).remove(entry.getValue());
-          if (tagIndex.get(entry.getKey()).isEmpty()) {
-            tagIndex.remove(entry.getKey());
-          }
-        }
-      }
+      tagIndex.removeNode(node, tagMap);
     }
   }
 
@@ -440,6 +898,7 @@ public class MManager {
     lock.writeLock().lock();
     try {
       Pair<String, LeafMNode> pair = mtree.deleteTimeseriesAndReturnEmptyStorageGroup(path);
+      pathPatternCache.invalidate(MetaUtils.getNodeNames(path), pair.right.getAlias());
       removeFromTagInvertedIndex(pair.right);
       String storageGroupName = pair.left;
 
@@ -509,6 +968,7 @@ public class MManager {
       for (String storageGroup : storageGroups) {
         // try to delete storage group
         List<LeafMNode> leafMNodes = mtree.deleteStorageGroup(storageGroup);
+        pathPatternCache.invalidateSubtree(MetaUtils.getNodeNames(storageGroup));
         for (LeafMNode leafMNode : leafMNodes) {
           removeFromTagInvertedIndex(leafMNode);
         }
@@ -561,12 +1021,14 @@ public class MManager {
    */
   public TSDataType getSeriesType(String path) throws MetadataException {
     lock.readLock().lock();
+    Lock storageGroupLock = readLockStorageGroup(path);
     try {
       if (path.equals(SQLConstant.RESERVED_TIME)) {
         return TSDataType.INT64;
       }
       return mtree.getSchema(path).getType();
     } finally {
+      unlock(storageGroupLock);
       lock.readLock().unlock();
     }
   }
@@ -574,8 +1036,9 @@ public class MManager {
   public MeasurementSchema[] getSchemas(String deviceId, String[] measurements)
       throws MetadataException {
     lock.readLock().lock();
+    Lock storageGroupLock = readLockStorageGroup(deviceId);
     try {
-      MNode deviceNode = getNodeByPath(deviceId);
+      MNode deviceNode = mtree.getNodeByPath(deviceId);
       MeasurementSchema[] measurementSchemas = new MeasurementSchema[measurements.length];
       for (int i = 0; i < measurementSchemas.length; i++) {
         if (!deviceNode.hasChild(measurements[i])) {
@@ -585,6 +1048,7 @@ public class MManager {
       }
       return measurementSchemas;
     } finally {
+      unlock(storageGroupLock);
       lock.readLock().unlock();
     }
   }
@@ -598,9 +1062,11 @@ public class MManager {
    */
   public Set<String> getDevices(String prefixPath) throws MetadataException {
     lock.readLock().lock();
+    List<Lock> storageGroupLocks = readLockAllStorageGroups();
     try {
       return mtree.getDevices(prefixPath);
     } finally {
+      unlockAll(storageGroupLocks);
       lock.readLock().unlock();
     }
   }
@@ -616,9 +1082,11 @@ public class MManager {
    */
   public List<String> getNodesList(String prefixPath, int nodeLevel) throws MetadataException {
     lock.readLock().lock();
+    List<Lock> storageGroupLocks = readLockAllStorageGroups();
     try {
       return mtree.getNodesList(prefixPath, nodeLevel);
     } finally {
+      unlockAll(storageGroupLocks);
       lock.readLock().unlock();
     }
   }
@@ -671,23 +1139,43 @@ public class MManager {
    *                   wildcard can only match one level, otherwise it can match to the tail.
    */
   public List<String> getAllTimeseriesName(String prefixPath) throws MetadataException {
-    lock.readLock().lock();
-    try {
-      return mtree.getAllTimeseriesName(prefixPath);
-    } catch (MetadataException e) {
-      throw new MetadataException(e);
-    } finally {
-      lock.readLock().unlock();
+    List<Path> paths = getCachedTimeseriesPath(prefixPath);
+    List<String> names = new ArrayList<>(paths.size());
+    for (Path path : paths) {
+      names.add(path.getFullPath());
     }
+    return names;
   }
 
   /**
    * Similar to method getAllTimeseriesName(), but return Path instead of String in order to include alias.
    */
   public List<Path> getAllTimeseriesPath(String prefixPath) throws MetadataException {
+    return new ArrayList<>(getCachedTimeseriesPath(prefixPath));
+  }
+
+  /**
+   * Resolve the prefix path through the path pattern cache. A cached result is read without the
+   * locks of the storage groups, as a timeseries is created or deleted while holding the write lock
+   * of its storage group until the affected patterns are removed from the cache.
+   *
+   * @return the timeseries paths, which must not be modified
+   */
+  private List<Path> getCachedTimeseriesPath(String prefixPath) throws MetadataException {
     lock.readLock().lock();
     try {
-      return mtree.getAllTimeseriesPath(prefixPath);
+      List<Path> paths = pathPatternCache.get(prefixPath);
+      if (paths != null) {
+        return paths;
+      }
+      List<Lock> storageGroupLocks = readLockAllStorageGroups();
+      try {
+        paths = mtree.getAllTimeseriesPath(prefixPath);
+        pathPatternCache.put(prefixPath, paths);
+        return paths;
+      } finally {
+        unlockAll(storageGroupLocks);
+      }
     } catch (MetadataException e) {
       throw new MetadataException(e);
     } finally {
@@ -695,71 +1183,143 @@ public class MManager {
     }
   }
 
+  /**
+   * @return the hit ratio of the path pattern cache
+   */
+  public double getPathPatternCacheHitRatio() {
+    return pathPatternCache.calculateHitRatio();
+  }
+
   public List<ShowTimeSeriesResult> getAllTimeseriesSchema(ShowTimeSeriesPlan plan)
       throws MetadataException {
     lock.readLock().lock();
+    List<Lock> storageGroupLocks = readLockAllStorageGroups();
     try {
-      if (!tagIndex.containsKey(plan.getKey())) {
-        throw new MetadataException("The key " + plan.getKey() + " is not a tag.");
-      }
-      Map<String, Set<LeafMNode>> value2Node = tagIndex.get(plan.getKey());
-      if (value2Node.isEmpty()) {
-        throw new MetadataException("The key " + plan.getKey() + " is not a tag.");
-      }
-      Set<LeafMNode> allMatchedNodes = new TreeSet<>(Comparator.comparing(MNode::getFullPath));
-      if (plan.isContains()) {
-        for (Entry<String, Set<LeafMNode>> entry : value2Node.entrySet()) {
-          String tagValue = entry.getKey();
-          if (tagValue.contains(plan.getValue())) {
-            allMatchedNodes.addAll(entry.getValue());
-          }
-        }
-      } else {
-        for (Entry<String, Set<LeafMNode>> entry : value2Node.entrySet()) {
-          String tagValue = entry.getKey();
-          if (plan.getValue().equals(tagValue)) {
-            allMatchedNodes.addAll(entry.getValue());
-          }
-        }
-      }
       List<ShowTimeSeriesResult> res = new LinkedList<>();
-      String[] prefixNodes = MetaUtils.getNodeNames(plan.getPath().getFullPath());
       int curOffset = -1;
       int count = 0;
       int limit = plan.getLimit();
       int offset = plan.getOffset();
-      for (LeafMNode leaf : allMatchedNodes) {
-        if (match(leaf.getFullPath(), prefixNodes)) {
-          if (limit != 0 || offset != 0) {
-            curOffset++;
-            if (curOffset < offset || count == limit) {
-              continue;
-            }
+      for (Entry<String, LeafMNode> entry :
+          getMatchedLeaves(plan.getPath().getFullPath(), plan.getTagFilter()).entrySet()) {
+        String fullPath = entry.getKey();
+        LeafMNode leaf = entry.getValue();
+        if (limit != 0 || offset != 0) {
+          curOffset++;
+          if (curOffset < offset) {
+            continue;
           }
-          try {
-            Pair<Map<String, String>, Map<String, String>> pair =
-                tagLogFile.read(config.getTagAttributeTotalSize(), leaf.getOffset());
-            pair.left.putAll(pair.right);
-            MeasurementSchema measurementSchema = leaf.getSchema();
-            res.add(new ShowTimeSeriesResult(leaf.getFullPath(), leaf.getAlias(),
-                getStorageGroupName(leaf.getFullPath()), measurementSchema.getType().toString(),
-                measurementSchema.getEncodingType().toString(),
-                measurementSchema.getCompressor().toString(), pair.left));
-            if (limit != 0 || offset != 0) {
-              count++;
-            }
-          } catch (IOException e) {
-            throw new MetadataException(
-                "Something went wrong while deserialize tag info of " + leaf.getFullPath(), e);
+          if (count == limit) {
+            break;
           }
         }
+        try {
+          Pair<Map<String, String>, Map<String, String>> pair =
+              tagLogFile.read(config.getTagAttributeTotalSize(), leaf.getOffset());
+          pair.left.putAll(pair.right);
+          MeasurementSchema measurementSchema = leaf.getSchema();
+          res.add(new ShowTimeSeriesResult(fullPath, leaf.getAlias(),
+              getStorageGroupName(fullPath), measurementSchema.getType().toString(),
+              measurementSchema.getEncodingType().toString(),
+              measurementSchema.getCompressor().toString(), pair.left));
+          if (limit != 0 || offset != 0) {
+            count++;
+          }
+        } catch (IOException e) {
+          throw new MetadataException(
+              "Something went wrong while deserialize tag info of " + fullPath, e);
+        }
       }
       return res;
     } finally {
+      unlockAll(storageGroupLocks);
       lock.readLock().unlock();
     }
   }
 
+  /**
+   * Get the full paths of the timeseries under the prefix path whose tags match the filter, e.g.,
+   * to select the timeseries of a query by tags.
+   *
+   * @param prefixPath a prefix path that may contain wildcards, see ShowTimeSeriesPlan
+   * @return the full paths in ascending order
+   */
+  public List<String> getAllTimeseriesNameByTags(String prefixPath, TagFilter tagFilter)
+      throws MetadataException {
+    lock.readLock().lock();
+    List<Lock> storageGroupLocks = readLockAllStorageGroups();
+    try {
+      return new ArrayList<>(getMatchedLeaves(prefixPath, tagFilter).keySet());
+    } finally {
+      unlockAll(storageGroupLocks);
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Get the timeseries under the prefix path whose tags match the filter. The read locks of all
+   * storage groups must be held.
+   *
+   * If the prefix path has no wildcard and fewer timeseries under it than matched by the filter,
+   * the timeseries under it are looked up in the posting list, otherwise the path of each matched
+   * timeseries is checked against the prefix path.
+   *
+   * @return full path -> timeseries, sorted by the full paths
+   */
+  private SortedMap<String, LeafMNode> getMatchedLeaves(String prefixPath, TagFilter tagFilter)
+      throws MetadataException {
+    PostingList ids = tagFilter.evaluate(tagIndex);
+    SortedMap<String, LeafMNode> res = new TreeMap<>();
+    if (ids.isEmpty()) {
+      return res;
+    }
+    if (!prefixPath.contains(IoTDBConstant.PATH_WILDCARD)) {
+      if (!mtree.isPathExist(prefixPath)) {
+        return res;
+      }
+      if (collectMatchedLeaves(mtree.getNodeByPath(prefixPath), ids, ids.size(), res) >= 0) {
+        return res;
+      }
+      res.clear();
+    }
+
+    String[] prefixNodes = MetaUtils.getNodeNames(prefixPath);
+    for (PrimitiveIterator.OfInt iterator = ids.iterator(); iterator.hasNext(); ) {
+      LeafMNode leaf = tagIndex.getNode(iterator.nextInt());
+      if (leaf != null) {
+        String fullPath = leaf.getFullPath();
+        if (match(fullPath, prefixNodes)) {
+          res.put(fullPath, leaf);
+        }
+      }
+    }
+    return res;
+  }
+
+  /**
+   * Collect the timeseries under the node that are in the posting list, giving up once more than
+   * budget timeseries are visited.
+   *
+   * @return the remaining budget, negative if the collection is given up
+   */
+  private int collectMatchedLeaves(MNode node, PostingList ids, int budget,
+      Map<String, LeafMNode> res) {
+    if (node instanceof LeafMNode) {
+      LeafMNode leaf = (LeafMNode) node;
+      if (leaf.getOffset() >= 0 && ids.contains(tagIndex.getId(leaf))) {
+        res.put(leaf.getFullPath(), leaf);
+      }
+      return budget - 1;
+    }
+    for (MNode child : node.getChildren().values()) {
+      budget = collectMatchedLeaves(child, ids, budget, res);
+      if (budget < 0) {
+        break;
+      }
+    }
+    return budget;
+  }
+
   /**
    * whether the full path has the prefixNodes
    */
@@ -784,6 +1344,7 @@ public class MManager {
   public List<ShowTimeSeriesResult> showTimeseries(ShowTimeSeriesPlan plan)
       throws MetadataException {
     lock.readLock().lock();
+    List<Lock> storageGroupLocks = readLockAllStorageGroups();
     try {
       List<String[]> ans = mtree.getAllMeasurementSchema(plan);
       List<ShowTimeSeriesResult> res = new LinkedList<>();
@@ -809,6 +1370,7 @@ public class MManager {
       }
       return res;
     } finally {
+      unlockAll(storageGroupLocks);
       lock.readLock().unlock();
     }
   }
@@ -816,10 +1378,12 @@ public class MManager {
   public MeasurementSchema getSeriesSchema(String device, String measuremnet)
       throws MetadataException {
     lock.readLock().lock();
+    Lock storageGroupLock = readLockStorageGroup(device);
     try {
       InternalMNode node = (InternalMNode) mtree.getNodeByPath(device);
       return ((LeafMNode) node.getChild(measuremnet)).getSchema();
     } finally {
+      unlock(storageGroupLock);
       lock.readLock().unlock();
     }
   }
@@ -834,9 +1398,11 @@ public class MManager {
    */
   public Set<String> getChildNodePathInNextLevel(String path) throws MetadataException {
     lock.readLock().lock();
+    List<Lock> storageGroupLocks = readLockAllStorageGroups();
     try {
       return mtree.getChildNodePathInNextLevel(path);
     } finally {
+      unlockAll(storageGroupLocks);
       lock.readLock().unlock();
     }
   }
@@ -848,9 +1414,11 @@ public class MManager {
    */
   public boolean isPathExist(String path) {
     lock.readLock().lock();
+    Lock storageGroupLock = readLockStorageGroup(path);
     try {
       return mtree.isPathExist(path);
     } finally {
+      unlock(storageGroupLock);
       lock.readLock().unlock();
     }
   }
@@ -860,9 +1428,11 @@ public class MManager {
    */
   public MNode getNodeByPath(String path) throws MetadataException {
     lock.readLock().lock();
+    Lock storageGroupLock = readLockStorageGroup(path);
     try {
       return mtree.getNodeByPath(path);
     } finally {
+      unlock(storageGroupLock);
       lock.readLock().unlock();
     }
   }
@@ -873,9 +1443,11 @@ public class MManager {
    */
   public StorageGroupMNode getStorageGroupNode(String path) throws MetadataException {
     lock.readLock().lock();
+    Lock storageGroupLock = readLockStorageGroup(path);
     try {
       return mtree.getStorageGroupNode(path);
     } finally {
+      unlock(storageGroupLock);
       lock.readLock().unlock();
     }
   }
@@ -890,49 +1462,38 @@ public class MManager {
   public MNode getDeviceNodeWithAutoCreateAndReadLock(
       String path, boolean autoCreateSchema, int sgLevel) throws MetadataException {
     lock.readLock().lock();
-    MNode node = null;
-    boolean shouldSetStorageGroup;
     try {
-      node = mNodeCache.get(path);
-      return node;
+      return readLockDeviceNode(mNodeCache.get(path));
     } catch (CacheException e) {
       if (!autoCreateSchema) {
         throw new PathNotExistException(path);
       }
     } finally {
-      if (node != null) {
-        ((InternalMNode) node).readLock();
-      }
       lock.readLock().unlock();
     }
 
-    lock.writeLock().lock();
+    setStorageGroupIfAbsent(path, true, sgLevel);
+    lock.readLock().lock();
     try {
+      // only the storage group of the device is locked for creating it
+      StorageGroupMNode storageGroupMNode = getStorageGroupNodeOnPath(path);
+      ReadWriteLock schemaLock = storageGroupMNode.getSchemaLock();
+      schemaLock.writeLock().lock();
       try {
-        node = mNodeCache.get(path);
-        return node;
-      } catch (CacheException e) {
-        shouldSetStorageGroup = e.getCause() instanceof StorageGroupNotSetException;
-      }
-
-      if (shouldSetStorageGroup) {
-        String storageGroupName = MetaUtils.getStorageGroupNameByLevel(path, sgLevel);
-        setStorageGroup(storageGroupName);
+        return readLockDeviceNode(mtree.getDeviceNodeWithAutoCreating(path));
+      } finally {
+        schemaLock.writeLock().unlock();
       }
-      node = mtree.getDeviceNodeWithAutoCreating(path);
-      return node;
-    } catch (StorageGroupAlreadySetException e) {
-      // ignore set storage group concurrently
-      node = mtree.getDeviceNodeWithAutoCreating(path);
-      return node;
     } finally {
-      if (node != null) {
-        ((InternalMNode) node).readLock();
-      }
-      lock.writeLock().unlock();
+      lock.readLock().unlock();
     }
   }
 
+  private MNode readLockDeviceNode(MNode node) {
+    ((InternalMNode) node).readLock();
+    return node;
+  }
+
   /**
    * !!!!!!Attention!!!!! must call the return node's readUnlock() if you call this method.
    */
@@ -946,9 +1507,11 @@ public class MManager {
    */
   public String getMetadataInString() {
     lock.readLock().lock();
+    List<Lock> storageGroupLocks = readLockAllStorageGroups();
     try {
       return TIME_SERIES_TREE_HEADER + mtree.toString();
     } finally {
+      unlockAll(storageGroupLocks);
       lock.readLock().unlock();
     }
   }
@@ -980,15 +1543,46 @@ public class MManager {
    * @param path   timeseries
    * @param offset offset in the tag file
    */
-  public void changeOffset(String path, long offset) throws MetadataException {
+  public void changeOffset(String path, long offset) throws MetadataException, IOException {
     lock.writeLock().lock();
     try {
-      ((LeafMNode) mtree.getNodeByPath(path)).setOffset(offset);
+      LeafMNode leafMNode = (LeafMNode) mtree.getNodeByPath(path);
+      leafMNode.setOffset(offset);
+      tagIndex.addTags(leafMNode, tagLogFile.readTag(config.getTagAttributeTotalSize(), offset));
     } finally {
       lock.writeLock().unlock();
     }
   }
 
+  /**
+   * Update the tag index with the tags of a timeseries altered in place, and log them so that
+   * replaying the log after the MTree snapshot updates the tag index of the snapshot the same way.
+   * The record is ignored by the tag file, which already holds the altered tags.
+   */
+  private void alterTags(String fullPath, LeafMNode leafMNode, Map<String, String> removedTags,
+      Map<String, String> addedTags) throws IOException {
+    if (removedTags.isEmpty() && addedTags.isEmpty()) {
+      return;
+    }
+    if (writeToLog) {
+      logWriter.alterTags(fullPath, removedTags, addedTags);
+    }
+    alterTagIndex(leafMNode, removedTags, addedTags);
+  }
+
+  /**
+   * When the whole log is replayed, the index already holds the latest tags read from the tag file
+   * before the alterations are replayed. Replaying them in order still ends with the latest tags,
+   * as the last alteration of a key adds its latest value and removes the value added before.
+   */
+  private void alterTagIndex(LeafMNode leafMNode, Map<String, String> removedTags,
+      Map<String, String> addedTags) {
+    for (Entry<String, String> entry : removedTags.entrySet()) {
+      tagIndex.removeTag(leafMNode, entry.getKey(), entry.getValue());
+    }
+    tagIndex.addTags(leafMNode, addedTags);
+  }
+
   /**
    * upsert tags and attributes key-value for the timeseries if the key has existed, just use the
    * new value to update it.
@@ -1013,42 +1607,36 @@ public class MManager {
         logWriter.changeOffset(fullPath, offset);
         leafMNode.setOffset(offset);
         // update inverted Index map
-        for (Entry<String, String> entry : tagsMap.entrySet()) {
-          tagIndex.computeIfAbsent(entry.getKey(), k -> new HashMap<>())
-              .computeIfAbsent(entry.getValue(), v -> new HashSet<>()).add(leafMNode);
-        }
+        tagIndex.addTags(leafMNode, tagsMap);
         return;
       }
 
       Pair<Map<String, String>, Map<String, String>> pair =
           tagLogFile.read(config.getTagAttributeTotalSize(), leafMNode.getOffset());
+      Map<String, String> removedTags = new HashMap<>();
+      Map<String, String> addedTags = new HashMap<>();
 
       for (Entry<String, String> entry : tagsMap.entrySet()) {
         String key = entry.getKey();
         String value = entry.getValue();
-        String beforeValue = pair.left.get(key);
-        pair.left.put(key, value);
+        String beforeValue = pair.left.put(key, value);
         // if the key has existed and the value is not equal to the new one
         // we should remove before key-value from inverted index map
         if (beforeValue != null && !beforeValue.equals(value)) {
-          tagIndex.get(key).get(beforeValue).remove(leafMNode);
-          if (tagIndex.get(key).get(beforeValue).isEmpty()) {
-            tagIndex.get(key).remove(beforeValue);
-          }
+          removedTags.put(key, beforeValue);
         }
 
         // if the key doesn't exist or the value is not equal to the new one
         // we should add a new key-value to inverted index map
         if (beforeValue == null || !beforeValue.equals(value)) {
-          tagIndex.computeIfAbsent(key, k -> new HashMap<>())
-              .computeIfAbsent(value, v -> new HashSet<>()).add(leafMNode);
+          addedTags.put(key, value);
         }
       }
-      pair.left.putAll(tagsMap);
       pair.right.putAll(attributesMap);
 
       // persist the change to disk
       tagLogFile.write(pair.left, pair.right, leafMNode.getOffset());
+      alterTags(fullPath, leafMNode, removedTags, addedTags);
 
     } finally {
       lock.writeLock().unlock();
@@ -1119,10 +1707,7 @@ public class MManager {
         logWriter.changeOffset(fullPath, offset);
         leafMNode.setOffset(offset);
         // update inverted Index map
-        for (Entry<String, String> entry : tagsMap.entrySet()) {
-          tagIndex.computeIfAbsent(entry.getKey(), k -> new HashMap<>())
-              .computeIfAbsent(entry.getValue(), v -> new HashSet<>()).add(leafMNode);
-        }
+        tagIndex.addTags(leafMNode, tagsMap);
         return;
       }
 
@@ -1141,10 +1726,8 @@ public class MManager {
 
       // persist the change to disk
       tagLogFile.write(pair.left, pair.right, leafMNode.getOffset());
-
       // update tag inverted map
-      tagsMap.forEach((key, value) -> tagIndex.computeIfAbsent(key, k -> new HashMap<>())
-          .computeIfAbsent(value, v -> new HashSet<>()).add(leafMNode));
+      alterTags(fullPath, leafMNode, Collections.emptyMap(), tagsMap);
 
     } finally {
       lock.writeLock().unlock();
@@ -1186,19 +1769,8 @@ public class MManager {
 
       // persist the change to disk
       tagLogFile.write(pair.left, pair.right, leafMNode.getOffset());
-
-      for (Entry<String, String> entry : deleteTag.entrySet()) {
-        String key = entry.getKey();
-        String value = entry.getValue();
-        // change the tag inverted index map
-        tagIndex.get(key).get(value).remove(leafMNode);
-        if (tagIndex.get(key).get(value).isEmpty()) {
-          tagIndex.get(key).remove(value);
-          if (tagIndex.get(key).isEmpty()) {
-            tagIndex.remove(key);
-          }
-        }
-      }
+      // change the tag inverted index map
+      alterTags(fullPath, leafMNode, deleteTag, Collections.emptyMap());
     } finally {
       lock.writeLock().unlock();
     }
@@ -1249,16 +1821,8 @@ public class MManager {
 
       // persist the change to disk
       tagLogFile.write(pair.left, pair.right, leafMNode.getOffset());
-
-      for (Entry<String, String> entry : oldTagValue.entrySet()) {
-        String key = entry.getKey();
-        String beforeValue = entry.getValue();
-        String currentValue = newTagValue.get(key);
-        // change the tag inverted index map
-        tagIndex.get(key).get(beforeValue).remove(leafMNode);
-        tagIndex.computeIfAbsent(key, k -> new HashMap<>())
-            .computeIfAbsent(currentValue, k -> new HashSet<>()).add(leafMNode);
-      }
+      // change the tag inverted index map
+      alterTags(fullPath, leafMNode, oldTagValue, newTagValue);
     } finally {
       lock.writeLock().unlock();
     }
@@ -1302,9 +1866,8 @@ public class MManager {
         // persist the change to disk
         tagLogFile.write(pair.left, pair.right, leafMNode.getOffset());
         // change the tag inverted index map
-        tagIndex.get(oldKey).get(value).remove(leafMNode);
-        tagIndex.computeIfAbsent(newKey, k -> new HashMap<>())
-            .computeIfAbsent(value, k -> new HashSet<>()).add(leafMNode);
+        alterTags(fullPath, leafMNode, Collections.singletonMap(oldKey, value),
+            Collections.singletonMap(newKey, value));
       } else if (pair.right.containsKey(oldKey)) {
         // check attribute map
         pair.right.put(newKey, pair.right.remove(oldKey));
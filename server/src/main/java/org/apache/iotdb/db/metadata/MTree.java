@@ -75,6 +75,14 @@ public class MTree implements Serializable {
     this.root = new InternalMNode(null, IoTDBConstant.PATH_ROOT);
   }
 
+  MTree(MNode root) {
+    this.root = root;
+  }
+
+  MNode getRoot() {
+    return root;
+  }
+
   /**
    * Create a timeseries with a full path from root to leaf node Before creating a timeseries, the
    * storage group should be set first, throw exception otherwise
@@ -446,6 +454,22 @@ public class MTree implements Serializable {
     return res;
   }
 
+  /** Get all LeafMNodes, i.e., all the timeseries */
+  List<LeafMNode> getAllLeafMNodes() {
+    List<LeafMNode> ret = new ArrayList<>();
+    Deque<MNode> nodeStack = new ArrayDeque<>();
+    nodeStack.add(root);
+    while (!nodeStack.isEmpty()) {
+      MNode current = nodeStack.pop();
+      if (current instanceof LeafMNode) {
+        ret.add((LeafMNode) current);
+      } else {
+        nodeStack.addAll(current.getChildren().values());
+      }
+    }
+    return ret;
+  }
+
   /** Get all storage group MNodes */
   List<StorageGroupMNode> getAllStorageGroupNodes() {
     List<StorageGroupMNode> ret = new ArrayList<>();
@@ -483,6 +507,27 @@ public class MTree implements Serializable {
     throw new StorageGroupNotSetException(path);
   }
 
+  /**
+   * Get the storage group node on the given path, i.e., the storage group of the path or the path
+   * itself
+   *
+   * @return null if there is no storage group on the path
+   */
+  StorageGroupMNode getStorageGroupNodeOnPath(String path) {
+    String[] nodes = MetaUtils.getNodeNames(path);
+    if (nodes.length == 0 || !nodes[0].equals(root.getName())) {
+      return null;
+    }
+    MNode cur = root;
+    for (int i = 1; i < nodes.length && cur != null; i++) {
+      cur = cur.getChild(nodes[i]);
+      if (cur instanceof StorageGroupMNode) {
+        return (StorageGroupMNode) cur;
+      }
+    }
+    return null;
+  }
+
   /** Check whether the given path contains a storage group */
   boolean checkStorageGroupByPath(String path) {
     String[] nodes = MetaUtils.getNodeNames(path);
@@ -0,0 +1,237 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.metadata;
+
+import static org.apache.iotdb.db.conf.IoTDBConstant.PATH_SEPARATOR;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import org.apache.iotdb.db.conf.IoTDBConstant;
+import org.apache.iotdb.db.engine.fileSystem.SystemFileFactory;
+import org.apache.iotdb.db.metadata.mnode.InternalMNode;
+import org.apache.iotdb.db.metadata.mnode.LeafMNode;
+import org.apache.iotdb.db.metadata.mnode.MNode;
+import org.apache.iotdb.db.metadata.mnode.StorageGroupMNode;
+import org.apache.iotdb.db.metadata.tag.TagIndex;
+import org.apache.iotdb.tsfile.file.metadata.enums.CompressionType;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSEncoding;
+import org.apache.iotdb.tsfile.utils.ReadWriteIOUtils;
+import org.apache.iotdb.tsfile.write.schema.MeasurementSchema;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * MTreeSnapshot is a binary image of the MTree, i.e., the nodes, storage groups with their TTL,
+ * and timeseries with their schemas, aliases and tag offsets, followed by the tag index. It also
+ * records the length of the metadata log it covers, so that a restart loads the snapshot
+ * sequentially and only replays the operations logged after it instead of the whole log.
+ *
+ * The nodes are written in pre-order, each internal node followed by the number of its children.
+ */
+public class MTreeSnapshot {
+
+  private static final Logger logger = LoggerFactory.getLogger(MTreeSnapshot.class);
+  private static final String TEMP_SUFFIX = ".tmp";
+  // a snapshot of another version is ignored and the whole log is replayed instead
+  private static final int VERSION = 2;
+
+  private static final byte INTERNAL_NODE = 0;
+  private static final byte STORAGE_GROUP_NODE = 1;
+  private static final byte LEAF_NODE = 2;
+
+  private File file;
+
+  private long logLength;
+
+  public MTreeSnapshot(String schemaDir, String fileName) {
+    this.file = SystemFileFactory.INSTANCE.getFile(schemaDir + File.separator + fileName);
+  }
+
+  public boolean exists() {
+    return file.exists();
+  }
+
+  /**
+   * Write the tree under root. The content is written into a temporary file first so that a crash
+   * during the writing never leaves a partial snapshot.
+   *
+   * @param logLength the length of the metadata log when the tree is in this state
+   * @param tagIndex  the tag index of the timeseries in the tree
+   */
+  public void write(MNode root, long logLength, TagIndex tagIndex) throws IOException {
+    File tempFile = SystemFileFactory.INSTANCE.getFile(file.getPath() + TEMP_SUFFIX);
+    try (OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(tempFile))) {
+      ReadWriteIOUtils.write(VERSION, outputStream);
+      ReadWriteIOUtils.write(logLength, outputStream);
+      writeNode(root, outputStream);
+      tagIndex.serialize(outputStream);
+    }
+    Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  private void writeNode(MNode node, OutputStream outputStream) throws IOException {
+    if (node instanceof LeafMNode) {
+      LeafMNode leafMNode = (LeafMNode) node;
+      MeasurementSchema schema = leafMNode.getSchema();
+      ReadWriteIOUtils.write(LEAF_NODE, outputStream);
+      ReadWriteIOUtils.write(node.getName(), outputStream);
+      ReadWriteIOUtils.write(schema.getType(), outputStream);
+      ReadWriteIOUtils.write(schema.getEncodingType(), outputStream);
+      ReadWriteIOUtils.write(schema.getCompressor(), outputStream);
+      writeMap(schema.getProps(), outputStream);
+      ReadWriteIOUtils.write(leafMNode.getAlias() != null, outputStream);
+      if (leafMNode.getAlias() != null) {
+        ReadWriteIOUtils.write(leafMNode.getAlias(), outputStream);
+      }
+      ReadWriteIOUtils.write(leafMNode.getOffset(), outputStream);
+      return;
+    }
+
+    if (node instanceof StorageGroupMNode) {
+      ReadWriteIOUtils.write(STORAGE_GROUP_NODE, outputStream);
+      ReadWriteIOUtils.write(node.getName(), outputStream);
+      ReadWriteIOUtils.write(((StorageGroupMNode) node).getDataTTL(), outputStream);
+    } else {
+      ReadWriteIOUtils.write(INTERNAL_NODE, outputStream);
+      ReadWriteIOUtils.write(node.getName(), outputStream);
+    }
+    ReadWriteIOUtils.write(node.getChildren().size(), outputStream);
+    for (MNode child : node.getChildren().values()) {
+      writeNode(child, outputStream);
+    }
+  }
+
+  /**
+   * Read the snapshot, after which getLogLength() returns what is recorded with the tree.
+   *
+   * @param tagIndex an empty index, into which the tag index in the snapshot is loaded
+   * @return the root of the tree
+   */
+  public MNode read(TagIndex tagIndex) throws IOException {
+    try (InputStream inputStream = new BufferedInputStream(new FileInputStream(file))) {
+      int version = ReadWriteIOUtils.readInt(inputStream);
+      if (version != VERSION) {
+        throw new IOException("MTree snapshot " + file + " is of version " + version
+            + " instead of " + VERSION);
+      }
+      logLength = ReadWriteIOUtils.readLong(inputStream);
+      MNode root = readNode(null, tagIndex, inputStream);
+      if (!(root instanceof InternalMNode) || !IoTDBConstant.PATH_ROOT.equals(root.getName())) {
+        throw new IOException("The root of MTree snapshot " + file + " is broken");
+      }
+      tagIndex.deserialize(inputStream);
+      return root;
+    }
+  }
+
+  private MNode readNode(MNode parent, TagIndex tagIndex, InputStream inputStream)
+      throws IOException {
+    int type = inputStream.read();
+    if (type < 0) {
+      throw new IOException("MTree snapshot " + file + " is truncated");
+    }
+    String name = ReadWriteIOUtils.readString(inputStream);
+    if (type == LEAF_NODE) {
+      TSDataType dataType = ReadWriteIOUtils.readDataType(inputStream);
+      TSEncoding encoding = ReadWriteIOUtils.readEncoding(inputStream);
+      CompressionType compressor = ReadWriteIOUtils.readCompressionType(inputStream);
+      Map<String, String> props = readMap(inputStream);
+      String alias =
+          ReadWriteIOUtils.readBool(inputStream) ? ReadWriteIOUtils.readString(inputStream) : null;
+      LeafMNode leafMNode = new LeafMNode(parent, name, alias, dataType, encoding, compressor,
+          props);
+      leafMNode.setOffset(ReadWriteIOUtils.readLong(inputStream));
+      if (leafMNode.getOffset() >= 0) {
+        tagIndex.registerNode(leafMNode);
+      }
+      return leafMNode;
+    }
+
+    MNode node;
+    if (type == STORAGE_GROUP_NODE) {
+      node = new StorageGroupMNode(parent, name, parent.getFullPath() + PATH_SEPARATOR + name,
+          ReadWriteIOUtils.readLong(inputStream));
+    } else if (type == INTERNAL_NODE) {
+      node = new InternalMNode(parent, name);
+    } else {
+      throw new IOException("Unrecognizable node type " + type + " in MTree snapshot " + file);
+    }
+    int childrenNum = ReadWriteIOUtils.readInt(inputStream);
+    for (int i = 0; i < childrenNum; i++) {
+      MNode child = readNode(node, tagIndex, inputStream);
+      node.addChild(child.getName(), child);
+      if (child instanceof LeafMNode && ((LeafMNode) child).getAlias() != null) {
+        node.addAlias(((LeafMNode) child).getAlias(), child);
+      }
+    }
+    return node;
+  }
+
+  private static void writeMap(Map<String, String> map, OutputStream outputStream)
+      throws IOException {
+    if (map == null) {
+      ReadWriteIOUtils.write(-1, outputStream);
+      return;
+    }
+    ReadWriteIOUtils.write(map.size(), outputStream);
+    for (Entry<String, String> entry : map.entrySet()) {
+      ReadWriteIOUtils.write(entry.getKey(), outputStream);
+      ReadWriteIOUtils.write(entry.getValue(), outputStream);
+    }
+  }
+
+  private static Map<String, String> readMap(InputStream inputStream) throws IOException {
+    int size = ReadWriteIOUtils.readInt(inputStream);
+    if (size < 0) {
+      return null;
+    }
+    Map<String, String> map = new HashMap<>(size);
+    for (int i = 0; i < size; i++) {
+      map.put(ReadWriteIOUtils.readString(inputStream), ReadWriteIOUtils.readString(inputStream));
+    }
+    return map;
+  }
+
+  /**
+   * @return the length of the metadata log covered by the snapshot that has been read
+   */
+  public long getLogLength() {
+    return logLength;
+  }
+
+  public void delete() {
+    try {
+      Files.deleteIfExists(file.toPath());
+    } catch (IOException e) {
+      logger.warn("Cannot delete MTree snapshot {}", file, e);
+    }
+  }
+}
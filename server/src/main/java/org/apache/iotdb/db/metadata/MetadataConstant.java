@@ -25,4 +25,6 @@ public class MetadataConstant {
   public static final String ROOT = "root";
   public static final String METADATA_LOG = "mlog.txt";
   public static final String TAG_LOG = "tlog.txt";
+  public static final String LAST_CACHE_SNAPSHOT = "lastcache.bin";
+  public static final String MTREE_SNAPSHOT = "mtree.snapshot";
 }
@@ -0,0 +1,196 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.metadata;
+
+import static org.apache.iotdb.db.conf.IoTDBConstant.PATH_WILDCARD;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import org.apache.iotdb.tsfile.read.common.Path;
+
+/**
+ * PathPatternCache caches the timeseries that a path pattern, i.e., a prefix path that may contain
+ * wildcards such as root.*.*.d*, resolves to, so that queries repeating the same patterns do not
+ * traverse the MTree.
+ *
+ * A pattern is removed once a timeseries it may match is created or deleted, so a pattern is only
+ * affected by the changes in the subtrees it covers. The cache is bounded by the total number of
+ * cached timeseries, evicting the least recently used patterns.
+ *
+ * All methods are synchronized, as timeseries in different storage groups are created
+ * concurrently.
+ */
+public class PathPatternCache {
+
+  private final int capacity;
+  // pattern -> the cached timeseries, in access order
+  private final LinkedHashMap<String, CacheEntry> cache = new LinkedHashMap<>(16, 0.75f, true);
+  // the total number of cached timeseries
+  private int size = 0;
+
+  private final AtomicLong cacheHitNum = new AtomicLong();
+  private final AtomicLong cacheRequestNum = new AtomicLong();
+
+  /**
+   * @param capacity the max total number of cached timeseries, 0 to disable the cache
+   */
+  public PathPatternCache(int capacity) {
+    this.capacity = capacity;
+  }
+
+  /**
+   * @return the timeseries the pattern resolves to, which must not be modified, or null if the
+   * pattern is not cached
+   */
+  public synchronized List<Path> get(String pattern) {
+    if (capacity <= 0) {
+      return null;
+    }
+    cacheRequestNum.incrementAndGet();
+    CacheEntry entry = cache.get(pattern);
+    if (entry == null) {
+      return null;
+    }
+    cacheHitNum.incrementAndGet();
+    return entry.paths;
+  }
+
+  /**
+   * Cache the timeseries the pattern resolves to, unless they are more than the capacity.
+   */
+  public synchronized void put(String pattern, List<Path> paths) {
+    if (capacity <= 0 || paths.size() > capacity) {
+      return;
+    }
+    CacheEntry previous = cache.put(pattern,
+        new CacheEntry(MetaUtils.getNodeNames(pattern), new ArrayList<>(paths)));
+    if (previous != null) {
+      size -= previous.paths.size();
+    }
+    size += paths.size();
+    Iterator<CacheEntry> iterator = cache.values().iterator();
+    while (size > capacity) {
+      size -= iterator.next().paths.size();
+      iterator.remove();
+    }
+  }
+
+  /**
+   * Remove the patterns that may match the timeseries which is created or deleted.
+   *
+   * @param nodes the nodes of the full path of the timeseries
+   * @param alias the alias of the timeseries, or null
+   */
+  public synchronized void invalidate(String[] nodes, String alias) {
+    if (cache.isEmpty()) {
+      return;
+    }
+    Iterator<CacheEntry> iterator = cache.values().iterator();
+    while (iterator.hasNext()) {
+      CacheEntry entry = iterator.next();
+      if (entry.mayMatch(nodes, alias, false)) {
+        size -= entry.paths.size();
+        iterator.remove();
+      }
+    }
+  }
+
+  /**
+   * Remove the patterns that may match any timeseries under the path, e.g., a deleted storage
+   * group.
+   */
+  public synchronized void invalidateSubtree(String[] nodes) {
+    if (cache.isEmpty()) {
+      return;
+    }
+    Iterator<CacheEntry> iterator = cache.values().iterator();
+    while (iterator.hasNext()) {
+      CacheEntry entry = iterator.next();
+      if (entry.mayMatch(nodes, null, true)) {
+        size -= entry.paths.size();
+        iterator.remove();
+      }
+    }
+  }
+
+  public synchronized void clear() {
+    cache.clear();
+    size = 0;
+  }
+
+  public double calculateHitRatio() {
+    if (cacheRequestNum.get() != 0) {
+      return cacheHitNum.get() * 1.0 / cacheRequestNum.get();
+    } else {
+      return 0;
+    }
+  }
+
+  public synchronized int size() {
+    return size;
+  }
+
+  private static class CacheEntry {
+
+    private final String[] patternNodes;
+    // the pattern of each node that contains a wildcard, the same as MTree uses
+    private final Pattern[] nodePatterns;
+    private final List<Path> paths;
+
+    private CacheEntry(String[] patternNodes, List<Path> paths) {
+      this.patternNodes = patternNodes;
+      this.nodePatterns = new Pattern[patternNodes.length];
+      for (int i = 0; i < patternNodes.length; i++) {
+        if (patternNodes[i].contains(PATH_WILDCARD)) {
+          nodePatterns[i] = Pattern.compile(patternNodes[i].replace("*", ".*"));
+        }
+      }
+      this.paths = Collections.unmodifiableList(paths);
+    }
+
+    /**
+     * A pattern matches a timeseries if it is not longer than the path of the timeseries and
+     * each of its nodes matches the node of the path, where the last node of the path may also be
+     * matched by its alias if the node of the pattern has no wildcard. A pattern may match a
+     * timeseries under a subtree if its nodes match those of the subtree on their common length.
+     */
+    private boolean mayMatch(String[] nodes, String alias, boolean isSubtree) {
+      if (!isSubtree && patternNodes.length > nodes.length) {
+        return false;
+      }
+      int length = Math.min(patternNodes.length, nodes.length);
+      for (int i = 0; i < length; i++) {
+        if (nodePatterns[i] != null) {
+          if (!nodePatterns[i].matcher(nodes[i]).matches()) {
+            return false;
+          }
+        } else if (!patternNodes[i].equals(nodes[i])
+            && !(i == nodes.length - 1 && patternNodes[i].equals(alias))) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+}
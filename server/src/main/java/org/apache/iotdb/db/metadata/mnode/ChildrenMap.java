@@ -0,0 +1,315 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.metadata.mnode;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * ChildrenMap maps the names of the children of an InternalMNode to the children in their
+ * insertion order, like a LinkedHashMap but without an entry object for each child, as the key of
+ * a child is always its name.
+ *
+ * The children are kept in an array in their insertion order. A node with a few children is
+ * searched linearly; once it has more than INDEX_THRESHOLD children, an open-addressing hash table
+ * of the positions in the array is built, using linear probing and backward-shift deletion.
+ */
+class ChildrenMap extends AbstractMap<String, MNode> implements Serializable {
+
+  private static final long serialVersionUID = 2454386427305422519L;
+
+  private static final int INDEX_THRESHOLD = 8;
+  private static final MNode[] EMPTY_NODES = new MNode[0];
+
+  // the children in their insertion order, a removed child leaves a null
+  private MNode[] nodes = EMPTY_NODES;
+  // the number of used slots in nodes, including the removed ones
+  private int end = 0;
+  private int size = 0;
+  // position in nodes + 1 of each child, 0 means an empty slot, null if not indexed
+  private int[] index;
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return key instanceof String && find((String) key) != null;
+  }
+
+  @Override
+  public MNode get(Object key) {
+    return key instanceof String ? find((String) key) : null;
+  }
+
+  /**
+   * @param name must be the name of node
+   */
+  @Override
+  public MNode put(String name, MNode node) {
+    if (!name.equals(node.getName())) {
+      throw new IllegalArgumentException(
+          "Node " + node.getName() + " cannot be put as a child named " + name);
+    }
+    int position = position(name);
+    if (position >= 0) {
+      MNode previous = nodes[position];
+      nodes[position] = node;
+      return previous;
+    }
+
+    if (end == nodes.length) {
+      ensureCapacity();
+    }
+    nodes[end++] = node;
+    size++;
+    if (index != null) {
+      if ((size << 1) > index.length) {
+        rebuildIndex();
+      } else {
+        insertIndex(end - 1);
+      }
+    } else if (size > INDEX_THRESHOLD) {
+      rebuildIndex();
+    }
+    return null;
+  }
+
+  @Override
+  public MNode remove(Object key) {
+    if (!(key instanceof String)) {
+      return null;
+    }
+    String name = (String) key;
+    int position;
+    if (index == null) {
+      position = position(name);
+    } else {
+      int slot = slot(name);
+      if (slot < 0) {
+        return null;
+      }
+      position = index[slot] - 1;
+      deleteSlot(slot);
+    }
+    if (position < 0) {
+      return null;
+    }
+    MNode removed = nodes[position];
+    nodes[position] = null;
+    size--;
+    while (end > 0 && nodes[end - 1] == null) {
+      end--;
+    }
+    return removed;
+  }
+
+  @Override
+  public void clear() {
+    nodes = EMPTY_NODES;
+    end = 0;
+    size = 0;
+    index = null;
+  }
+
+  @Override
+  public Set<Entry<String, MNode>> entrySet() {
+    return new AbstractSet<Entry<String, MNode>>() {
+      @Override
+      public Iterator<Entry<String, MNode>> iterator() {
+        return new EntryIterator();
+      }
+
+      @Override
+      public int size() {
+        return size;
+      }
+    };
+  }
+
+  /**
+   * Lookups may run concurrently with a writer, e.g., an insertion checks the measurements of its
+   * device while a timeseries of the device is being created. So the arrays are read only once and
+   * a lookup never fails on a half-updated map, although it may miss the child being added.
+   */
+  private MNode find(String name) {
+    MNode[] currentNodes = nodes;
+    int[] currentIndex = index;
+    if (currentIndex == null) {
+      for (MNode node : currentNodes) {
+        if (node != null && node.getName().equals(name)) {
+          return node;
+        }
+      }
+      return null;
+    }
+    int mask = currentIndex.length - 1;
+    for (int slot = hash(name) & mask; currentIndex[slot] != 0; slot = (slot + 1) & mask) {
+      int position = currentIndex[slot] - 1;
+      MNode node = position < currentNodes.length ? currentNodes[position] : null;
+      if (node != null && node.getName().equals(name)) {
+        return node;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return the position of the child in nodes, or -1 if there is no such child
+   */
+  private int position(String name) {
+    if (index != null) {
+      int slot = slot(name);
+      return slot < 0 ? -1 : index[slot] - 1;
+    }
+    for (int i = 0; i < end; i++) {
+      if (nodes[i] != null && nodes[i].getName().equals(name)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * @return the slot of the child in index, or -1 if there is no such child
+   */
+  private int slot(String name) {
+    int mask = index.length - 1;
+    for (int slot = hash(name) & mask; index[slot] != 0; slot = (slot + 1) & mask) {
+      if (nodes[index[slot] - 1].getName().equals(name)) {
+        return slot;
+      }
+    }
+    return -1;
+  }
+
+  private void insertIndex(int position) {
+    int mask = index.length - 1;
+    int slot = hash(nodes[position].getName()) & mask;
+    while (index[slot] != 0) {
+      slot = (slot + 1) & mask;
+    }
+    index[slot] = position + 1;
+  }
+
+  /**
+   * Empty the slot and move the following entries of the probe sequence backward so that no
+   * tombstone is needed.
+   */
+  private void deleteSlot(int slot) {
+    int mask = index.length - 1;
+    int hole = slot;
+    int current = slot;
+    while (true) {
+      current = (current + 1) & mask;
+      if (index[current] == 0) {
+        break;
+      }
+      int home = hash(nodes[index[current] - 1].getName()) & mask;
+      // the entry can fill the hole if its home slot is not in (hole, current]
+      boolean homeInRange = hole <= current ? (hole < home && home <= current)
+          : (hole < home || home <= current);
+      if (!homeInRange) {
+        index[hole] = index[current];
+        hole = current;
+      }
+    }
+    index[hole] = 0;
+  }
+
+  /**
+   * Make room for one more child, by removing the holes left by removed children if there are
+   * enough of them, or by growing the array.
+   */
+  private void ensureCapacity() {
+    if (size < end - (end >> 2)) {
+      int newEnd = 0;
+      for (int i = 0; i < end; i++) {
+        if (nodes[i] != null) {
+          nodes[newEnd++] = nodes[i];
+        }
+      }
+      Arrays.fill(nodes, newEnd, end, null);
+      end = newEnd;
+      if (index != null) {
+        rebuildIndex();
+      }
+    } else {
+      int newLength = nodes.length < INDEX_THRESHOLD ? nodes.length + 2
+          : nodes.length + (nodes.length >> 1);
+      nodes = Arrays.copyOf(nodes, newLength);
+    }
+  }
+
+  private void rebuildIndex() {
+    // keep the load factor no more than 0.5
+    int capacity = Integer.highestOneBit(Math.max(size, INDEX_THRESHOLD) << 2);
+    index = new int[capacity];
+    for (int i = 0; i < end; i++) {
+      if (nodes[i] != null) {
+        insertIndex(i);
+      }
+    }
+  }
+
+  private static int hash(String name) {
+    int h = name.hashCode();
+    return h ^ (h >>> 16);
+  }
+
+  private class EntryIterator implements Iterator<Entry<String, MNode>> {
+
+    private int next = 0;
+    private MNode last;
+
+    @Override
+    public boolean hasNext() {
+      while (next < end && nodes[next] == null) {
+        next++;
+      }
+      return next < end;
+    }
+
+    @Override
+    public Entry<String, MNode> next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      last = nodes[next++];
+      return new SimpleImmutableEntry<>(last.getName(), last);
+    }
+
+    @Override
+    public void remove() {
+      if (last == null) {
+        throw new IllegalStateException();
+      }
+      // removing never moves the remaining children
+      ChildrenMap.this.remove(last.getName());
+      last = null;
+    }
+  }
+}
@@ -33,19 +33,20 @@ public class InternalMNode extends MNode {
   private static final long serialVersionUID = 7999036474525817732L;
 
   private Map<String, MNode> children;
+  // created when the first alias is added, as most nodes have no alias child
   private Map<String, MNode> aliasChildren;
 
   protected ReadWriteLock lock = new ReentrantReadWriteLock();
 
   public InternalMNode(MNode parent, String name) {
     super(parent, name);
-    this.children = new LinkedHashMap<>();
-    this.aliasChildren = new LinkedHashMap<>();
+    this.children = new ChildrenMap();
   }
 
   @Override
   public boolean hasChild(String name) {
-    return this.children.containsKey(name) || this.aliasChildren.containsKey(name);
+    return this.children.containsKey(name)
+        || (aliasChildren != null && aliasChildren.containsKey(name));
   }
 
   @Override
@@ -81,7 +82,9 @@ public class InternalMNode extends MNode {
   public void deleteAliasChild(String alias) throws DeleteFailedException {
 
     if (lock.writeLock().tryLock()) {
-      aliasChildren.remove(alias);
+      if (aliasChildren != null) {
+        aliasChildren.remove(alias);
+      }
       lock.writeLock().unlock();
     } else {
       throw new DeleteFailedException(getFullPath() + PATH_SEPARATOR + alias);
@@ -90,7 +93,11 @@ public class InternalMNode extends MNode {
 
   @Override
   public MNode getChild(String name) {
-    return children.containsKey(name) ? children.get(name) : aliasChildren.get(name);
+    MNode child = children.get(name);
+    if (child != null || aliasChildren == null) {
+      return child;
+    }
+    return aliasChildren.get(name);
   }
 
   @Override
@@ -104,6 +111,9 @@ public class InternalMNode extends MNode {
 
   @Override
   public void addAlias(String alias, MNode child) {
+    if (aliasChildren == null) {
+      aliasChildren = new LinkedHashMap<>();
+    }
     aliasChildren.put(alias, child);
   }
 
@@ -127,4 +137,11 @@ public class InternalMNode extends MNode {
       node = (InternalMNode) node.parent;
     }
   }
+
+  /**
+   * @return whether the current thread holds the read lock of this node
+   */
+  public boolean isReadLockedByCurrentThread() {
+    return ((ReentrantReadWriteLock) lock).getReadHoldCount() > 0;
+  }
 }
\ No newline at end of file
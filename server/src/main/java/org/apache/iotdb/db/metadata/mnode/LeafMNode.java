@@ -18,14 +18,20 @@
  */
 package org.apache.iotdb.db.metadata.mnode;
 
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import org.apache.iotdb.db.conf.IoTDBConstant;
 import org.apache.iotdb.tsfile.file.metadata.enums.CompressionType;
 import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
 import org.apache.iotdb.tsfile.file.metadata.enums.TSEncoding;
 import org.apache.iotdb.tsfile.read.TimeValuePair;
+import org.apache.iotdb.tsfile.utils.Binary;
+import org.apache.iotdb.tsfile.utils.TsPrimitiveType;
 import org.apache.iotdb.tsfile.write.schema.MeasurementSchema;
 
 import java.util.Collections;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 public class LeafMNode extends MNode {
 
@@ -39,18 +45,56 @@ public class LeafMNode extends MNode {
   // tag/attribute's start offset in tag file
   private long offset = -1;
 
-  private TimeValuePair cachedLastValuePair = null;
+  /**
+   * Timeseries of different devices usually share the same measurements, so the schemas without
+   * props are shared by the leaves, together with their measurement ids which are also used as the
+   * names of the leaves. MeasurementSchema.equals() ignores props, so schemas with props are never
+   * interned.
+   */
+  private static final Interner<MeasurementSchema> SCHEMA_INTERNER = Interners.newWeakInterner();
+
+  private static final AtomicReferenceFieldUpdater<LeafMNode, CachedLast> CACHED_LAST_UPDATER =
+      AtomicReferenceFieldUpdater.newUpdater(LeafMNode.class, CachedLast.class, "cachedLast");
+
+  /**
+   * the cached last value is never modified in place, an update replaces it by CAS so that inserts
+   * and last queries of the same timeseries do not block each other
+   */
+  private volatile CachedLast cachedLast = null;
 
   /**
    * @param alias alias of measurementName
    */
   public LeafMNode(MNode parent, String measurementName, String alias, TSDataType dataType,
       TSEncoding encoding, CompressionType type, Map<String, String> props) {
-    super(parent, measurementName);
-    this.schema = new MeasurementSchema(measurementName, dataType, encoding, type, props);
+    this(parent, internSchema(measurementName, dataType, encoding, type, props), alias);
+  }
+
+  private LeafMNode(MNode parent, MeasurementSchema schema, String alias) {
+    super(parent, schema.getMeasurementId());
+    this.schema = schema;
     this.alias = alias;
   }
 
+  private static MeasurementSchema internSchema(String measurementName, TSDataType dataType,
+      TSEncoding encoding, CompressionType type, Map<String, String> props) {
+    if (props != null && !props.isEmpty()) {
+      return new MeasurementSchema(measurementName, dataType, encoding, type, props);
+    }
+    return SCHEMA_INTERNER.intern(new MeasurementSchema(measurementName, dataType, encoding, type,
+        Collections.emptyMap()));
+  }
+
+  /**
+   * The full path of a leaf is not cached, as it is only needed by metadata queries and caching it
+   * takes more memory than the rest of the leaf.
+   */
+  @Override
+  public String getFullPath() {
+    return parent == null ? getName()
+        : parent.getFullPath() + IoTDBConstant.PATH_SEPARATOR + getName();
+  }
+
   @Override
   public boolean hasChild(String name) {
     return false;
@@ -96,29 +140,62 @@ public class LeafMNode extends MNode {
   }
 
   public TimeValuePair getCachedLast() {
-    return cachedLastValuePair;
+    CachedLast current = cachedLast;
+    return current == null ? null : new TimeValuePair(current.time, current.getValue());
   }
 
-  public synchronized void updateCachedLast(
+  public void updateCachedLast(
       TimeValuePair timeValuePair, boolean highPriorityUpdate, Long latestFlushedTime) {
-    if (timeValuePair == null || timeValuePair.getValue() == null) return;
+    if (timeValuePair == null || timeValuePair.getValue() == null
+        || timeValuePair.getValue().getDataType() != schema.getType()) {
+      return;
+    }
 
-    if (cachedLastValuePair == null) {
-      // If no cached last, (1) a last query (2) an unseq insertion or (3) a seq insertion will update cache.
-      if (!highPriorityUpdate || latestFlushedTime <= timeValuePair.getTimestamp()) {
-        cachedLastValuePair =
-            new TimeValuePair(timeValuePair.getTimestamp(), timeValuePair.getValue());
+    CachedLast newLast = null;
+    while (true) {
+      CachedLast current = cachedLast;
+      if (current == null) {
+        // If no cached last, (1) a last query (2) an unseq insertion or (3) a seq insertion will update cache.
+        if (highPriorityUpdate && latestFlushedTime > timeValuePair.getTimestamp()) {
+          return;
+        }
+      } else if (timeValuePair.getTimestamp() < current.time
+          || (timeValuePair.getTimestamp() == current.time && !highPriorityUpdate)) {
+        return;
+      }
+      if (newLast == null) {
+        newLast = CachedLast.of(timeValuePair.getTimestamp(), timeValuePair.getValue());
+      }
+      if (CACHED_LAST_UPDATER.compareAndSet(this, current, newLast)) {
+        return;
       }
-    } else if (timeValuePair.getTimestamp() > cachedLastValuePair.getTimestamp()
-        || (timeValuePair.getTimestamp() == cachedLastValuePair.getTimestamp()
-            && highPriorityUpdate)) {
-      cachedLastValuePair.setTimestamp(timeValuePair.getTimestamp());
-      cachedLastValuePair.setValue(timeValuePair.getValue());
     }
   }
 
   public void resetCache() {
-    cachedLastValuePair = null;
+    cachedLast = null;
+  }
+
+  /**
+   * Drop the cached last value if it may have been removed by a deletion of the data before or at
+   * the given time.
+   */
+  public void resetCache(long deletedUpTo) {
+    resetCache(Long.MIN_VALUE, deletedUpTo);
+  }
+
+  /**
+   * Drop the cached last value if it may have been removed by a deletion of the data within
+   * [startTime, endTime].
+   */
+  public void resetCache(long startTime, long endTime) {
+    CachedLast current;
+    do {
+      current = cachedLast;
+      if (current == null || current.time < startTime || current.time > endTime) {
+        return;
+      }
+    } while (!CACHED_LAST_UPDATER.compareAndSet(this, current, null));
   }
 
   public long getOffset() {
@@ -136,4 +213,126 @@ public class LeafMNode extends MNode {
   public void setAlias(String alias) {
     this.alias = alias;
   }
-}
\ No newline at end of file
+
+  /**
+   * An immutable last value. Each data type keeps its value in a primitive field of its own
+   * subclass, so a cached value takes one object instead of a TimeValuePair and a TsPrimitiveType.
+   */
+  private abstract static class CachedLast {
+
+    final long time;
+
+    CachedLast(long time) {
+      this.time = time;
+    }
+
+    abstract TsPrimitiveType getValue();
+
+    static CachedLast of(long time, TsPrimitiveType value) {
+      switch (value.getDataType()) {
+        case BOOLEAN:
+          return new BooleanLast(time, value.getBoolean());
+        case INT32:
+          return new IntLast(time, value.getInt());
+        case INT64:
+          return new LongLast(time, value.getLong());
+        case FLOAT:
+          return new FloatLast(time, value.getFloat());
+        case DOUBLE:
+          return new DoubleLast(time, value.getDouble());
+        default:
+          return new BinaryLast(time, value.getBinary());
+      }
+    }
+  }
+
+  private static final class BooleanLast extends CachedLast {
+
+    private final boolean value;
+
+    BooleanLast(long time, boolean value) {
+      super(time);
+      this.value = value;
+    }
+
+    @Override
+    TsPrimitiveType getValue() {
+      return new TsPrimitiveType.TsBoolean(value);
+    }
+  }
+
+  private static final class IntLast extends CachedLast {
+
+    private final int value;
+
+    IntLast(long time, int value) {
+      super(time);
+      this.value = value;
+    }
+
+    @Override
+    TsPrimitiveType getValue() {
+      return new TsPrimitiveType.TsInt(value);
+    }
+  }
+
+  private static final class LongLast extends CachedLast {
+
+    private final long value;
+
+    LongLast(long time, long value) {
+      super(time);
+      this.value = value;
+    }
+
+    @Override
+    TsPrimitiveType getValue() {
+      return new TsPrimitiveType.TsLong(value);
+    }
+  }
+
+  private static final class FloatLast extends CachedLast {
+
+    private final float value;
+
+    FloatLast(long time, float value) {
+      super(time);
+      this.value = value;
+    }
+
+    @Override
+    TsPrimitiveType getValue() {
+      return new TsPrimitiveType.TsFloat(value);
+    }
+  }
+
+  private static final class DoubleLast extends CachedLast {
+
+    private final double value;
+
+    DoubleLast(long time, double value) {
+      super(time);
+      this.value = value;
+    }
+
+    @Override
+    TsPrimitiveType getValue() {
+      return new TsPrimitiveType.TsDouble(value);
+    }
+  }
+
+  private static final class BinaryLast extends CachedLast {
+
+    private final Binary value;
+
+    BinaryLast(long time, Binary value) {
+      super(time);
+      this.value = value;
+    }
+
+    @Override
+    TsPrimitiveType getValue() {
+      return new TsPrimitiveType.TsBinary(value);
+    }
+  }
+}
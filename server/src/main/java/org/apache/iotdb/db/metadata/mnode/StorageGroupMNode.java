@@ -18,6 +18,9 @@
  */
 package org.apache.iotdb.db.metadata.mnode;
 
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
 public class StorageGroupMNode extends InternalMNode {
 
   private static final long serialVersionUID = 7999036474525817732L;
@@ -28,6 +31,11 @@ public class StorageGroupMNode extends InternalMNode {
    */
   private long dataTTL;
 
+  /**
+   * guards the subtree of the storage group in MManager, so that timeseries are created in
+   * different storage groups concurrently
+   */
+  private final ReadWriteLock schemaLock = new ReentrantReadWriteLock();
 
   public StorageGroupMNode(MNode parent, String name, String fullPath, long dataTTL) {
     super(parent, name);
@@ -43,4 +51,7 @@ public class StorageGroupMNode extends InternalMNode {
     this.dataTTL = dataTTL;
   }
 
+  public ReadWriteLock getSchemaLock() {
+    return schemaLock;
+  }
 }
\ No newline at end of file
@@ -0,0 +1,328 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.metadata.tag;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import org.apache.iotdb.tsfile.utils.ReadWriteIOUtils;
+
+/**
+ * PostingList is a set of non-negative timeseries ids, iterated in ascending order.
+ *
+ * The ids are kept in a sorted int array while the list is sparse, and in a bitmap once more than
+ * one in every 32 ids of its range is present, where the bitmap becomes smaller than the array.
+ * A tag value shared by most of the timeseries thus costs one bit per timeseries. The bitmap turns
+ * back into an array when less than one in every 64 ids is present, so that a list around the
+ * threshold does not switch back and forth.
+ */
+public class PostingList {
+
+  private static final byte ARRAY = 0;
+  private static final byte BITMAP = 1;
+  private static final int[] EMPTY_IDS = new int[0];
+
+  // the ids in ascending order, null if the bitmap is used
+  private int[] ids = EMPTY_IDS;
+  // id i is present if bit (i & 63) of words[i >>> 6] is set, null if the array is used
+  private long[] words;
+  private int size = 0;
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public boolean contains(int id) {
+    if (words != null) {
+      int wordIndex = id >>> 6;
+      return wordIndex < words.length && (words[wordIndex] & (1L << id)) != 0;
+    }
+    return Arrays.binarySearch(ids, 0, size, id) >= 0;
+  }
+
+  /**
+   * @return false if the id is already present
+   */
+  public boolean add(int id) {
+    if (id < 0) {
+      throw new IllegalArgumentException("Negative id " + id);
+    }
+    if (words != null) {
+      int wordIndex = id >>> 6;
+      if (wordIndex >= words.length) {
+        words = Arrays.copyOf(words, Math.max(wordIndex + 1, words.length + (words.length >> 1)));
+      }
+      long mask = 1L << id;
+      if ((words[wordIndex] & mask) != 0) {
+        return false;
+      }
+      words[wordIndex] |= mask;
+      size++;
+      return true;
+    }
+
+    // ids are allocated incrementally, so appending is the common case
+    int position = size;
+    if (size > 0 && ids[size - 1] >= id) {
+      position = Arrays.binarySearch(ids, 0, size, id);
+      if (position >= 0) {
+        return false;
+      }
+      position = -position - 1;
+    }
+    if (size == ids.length) {
+      ids = Arrays.copyOf(ids, Math.max(4, size + (size >> 1)));
+    }
+    System.arraycopy(ids, position, ids, position + 1, size - position);
+    ids[position] = id;
+    size++;
+    if ((long) size * Integer.SIZE > ids[size - 1] + Long.SIZE) {
+      toBitmap();
+    }
+    return true;
+  }
+
+  /**
+   * @return false if the id is not present
+   */
+  public boolean remove(int id) {
+    if (words != null) {
+      int wordIndex = id >>> 6;
+      long mask = 1L << id;
+      if (wordIndex >= words.length || (words[wordIndex] & mask) == 0) {
+        return false;
+      }
+      words[wordIndex] &= ~mask;
+      size--;
+      if (size < words.length) {
+        toArray();
+      }
+      return true;
+    }
+
+    int position = Arrays.binarySearch(ids, 0, size, id);
+    if (position < 0) {
+      return false;
+    }
+    System.arraycopy(ids, position + 1, ids, position, size - position - 1);
+    size--;
+    if (size < ids.length >> 2) {
+      ids = Arrays.copyOf(ids, size << 1);
+    }
+    return true;
+  }
+
+  private void toBitmap() {
+    long[] newWords = new long[(ids[size - 1] >>> 6) + 1];
+    for (int i = 0; i < size; i++) {
+      newWords[ids[i] >>> 6] |= 1L << ids[i];
+    }
+    words = newWords;
+    ids = null;
+  }
+
+  private void toArray() {
+    int[] newIds = new int[size];
+    int i = 0;
+    for (PrimitiveIterator.OfInt iterator = iterator(); iterator.hasNext(); ) {
+      newIds[i++] = iterator.nextInt();
+    }
+    ids = newIds;
+    words = null;
+  }
+
+  /**
+   * @return the ids present in both this and the other list, in a new list
+   */
+  public PostingList and(PostingList other) {
+    PostingList result = new PostingList();
+    if (words != null && other.words != null) {
+      long[] resultWords = new long[Math.min(words.length, other.words.length)];
+      int resultSize = 0;
+      for (int i = 0; i < resultWords.length; i++) {
+        resultWords[i] = words[i] & other.words[i];
+        resultSize += Long.bitCount(resultWords[i]);
+      }
+      result.setWords(resultWords, resultSize);
+      return result;
+    }
+    // probe the larger list with each id of the smaller one
+    PostingList smaller = size <= other.size ? this : other;
+    PostingList larger = smaller == this ? other : this;
+    for (PrimitiveIterator.OfInt iterator = smaller.iterator(); iterator.hasNext(); ) {
+      int id = iterator.nextInt();
+      if (larger.contains(id)) {
+        result.add(id);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @return the ids present in either this or the other list, in a new list
+   */
+  public PostingList or(PostingList other) {
+    PostingList result = new PostingList();
+    if (words != null && other.words != null) {
+      long[] longer = words.length >= other.words.length ? words : other.words;
+      long[] shorter = longer == words ? other.words : words;
+      long[] resultWords = Arrays.copyOf(longer, longer.length);
+      for (int i = 0; i < shorter.length; i++) {
+        resultWords[i] |= shorter[i];
+      }
+      int resultSize = 0;
+      for (long word : resultWords) {
+        resultSize += Long.bitCount(word);
+      }
+      result.setWords(resultWords, resultSize);
+      return result;
+    }
+    // merge the two ascending sequences, so that each id is appended to the result
+    PrimitiveIterator.OfInt iterator = iterator();
+    PrimitiveIterator.OfInt otherIterator = other.iterator();
+    int id = iterator.hasNext() ? iterator.nextInt() : -1;
+    int otherId = otherIterator.hasNext() ? otherIterator.nextInt() : -1;
+    while (id >= 0 || otherId >= 0) {
+      if (otherId < 0 || (id >= 0 && id < otherId)) {
+        result.add(id);
+        id = iterator.hasNext() ? iterator.nextInt() : -1;
+      } else if (id < 0 || otherId < id) {
+        result.add(otherId);
+        otherId = otherIterator.hasNext() ? otherIterator.nextInt() : -1;
+      } else {
+        result.add(id);
+        id = iterator.hasNext() ? iterator.nextInt() : -1;
+        otherId = otherIterator.hasNext() ? otherIterator.nextInt() : -1;
+      }
+    }
+    return result;
+  }
+
+  private void setWords(long[] words, int size) {
+    this.words = words;
+    this.ids = null;
+    this.size = size;
+    if (size < words.length) {
+      toArray();
+    }
+  }
+
+  /**
+   * @return an iterator of the ids in ascending order, which must not be used after the list is
+   * modified
+   */
+  public PrimitiveIterator.OfInt iterator() {
+    return words != null ? new BitmapIterator() : new ArrayIterator();
+  }
+
+  public void serialize(OutputStream outputStream) throws IOException {
+    if (words != null) {
+      ReadWriteIOUtils.write(BITMAP, outputStream);
+      ReadWriteIOUtils.write(size, outputStream);
+      ReadWriteIOUtils.write(words.length, outputStream);
+      for (long word : words) {
+        ReadWriteIOUtils.write(word, outputStream);
+      }
+    } else {
+      ReadWriteIOUtils.write(ARRAY, outputStream);
+      ReadWriteIOUtils.write(size, outputStream);
+      for (int i = 0; i < size; i++) {
+        ReadWriteIOUtils.write(ids[i], outputStream);
+      }
+    }
+  }
+
+  public static PostingList deserialize(InputStream inputStream) throws IOException {
+    PostingList postingList = new PostingList();
+    int type = inputStream.read();
+    int size = ReadWriteIOUtils.readInt(inputStream);
+    if (type == BITMAP) {
+      long[] words = new long[ReadWriteIOUtils.readInt(inputStream)];
+      for (int i = 0; i < words.length; i++) {
+        words[i] = ReadWriteIOUtils.readLong(inputStream);
+      }
+      postingList.words = words;
+      postingList.ids = null;
+    } else if (type == ARRAY) {
+      int[] ids = new int[size];
+      for (int i = 0; i < size; i++) {
+        ids[i] = ReadWriteIOUtils.readInt(inputStream);
+      }
+      postingList.ids = ids;
+    } else {
+      throw new IOException("Unrecognizable posting list type " + type);
+    }
+    postingList.size = size;
+    return postingList;
+  }
+
+  private class ArrayIterator implements PrimitiveIterator.OfInt {
+
+    private int position = 0;
+
+    @Override
+    public boolean hasNext() {
+      return position < size;
+    }
+
+    @Override
+    public int nextInt() {
+      if (position >= size) {
+        throw new NoSuchElementException();
+      }
+      return ids[position++];
+    }
+  }
+
+  private class BitmapIterator implements PrimitiveIterator.OfInt {
+
+    private int wordIndex = 0;
+    // the bits of words[wordIndex] that are not iterated yet
+    private long word = words.length > 0 ? words[0] : 0;
+
+    @Override
+    public boolean hasNext() {
+      while (word == 0) {
+        if (++wordIndex >= words.length) {
+          return false;
+        }
+        word = words[wordIndex];
+      }
+      return true;
+    }
+
+    @Override
+    public int nextInt() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      int id = (wordIndex << 6) + Long.numberOfTrailingZeros(word);
+      // clear the lowest set bit
+      word &= word - 1;
+      return id;
+    }
+  }
+}
@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.metadata.tag;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.apache.iotdb.db.exception.metadata.MetadataException;
+
+/**
+ * TagFilter is a boolean expression of predicates on the tags of timeseries, such as
+ * "unit=kw and (owner=a or description contains 'test')". It is evaluated against a TagIndex into
+ * the posting list of the matched timeseries, without reading any tag from the tag file.
+ */
+public abstract class TagFilter {
+
+  /**
+   * @return the ids of the matched timeseries, which must not be modified as it may be a posting
+   * list of the index
+   * @throws MetadataException if a key in the filter is not a tag of any timeseries
+   */
+  public abstract PostingList evaluate(TagIndex tagIndex) throws MetadataException;
+
+  /**
+   * the timeseries whose value of the tag key equals the given one
+   */
+  public static TagFilter equal(String key, String value) {
+    return new ValueFilter(key, value, false);
+  }
+
+  /**
+   * the timeseries whose value of the tag key contains the given one
+   */
+  public static TagFilter contains(String key, String value) {
+    return new ValueFilter(key, value, true);
+  }
+
+  public static TagFilter and(List<TagFilter> children) {
+    return children.size() == 1 ? children.get(0) : new AndFilter(children);
+  }
+
+  public static TagFilter or(List<TagFilter> children) {
+    return children.size() == 1 ? children.get(0) : new OrFilter(children);
+  }
+
+  private static class ValueFilter extends TagFilter {
+
+    private String key;
+    private String value;
+    private boolean isContains;
+
+    private ValueFilter(String key, String value, boolean isContains) {
+      this.key = key;
+      this.value = value;
+      this.isContains = isContains;
+    }
+
+    @Override
+    public PostingList evaluate(TagIndex tagIndex) throws MetadataException {
+      if (!tagIndex.containsKey(key)) {
+        throw new MetadataException("The key " + key + " is not a tag.");
+      }
+      return isContains ? tagIndex.getContaining(key, value) : tagIndex.getEqual(key, value);
+    }
+
+    @Override
+    public String toString() {
+      return key + (isContains ? " contains " : "=") + value;
+    }
+  }
+
+  private static class AndFilter extends TagFilter {
+
+    private List<TagFilter> children;
+
+    private AndFilter(List<TagFilter> children) {
+      this.children = children;
+    }
+
+    @Override
+    public PostingList evaluate(TagIndex tagIndex) throws MetadataException {
+      List<PostingList> postingLists = new ArrayList<>(children.size());
+      for (TagFilter child : children) {
+        postingLists.add(child.evaluate(tagIndex));
+      }
+      // intersect from the smallest list, so that each intermediate result is as small as possible
+      postingLists.sort(Comparator.comparingInt(PostingList::size));
+      PostingList result = postingLists.get(0);
+      for (int i = 1; i < postingLists.size() && !result.isEmpty(); i++) {
+        result = result.and(postingLists.get(i));
+      }
+      return result;
+    }
+
+    @Override
+    public String toString() {
+      return children.stream().map(child -> "(" + child + ")")
+          .collect(Collectors.joining(" and "));
+    }
+  }
+
+  private static class OrFilter extends TagFilter {
+
+    private List<TagFilter> children;
+
+    private OrFilter(List<TagFilter> children) {
+      this.children = children;
+    }
+
+    @Override
+    public PostingList evaluate(TagIndex tagIndex) throws MetadataException {
+      PostingList result = children.get(0).evaluate(tagIndex);
+      for (int i = 1; i < children.size(); i++) {
+        result = result.or(children.get(i).evaluate(tagIndex));
+      }
+      return result;
+    }
+
+    @Override
+    public String toString() {
+      return children.stream().map(child -> "(" + child + ")")
+          .collect(Collectors.joining(" or "));
+    }
+  }
+}
@@ -0,0 +1,188 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.metadata.tag;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import org.apache.iotdb.db.metadata.mnode.LeafMNode;
+import org.apache.iotdb.tsfile.utils.ReadWriteIOUtils;
+
+/**
+ * TagIndex is the inverted index of the tags of timeseries, mapping each tag key and value to the
+ * posting list of the timeseries having the tag.
+ *
+ * A timeseries is identified by the position of its record in the tag file, i.e., its tag offset
+ * divided by the fixed record size. So the ids are dense, stay the same across restarts and cost
+ * no field in LeafMNode.
+ *
+ * It is not thread-safe. MManager modifies it synchronized on it while holding the write lock of
+ * the storage group of the timeseries, and reads it while holding the read locks of all storage
+ * groups.
+ */
+public class TagIndex {
+
+  private static final LeafMNode[] EMPTY_NODES = new LeafMNode[0];
+
+  private final int recordSize;
+  // tag key -> tag value -> ids of the timeseries
+  private Map<String, Map<String, PostingList>> index = new HashMap<>();
+  // id -> the timeseries with a record in the tag file
+  private LeafMNode[] nodes = EMPTY_NODES;
+
+  /**
+   * @param recordSize the size of each record in the tag file
+   */
+  public TagIndex(int recordSize) {
+    this.recordSize = recordSize;
+  }
+
+  public int getId(LeafMNode node) {
+    return (int) (node.getOffset() / recordSize);
+  }
+
+  /**
+   * @return the timeseries of the id, or null if it is deleted
+   */
+  public LeafMNode getNode(int id) {
+    return id < nodes.length ? nodes[id] : null;
+  }
+
+  /**
+   * Make the timeseries, whose tag offset must be set, available through getNode().
+   */
+  public void registerNode(LeafMNode node) {
+    int id = getId(node);
+    if (id >= nodes.length) {
+      nodes = Arrays.copyOf(nodes, Math.max(id + 1, nodes.length + (nodes.length >> 1)));
+    }
+    nodes[id] = node;
+  }
+
+  public void addTags(LeafMNode node, Map<String, String> tags) {
+    for (Entry<String, String> entry : tags.entrySet()) {
+      addTag(node, entry.getKey(), entry.getValue());
+    }
+  }
+
+  public void addTag(LeafMNode node, String key, String value) {
+    registerNode(node);
+    index.computeIfAbsent(key, k -> new HashMap<>())
+        .computeIfAbsent(value, v -> new PostingList()).add(getId(node));
+  }
+
+  public void removeTag(LeafMNode node, String key, String value) {
+    Map<String, PostingList> value2Ids = index.get(key);
+    if (value2Ids == null) {
+      return;
+    }
+    PostingList ids = value2Ids.get(value);
+    if (ids != null && ids.remove(getId(node)) && ids.isEmpty()) {
+      value2Ids.remove(value);
+      if (value2Ids.isEmpty()) {
+        index.remove(key);
+      }
+    }
+  }
+
+  /**
+   * Remove the deleted timeseries with its tags.
+   */
+  public void removeNode(LeafMNode node, Map<String, String> tags) {
+    for (Entry<String, String> entry : tags.entrySet()) {
+      removeTag(node, entry.getKey(), entry.getValue());
+    }
+    int id = getId(node);
+    if (id < nodes.length && nodes[id] == node) {
+      nodes[id] = null;
+    }
+  }
+
+  public boolean containsKey(String key) {
+    return index.containsKey(key);
+  }
+
+  /**
+   * @return the ids of the timeseries whose value of the key equals the given one, which must not
+   * be modified
+   */
+  public PostingList getEqual(String key, String value) {
+    PostingList ids = index.getOrDefault(key, Collections.emptyMap()).get(value);
+    return ids != null ? ids : new PostingList();
+  }
+
+  /**
+   * @return the ids of the timeseries whose value of the key contains the given one, which must
+   * not be modified
+   */
+  public PostingList getContaining(String key, String value) {
+    PostingList result = new PostingList();
+    for (Entry<String, PostingList> entry : index.getOrDefault(key, Collections.emptyMap())
+        .entrySet()) {
+      if (entry.getKey().contains(value)) {
+        result = result.or(entry.getValue());
+      }
+    }
+    return result;
+  }
+
+  public void clear() {
+    index.clear();
+    nodes = EMPTY_NODES;
+  }
+
+  /**
+   * Write the posting lists. The timeseries are not written, they are registered again by whoever
+   * loads them.
+   */
+  public void serialize(OutputStream outputStream) throws IOException {
+    ReadWriteIOUtils.write(index.size(), outputStream);
+    for (Entry<String, Map<String, PostingList>> keyEntry : index.entrySet()) {
+      ReadWriteIOUtils.write(keyEntry.getKey(), outputStream);
+      ReadWriteIOUtils.write(keyEntry.getValue().size(), outputStream);
+      for (Entry<String, PostingList> valueEntry : keyEntry.getValue().entrySet()) {
+        ReadWriteIOUtils.write(valueEntry.getKey(), outputStream);
+        valueEntry.getValue().serialize(outputStream);
+      }
+    }
+  }
+
+  /**
+   * Replace the posting lists with those written by serialize().
+   */
+  public void deserialize(InputStream inputStream) throws IOException {
+    index.clear();
+    int keyNum = ReadWriteIOUtils.readInt(inputStream);
+    for (int i = 0; i < keyNum; i++) {
+      String key = ReadWriteIOUtils.readString(inputStream);
+      int valueNum = ReadWriteIOUtils.readInt(inputStream);
+      Map<String, PostingList> value2Ids = new HashMap<>(valueNum * 4 / 3 + 1);
+      for (int j = 0; j < valueNum; j++) {
+        value2Ids.put(ReadWriteIOUtils.readString(inputStream),
+            PostingList.deserialize(inputStream));
+      }
+      index.put(key, value2Ids);
+    }
+  }
+}
@@ -20,6 +20,7 @@ package org.apache.iotdb.db.qp.executor;
 
 import java.io.IOException;
 import java.sql.SQLException;
+import java.util.List;
 import org.apache.iotdb.db.exception.StorageEngineException;
 import org.apache.iotdb.db.exception.metadata.MetadataException;
 import org.apache.iotdb.db.exception.metadata.StorageGroupNotSetException;
@@ -28,6 +29,7 @@ import org.apache.iotdb.db.qp.physical.PhysicalPlan;
 import org.apache.iotdb.db.qp.physical.crud.InsertTabletPlan;
 import org.apache.iotdb.db.qp.physical.crud.DeletePlan;
 import org.apache.iotdb.db.qp.physical.crud.InsertPlan;
+import org.apache.iotdb.db.qp.physical.sys.CreateTimeSeriesPlan;
 import org.apache.iotdb.db.query.context.QueryContext;
 import org.apache.iotdb.service.rpc.thrift.TSStatus;
 import org.apache.iotdb.tsfile.exception.filter.QueryFilterOptimizationException;
@@ -76,10 +78,11 @@ public interface IPlanExecutor {
   /**
    * execute delete command and return whether the operator is successful.
    *
-   * @param path       : delete series seriesPath
-   * @param deleteTime end time in delete command
+   * @param path      : delete series seriesPath
+   * @param startTime start time in delete command, Long.MIN_VALUE if there is none
+   * @param endTime   end time in delete command
    */
-  void delete(Path path, long deleteTime) throws QueryProcessException;
+  void delete(Path path, long startTime, long endTime) throws QueryProcessException;
 
   /**
    * execute insert command and return whether the operator is successful.
@@ -94,4 +97,21 @@ public interface IPlanExecutor {
    * @return result of each row
    */
   TSStatus[] insertTablet(InsertTabletPlan insertTabletPlan) throws QueryProcessException;
+
+  /**
+   * create the missing timeseries of the insert plans in one batch if auto creating schema is
+   * enabled, so that executing the plans one by one does not create them one by one. The failures
+   * are ignored as each plan checks its timeseries again.
+   *
+   * @param insertPlans InsertPlans or InsertTabletPlans
+   */
+  void createMissingTimeseries(List<PhysicalPlan> insertPlans);
+
+  /**
+   * create the timeseries of the plans in one batch instead of one by one
+   *
+   * @return result of each plan
+   */
+  TSStatus[] createTimeseries(List<CreateTimeSeriesPlan> createTimeSeriesPlans)
+      throws QueryProcessException;
 }
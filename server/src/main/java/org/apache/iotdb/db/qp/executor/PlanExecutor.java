@@ -45,6 +45,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -124,6 +125,8 @@ import org.apache.iotdb.db.utils.AuthUtils;
 import org.apache.iotdb.db.utils.FileLoaderUtils;
 import org.apache.iotdb.db.utils.TypeInferenceUtils;
 import org.apache.iotdb.db.utils.UpgradeUtils;
+import org.apache.iotdb.rpc.RpcUtils;
+import org.apache.iotdb.rpc.TSStatusCode;
 import org.apache.iotdb.service.rpc.thrift.TSStatus;
 import org.apache.iotdb.tsfile.common.conf.TSFileDescriptor;
 import org.apache.iotdb.tsfile.exception.filter.QueryFilterOptimizationException;
@@ -335,7 +338,7 @@ public class PlanExecutor implements IPlanExecutor {
         return processShowVersion();
       case TIMESERIES:
         ShowTimeSeriesPlan plan = (ShowTimeSeriesPlan) showPlan;
-        if (plan.getKey() != null && plan.getValue() != null) {
+        if (plan.getTagFilter() != null) {
           return processShowTimeseriesWithIndex((ShowTimeSeriesPlan) showPlan);
         } else {
           return processShowTimeseries(plan);
@@ -678,7 +681,7 @@ public class PlanExecutor implements IPlanExecutor {
         throw new QueryProcessException("TimeSeries does not exist and its data cannot be deleted");
       }
       for (String path : existingPaths) {
-        delete(new Path(path), deletePlan.getDeleteTime());
+        delete(new Path(path), deletePlan.getDeleteStartTime(), deletePlan.getDeleteTime());
       }
     } catch (MetadataException e) {
       throw new QueryProcessException(e);
@@ -847,7 +850,7 @@ public class PlanExecutor implements IPlanExecutor {
   }
 
   @Override
-  public void delete(Path path, long timestamp) throws QueryProcessException {
+  public void delete(Path path, long startTime, long endTime) throws QueryProcessException {
     String deviceId = path.getDevice();
     String measurementId = path.getMeasurement();
     try {
@@ -856,7 +859,7 @@ public class PlanExecutor implements IPlanExecutor {
             String.format("Time series %s does not exist.", path.getFullPath()));
       }
       mManager.getStorageGroupName(path.getFullPath());
-      StorageEngine.getInstance().delete(deviceId, measurementId, timestamp);
+      StorageEngine.getInstance().delete(deviceId, measurementId, startTime, endTime);
     } catch (MetadataException | StorageEngineException e) {
       throw new QueryProcessException(e);
     }
@@ -872,6 +875,7 @@ public class PlanExecutor implements IPlanExecutor {
       String[] strValues = insertPlan.getValues();
       MeasurementSchema[] schemas = new MeasurementSchema[measurementList.length];
 
+      List<CreateTimeSeriesPlan> createPlans = new ArrayList<>();
       for (int i = 0; i < measurementList.length; i++) {
         String measurement = measurementList[i];
         if (!node.hasChild(measurement)) {
@@ -879,17 +883,25 @@ public class PlanExecutor implements IPlanExecutor {
             throw new PathNotExistException(deviceId + PATH_SEPARATOR + measurement);
           }
           TSDataType dataType = TypeInferenceUtils.getPredictedDataType(strValues[i]);
-          Path path = new Path(deviceId, measurement);
-          internalCreateTimeseries(path.toString(), dataType);
+          createPlans.add(getAutoCreatePlan(new Path(deviceId, measurement), dataType));
         }
+      }
+      internalCreateTimeseries(createPlans);
+
+      LeafMNode[] measurementMNodes = new LeafMNode[measurementList.length];
+      for (int i = 0; i < measurementList.length; i++) {
+        String measurement = measurementList[i];
         LeafMNode measurementNode = (LeafMNode) node.getChild(measurement);
         schemas[i] = measurementNode.getSchema();
+        measurementMNodes[i] = measurementNode;
         // reset measurement to common name instead of alias
         measurementList[i] = measurementNode.getName();
       }
 
+      insertPlan.setDeviceId(internDeviceId(node, deviceId));
       insertPlan.setMeasurements(measurementList);
       insertPlan.setSchemas(schemas);
+      insertPlan.setMeasurementMNodes(measurementMNodes);
       StorageEngine.getInstance().insert(insertPlan);
     } catch (StorageEngineException | MetadataException e) {
       throw new QueryProcessException(e);
@@ -900,23 +912,104 @@ public class PlanExecutor implements IPlanExecutor {
     }
   }
 
-  /** create timeseries with ignore PathAlreadyExistException */
-  private void internalCreateTimeseries(String path, TSDataType dataType) throws MetadataException {
-    try {
-      mManager.createTimeseries(
-          path,
-          dataType,
-          getDefaultEncoding(dataType),
-          TSFileDescriptor.getInstance().getConfig().getCompressor(),
-          Collections.emptyMap());
-    } catch (PathAlreadyExistException e) {
-      if (logger.isDebugEnabled()) {
-        logger.debug(
-            "Ignore PathAlreadyExistException when Concurrent inserting"
-                + " a non-exist time series {}",
-            path);
+  /**
+   * Use the full path cached in the device node as the device id of the insertion, so that all
+   * insertions of a device share one String instance, whose hash code is computed once and which
+   * is compared by reference in the maps of the memtables and the storage group processors.
+   */
+  private String internDeviceId(MNode deviceNode, String deviceId) {
+    String fullPath = deviceNode.getFullPath();
+    return fullPath.equals(deviceId) ? fullPath : deviceId;
+  }
+
+  /** create timeseries in one batch with ignore PathAlreadyExistException */
+  private void internalCreateTimeseries(List<CreateTimeSeriesPlan> createPlans)
+      throws MetadataException {
+    if (createPlans.isEmpty()) {
+      return;
+    }
+    MetadataException[] failures = mManager.createTimeseries(createPlans);
+    for (int i = 0; i < failures.length; i++) {
+      if (failures[i] instanceof PathAlreadyExistException) {
+        if (logger.isDebugEnabled()) {
+          logger.debug(
+              "Ignore PathAlreadyExistException when Concurrent inserting"
+                  + " a non-exist time series {}",
+              createPlans.get(i).getPath());
+        }
+      } else if (failures[i] != null) {
+        throw failures[i];
+      }
+    }
+  }
+
+  /** the plan to create a timeseries of the data type with the default encoding and compressor */
+  private CreateTimeSeriesPlan getAutoCreatePlan(Path path, TSDataType dataType) {
+    return new CreateTimeSeriesPlan(path, dataType, getDefaultEncoding(dataType),
+        TSFileDescriptor.getInstance().getConfig().getCompressor(), Collections.emptyMap(), null,
+        null, null);
+  }
+
+  @Override
+  public void createMissingTimeseries(List<PhysicalPlan> insertPlans) {
+    IoTDBConfig conf = IoTDBDescriptor.getInstance().getConfig();
+    if (!conf.isAutoCreateSchemaEnabled() || conf.isReadOnly()) {
+      return;
+    }
+    // full path -> the plan creating it with the data type of its first insertion
+    Map<String, CreateTimeSeriesPlan> createPlans = new LinkedHashMap<>();
+    for (PhysicalPlan plan : insertPlans) {
+      String deviceId;
+      String[] measurements;
+      if (plan instanceof InsertPlan) {
+        deviceId = ((InsertPlan) plan).getDeviceId();
+        measurements = ((InsertPlan) plan).getMeasurements();
+      } else if (plan instanceof InsertTabletPlan) {
+        deviceId = ((InsertTabletPlan) plan).getDeviceId();
+        measurements = ((InsertTabletPlan) plan).getMeasurements();
+      } else {
+        continue;
       }
+      for (int i = 0; i < measurements.length; i++) {
+        String path = deviceId + PATH_SEPARATOR + measurements[i];
+        if (createPlans.containsKey(path) || mManager.isPathExist(path)) {
+          continue;
+        }
+        TSDataType dataType = plan instanceof InsertPlan
+            ? TypeInferenceUtils.getPredictedDataType(((InsertPlan) plan).getValues()[i])
+            : ((InsertTabletPlan) plan).getDataTypes()[i];
+        createPlans.put(path, getAutoCreatePlan(new Path(deviceId, measurements[i]), dataType));
+      }
+    }
+    if (createPlans.isEmpty()) {
+      return;
+    }
+
+    List<CreateTimeSeriesPlan> planList = new ArrayList<>(createPlans.values());
+    MetadataException[] failures = mManager.createTimeseries(planList);
+    for (int i = 0; i < failures.length; i++) {
+      if (failures[i] != null && logger.isDebugEnabled()) {
+        logger.debug("Cannot create timeseries {} before inserting", planList.get(i).getPath(),
+            failures[i]);
+      }
+    }
+  }
+
+  @Override
+  public TSStatus[] createTimeseries(List<CreateTimeSeriesPlan> createTimeSeriesPlans)
+      throws QueryProcessException {
+    if (IoTDBDescriptor.getInstance().getConfig().isReadOnly()) {
+      throw new QueryProcessException(
+          "Current system mode is read-only, does not support non-query operation");
+    }
+    MetadataException[] failures = mManager.createTimeseries(createTimeSeriesPlans);
+    TSStatus[] statuses = new TSStatus[failures.length];
+    for (int i = 0; i < failures.length; i++) {
+      statuses[i] = failures[i] == null
+          ? RpcUtils.getStatus(TSStatusCode.SUCCESS_STATUS, "Execute successfully")
+          : RpcUtils.getStatus(failures[i].getErrorCode(), failures[i].getMessage());
     }
+    return statuses;
   }
 
   /** Get default encoding by dataType */
@@ -952,6 +1045,7 @@ public class PlanExecutor implements IPlanExecutor {
       IoTDBConfig conf = IoTDBDescriptor.getInstance().getConfig();
       MeasurementSchema[] schemas = new MeasurementSchema[measurementList.length];
 
+      List<CreateTimeSeriesPlan> createPlans = new ArrayList<>();
       for (int i = 0; i < measurementList.length; i++) {
         // check if timeseries exists
         if (!node.hasChild(measurementList[i])) {
@@ -961,10 +1055,13 @@ public class PlanExecutor implements IPlanExecutor {
                     "Current deviceId[%s] does not contain measurement:%s",
                     deviceId, measurementList[i]));
           }
-          Path path = new Path(deviceId, measurementList[i]);
-          TSDataType dataType = dataTypes[i];
-          internalCreateTimeseries(path.getFullPath(), dataType);
+          createPlans.add(getAutoCreatePlan(new Path(deviceId, measurementList[i]), dataTypes[i]));
         }
+      }
+      internalCreateTimeseries(createPlans);
+
+      LeafMNode[] measurementMNodes = new LeafMNode[measurementList.length];
+      for (int i = 0; i < measurementList.length; i++) {
         LeafMNode measurementNode = (LeafMNode) node.getChild(measurementList[i]);
 
         // check data type
@@ -977,8 +1074,14 @@ public class PlanExecutor implements IPlanExecutor {
                   measurementNode.getSchema().getType()));
         }
         schemas[i] = measurementNode.getSchema();
+        measurementMNodes[i] = measurementNode;
+        // reset measurement to common name instead of alias
+        measurementList[i] = measurementNode.getName();
       }
+      insertTabletPlan.setDeviceId(internDeviceId(node, deviceId));
+      insertTabletPlan.setMeasurements(measurementList);
       insertTabletPlan.setSchemas(schemas);
+      insertTabletPlan.setMeasurementMNodes(measurementMNodes);
       return StorageEngine.getInstance().insertTablet(insertTabletPlan);
     } catch (StorageEngineException | MetadataException e) {
       throw new QueryProcessException(e);
@@ -25,6 +25,8 @@ import org.apache.iotdb.db.qp.logical.Operator;
  */
 public class DeleteDataOperator extends SFWOperator {
 
+  // the start time and end time of the deleted data, both inclusive
+  private long startTime = Long.MIN_VALUE;
   private long time;
 
   public DeleteDataOperator(int tokenIntType) {
@@ -32,6 +34,14 @@ public class DeleteDataOperator extends SFWOperator {
     operatorType = Operator.OperatorType.DELETE;
   }
 
+  public long getStartTime() {
+    return startTime;
+  }
+
+  public void setStartTime(long startTime) {
+    this.startTime = startTime;
+  }
+
   public long getTime() {
     return time;
   }
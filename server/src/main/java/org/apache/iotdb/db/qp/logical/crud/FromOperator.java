@@ -20,6 +20,7 @@ package org.apache.iotdb.db.qp.logical.crud;
 
 import java.util.ArrayList;
 import java.util.List;
+import org.apache.iotdb.db.metadata.tag.TagFilter;
 import org.apache.iotdb.db.qp.logical.Operator;
 import org.apache.iotdb.tsfile.read.common.Path;
 
@@ -29,6 +30,10 @@ import org.apache.iotdb.tsfile.read.common.Path;
 public class FromOperator extends Operator {
 
   private List<Path> prefixList;
+  /**
+   * selects the timeseries under the prefix paths by their tags, null if all are selected
+   */
+  private TagFilter tagFilter;
 
   public FromOperator(int tokenIntType) {
     super(tokenIntType);
@@ -44,4 +49,12 @@ public class FromOperator extends Operator {
     return prefixList;
   }
 
+  public TagFilter getTagFilter() {
+    return tagFilter;
+  }
+
+  public void setTagFilter(TagFilter tagFilter) {
+    this.tagFilter = tagFilter;
+  }
+
 }
@@ -50,6 +50,11 @@ public class QueryOperator extends SFWOperator {
   private boolean isAlignByDevice = false;
   private boolean isAlignByTime = true;
 
+  // whether the result is ordered ascending, false for ORDER BY TIME DESC or ORDER BY VALUE DESC
+  private boolean ascending = true;
+  // whether the result is ordered by the value of the selected series instead of time
+  private boolean orderByValue = false;
+
   public QueryOperator(int tokenIntType) {
     super(tokenIntType);
     operatorType = Operator.OperatorType.QUERY;
@@ -174,4 +179,20 @@ public class QueryOperator extends SFWOperator {
   public void setAlignByTime(boolean isAlignByTime) {
     this.isAlignByTime = isAlignByTime;
   }
+
+  public boolean isAscending() {
+    return ascending;
+  }
+
+  public void setAscending(boolean ascending) {
+    this.ascending = ascending;
+  }
+
+  public boolean isOrderByValue() {
+    return orderByValue;
+  }
+
+  public void setOrderByValue(boolean orderByValue) {
+    this.orderByValue = orderByValue;
+  }
 }
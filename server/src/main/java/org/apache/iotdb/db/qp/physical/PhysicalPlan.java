@@ -148,6 +148,11 @@ public abstract class PhysicalPlan {
           plan = new DeletePlan();
           plan.deserializeFrom(buffer);
           break;
+        case RANGE_DELETE:
+          DeletePlan deletePlan = new DeletePlan();
+          deletePlan.deserializeRangeFrom(buffer);
+          plan = deletePlan;
+          break;
         case BATCHINSERT:
           plan = new InsertTabletPlan();
           plan.deserializeFrom(buffer);
@@ -168,7 +173,7 @@ public abstract class PhysicalPlan {
   }
 
   public enum PhysicalPlanType {
-    INSERT, DELETE, BATCHINSERT, SET_STORAGE_GROUP, CREATE_TIMESERIES
+    INSERT, DELETE, BATCHINSERT, SET_STORAGE_GROUP, CREATE_TIMESERIES, RANGE_DELETE
   }
 
 
@@ -30,6 +30,8 @@ import org.apache.iotdb.tsfile.read.common.Path;
 
 public class DeletePlan extends PhysicalPlan {
 
+  // Long.MIN_VALUE if the data before deleteTime are all deleted
+  private long deleteStartTime = Long.MIN_VALUE;
   private long deleteTime;
   private List<Path> paths = new ArrayList<>();
 
@@ -61,6 +63,26 @@ public class DeletePlan extends PhysicalPlan {
     this.paths = paths;
   }
 
+  /**
+   * constructor of DeletePlan with a time range.
+   *
+   * @param deleteStartTime the start time of the data points to be deleted, inclusive
+   * @param deleteTime the end time of the data points to be deleted, inclusive
+   * @param paths time series paths in List structure
+   */
+  public DeletePlan(long deleteStartTime, long deleteTime, List<Path> paths) {
+    this(deleteTime, paths);
+    this.deleteStartTime = deleteStartTime;
+  }
+
+  public long getDeleteStartTime() {
+    return deleteStartTime;
+  }
+
+  public void setDeleteStartTime(long deleteStartTime) {
+    this.deleteStartTime = deleteStartTime;
+  }
+
   public long getDeleteTime() {
     return deleteTime;
   }
@@ -88,7 +110,7 @@ public class DeletePlan extends PhysicalPlan {
 
   @Override
   public int hashCode() {
-    return Objects.hash(deleteTime, paths);
+    return Objects.hash(deleteStartTime, deleteTime, paths);
   }
 
   @Override
@@ -100,21 +122,34 @@ public class DeletePlan extends PhysicalPlan {
       return false;
     }
     DeletePlan that = (DeletePlan) o;
-    return deleteTime == that.deleteTime && Objects.equals(paths, that.paths);
+    return deleteStartTime == that.deleteStartTime && deleteTime == that.deleteTime
+        && Objects.equals(paths, that.paths);
   }
 
+  /**
+   * A plan without a start time is serialized as DELETE like before, and one with a start time as
+   * RANGE_DELETE, whose start time precedes the other fields.
+   */
   @Override
   public void serializeTo(DataOutputStream stream) throws IOException {
-    int type = PhysicalPlanType.DELETE.ordinal();
-    stream.writeByte((byte) type);
+    if (deleteStartTime == Long.MIN_VALUE) {
+      stream.writeByte((byte) PhysicalPlanType.DELETE.ordinal());
+    } else {
+      stream.writeByte((byte) PhysicalPlanType.RANGE_DELETE.ordinal());
+      stream.writeLong(deleteStartTime);
+    }
     stream.writeLong(deleteTime);
     putString(stream, paths.get(0).getFullPath());
   }
 
   @Override
   public void serializeTo(ByteBuffer buffer) {
-    int type = PhysicalPlanType.DELETE.ordinal();
-    buffer.put((byte) type);
+    if (deleteStartTime == Long.MIN_VALUE) {
+      buffer.put((byte) PhysicalPlanType.DELETE.ordinal());
+    } else {
+      buffer.put((byte) PhysicalPlanType.RANGE_DELETE.ordinal());
+      buffer.putLong(deleteStartTime);
+    }
     buffer.putLong(deleteTime);
     putString(buffer, paths.get(0).getFullPath());
   }
@@ -125,4 +160,12 @@ public class DeletePlan extends PhysicalPlan {
     this.paths = new ArrayList();
     this.paths.add(new Path(readString(buffer)));
   }
+
+  /**
+   * Deserialize a plan serialized as RANGE_DELETE, whose type has been read.
+   */
+  public void deserializeRangeFrom(ByteBuffer buffer) {
+    this.deleteStartTime = buffer.getLong();
+    deserializeFrom(buffer);
+  }
 }
@@ -27,6 +27,7 @@ import java.util.List;
 import java.util.Objects;
 
 import org.apache.iotdb.db.exception.query.QueryProcessException;
+import org.apache.iotdb.db.metadata.mnode.LeafMNode;
 import org.apache.iotdb.db.qp.logical.Operator;
 import org.apache.iotdb.db.qp.logical.Operator.OperatorType;
 import org.apache.iotdb.db.qp.physical.PhysicalPlan;
@@ -46,6 +47,8 @@ public class InsertPlan extends PhysicalPlan {
   private String[] measurements;
   private String[] values;
   private MeasurementSchema[] schemas;
+  // the nodes of the measurements found when checking the schemas, which are not serialized
+  private LeafMNode[] measurementMNodes;
 
   public InsertPlan() {
     super(false, OperatorType.INSERT);
@@ -103,6 +106,23 @@ public class InsertPlan extends PhysicalPlan {
     this.schemas = schemas;
   }
 
+  /**
+   * @return the nodes of the measurements, or null if the plan is not checked against the MTree
+   */
+  public LeafMNode[] getMeasurementMNodes() {
+    return measurementMNodes;
+  }
+
+  /**
+   * The nodes are only valid while the caller holds the read lock of their device node, which
+   * keeps them from being deleted, until the plan is executed.
+   *
+   * @param measurementMNodes the nodes of the measurements, in the same order
+   */
+  public void setMeasurementMNodes(LeafMNode[] measurementMNodes) {
+    this.measurementMNodes = measurementMNodes;
+  }
+
   @Override
   public List<Path> getPaths() {
     List<Path> ret = new ArrayList<>();
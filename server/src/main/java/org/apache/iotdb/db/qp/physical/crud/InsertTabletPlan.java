@@ -25,6 +25,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 
+import org.apache.iotdb.db.metadata.mnode.LeafMNode;
 import org.apache.iotdb.db.qp.logical.Operator.OperatorType;
 import org.apache.iotdb.db.qp.physical.PhysicalPlan;
 import org.apache.iotdb.db.utils.QueryDataSetUtils;
@@ -52,6 +53,8 @@ public class InsertTabletPlan extends PhysicalPlan {
   private TSDataType[] dataTypes;
   // only be set in insert
   private MeasurementSchema[] schemas;
+  // the nodes of the measurements found when checking the schemas, which are not serialized
+  private LeafMNode[] measurementMNodes;
 
   private long[] times; // times should be sorted. It is done in the session API.
   private ByteBuffer timeBuffer;
@@ -368,6 +371,23 @@ public class InsertTabletPlan extends PhysicalPlan {
     this.schemas = schemas;
   }
 
+  /**
+   * @return the nodes of the measurements, or null if the plan is not checked against the MTree
+   */
+  public LeafMNode[] getMeasurementMNodes() {
+    return measurementMNodes;
+  }
+
+  /**
+   * The nodes are only valid while the caller holds the read lock of their device node, which
+   * keeps them from being deleted, until the plan is executed.
+   *
+   * @param measurementMNodes the nodes of the measurements, in the same order
+   */
+  public void setMeasurementMNodes(LeafMNode[] measurementMNodes) {
+    this.measurementMNodes = measurementMNodes;
+  }
+
   public void setDataTypes(List<Integer> dataTypes) {
     this.dataTypes = new TSDataType[dataTypes.size()];
     for (int i = 0; i < dataTypes.size(); i++) {
@@ -32,6 +32,8 @@ public abstract class QueryPlan extends PhysicalPlan {
   protected List<Path> paths = null;
   private List<TSDataType> dataTypes = null;
   private boolean alignByTime = true; // for disable align sql
+  private boolean ascending = true; // false for order by time desc or order by value desc
+  private boolean orderByValue = false; // for order by value sql
 
   private int rowLimit = 0;
   private int rowOffset = 0;
@@ -92,6 +94,22 @@ public abstract class QueryPlan extends PhysicalPlan {
     alignByTime = align;
   }
 
+  public boolean isAscending() {
+    return ascending;
+  }
+
+  public void setAscending(boolean ascending) {
+    this.ascending = ascending;
+  }
+
+  public boolean isOrderByValue() {
+    return orderByValue;
+  }
+
+  public void setOrderByValue(boolean orderByValue) {
+    this.orderByValue = orderByValue;
+  }
+
   public void addPathToIndex(String columnName, Integer index) {
     pathToIndex.put(columnName, index);
   }
@@ -22,6 +22,7 @@ import org.antlr.v4.runtime.misc.ParseCancellationException;
 import org.antlr.v4.runtime.tree.TerminalNode;
 import org.apache.iotdb.db.conf.IoTDBDescriptor;
 import org.apache.iotdb.db.exception.runtime.SQLParserException;
+import org.apache.iotdb.db.metadata.tag.TagFilter;
 import org.apache.iotdb.db.qp.constant.DatetimeUtils;
 import org.apache.iotdb.db.qp.constant.SQLConstant;
 import org.apache.iotdb.db.qp.logical.RootOperator;
@@ -42,6 +43,7 @@ import org.apache.iotdb.tsfile.read.common.Path;
 import org.apache.iotdb.tsfile.utils.StringContainer;
 
 import java.io.File;
+import java.math.BigInteger;
 import java.time.ZoneId;
 import java.util.*;
 
@@ -50,6 +52,9 @@ import java.util.*;
  */
 public class LogicalGenerator extends SqlBaseBaseListener {
 
+  private static final String DELETE_TIME_FILTER_ERROR = "For delete command, where clause must be "
+      + "like : time < XXX, time <= XXX, time > XXX, time >= XXX or their combination by AND";
+
   private RootOperator initializedOperator = null;
   private ZoneId zoneId;
   private int operatorType;
@@ -809,6 +814,19 @@ public class LogicalGenerator extends SqlBaseBaseListener {
     queryOp.setAlignByDevice(true);
   }
 
+  @Override
+  public void enterOrderByTimeClause(OrderByTimeClauseContext ctx) {
+    super.enterOrderByTimeClause(ctx);
+    queryOp.setAscending(ctx.DESC() == null);
+  }
+
+  @Override
+  public void enterOrderByValueClause(OrderByValueClauseContext ctx) {
+    super.enterOrderByValueClause(ctx);
+    queryOp.setOrderByValue(true);
+    queryOp.setAscending(ctx.DESC() == null);
+  }
+
   /**
    * parse datatype node.
    */
@@ -1063,6 +1081,9 @@ public class LogicalGenerator extends SqlBaseBaseListener {
       Path path = parsePrefixPath(prefixFromPath);
       fromOp.addPrefixTablePath(path);
     }
+    if (ctx.fromTagClause() != null) {
+      fromOp.setTagFilter(parseTagOrExpression(ctx.fromTagClause().tagOrExpression()));
+    }
     queryOp.setFromOperator(fromOp);
   }
 
@@ -1166,8 +1187,7 @@ public class LogicalGenerator extends SqlBaseBaseListener {
     switch (operatorType) {
       case SQLConstant.TOK_DELETE:
         deleteDataOp.setFilterOperator(whereOp.getChildren().get(0));
-        long deleteTime = parseDeleteTimeFilter(deleteDataOp);
-        deleteDataOp.setTime(deleteTime);
+        parseDeleteTimeFilter(deleteDataOp);
         break;
       case SQLConstant.TOK_QUERY:
         queryOp.setFilterOperator(whereOp.getChildren().get(0));
@@ -1185,23 +1205,42 @@ public class LogicalGenerator extends SqlBaseBaseListener {
     super.enterShowWhereClause(ctx);
 
     ShowTimeSeriesOperator operator = (ShowTimeSeriesOperator) initializedOperator;
-    PropertyValueContext propertyValueContext;
+    operator.setTagFilter(parseTagOrExpression(ctx.tagOrExpression()));
+  }
+
+  private TagFilter parseTagOrExpression(TagOrExpressionContext ctx) {
+    List<TagFilter> children = new ArrayList<>();
+    for (TagAndExpressionContext tagAndExpressionContext : ctx.tagAndExpression()) {
+      children.add(parseTagAndExpression(tagAndExpressionContext));
+    }
+    return TagFilter.or(children);
+  }
+
+  private TagFilter parseTagAndExpression(TagAndExpressionContext ctx) {
+    List<TagFilter> children = new ArrayList<>();
+    for (TagPredicateContext tagPredicateContext : ctx.tagPredicate()) {
+      children.add(parseTagPredicate(tagPredicateContext));
+    }
+    return TagFilter.and(children);
+  }
+
+  private TagFilter parseTagPredicate(TagPredicateContext ctx) {
+    if (ctx.tagOrExpression() != null) {
+      return parseTagOrExpression(ctx.tagOrExpression());
+    }
     if (ctx.containsExpression() != null) {
-      operator.setContains(true);
-      propertyValueContext = ctx.containsExpression().propertyValue();
-      operator.setKey(ctx.containsExpression().ID().getText());
-    } else {
-      operator.setContains(false);
-      propertyValueContext = ctx.property().propertyValue();
-      operator.setKey(ctx.property().ID().getText());
+      return TagFilter.contains(ctx.containsExpression().ID().getText(),
+          parsePropertyValue(ctx.containsExpression().propertyValue()));
     }
-    String value;
-    if(propertyValueContext.STRING_LITERAL() != null) {
-      value = removeStringQuote(propertyValueContext.getText());
-    } else {
-      value = propertyValueContext.getText();
+    return TagFilter.equal(ctx.property().ID().getText(),
+        parsePropertyValue(ctx.property().propertyValue()));
+  }
+
+  private String parsePropertyValue(PropertyValueContext propertyValueContext) {
+    if (propertyValueContext.STRING_LITERAL() != null) {
+      return removeStringQuote(propertyValueContext.getText());
     }
-    operator.setValue(value);
+    return propertyValueContext.getText();
   }
 
   private FilterOperator parseOrExpression(OrExpressionContext ctx) {
@@ -1360,22 +1399,51 @@ public class LogicalGenerator extends SqlBaseBaseListener {
   }
 
   /**
-   * for delete command, time should only have an end time.
+   * for delete command, time should have an end time, a start time, or both of them combined by
+   * AND, e.g., time > XXX and time < XXX. Both bounds are converted into inclusive ones.
    *
    * @param operator delete logical plan
    */
-  private long parseDeleteTimeFilter(DeleteDataOperator operator) {
+  private void parseDeleteTimeFilter(DeleteDataOperator operator) {
     FilterOperator filterOperator = operator.getFilterOperator();
-    if (filterOperator.getTokenIntType() != SQLConstant.LESSTHAN
-        && filterOperator.getTokenIntType() != SQLConstant.LESSTHANOREQUALTO) {
-      throw new SQLParserException(
-          "For delete command, where clause must be like : time < XXX or time <= XXX");
+    List<FilterOperator> comparisons = filterOperator.getTokenIntType() == SQLConstant.KW_AND
+        ? filterOperator.getChildren() : Collections.singletonList(filterOperator);
+    // the bounds are computed without overflow, as a time out of the range of long is valid
+    BigInteger startTime = BigInteger.valueOf(Long.MIN_VALUE);
+    BigInteger endTime = BigInteger.valueOf(Long.MAX_VALUE);
+    for (FilterOperator comparison : comparisons) {
+      if (!(comparison instanceof BasicFunctionOperator)
+          || !SQLConstant.isReservedPath(comparison.getSinglePath())) {
+        throw new SQLParserException(DELETE_TIME_FILTER_ERROR);
+      }
+      BigInteger time;
+      try {
+        time = new BigInteger(((BasicFunctionOperator) comparison).getValue());
+      } catch (NumberFormatException e) {
+        throw new SQLParserException(DELETE_TIME_FILTER_ERROR);
+      }
+      switch (comparison.getTokenIntType()) {
+        case SQLConstant.LESSTHAN:
+          endTime = endTime.min(time.subtract(BigInteger.ONE));
+          break;
+        case SQLConstant.LESSTHANOREQUALTO:
+          endTime = endTime.min(time);
+          break;
+        case SQLConstant.GREATERTHAN:
+          startTime = startTime.max(time.add(BigInteger.ONE));
+          break;
+        case SQLConstant.GREATERTHANOREQUALTO:
+          startTime = startTime.max(time);
+          break;
+        default:
+          throw new SQLParserException(DELETE_TIME_FILTER_ERROR);
+      }
     }
-    long time = Long.parseLong(((BasicFunctionOperator) filterOperator).getValue());
-    if (filterOperator.getTokenIntType() == SQLConstant.LESSTHAN) {
-      time = time - 1;
+    if (startTime.compareTo(endTime) > 0) {
+      throw new SQLParserException("For delete command, the time range of the where clause is empty");
     }
-    return time;
+    operator.setStartTime(startTime.longValue());
+    operator.setTime(endTime.longValue());
   }
 
   private void checkMetadataArgs(String dataType, String encoding, String compressor) {
@@ -32,6 +32,7 @@ import org.apache.iotdb.db.exception.query.LogicalOperatorException;
 import org.apache.iotdb.db.exception.query.LogicalOptimizeException;
 import org.apache.iotdb.db.exception.query.QueryProcessException;
 import org.apache.iotdb.db.metadata.MManager;
+import org.apache.iotdb.db.metadata.tag.TagFilter;
 import org.apache.iotdb.db.qp.constant.SQLConstant;
 import org.apache.iotdb.db.qp.logical.Operator;
 import org.apache.iotdb.db.qp.logical.Operator.OperatorType;
@@ -170,7 +171,7 @@ public class PhysicalGenerator {
       case DELETE:
         DeleteDataOperator delete = (DeleteDataOperator) operator;
         paths = delete.getSelectedPaths();
-        return new DeletePlan(delete.getTime(), paths);
+        return new DeletePlan(delete.getStartTime(), delete.getTime(), paths);
       case INSERT:
         InsertOperator insert = (InsertOperator) operator;
         paths = insert.getSelectedPaths();
@@ -224,8 +225,7 @@ public class PhysicalGenerator {
           case SQLConstant.TOK_TIMESERIES:
             ShowTimeSeriesOperator showTimeSeriesOperator = (ShowTimeSeriesOperator) operator;
             return new ShowTimeSeriesPlan(
-                showTimeSeriesOperator.getPath(), showTimeSeriesOperator.isContains(),
-                showTimeSeriesOperator.getKey(), showTimeSeriesOperator.getValue(),
+                showTimeSeriesOperator.getPath(), showTimeSeriesOperator.getTagFilter(),
                 showTimeSeriesOperator.getLimit(), showTimeSeriesOperator.getOffset());
           case SQLConstant.TOK_STORAGE_GROUP:
             return new ShowPlan(ShowContentType.STORAGE_GROUP);
@@ -341,6 +341,27 @@ public class PhysicalGenerator {
     } else {
       queryPlan = new RawDataQueryPlan();
     }
+    if (queryOperator.isOrderByValue()) {
+      if (queryPlan.getClass() != RawDataQueryPlan.class || queryOperator.isAlignByDevice()
+          || !queryOperator.isAlignByTime()) {
+        throw new QueryProcessException(
+            "Order by value can only be applied to raw data query aligned by time.");
+      }
+      if (queryOperator.getRowLimit() <= 0) {
+        throw new QueryProcessException("Order by value must be used with a limit.");
+      }
+      queryPlan.setOrderByValue(true);
+      queryPlan.setAscending(queryOperator.isAscending());
+    } else if (!queryOperator.isAscending()) {
+      if (queryPlan.getClass() != RawDataQueryPlan.class || queryOperator.isAlignByDevice()) {
+        throw new QueryProcessException(
+            "Order by time desc can only be applied to raw data query aligned by time.");
+      }
+      if (!queryOperator.isAlignByTime()) {
+        throw new QueryProcessException("Disable align cannot be applied to order by time desc.");
+      }
+      queryPlan.setAscending(false);
+    }
     if (queryPlan instanceof LastQueryPlan) {
       // Last query result set will not be affected by alignment
       if (!queryOperator.isAlignByTime()) {
@@ -362,6 +383,8 @@ public class PhysicalGenerator {
       List<Path> prefixPaths = queryOperator.getFromOperator().getPrefixPaths();
       // remove stars in fromPaths and get deviceId with deduplication
       List<String> devices = this.removeStarsInDeviceWithUnique(prefixPaths);
+      Set<String> taggedPaths = getTaggedTimeseries(prefixPaths,
+          queryOperator.getFromOperator().getTagFilter());
       List<Path> suffixPaths = queryOperator.getSelectOperator().getSuffixPaths();
       List<String> originAggregations = queryOperator.getSelectOperator().getAggregations();
 
@@ -390,6 +413,9 @@ public class PhysicalGenerator {
           try {
             // remove stars in SELECT to get actual paths
             List<String> actualPaths = getMatchedTimeseries(fullPath.getFullPath());
+            if (taggedPaths != null) {
+              actualPaths.removeIf(actualPath -> !taggedPaths.contains(actualPath));
+            }
             // for actual non exist path
             if (actualPaths.isEmpty() && originAggregations.isEmpty()) {
               String nonExistMeasurement = fullPath.getMeasurement();
@@ -504,6 +530,9 @@ public class PhysicalGenerator {
     } catch (MetadataException e) {
       throw new QueryProcessException(e);
     }
+    if (queryPlan.isOrderByValue()) {
+      checkOrderByValueSeries((RawDataQueryPlan) queryPlan);
+    }
 
     queryPlan.setRowLimit(queryOperator.getRowLimit());
     queryPlan.setRowOffset(queryOperator.getRowOffset());
@@ -511,6 +540,22 @@ public class PhysicalGenerator {
     return queryPlan;
   }
 
+  private void checkOrderByValueSeries(RawDataQueryPlan queryPlan) throws QueryProcessException {
+    if (queryPlan.getDeduplicatedPaths().size() != 1) {
+      throw new QueryProcessException("Order by value can only be applied to a single series.");
+    }
+    switch (queryPlan.getDeduplicatedDataTypes().get(0)) {
+      case INT32:
+      case INT64:
+      case FLOAT:
+      case DOUBLE:
+        break;
+      default:
+        throw new QueryProcessException(
+            "Order by value can only be applied to a series of numeric type.");
+    }
+  }
+
   // e.g. translate "select * from root.ln.d1, root.ln.d2 where s1 < 20 AND s2 > 10" to
   // [root.ln.d1 -> root.ln.d1.s1 < 20 AND root.ln.d1.s2 > 10,
   //  root.ln.d2 -> root.ln.d2.s1 < 20 AND root.ln.d2.s2 > 10)]
@@ -662,6 +707,31 @@ public class PhysicalGenerator {
     return MManager.getInstance().getAllTimeseriesName(path);
   }
 
+  /**
+   * @return the timeseries under the prefix paths whose tags match the filter, or null if there is
+   * no tag filter
+   */
+  private Set<String> getTaggedTimeseries(List<Path> prefixPaths, TagFilter tagFilter)
+      throws QueryProcessException {
+    if (tagFilter == null) {
+      return null;
+    }
+    Set<String> taggedPaths = new HashSet<>();
+    try {
+      for (Path prefixPath : prefixPaths) {
+        taggedPaths.addAll(getMatchedTimeseriesByTags(prefixPath.getFullPath(), tagFilter));
+      }
+    } catch (MetadataException e) {
+      throw new QueryProcessException(e);
+    }
+    return taggedPaths;
+  }
+
+  protected List<String> getMatchedTimeseriesByTags(String path, TagFilter tagFilter)
+      throws MetadataException {
+    return MManager.getInstance().getAllTimeseriesNameByTags(path, tagFilter);
+  }
+
   protected Set<String> getMatchedDevices(String path) throws MetadataException {
     return MManager.getInstance().getDevices(path);
   }
@@ -26,6 +26,7 @@ import org.apache.iotdb.db.exception.metadata.MetadataException;
 import org.apache.iotdb.db.exception.query.LogicalOptimizeException;
 import org.apache.iotdb.db.exception.runtime.SQLParserException;
 import org.apache.iotdb.db.metadata.MManager;
+import org.apache.iotdb.db.metadata.tag.TagFilter;
 import org.apache.iotdb.db.qp.constant.SQLConstant;
 import org.apache.iotdb.db.qp.logical.Operator;
 import org.apache.iotdb.db.qp.logical.crud.BasicFunctionOperator;
@@ -86,7 +87,8 @@ public class ConcatPathOptimizer implements ILogicalOptimizer {
     boolean isAlignByDevice = false;
     if (operator instanceof QueryOperator) {
       if (!((QueryOperator) operator).isAlignByDevice() || ((QueryOperator) operator).isLastQuery()) {
-        concatSelect(prefixPaths, select); // concat and remove star
+        // concat and remove star
+        concatSelect(prefixPaths, from.getTagFilter(), select);
 
         if (((QueryOperator) operator).hasSlimit()) {
           int seriesLimit = ((QueryOperator) operator).getSeriesLimit();
@@ -155,10 +157,11 @@ public class ConcatPathOptimizer implements ILogicalOptimizer {
 
   /**
    * Extract paths from select&from cql, expand them into complete versions, and reassign them to
-   * selectOperator's suffixPathList. Treat aggregations similarly.
+   * selectOperator's suffixPathList. Treat aggregations similarly. Only the timeseries matching the
+   * tag filter of the from clause are kept if there is one.
    */
-  private void concatSelect(List<Path> fromPaths, SelectOperator selectOperator)
-      throws LogicalOptimizeException {
+  private void concatSelect(List<Path> fromPaths, TagFilter tagFilter,
+      SelectOperator selectOperator) throws LogicalOptimizeException {
     List<Path> suffixPaths = judgeSelectOperator(selectOperator);
 
     List<Path> allPaths = new ArrayList<>();
@@ -174,7 +177,18 @@ public class ConcatPathOptimizer implements ILogicalOptimizer {
       }
     }
 
-    removeStarsInPath(allPaths, afterConcatAggregations, selectOperator);
+    Set<String> taggedPaths = null;
+    if (tagFilter != null) {
+      taggedPaths = new HashSet<>();
+      try {
+        for (Path fromPath : fromPaths) {
+          taggedPaths.addAll(getTaggedTimeseries(fromPath.getFullPath(), tagFilter));
+        }
+      } catch (MetadataException e) {
+        throw new LogicalOptimizeException("error when select by tags: " + e.getMessage());
+      }
+    }
+    removeStarsInPath(allPaths, afterConcatAggregations, taggedPaths, selectOperator);
   }
 
   /**
@@ -295,14 +309,20 @@ public class ConcatPathOptimizer implements ILogicalOptimizer {
     return retPaths;
   }
 
+  /**
+   * @param taggedPaths the timeseries selected by tags, or null if no tag filter is given
+   */
   private void removeStarsInPath(List<Path> paths, List<String> afterConcatAggregations,
-      SelectOperator selectOperator) throws LogicalOptimizeException {
+      Set<String> taggedPaths, SelectOperator selectOperator) throws LogicalOptimizeException {
     List<Path> retPaths = new ArrayList<>();
     List<String> newAggregations = new ArrayList<>();
     for (int i = 0; i < paths.size(); i++) {
       try {
         List<Path> actualPaths = removeWildcard(paths.get(i).getFullPath());
         for (Path actualPath : actualPaths) {
+          if (taggedPaths != null && !taggedPaths.contains(actualPath.getFullPath())) {
+            continue;
+          }
           retPaths.add(actualPath);
           if (afterConcatAggregations != null && !afterConcatAggregations.isEmpty()) {
             newAggregations.add(afterConcatAggregations.get(i));
@@ -319,4 +339,9 @@ public class ConcatPathOptimizer implements ILogicalOptimizer {
   protected List<Path> removeWildcard(String path) throws MetadataException {
     return MManager.getInstance().getAllTimeseriesPath(path);
   }
+
+  protected List<String> getTaggedTimeseries(String prefixPath, TagFilter tagFilter)
+      throws MetadataException {
+    return MManager.getInstance().getAllTimeseriesNameByTags(prefixPath, tagFilter);
+  }
 }
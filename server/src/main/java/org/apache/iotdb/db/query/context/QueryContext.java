@@ -19,8 +19,6 @@
 
 package org.apache.iotdb.db.query.context;
 
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -35,20 +33,20 @@ public class QueryContext {
 
   /**
    * The outer key is the path of a ModificationFile, the inner key in the name of a timeseries and
-   * the value is the Modifications of a timeseries in this file.
+   * the value is the Modifications of a timeseries in this file. We use this field because each
+   * call of ModificationFile.getModifications() returns a copy of the Modifications, and we do not
+   * want it to create multiple copies within a query.
    */
   private Map<String, Map<String, List<Modification>>> filePathModCache = new ConcurrentHashMap<>();
-  /**
-   * The key is the path of a ModificationFile and the value is all Modifications in this file. We
-   * use this field because each call of Modification.getModifications() return a copy of the
-   * Modifications, and we do not want it to create multiple copies within a query.
-   */
-  private Map<String, List<Modification>> fileModCache = new HashMap<>();
 
   private long queryId;
 
   private long queryTimeLowerBound = Long.MIN_VALUE;
 
+  private final QueryStatistics queryStatistics = new QueryStatistics();
+
+  private final QueryMemoryTracker memoryTracker = new QueryMemoryTracker();
+
   public QueryContext() {
   }
 
@@ -57,28 +55,14 @@ public class QueryContext {
   }
 
   /**
-   * Find the modifications of timeseries 'path' in 'modFile'. If they are not in the cache, read
-   * them from 'modFile' and put then into the cache.
+   * Find the modifications of timeseries 'path' in 'modFile'. If they are not in the cache, get
+   * them from 'modFile', which indexes its modifications by timeseries, and put them into the
+   * cache.
    */
   public List<Modification> getPathModifications(ModificationFile modFile, String path) {
     Map<String, List<Modification>> fileModifications =
         filePathModCache.computeIfAbsent(modFile.getFilePath(), k -> new ConcurrentHashMap<>());
-    return fileModifications.computeIfAbsent(path, k -> {
-      List<Modification> allModifications = fileModCache.get(modFile.getFilePath());
-      if (allModifications == null) {
-        allModifications = (List<Modification>) modFile.getModifications();
-        fileModCache.put(modFile.getFilePath(), allModifications);
-      }
-      List<Modification> finalPathModifications = new ArrayList<>();
-      if (!allModifications.isEmpty()) {
-        allModifications.forEach(modification -> {
-          if (modification.getPathString().equals(path)) {
-            finalPathModifications.add(modification);
-          }
-        });
-      }
-      return finalPathModifications;
-    });
+    return fileModifications.computeIfAbsent(path, modFile::getModifications);
   }
 
   public long getQueryId() {
@@ -93,6 +77,14 @@ public class QueryContext {
     this.queryTimeLowerBound = queryTimeLowerBound;
   }
 
+  public QueryStatistics getQueryStatistics() {
+    return queryStatistics;
+  }
+
+  public QueryMemoryTracker getMemoryTracker() {
+    return memoryTracker;
+  }
+
   public boolean chunkNotSatisfy(ChunkMetadata chunkMetaData) {
     return chunkMetaData.getEndTime() < queryTimeLowerBound;
   }
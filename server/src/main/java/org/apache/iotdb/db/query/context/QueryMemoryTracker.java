@@ -0,0 +1,55 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.iotdb.db.query.context;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * QueryMemoryTracker records the estimated memory held by one query, i.e., the pages cached by its
+ * series readers and the batches buffered for its result set, and the peak of it. It is fed from
+ * the reading threads of the query, so the counters are atomic.
+ */
+public class QueryMemoryTracker {
+
+  private final AtomicLong usedMemory = new AtomicLong();
+  private final AtomicLong peakMemory = new AtomicLong();
+
+  public void allocate(long size) {
+    long used = usedMemory.addAndGet(size);
+    peakMemory.accumulateAndGet(used, Math::max);
+  }
+
+  public void release(long size) {
+    usedMemory.addAndGet(-size);
+  }
+
+  public long getUsedMemory() {
+    return usedMemory.get();
+  }
+
+  public long getPeakMemory() {
+    return peakMemory.get();
+  }
+
+  @Override
+  public String toString() {
+    return "memory used/peak: " + usedMemory + "/" + peakMemory;
+  }
+}
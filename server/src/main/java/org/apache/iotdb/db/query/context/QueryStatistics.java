@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.iotdb.db.query.context;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * QueryStatistics records how many files, chunks and pages a query has read or pruned by their
+ * Statistics, and how many of the loaded pages are read directly or merged with overlapping
+ * pages point by point. The series readers of one query may run in different threads, so all
+ * counters are atomic.
+ */
+public class QueryStatistics {
+
+  private final AtomicLong loadedFileNum = new AtomicLong();
+  private final AtomicLong prunedFileNum = new AtomicLong();
+  private final AtomicLong loadedChunkNum = new AtomicLong();
+  private final AtomicLong prunedChunkNum = new AtomicLong();
+  private final AtomicLong loadedPageNum = new AtomicLong();
+  private final AtomicLong prunedPageNum = new AtomicLong();
+  private final AtomicLong fastPathPageNum = new AtomicLong();
+  private final AtomicLong mergedPageNum = new AtomicLong();
+
+  public void increaseLoadedFileNum() {
+    loadedFileNum.incrementAndGet();
+  }
+
+  public void increasePrunedFileNum() {
+    prunedFileNum.incrementAndGet();
+  }
+
+  public void increaseLoadedChunkNum() {
+    loadedChunkNum.incrementAndGet();
+  }
+
+  public void increasePrunedChunkNum() {
+    prunedChunkNum.incrementAndGet();
+  }
+
+  public void increaseLoadedPageNum() {
+    loadedPageNum.incrementAndGet();
+  }
+
+  public void increasePrunedPageNum() {
+    prunedPageNum.incrementAndGet();
+  }
+
+  public void increaseFastPathPageNum() {
+    fastPathPageNum.incrementAndGet();
+  }
+
+  public void increaseMergedPageNum() {
+    mergedPageNum.incrementAndGet();
+  }
+
+  public long getLoadedFileNum() {
+    return loadedFileNum.get();
+  }
+
+  public long getPrunedFileNum() {
+    return prunedFileNum.get();
+  }
+
+  public long getLoadedChunkNum() {
+    return loadedChunkNum.get();
+  }
+
+  public long getPrunedChunkNum() {
+    return prunedChunkNum.get();
+  }
+
+  public long getLoadedPageNum() {
+    return loadedPageNum.get();
+  }
+
+  public long getPrunedPageNum() {
+    return prunedPageNum.get();
+  }
+
+  public long getFastPathPageNum() {
+    return fastPathPageNum.get();
+  }
+
+  public long getMergedPageNum() {
+    return mergedPageNum.get();
+  }
+
+  @Override
+  public String toString() {
+    return "files loaded/pruned: " + loadedFileNum + "/" + prunedFileNum
+        + ", chunks loaded/pruned: " + loadedChunkNum + "/" + prunedChunkNum
+        + ", pages loaded/pruned: " + loadedPageNum + "/" + prunedPageNum
+        + ", pages fast path/merged: " + fastPathPageNum + "/" + mergedPageNum;
+  }
+}
@@ -0,0 +1,306 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.query.control;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.iotdb.db.conf.IoTDBConfig;
+import org.apache.iotdb.db.conf.IoTDBConstant;
+import org.apache.iotdb.db.conf.IoTDBDescriptor;
+import org.apache.iotdb.db.exception.StartupException;
+import org.apache.iotdb.db.exception.query.QueryMemoryExceededException;
+import org.apache.iotdb.db.exception.query.QueryProcessException;
+import org.apache.iotdb.db.qp.physical.PhysicalPlan;
+import org.apache.iotdb.db.qp.physical.crud.AlignByDevicePlan;
+import org.apache.iotdb.db.qp.physical.crud.RawDataQueryPlan;
+import org.apache.iotdb.db.query.context.QueryMemoryTracker;
+import org.apache.iotdb.db.query.dataset.RawQueryDataSetWithoutValueFilter;
+import org.apache.iotdb.db.service.IService;
+import org.apache.iotdb.db.service.JMXService;
+import org.apache.iotdb.db.service.ServiceType;
+import org.apache.iotdb.db.utils.TestOnly;
+import org.apache.iotdb.tsfile.common.conf.TSFileDescriptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * QueryMemoryManager is the admission control of queries. Before a query is executed, its memory
+ * is estimated from its plan and reserved from allocateMemoryForQuery. If the free memory is not
+ * enough, the query waits until running queries release theirs in QueryResourceManager.endQuery(),
+ * and is rejected if it has waited for queryMemoryWaitTimeInMs.
+ *
+ * The memory of a series of a raw data query is learned from the peaks recorded by the
+ * QueryMemoryTrackers of the finished raw data queries, as most pages are far smaller than
+ * pageSizeInByte after being decoded and the reading threads stop filling the queues of a slow
+ * consumer.
+ */
+public class QueryMemoryManager implements QueryMemoryManagerMBean, IService {
+
+  private static final Logger logger = LoggerFactory.getLogger(QueryMemoryManager.class);
+  private static final IoTDBConfig config = IoTDBDescriptor.getInstance().getConfig();
+
+  /**
+   * the weight of the latest finished raw data query in rawSeriesMemory is 1 / LEARNING_WEIGHT
+   */
+  private static final int LEARNING_WEIGHT = 8;
+
+  private long totalMemory;
+  // guarded by this
+  private long usedMemory = 0;
+  // the reservation of each admitted query, guarded by this
+  private final Map<Long, Reservation> queryIdToReservation = new HashMap<>();
+  private int waitingQueryNum = 0;
+  // the estimated memory of a series of a raw data query, guarded by this
+  private long rawSeriesMemory = getMaxRawSeriesMemory();
+
+  private final AtomicLong queuedQueryNum = new AtomicLong();
+  private final AtomicLong rejectedQueryNum = new AtomicLong();
+
+  private QueryMemoryManager() {
+    totalMemory = config.getAllocateMemoryForQuery();
+  }
+
+  public static QueryMemoryManager getInstance() {
+    return QueryMemoryManagerHolder.INSTANCE;
+  }
+
+  /**
+   * A page is assumed to take at most pageSizeInByte after being decoded, so a series of a raw
+   * data query, which caches one page and buffers up to BLOCKING_QUEUE_CAPACITY batches, holds at
+   * most this memory.
+   */
+  private static long getMaxRawSeriesMemory() {
+    return (RawQueryDataSetWithoutValueFilter.BLOCKING_QUEUE_CAPACITY + 1L) * getPageSize();
+  }
+
+  private static long getPageSize() {
+    return TSFileDescriptor.getInstance().getConfig().getPageSizeInByte();
+  }
+
+  /**
+   * Estimate the memory a query holds at the same time. A series of a raw data query takes the
+   * learned rawSeriesMemory, and a series of other queries, which read it page by page, takes one
+   * page.
+   *
+   * @return the estimated memory in byte, 0 if the plan does not read data
+   */
+  public synchronized long estimateMemory(PhysicalPlan plan) {
+    if (plan instanceof AlignByDevicePlan) {
+      // the devices are queried one by one
+      return ((AlignByDevicePlan) plan).getMeasurements().size() * rawSeriesMemory;
+    }
+    if (!(plan instanceof RawDataQueryPlan)) {
+      return 0;
+    }
+    int seriesNum = ((RawDataQueryPlan) plan).getDeduplicatedPaths().size();
+    if (plan.getClass() == RawDataQueryPlan.class) {
+      return seriesNum * rawSeriesMemory;
+    }
+    // aggregation, group by, fill and last queries read the series page by page
+    return seriesNum * getPageSize();
+  }
+
+  /**
+   * Reserve the estimated memory of the plan for a query, and learn the memory of a raw data
+   * series from the peak of the tracker when the query is released.
+   *
+   * @throws QueryProcessException if the query has waited too long or is interrupted
+   */
+  public void admit(long queryId, PhysicalPlan plan, QueryMemoryTracker tracker)
+      throws QueryProcessException {
+    if (!config.isEnableQueryMemoryControl()) {
+      return;
+    }
+    int rawSeriesNum = plan.getClass() == RawDataQueryPlan.class
+        ? ((RawDataQueryPlan) plan).getDeduplicatedPaths().size() : 0;
+    admit(queryId, estimateMemory(plan), tracker, rawSeriesNum);
+  }
+
+  /**
+   * Reserve the estimated memory for a query, wait if the free memory is not enough. A query
+   * estimated to be larger than the total memory reserves all of it, so it runs alone.
+   *
+   * @throws QueryProcessException if the query has waited too long or is interrupted
+   */
+  public void admit(long queryId, long estimatedMemory) throws QueryProcessException {
+    admit(queryId, estimatedMemory, null, 0);
+  }
+
+  /**
+   * @param tracker      the tracker of the query, whose peak is learned if rawSeriesNum > 0
+   * @param rawSeriesNum the number of series if the query is a raw data query, otherwise 0
+   */
+  synchronized void admit(long queryId, long estimatedMemory, QueryMemoryTracker tracker,
+      int rawSeriesNum) throws QueryProcessException {
+    if (!config.isEnableQueryMemoryControl() || estimatedMemory <= 0) {
+      return;
+    }
+    long memory = Math.min(estimatedMemory, totalMemory);
+    if (usedMemory + memory > totalMemory) {
+      waitForMemory(queryId, memory);
+    }
+    usedMemory += memory;
+    queryIdToReservation.put(queryId, new Reservation(memory, tracker, rawSeriesNum));
+  }
+
+  private void waitForMemory(long queryId, long memory) throws QueryProcessException {
+    queuedQueryNum.incrementAndGet();
+    waitingQueryNum++;
+    logger.debug("Query {} waits for {} bytes of query memory, {}/{} used", queryId, memory,
+        usedMemory, totalMemory);
+    long deadline = System.currentTimeMillis() + config.getQueryMemoryWaitTimeInMs();
+    try {
+      while (usedMemory + memory > totalMemory) {
+        long waitTime = deadline - System.currentTimeMillis();
+        if (waitTime <= 0) {
+          rejectedQueryNum.incrementAndGet();
+          throw new QueryMemoryExceededException(String.format(
+              "Query %d is rejected because it needs about %d bytes of memory but only %d of %d "
+                  + "bytes are free after waiting %d ms, please retry later or reduce the series "
+                  + "in the query", queryId, memory, totalMemory - usedMemory, totalMemory,
+              config.getQueryMemoryWaitTimeInMs()));
+        }
+        wait(waitTime);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      rejectedQueryNum.incrementAndGet();
+      throw new QueryProcessException(
+          String.format("Query %d is interrupted while waiting for query memory", queryId));
+    } finally {
+      waitingQueryNum--;
+    }
+  }
+
+  /**
+   * Release the memory reserved by a query and wake up the waiting queries.
+   */
+  public synchronized void release(long queryId) {
+    Reservation reservation = queryIdToReservation.remove(queryId);
+    if (reservation != null) {
+      usedMemory -= reservation.memory;
+      learn(reservation);
+      notifyAll();
+    }
+  }
+
+  /**
+   * Move rawSeriesMemory towards the peak memory per series of a finished raw data query, within
+   * one page and getMaxRawSeriesMemory().
+   */
+  private void learn(Reservation reservation) {
+    if (reservation.tracker == null || reservation.rawSeriesNum <= 0) {
+      return;
+    }
+    long peakMemory = reservation.tracker.getPeakMemory();
+    if (peakMemory <= 0) {
+      // the query read no data, e.g., it was interrupted or all data was filtered out
+      return;
+    }
+    long seriesMemory = peakMemory / reservation.rawSeriesNum;
+    rawSeriesMemory = (rawSeriesMemory * (LEARNING_WEIGHT - 1) + seriesMemory) / LEARNING_WEIGHT;
+    rawSeriesMemory = Math.max(getPageSize(), Math.min(getMaxRawSeriesMemory(), rawSeriesMemory));
+  }
+
+  synchronized long getRawSeriesMemory() {
+    return rawSeriesMemory;
+  }
+
+  @Override
+  public long getTotalMemory() {
+    return totalMemory;
+  }
+
+  @Override
+  public synchronized long getUsedMemory() {
+    return usedMemory;
+  }
+
+  @Override
+  public synchronized int getRunningQueryNum() {
+    return queryIdToReservation.size();
+  }
+
+  @Override
+  public synchronized int getWaitingQueryNum() {
+    return waitingQueryNum;
+  }
+
+  @Override
+  public long getQueuedQueryNum() {
+    return queuedQueryNum.get();
+  }
+
+  @Override
+  public long getRejectedQueryNum() {
+    return rejectedQueryNum.get();
+  }
+
+  @TestOnly
+  public synchronized void setTotalMemory(long totalMemory) {
+    this.totalMemory = totalMemory;
+  }
+
+  @TestOnly
+  synchronized void resetRawSeriesMemory() {
+    rawSeriesMemory = getMaxRawSeriesMemory();
+  }
+
+  @Override
+  public void start() throws StartupException {
+    try {
+      JMXService.registerMBean(getInstance(), ServiceType.QUERY_MEMORY_SERVICE.getJmxName());
+    } catch (Exception e) {
+      throw new StartupException(this.getID().getName(), e.getMessage());
+    }
+  }
+
+  @Override
+  public void stop() {
+    JMXService.deregisterMBean(ServiceType.QUERY_MEMORY_SERVICE.getJmxName());
+    logger.info("{}: stop {}...", IoTDBConstant.GLOBAL_DB_NAME, this.getID().getName());
+  }
+
+  @Override
+  public ServiceType getID() {
+    return ServiceType.QUERY_MEMORY_SERVICE;
+  }
+
+  private static class Reservation {
+
+    private final long memory;
+    private final QueryMemoryTracker tracker;
+    private final int rawSeriesNum;
+
+    private Reservation(long memory, QueryMemoryTracker tracker, int rawSeriesNum) {
+      this.memory = memory;
+      this.tracker = tracker;
+      this.rawSeriesNum = rawSeriesNum;
+    }
+  }
+
+  private static class QueryMemoryManagerHolder {
+
+    private static final QueryMemoryManager INSTANCE = new QueryMemoryManager();
+
+    private QueryMemoryManagerHolder() {
+    }
+  }
+}
@@ -112,6 +112,8 @@ public class QueryResourceManager {
     }
     // remove usage of opened file paths of current thread
     filePathsManager.removeUsedFilesForQuery(queryId);
+    // release the memory reserved for the query
+    QueryMemoryManager.getInstance().release(queryId);
   }
 
   private static class QueryTokenManagerHelper {
@@ -20,9 +20,11 @@
 package org.apache.iotdb.db.query.dataset;
 
 import org.apache.iotdb.db.concurrent.WrappedRunnable;
+import org.apache.iotdb.db.query.context.QueryMemoryTracker;
 import org.apache.iotdb.db.query.pool.QueryTaskPoolManager;
 import org.apache.iotdb.db.query.reader.series.ManagedSeriesReader;
 import org.apache.iotdb.db.tools.watermark.WatermarkEncoder;
+import org.apache.iotdb.db.utils.MemUtils;
 import org.apache.iotdb.service.rpc.thrift.TSQueryDataSet;
 import org.apache.iotdb.tsfile.exception.write.UnSupportedDataTypeException;
 import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
@@ -49,12 +51,15 @@ public class RawQueryDataSetWithoutValueFilter extends QueryDataSet {
     private final ManagedSeriesReader reader;
     private final String pathName;
     private BlockingQueue<BatchData> blockingQueue;
+    private final QueryMemoryTracker memoryTracker;
 
     public ReadTask(ManagedSeriesReader reader,
-        BlockingQueue<BatchData> blockingQueue, String pathName) {
+        BlockingQueue<BatchData> blockingQueue, String pathName,
+        QueryMemoryTracker memoryTracker) {
       this.reader = reader;
       this.blockingQueue = blockingQueue;
       this.pathName = pathName;
+      this.memoryTracker = memoryTracker;
     }
 
     @Override
@@ -70,6 +75,7 @@ public class RawQueryDataSetWithoutValueFilter extends QueryDataSet {
             if (batchData.isEmpty()) {
               continue;
             }
+            memoryTracker.allocate(MemUtils.getBatchDataSize(batchData));
             blockingQueue.put(batchData);
             // if the queue also has free space, just submit another itself
             if (blockingQueue.remainingCapacity() > 0) {
@@ -119,6 +125,12 @@ public class RawQueryDataSetWithoutValueFilter extends QueryDataSet {
 
   private TreeSet<Long> timeHeap;
 
+  // whether the readers return their batches in ascending time order, false for order by time desc
+  private final boolean ascending;
+
+  // records the batches buffered in the blocking queues
+  private final QueryMemoryTracker memoryTracker;
+
   // Blocking queue list for each batch reader
   private BlockingQueue<BatchData>[] blockingQueueArray;
 
@@ -135,7 +147,7 @@ public class RawQueryDataSetWithoutValueFilter extends QueryDataSet {
   private static final int FLAG = 0x01;
 
   // capacity for blocking queue
-  private static final int BLOCKING_QUEUE_CAPACITY = 5;
+  public static final int BLOCKING_QUEUE_CAPACITY = 5;
 
   private static final QueryTaskPoolManager TASK_POOL_MANAGER = QueryTaskPoolManager.getInstance();
 
@@ -152,7 +164,20 @@ public class RawQueryDataSetWithoutValueFilter extends QueryDataSet {
    */
   public RawQueryDataSetWithoutValueFilter(List<Path> paths, List<TSDataType> dataTypes,
       List<ManagedSeriesReader> readers) throws IOException, InterruptedException {
+    this(paths, dataTypes, readers, true, new QueryMemoryTracker());
+  }
+
+  /**
+   * @param ascending     false if the readers return batches in descending time order, then the
+   *                      rows are generated from the latest timestamp
+   * @param memoryTracker memory tracker of the query, fed with the batches in the blocking queues
+   */
+  public RawQueryDataSetWithoutValueFilter(List<Path> paths, List<TSDataType> dataTypes,
+      List<ManagedSeriesReader> readers, boolean ascending, QueryMemoryTracker memoryTracker)
+      throws IOException, InterruptedException {
     super(paths, dataTypes);
+    this.ascending = ascending;
+    this.memoryTracker = memoryTracker;
     this.seriesReaderList = readers;
     blockingQueueArray = new BlockingQueue[readers.size()];
     for (int i = 0; i < seriesReaderList.size(); i++) {
@@ -170,7 +195,8 @@ public class RawQueryDataSetWithoutValueFilter extends QueryDataSet {
       reader.setHasRemaining(true);
       reader.setManagedByQueryManager(true);
       TASK_POOL_MANAGER
-          .submit(new ReadTask(reader, blockingQueueArray[i], paths.get(i).getFullPath()));
+          .submit(new ReadTask(reader, blockingQueueArray[i], paths.get(i).getFullPath(),
+              memoryTracker));
     }
     for (int i = 0; i < seriesReaderList.size(); i++) {
       fillCache(i);
@@ -209,7 +235,7 @@ public class RawQueryDataSetWithoutValueFilter extends QueryDataSet {
         break;
       }
 
-      long minTime = timeHeap.pollFirst();
+      long minTime = ascending ? timeHeap.pollFirst() : timeHeap.pollLast();
 
       if (rowOffset == 0) {
         timeBAOS.write(BytesUtils.longToBytes(minTime));
@@ -364,6 +390,7 @@ public class RawQueryDataSetWithoutValueFilter extends QueryDataSet {
       }
 
     } else {   // there are more batch data in this time series queue
+      memoryTracker.release(MemUtils.getBatchDataSize(batchData));
       cachedBatchDataArray[seriesIndex] = batchData;
 
       synchronized (seriesReaderList.get(seriesIndex)) {
@@ -376,7 +403,7 @@ public class RawQueryDataSetWithoutValueFilter extends QueryDataSet {
           if (!reader.isManagedByQueryManager() && reader.hasRemaining()) {
             reader.setManagedByQueryManager(true);
             TASK_POOL_MANAGER.submit(new ReadTask(reader, blockingQueueArray[seriesIndex],
-                paths.get(seriesIndex).getFullPath()));
+                paths.get(seriesIndex).getFullPath(), memoryTracker));
           }
         }
       }
@@ -407,7 +434,7 @@ public class RawQueryDataSetWithoutValueFilter extends QueryDataSet {
   protected RowRecord nextWithoutConstraint() throws IOException {
     int seriesNum = seriesReaderList.size();
 
-    long minTime = timeHeap.pollFirst();
+    long minTime = ascending ? timeHeap.pollFirst() : timeHeap.pollLast();
 
     RowRecord record = new RowRecord(minTime);
 
@@ -33,7 +33,6 @@ import org.apache.iotdb.tsfile.read.common.RowRecord;
 import org.apache.iotdb.tsfile.read.query.dataset.QueryDataSet;
 
 import java.io.IOException;
-import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
@@ -41,10 +40,15 @@ public class GroupByFillDataSet extends QueryDataSet {
 
   private GroupByEngineDataSet groupByEngineDataSet;
   private Map<TSDataType, IFill> fillTypes;
-  // the first value for each time series
+  private QueryContext context;
+  private GroupByFillPlan groupByFillPlan;
+  // the previous value for each time series, it is searched in the files only when an empty
+  // bucket comes before any bucket with data, and then updated by the buckets with data
   private Object[] previousValue;
-  // last timestamp for each time series
+  private boolean[] isPreviousValueReady;
+  // last timestamp for each time series, it is only calculated when the fill needs it
   private long[] lastTimeArray;
+  private boolean[] isLastTimeReady;
 
   public GroupByFillDataSet(List<Path> paths, List<TSDataType> dataTypes,
       GroupByEngineDataSet groupByEngineDataSet,
@@ -53,14 +57,17 @@ public class GroupByFillDataSet extends QueryDataSet {
     super(paths, dataTypes);
     this.groupByEngineDataSet = groupByEngineDataSet;
     this.fillTypes = fillTypes;
-    initPreviousParis(context, groupByFillPlan);
-    initLastTimeArray(context, groupByFillPlan);
+    this.context = context;
+    this.groupByFillPlan = groupByFillPlan;
+    this.previousValue = new Object[paths.size()];
+    this.isPreviousValueReady = new boolean[paths.size()];
+    this.lastTimeArray = new long[paths.size()];
+    this.isLastTimeReady = new boolean[paths.size()];
   }
 
-  private void initPreviousParis(QueryContext context, GroupByFillPlan groupByFillPlan)
-          throws StorageEngineException, IOException, QueryProcessException {
-    previousValue = new Object[paths.size()];
-    for (int i = 0; i < paths.size(); i++) {
+  private Object getPreviousValue(int i)
+      throws StorageEngineException, IOException, QueryProcessException {
+    if (!isPreviousValueReady[i]) {
       Path path = paths.get(i);
       TSDataType dataType = dataTypes.get(i);
       IFill fill = new PreviousFill(dataType, groupByEngineDataSet.getStartTime(), -1L);
@@ -72,21 +79,24 @@ public class GroupByFillDataSet extends QueryDataSet {
       } else {
         previousValue[i] = timeValuePair.getValue().getValue();
       }
+      isPreviousValueReady[i] = true;
     }
+    return previousValue[i];
   }
 
-  private void initLastTimeArray(QueryContext context, GroupByFillPlan groupByFillPlan)
+  private long getLastTime(int i)
       throws IOException, StorageEngineException, QueryProcessException {
-    lastTimeArray = new long[paths.size()];
-    Arrays.fill(lastTimeArray, Long.MAX_VALUE);
-    for (int i = 0; i < paths.size(); i++) {
+    if (!isLastTimeReady[i]) {
+      lastTimeArray[i] = Long.MAX_VALUE;
       TimeValuePair lastTimeValuePair = LastQueryExecutor.calculateLastPairForOneSeries(
               paths.get(i), dataTypes.get(i), context,
               groupByFillPlan.getAllMeasurementsInDevice(paths.get(i).getDevice()));
       if (lastTimeValuePair.getValue() != null) {
         lastTimeArray[i] = lastTimeValuePair.getTimestamp();
       }
+      isLastTimeReady[i] = true;
     }
+    return lastTimeArray[i];
   }
 
   @Override
@@ -98,22 +108,28 @@ public class GroupByFillDataSet extends QueryDataSet {
   protected RowRecord nextWithoutConstraint() throws IOException {
     RowRecord rowRecord = groupByEngineDataSet.nextWithoutConstraint();
 
-    for (int i = 0; i < paths.size(); i++) {
-      Field field = rowRecord.getFields().get(i);
-      // current group by result is null
-      if (field == null || field.getDataType() == null) {
-        // the previous value is not null and
-        // (fill type is not previous until last or now time is before last time)
-        if (previousValue[i] != null
-            && ((fillTypes.containsKey(dataTypes.get(i)) && !((PreviousFill) fillTypes
-            .get(dataTypes.get(i))).isUntilLast())
-            || rowRecord.getTimestamp() <= lastTimeArray[i])) {
-          rowRecord.getFields().set(i, Field.getField(previousValue[i], dataTypes.get(i)));
+    try {
+      for (int i = 0; i < paths.size(); i++) {
+        Field field = rowRecord.getFields().get(i);
+        // current group by result is null
+        if (field == null || field.getDataType() == null) {
+          // the previous value is not null and
+          // (fill type is not previous until last or now time is before last time)
+          Object previous = getPreviousValue(i);
+          if (previous != null
+              && ((fillTypes.containsKey(dataTypes.get(i)) && !((PreviousFill) fillTypes
+              .get(dataTypes.get(i))).isUntilLast())
+              || rowRecord.getTimestamp() <= getLastTime(i))) {
+            rowRecord.getFields().set(i, Field.getField(previous, dataTypes.get(i)));
+          }
+        } else {
+          // use now value update previous value
+          previousValue[i] = field.getObjectValue(field.getDataType());
+          isPreviousValueReady[i] = true;
         }
-      } else {
-        // use now value update previous value
-        previousValue[i] = field.getObjectValue(field.getDataType());
       }
+    } catch (StorageEngineException | QueryProcessException e) {
+      throw new IOException(e.getMessage(), e);
     }
     return rowRecord;
   }
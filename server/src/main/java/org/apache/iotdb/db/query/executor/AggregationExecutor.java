@@ -137,6 +137,18 @@ public class AggregationExecutor {
     if (fileFilter != null) {
       QueryUtils.filterQueryDataSource(queryDataSource, fileFilter);
     }
+    aggregateOneSeriesInDataSource(seriesPath, measurements, context, timeFilter, tsDataType,
+        aggregateResultList, queryDataSource);
+  }
+
+  /**
+   * Aggregate one series in a data source that has been got by the caller, so that the same data
+   * source can be shared with other readers of the series in one query.
+   */
+  public static void aggregateOneSeriesInDataSource(Path seriesPath, Set<String> measurements,
+      QueryContext context, Filter timeFilter, TSDataType tsDataType,
+      List<AggregateResult> aggregateResultList, QueryDataSource queryDataSource)
+      throws IOException, QueryProcessException {
     // update filter by TTL
     timeFilter = queryDataSource.updateFilterUsingTTL(timeFilter);
 
@@ -23,8 +23,8 @@ package org.apache.iotdb.db.query.executor;
 import static org.apache.iotdb.db.conf.IoTDBConstant.COLUMN_VALUE;
 import static org.apache.iotdb.db.conf.IoTDBConstant.COLUMN_TIMESERIES;
 import java.util.Set;
+import org.apache.iotdb.db.conf.IoTDBDescriptor;
 import org.apache.iotdb.db.engine.querycontext.QueryDataSource;
-import org.apache.iotdb.db.engine.storagegroup.TsFileResource;
 import org.apache.iotdb.db.exception.StorageEngineException;
 import org.apache.iotdb.db.exception.metadata.MetadataException;
 import org.apache.iotdb.db.exception.query.QueryProcessException;
@@ -34,21 +34,23 @@ import org.apache.iotdb.db.qp.physical.crud.LastQueryPlan;
 import org.apache.iotdb.db.query.context.QueryContext;
 import org.apache.iotdb.db.query.control.QueryResourceManager;
 import org.apache.iotdb.db.query.dataset.ListDataSet;
-import org.apache.iotdb.db.utils.FileLoaderUtils;
-import org.apache.iotdb.tsfile.file.metadata.ChunkMetadata;
-import org.apache.iotdb.tsfile.file.metadata.TimeseriesMetadata;
+import org.apache.iotdb.db.query.executor.fill.LastPointReader;
+import org.apache.iotdb.db.query.pool.QueryTaskPoolManager;
 import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
-import org.apache.iotdb.tsfile.file.metadata.statistics.Statistics;
 import org.apache.iotdb.tsfile.read.TimeValuePair;
 import org.apache.iotdb.tsfile.read.common.Field;
 import org.apache.iotdb.tsfile.read.common.Path;
 import org.apache.iotdb.tsfile.read.common.RowRecord;
 import org.apache.iotdb.tsfile.read.query.dataset.QueryDataSet;
 import org.apache.iotdb.tsfile.utils.Binary;
-import org.apache.iotdb.tsfile.utils.TsPrimitiveType;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class LastQueryExecutor {
   private List<Path> selectedSeries;
@@ -76,10 +78,9 @@ public class LastQueryExecutor {
         Arrays.asList(new Path(COLUMN_TIMESERIES), new Path(COLUMN_VALUE)),
             Arrays.asList(TSDataType.TEXT, TSDataType.TEXT));
 
+    TimeValuePair[] lastTimeValuePairs = calculateLastPairs(context, lastQueryPlan);
     for (int i = 0; i < selectedSeries.size(); i++) {
-      TimeValuePair lastTimeValuePair = calculateLastPairForOneSeries(
-              selectedSeries.get(i), dataTypes.get(i), context,
-              lastQueryPlan.getAllMeasurementsInDevice(selectedSeries.get(i).getDevice()));
+      TimeValuePair lastTimeValuePair = lastTimeValuePairs[i];
       if (lastTimeValuePair.getValue() != null) {
         RowRecord resultRecord = new RowRecord(lastTimeValuePair.getTimestamp());
         Field pathField = new Field(TSDataType.TEXT);
@@ -101,6 +102,114 @@ public class LastQueryExecutor {
     return dataSet;
   }
 
+  /**
+   * Get the last results of all selected series. The cached ones are returned directly and the
+   * others are calculated in parallel by the query task pool, and the calling thread also takes
+   * part in the calculation so that it never waits for a busy pool. Once a series fails or the
+   * calling thread is interrupted, no more series are calculated, and the workers are waited for
+   * only until they finish their current series.
+   */
+  private TimeValuePair[] calculateLastPairs(QueryContext context, LastQueryPlan lastQueryPlan)
+      throws StorageEngineException, IOException, QueryProcessException {
+    TimeValuePair[] lastTimeValuePairs = new TimeValuePair[selectedSeries.size()];
+    List<Integer> uncachedIndexes = new ArrayList<>();
+    List<LeafMNode> uncachedNodes = new ArrayList<>();
+    List<QueryDataSource> uncachedDataSources = new ArrayList<>();
+    for (int i = 0; i < selectedSeries.size(); i++) {
+      LeafMNode node = getLeafMNode(selectedSeries.get(i));
+      TimeValuePair cachedLast = node.getCachedLast();
+      if (cachedLast != null) {
+        lastTimeValuePairs[i] = cachedLast;
+      } else {
+        uncachedIndexes.add(i);
+        uncachedNodes.add(node);
+        // the used files of a query are not thread-safe, so the data sources are got here
+        uncachedDataSources.add(QueryResourceManager.getInstance()
+            .getQueryDataSource(selectedSeries.get(i), context, null));
+      }
+    }
+
+    AtomicInteger nextTask = new AtomicInteger();
+    Callable<Void> calculateTask = () -> {
+      try {
+        int taskIndex;
+        while ((taskIndex = nextTask.getAndIncrement()) < uncachedIndexes.size()) {
+          if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedException("The last query is interrupted");
+          }
+          int i = uncachedIndexes.get(taskIndex);
+          Path seriesPath = selectedSeries.get(i);
+          TimeValuePair resultPair = calculateLastPair(seriesPath, dataTypes.get(i), context,
+              lastQueryPlan.getAllMeasurementsInDevice(seriesPath.getDevice()),
+              uncachedDataSources.get(taskIndex));
+          // Update cached last value with low priority
+          uncachedNodes.get(taskIndex).updateCachedLast(resultPair, false, Long.MIN_VALUE);
+          lastTimeValuePairs[i] = resultPair;
+        }
+      } catch (Exception e) {
+        // leave no series to the other threads
+        nextTask.set(uncachedIndexes.size());
+        throw e;
+      }
+      return null;
+    };
+
+    int parallelism = Math.min(uncachedIndexes.size(),
+        IoTDBDescriptor.getInstance().getConfig().getConcurrentQueryThread());
+    List<Future<Void>> futures = new ArrayList<>();
+    for (int i = 1; i < parallelism; i++) {
+      futures.add(QueryTaskPoolManager.getInstance().submit(calculateTask));
+    }
+    Exception exception = null;
+    try {
+      calculateTask.call();
+    } catch (Exception e) {
+      exception = e;
+    }
+    boolean interrupted = false;
+    for (Future<Void> future : futures) {
+      // a task that has not started finds nothing left to do, so it is simply cancelled
+      if (future.cancel(false)) {
+        continue;
+      }
+      // a running task still uses the data sources of the query, so it is always waited for
+      boolean done = false;
+      while (!done) {
+        try {
+          future.get();
+          done = true;
+        } catch (InterruptedException e) {
+          interrupted = true;
+          nextTask.set(uncachedIndexes.size());
+          exception = e;
+        } catch (ExecutionException e) {
+          exception = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+          done = true;
+        }
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+    if (exception != null) {
+      throwLastQueryException(exception);
+    }
+    return lastTimeValuePairs;
+  }
+
+  private static void throwLastQueryException(Exception e)
+      throws StorageEngineException, IOException, QueryProcessException {
+    if (e instanceof StorageEngineException) {
+      throw (StorageEngineException) e;
+    } else if (e instanceof IOException) {
+      throw (IOException) e;
+    } else if (e instanceof QueryProcessException) {
+      throw (QueryProcessException) e;
+    } else {
+      throw new QueryProcessException(e.getMessage());
+    }
+  }
+
   /**
    * get last result for one series
    *
@@ -112,78 +221,46 @@ public class LastQueryExecutor {
       throws IOException, QueryProcessException, StorageEngineException {
 
     // Retrieve last value from MNode
-    LeafMNode node;
-    try {
-      node = (LeafMNode) MManager.getInstance().getNodeByPath(seriesPath.toString());
-    } catch (MetadataException e) {
-      throw new QueryProcessException(e);
-    }
-    if (node.getCachedLast() != null) {
-      return node.getCachedLast();
+    LeafMNode node = getLeafMNode(seriesPath);
+    TimeValuePair cachedLast = node.getCachedLast();
+    if (cachedLast != null) {
+      return cachedLast;
     }
 
     QueryDataSource dataSource =
         QueryResourceManager.getInstance().getQueryDataSource(seriesPath, context, null);
-
-    List<TsFileResource> seqFileResources = dataSource.getSeqResources();
-    List<TsFileResource> unseqFileResources = dataSource.getUnseqResources();
-
-    TimeValuePair resultPair = new TimeValuePair(Long.MIN_VALUE, null);
-
-    if (!seqFileResources.isEmpty()) {
-      for (int i = seqFileResources.size() - 1; i >= 0; i--) {
-        TimeseriesMetadata timeseriesMetadata = FileLoaderUtils.loadTimeSeriesMetadata(
-                seqFileResources.get(i), seriesPath, context, null, sensors);
-        if (timeseriesMetadata != null) {
-          if (!timeseriesMetadata.isModified()) {
-            Statistics timeseriesMetadataStats = timeseriesMetadata.getStatistics();
-            resultPair = constructLastPair(
-                    timeseriesMetadataStats.getEndTime(),
-                    timeseriesMetadataStats.getLastValue(),
-                    tsDataType);
-            break;
-          } else {
-            List<ChunkMetadata> chunkMetadataList = timeseriesMetadata.loadChunkMetadataList();
-            if (!chunkMetadataList.isEmpty()) {
-              ChunkMetadata lastChunkMetaData = chunkMetadataList.get(chunkMetadataList.size() - 1);
-              Statistics chunkStatistics = lastChunkMetaData.getStatistics();
-              resultPair =
-                  constructLastPair(
-                      chunkStatistics.getEndTime(), chunkStatistics.getLastValue(), tsDataType);
-              break;
-            }
-          }
-        }
-      }
-    }
-
-    long version = 0;
-    for (TsFileResource resource : unseqFileResources) {
-      if (resource.getEndTimeMap().get(seriesPath.getDevice()) < resultPair.getTimestamp()) {
-        continue;
-      }
-      TimeseriesMetadata timeseriesMetadata =
-          FileLoaderUtils.loadTimeSeriesMetadata(resource, seriesPath, context, null, sensors);
-      if (timeseriesMetadata != null) {
-        for (ChunkMetadata chunkMetaData : timeseriesMetadata.loadChunkMetadataList()) {
-          if (chunkMetaData.getEndTime() == resultPair.getTimestamp()
-              && chunkMetaData.getVersion() > version) {
-            Statistics chunkStatistics = chunkMetaData.getStatistics();
-            resultPair =
-                constructLastPair(
-                    chunkStatistics.getEndTime(), chunkStatistics.getLastValue(), tsDataType);
-            version = chunkMetaData.getVersion();
-          }
-        }
-      }
-    }
+    TimeValuePair resultPair =
+        readLastPair(seriesPath, tsDataType, context, sensors, dataSource);
 
     // Update cached last value with low priority
     node.updateCachedLast(resultPair, false, Long.MIN_VALUE);
     return resultPair;
   }
 
-  private static TimeValuePair constructLastPair(long timestamp, Object value, TSDataType dataType) {
-    return new TimeValuePair(timestamp, TsPrimitiveType.getByType(dataType, value));
+  private static LeafMNode getLeafMNode(Path seriesPath) throws QueryProcessException {
+    try {
+      return (LeafMNode) MManager.getInstance().getNodeByPath(seriesPath.toString());
+    } catch (MetadataException e) {
+      throw new QueryProcessException(e);
+    }
+  }
+
+  /**
+   * Calculate the last result of an uncached series, may be called by several threads at once.
+   */
+  protected TimeValuePair calculateLastPair(Path seriesPath, TSDataType tsDataType,
+      QueryContext context, Set<String> sensors, QueryDataSource dataSource) throws IOException {
+    return readLastPair(seriesPath, tsDataType, context, sensors, dataSource);
+  }
+
+  /**
+   * Read the last result of the series. The statistics of a file, chunk or page are only used
+   * if no deletion applies to it, otherwise its points are read, as a deletion may cover the newest
+   * points of it.
+   */
+  private static TimeValuePair readLastPair(Path seriesPath, TSDataType tsDataType,
+      QueryContext context, Set<String> sensors, QueryDataSource dataSource) throws IOException {
+    return new LastPointReader(seriesPath, tsDataType, sensors, context, dataSource,
+        Long.MAX_VALUE, null).readLastPoint();
   }
 }
@@ -66,12 +66,23 @@ public class QueryRouter implements IQueryRouter {
 
     RawDataQueryExecutor rawDataQueryExecutor = getRawDataQueryExecutor(queryPlan);
 
+    if (queryPlan.isOrderByValue()) {
+      if (optimizedExpression != null
+          && optimizedExpression.getType() != ExpressionType.GLOBAL_TIME) {
+        throw new QueryProcessException("Order by value does not support value filter.");
+      }
+      return rawDataQueryExecutor.executeOrderByValue(context, queryPlan);
+    }
+
     if (!queryPlan.isAlignByTime()) {
       return rawDataQueryExecutor.executeNonAlign(context, queryPlan);
     }
 
     if (optimizedExpression != null
         && optimizedExpression.getType() != ExpressionType.GLOBAL_TIME) {
+      if (!queryPlan.isAscending()) {
+        throw new QueryProcessException("Order by time desc does not support value filter.");
+      }
       return rawDataQueryExecutor.executeWithValueFilter(context, queryPlan);
 
     }
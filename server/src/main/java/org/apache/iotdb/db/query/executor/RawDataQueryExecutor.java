@@ -24,24 +24,35 @@ import org.apache.iotdb.db.exception.query.QueryProcessException;
 import org.apache.iotdb.db.qp.physical.crud.RawDataQueryPlan;
 import org.apache.iotdb.db.query.context.QueryContext;
 import org.apache.iotdb.db.query.control.QueryResourceManager;
+import org.apache.iotdb.db.query.dataset.ListDataSet;
 import org.apache.iotdb.db.query.dataset.NonAlignEngineDataSet;
 import org.apache.iotdb.db.query.dataset.RawQueryDataSetWithValueFilter;
 import org.apache.iotdb.db.query.dataset.RawQueryDataSetWithoutValueFilter;
+import org.apache.iotdb.db.query.reader.series.IAggregateReader;
 import org.apache.iotdb.db.query.reader.series.IReaderByTimestamp;
 import org.apache.iotdb.db.query.reader.series.ManagedSeriesReader;
 import org.apache.iotdb.db.query.reader.series.SeriesRawDataBatchReader;
+import org.apache.iotdb.db.query.reader.series.SeriesAggregateReader;
+import org.apache.iotdb.db.query.reader.series.SeriesRawDataDescBatchReader;
 import org.apache.iotdb.db.query.reader.series.SeriesReaderByTimestamp;
 import org.apache.iotdb.db.query.timegenerator.ServerTimeGenerator;
 import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
+import org.apache.iotdb.tsfile.file.metadata.statistics.Statistics;
+import org.apache.iotdb.tsfile.read.TimeValuePair;
+import org.apache.iotdb.tsfile.read.common.BatchData;
 import org.apache.iotdb.tsfile.read.common.Path;
+import org.apache.iotdb.tsfile.read.common.RowRecord;
 import org.apache.iotdb.tsfile.read.expression.IExpression;
 import org.apache.iotdb.tsfile.read.expression.impl.GlobalTimeExpression;
 import org.apache.iotdb.tsfile.read.filter.basic.Filter;
 import org.apache.iotdb.tsfile.read.query.dataset.QueryDataSet;
 import org.apache.iotdb.tsfile.read.query.timegenerator.TimeGenerator;
+import org.apache.iotdb.tsfile.utils.TsPrimitiveType;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.PriorityQueue;
 import java.util.Set;
 
 import static org.apache.iotdb.tsfile.read.query.executor.ExecutorWithTimeGenerator.markFilterdPaths;
@@ -70,7 +81,7 @@ public class RawDataQueryExecutor {
     List<ManagedSeriesReader> readersOfSelectedSeries = initManagedSeriesReader(context, queryPlan);
     try {
       return new RawQueryDataSetWithoutValueFilter(deduplicatedPaths, deduplicatedDataTypes,
-          readersOfSelectedSeries);
+          readersOfSelectedSeries, queryPlan.isAscending(), context.getMemoryTracker());
     } catch (InterruptedException e) {
       Thread.currentThread().interrupt();
       throw new StorageEngineException(e.getMessage());
@@ -79,6 +90,131 @@ public class RawDataQueryExecutor {
     }
   }
 
+  /**
+   * ORDER BY VALUE query of a single numeric series, without filter or with global time filter.
+   * Only the top rowLimit + rowOffset points are kept, and a file, chunk or page is skipped by its
+   * statistics once its max (or min for ascending) value cannot enter them.
+   */
+  public QueryDataSet executeOrderByValue(QueryContext context, RawDataQueryPlan queryPlan)
+      throws StorageEngineException, QueryProcessException {
+    Filter timeFilter = null;
+    if (optimizedExpression != null) {
+      timeFilter = ((GlobalTimeExpression) optimizedExpression).getFilter();
+    }
+    Path path = deduplicatedPaths.get(0);
+    TSDataType dataType = deduplicatedDataTypes.get(0);
+    QueryDataSource queryDataSource = QueryResourceManager.getInstance()
+        .getQueryDataSource(path, context, timeFilter);
+    timeFilter = queryDataSource.updateFilterUsingTTL(timeFilter);
+    IAggregateReader seriesReader = new SeriesAggregateReader(path,
+        queryPlan.getAllMeasurementsInDevice(path.getDevice()), dataType, context,
+        queryDataSource, timeFilter, null, null);
+
+    // the best point first
+    Comparator<TimeValuePair> order = (o1, o2) -> {
+      int cmp = compareValue(o1.getValue().getValue(), o2.getValue().getValue());
+      if (!queryPlan.isAscending()) {
+        cmp = -cmp;
+      }
+      // the earlier point wins a tie
+      return cmp != 0 ? cmp : Long.compare(o1.getTimestamp(), o2.getTimestamp());
+    };
+    TopKPoints topK = new TopKPoints(queryPlan.getRowLimit() + queryPlan.getRowOffset(), order,
+        queryPlan.isAscending());
+    try {
+      selectTopK(seriesReader, topK, dataType);
+    } catch (IOException e) {
+      throw new StorageEngineException(e.getMessage());
+    }
+
+    List<TimeValuePair> points = new ArrayList<>(topK.heap);
+    points.sort(order);
+    ListDataSet dataSet = new ListDataSet(deduplicatedPaths, deduplicatedDataTypes);
+    for (TimeValuePair point : points) {
+      RowRecord record = new RowRecord(point.getTimestamp());
+      record.addField(point.getValue().getValue(), dataType);
+      dataSet.putRecord(record);
+    }
+    return dataSet;
+  }
+
+  private static void selectTopK(IAggregateReader seriesReader, TopKPoints topK,
+      TSDataType dataType) throws IOException {
+    while (seriesReader.hasNextFile()) {
+      if (seriesReader.canUseCurrentFileStatistics()
+          && topK.canSkip(seriesReader.currentFileStatistics())) {
+        seriesReader.skipCurrentFile();
+        continue;
+      }
+      while (seriesReader.hasNextChunk()) {
+        if (seriesReader.canUseCurrentChunkStatistics()
+            && topK.canSkip(seriesReader.currentChunkStatistics())) {
+          seriesReader.skipCurrentChunk();
+          continue;
+        }
+        while (seriesReader.hasNextPage()) {
+          if (seriesReader.canUseCurrentPageStatistics()
+              && topK.canSkip(seriesReader.currentPageStatistics())) {
+            seriesReader.skipCurrentPage();
+            continue;
+          }
+          BatchData batchData = seriesReader.nextPage();
+          while (batchData.hasCurrent()) {
+            topK.offer(batchData.currentTime(), batchData.currentValue(), dataType);
+            batchData.next();
+          }
+        }
+      }
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static int compareValue(Object v1, Object v2) {
+    return ((Comparable<Object>) v1).compareTo(v2);
+  }
+
+  /**
+   * The best k points read so far, the worst one on the top of the heap.
+   */
+  private static class TopKPoints {
+
+    private final int k;
+    private final boolean ascending;
+    private final PriorityQueue<TimeValuePair> heap;
+
+    private TopKPoints(int k, Comparator<TimeValuePair> order, boolean ascending) {
+      this.k = k;
+      this.ascending = ascending;
+      this.heap = new PriorityQueue<>(k, order.reversed());
+    }
+
+    private void offer(long time, Object value, TSDataType dataType) {
+      if (heap.size() < k) {
+        heap.add(new TimeValuePair(time, TsPrimitiveType.getByType(dataType, value)));
+        return;
+      }
+      TimeValuePair worst = heap.peek();
+      int cmp = compareValue(value, worst.getValue().getValue());
+      // the points are not read in strict time order, so an earlier tie may come later
+      if ((ascending ? cmp < 0 : cmp > 0) || (cmp == 0 && time < worst.getTimestamp())) {
+        heap.poll();
+        heap.add(new TimeValuePair(time, TsPrimitiveType.getByType(dataType, value)));
+      }
+    }
+
+    /**
+     * @return true if no point within the statistics can enter the top k points
+     */
+    private boolean canSkip(Statistics statistics) {
+      if (heap.size() < k) {
+        return false;
+      }
+      Object worstValue = heap.peek().getValue().getValue();
+      return ascending ? compareValue(statistics.getMinValue(), worstValue) > 0
+          : compareValue(statistics.getMaxValue(), worstValue) < 0;
+    }
+  }
+
   public QueryDataSet executeNonAlign(QueryContext context, RawDataQueryPlan queryPlan)
       throws StorageEngineException, QueryProcessException {
     List<ManagedSeriesReader> readersOfSelectedSeries = initManagedSeriesReader(context, queryPlan);
@@ -102,8 +238,15 @@ public class RawDataQueryExecutor {
           .getQueryDataSource(path, context, timeFilter);
       timeFilter = queryDataSource.updateFilterUsingTTL(timeFilter);
 
-      ManagedSeriesReader reader = new SeriesRawDataBatchReader(path, queryPlan.getAllMeasurementsInDevice(path.getDevice()), dataType, context,
-          queryDataSource, timeFilter, null, null);
+      ManagedSeriesReader reader;
+      if (queryPlan.isAscending()) {
+        reader = new SeriesRawDataBatchReader(path, queryPlan.getAllMeasurementsInDevice(path.getDevice()), dataType, context,
+            queryDataSource, timeFilter, null, null);
+      } else {
+        reader = new SeriesRawDataDescBatchReader(path,
+            queryPlan.getAllMeasurementsInDevice(path.getDevice()), dataType, context,
+            queryDataSource, timeFilter);
+      }
       readersOfSelectedSeries.add(reader);
     }
     return readersOfSelectedSeries;
@@ -21,7 +21,6 @@ package org.apache.iotdb.db.query.executor.fill;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import java.util.PriorityQueue;
 import java.util.Set;
 import org.apache.iotdb.db.engine.querycontext.QueryDataSource;
@@ -56,6 +55,9 @@ public class LastPointReader {
 
   }
 
+  /**
+   * @param timeFilter the filter of the points, or null to read the last point of all the data
+   */
   public LastPointReader(Path seriesPath, TSDataType dataType, Set<String> sensors,
       QueryContext context, QueryDataSource dataSource, long queryTime, Filter timeFilter) {
     this.seriesPath = seriesPath;
@@ -96,7 +98,9 @@ public class LastPointReader {
           FileLoaderUtils.loadTimeSeriesMetadata(
               resource, seriesPath, context, timeFilter, allSensors);
       if (timeseriesMetadata != null) {
-        if (endtimeContainedByTimeFilter(timeseriesMetadata.getStatistics())) {
+        // a deletion may cover the end of a modified series, so its statistics are not used
+        if (!timeseriesMetadata.isModified()
+            && endtimeContainedByTimeFilter(timeseriesMetadata.getStatistics())) {
           return constructLastPair(
               timeseriesMetadata.getStatistics().getEndTime(),
               timeseriesMetadata.getStatistics().getLastValue(),
@@ -125,7 +129,7 @@ public class LastPointReader {
         sortUnSeqFileResourcesInDecendingOrder(dataSource.getUnseqResources());
 
     while (!unseqFileResource.isEmpty()
-        && (lBoundTime <= unseqFileResource.peek().getEndTimeMap().get(seriesPath.getDevice()))) {
+        && (lBoundTime <= unseqFileResource.peek().getEndTime(seriesPath.getDevice()))) {
       TimeseriesMetadata timeseriesMetadata =
           FileLoaderUtils.loadTimeSeriesMetadata(
               unseqFileResource.poll(), seriesPath, context, timeFilter, allSensors);
@@ -182,14 +186,8 @@ public class LastPointReader {
       List<TsFileResource> tsFileResources) {
     PriorityQueue<TsFileResource> unseqTsFilesSet =
         new PriorityQueue<>(
-            (o1, o2) -> {
-              Map<String, Long> startTimeMap = o1.getEndTimeMap();
-              Long minTimeOfO1 = startTimeMap.get(seriesPath.getDevice());
-              Map<String, Long> startTimeMap2 = o2.getEndTimeMap();
-              Long minTimeOfO2 = startTimeMap2.get(seriesPath.getDevice());
-
-              return Long.compare(minTimeOfO2, minTimeOfO1);
-            });
+            (o1, o2) -> Long.compare(o2.getEndTime(seriesPath.getDevice()),
+                o1.getEndTime(seriesPath.getDevice())));
     unseqTsFilesSet.addAll(tsFileResources);
     return unseqTsFilesSet;
   }
@@ -214,7 +212,7 @@ public class LastPointReader {
   }
 
   private boolean endtimeContainedByTimeFilter(Statistics statistics) {
-    return timeFilter.containStartEndTime(statistics.getEndTime(), statistics.getEndTime());
+    return timeFilter == null || timeFilter.containStartEndTime(statistics.getEndTime(), statistics.getEndTime());
   }
 
   private TimeValuePair constructLastPair(long timestamp, Object value, TSDataType dataType) {
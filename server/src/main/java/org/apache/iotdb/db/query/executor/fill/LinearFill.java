@@ -49,6 +49,8 @@ public class LinearFill extends IFill {
   private long afterRange;
   private Filter beforeFilter;
   private Filter afterFilter;
+  // [queryTime - beforeRange, queryTime + afterRange]
+  private Filter rangeFilter;
   private QueryContext context;
   private Set<String> allSensors;
 
@@ -97,6 +99,7 @@ public class LinearFill extends IFill {
     // [queryTIme - beforeRange, queryTime + afterRange]
     beforeFilter = FilterFactory.and(lowerBound, TimeFilter.ltEq(queryTime));
     afterFilter = FilterFactory.and(TimeFilter.gtEq(queryTime), upperBound);
+    rangeFilter = FilterFactory.and(lowerBound, upperBound);
   }
 
   @Override
@@ -113,19 +116,20 @@ public class LinearFill extends IFill {
   @Override
   public TimeValuePair getFillResult()
       throws IOException, QueryProcessException, StorageEngineException {
+    // the points before and after the query time are read from the same data source
     QueryDataSource dataSource =
-        QueryResourceManager.getInstance().getQueryDataSource(seriesPath, context, beforeFilter);
+        QueryResourceManager.getInstance().getQueryDataSource(seriesPath, context, rangeFilter);
     LastPointReader lastReader =
         new LastPointReader(seriesPath, dataType, allSensors, context, dataSource, queryTime, beforeFilter);
 
     TimeValuePair beforePair = lastReader.readLastPoint();
-    TimeValuePair afterPair = calculateFirstPointAfterQueryTime();
 
     // no before data or has data on the query timestamp
     if (beforePair.getValue() == null || beforePair.getTimestamp() == queryTime) {
       beforePair.setTimestamp(queryTime);
       return beforePair;
     }
+    TimeValuePair afterPair = calculateFirstPointAfterQueryTime(dataSource);
 
     // on after data or after data is out of range
     if (afterPair.getValue() == null || afterPair.getTimestamp() < queryTime ||
@@ -136,8 +140,8 @@ public class LinearFill extends IFill {
     return average(beforePair, afterPair);
   }
 
-  private TimeValuePair calculateFirstPointAfterQueryTime()
-      throws IOException, StorageEngineException, QueryProcessException {
+  private TimeValuePair calculateFirstPointAfterQueryTime(QueryDataSource dataSource)
+      throws IOException, QueryProcessException {
     TimeValuePair result = new TimeValuePair(0, null);
 
     List<AggregateResult> aggregateResultList = new ArrayList<>();
@@ -145,8 +149,8 @@ public class LinearFill extends IFill {
     AggregateResult firstValueResult = new FirstValueAggrResult(dataType);
     aggregateResultList.add(minTimeResult);
     aggregateResultList.add(firstValueResult);
-    AggregationExecutor.aggregateOneSeries(
-        seriesPath, allSensors, context, afterFilter, dataType, aggregateResultList, null);
+    AggregationExecutor.aggregateOneSeriesInDataSource(
+        seriesPath, allSensors, context, afterFilter, dataType, aggregateResultList, dataSource);
 
     if (minTimeResult.getResult() != null) {
       long timestamp = (long)(minTimeResult.getResult());
@@ -85,7 +85,7 @@ public class ChunkReaderWrap {
       ChunkReaderByTimestamp chunkReader = new ChunkReaderByTimestamp(chunk);
       return new DiskChunkReaderByTimestamp(chunkReader);
     } else {
-      return new ByTimestampReaderAdapter(readOnlyMemChunk.getPointReader());
+      return new ByTimestampReaderAdapter(readOnlyMemChunk.newPointReader());
     }
   }
 
@@ -46,7 +46,7 @@ public class MemChunkReader implements IChunkReader, IPointReader {
 
   public MemChunkReader(ReadOnlyMemChunk readableChunk, Filter filter) {
     this.readOnlyMemChunk = readableChunk;
-    timeValuePairIterator = readableChunk.getPointReader();
+    timeValuePairIterator = readableChunk.newPointReader();
     this.filter = filter;
     this.dataType = readableChunk.getDataType();
   }
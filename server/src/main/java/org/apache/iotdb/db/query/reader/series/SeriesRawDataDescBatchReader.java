@@ -0,0 +1,313 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.query.reader.series;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import org.apache.iotdb.db.engine.querycontext.QueryDataSource;
+import org.apache.iotdb.db.engine.storagegroup.TsFileResource;
+import org.apache.iotdb.db.query.context.QueryContext;
+import org.apache.iotdb.db.query.reader.universal.PriorityMergeReader;
+import org.apache.iotdb.db.utils.FileLoaderUtils;
+import org.apache.iotdb.db.utils.MemUtils;
+import org.apache.iotdb.tsfile.exception.write.UnSupportedDataTypeException;
+import org.apache.iotdb.tsfile.file.metadata.ChunkMetadata;
+import org.apache.iotdb.tsfile.file.metadata.TimeseriesMetadata;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
+import org.apache.iotdb.tsfile.read.TimeValuePair;
+import org.apache.iotdb.tsfile.read.common.BatchData;
+import org.apache.iotdb.tsfile.read.common.Path;
+import org.apache.iotdb.tsfile.read.filter.TimeFilter;
+import org.apache.iotdb.tsfile.read.filter.basic.Filter;
+import org.apache.iotdb.tsfile.read.filter.factory.FilterFactory;
+import org.apache.iotdb.tsfile.read.reader.IPageReader;
+
+/**
+ * Reads a series in descending time order for ORDER BY TIME DESC queries.
+ *
+ * The time axis is cut into windows by the start times of the sequence chunks, visited from the
+ * newest chunk of the newest file to the oldest. The metadata of each file is loaded once: the
+ * sequence files are unpacked from the newest, and an unsequence file is unpacked once the
+ * windows reach its end time. The chunks stay cached until the windows pass their start times, so
+ * an unsequence chunk overlapping several windows is not loaded again for each of them. The pages
+ * of the chunks overlapping a window are merged by version and returned as one reversed batch. A
+ * query with a LIMIT therefore stops after reading the newest windows.
+ *
+ * Sequence chunks never overlap each other, so a window holds at most the sequence chunks
+ * starting at its start time.
+ */
+public class SeriesRawDataDescBatchReader implements ManagedSeriesReader {
+
+  private final Path seriesPath;
+  private final Set<String> allSensors;
+  private final TSDataType dataType;
+  private final QueryContext context;
+  private final Filter timeFilter;
+
+  // sequence files not yet unpacked, the newest one is the first
+  private final Deque<TsFileResource> unvisitedSeqFiles = new ArrayDeque<>();
+  // chunks of the unpacked sequence files not yet used as window bounds, the newest one is first
+  private final Deque<ChunkMetadata> unvisitedSeqChunks = new ArrayDeque<>();
+  // unsequence files not yet unpacked, the one ending last is the first
+  private final Deque<TsFileResource> unvisitedUnseqFiles = new ArrayDeque<>();
+  // the unpacked chunks that may overlap the next window
+  private final List<ChunkMetadata> cachedChunks = new ArrayList<>();
+  // the inclusive upper bound of the next window
+  private long windowEnd = Long.MAX_VALUE;
+  private boolean noMoreWindow = false;
+
+  private boolean hasRemaining;
+  private boolean managedByQueryManager;
+
+  private BatchData batchData;
+  private boolean hasCachedBatchData = false;
+
+  public SeriesRawDataDescBatchReader(Path seriesPath, Set<String> allSensors,
+      TSDataType dataType, QueryContext context, QueryDataSource dataSource, Filter timeFilter) {
+    this.seriesPath = seriesPath;
+    this.allSensors = allSensors;
+    this.dataType = dataType;
+    this.context = context;
+    this.timeFilter = timeFilter;
+    List<TsFileResource> seqResources = dataSource.getSeqResources();
+    for (int i = seqResources.size() - 1; i >= 0; i--) {
+      unvisitedSeqFiles.addLast(seqResources.get(i));
+    }
+    List<TsFileResource> unseqResources = new ArrayList<>(dataSource.getUnseqResources());
+    unseqResources.sort(Comparator.comparingLong(this::getEndTime).reversed());
+    unvisitedUnseqFiles.addAll(unseqResources);
+  }
+
+  @Override
+  public boolean hasNextBatch() throws IOException {
+    if (hasCachedBatchData) {
+      return true;
+    }
+    while (!noMoreWindow) {
+      long windowStart = nextWindowStart();
+      long end = windowEnd;
+      if (windowStart == Long.MIN_VALUE) {
+        noMoreWindow = true;
+      } else {
+        windowEnd = windowStart - 1;
+      }
+      unpackUnseqFiles(windowStart);
+      batchData = null;
+      if (timeFilter == null || timeFilter.satisfyStartEndTime(windowStart, end)) {
+        batchData = readWindow(windowStart, end);
+      }
+      // the following windows end before the start of the chunks starting within this one
+      cachedChunks.removeIf(chunkMetadata -> chunkMetadata.getStartTime() >= windowStart);
+      if (batchData != null && batchData.hasCurrent()) {
+        hasCachedBatchData = true;
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public BatchData nextBatch() throws IOException {
+    if (hasCachedBatchData || hasNextBatch()) {
+      hasCachedBatchData = false;
+      return batchData;
+    }
+    throw new IOException("no next batch");
+  }
+
+  /**
+   * Cache the newest sequence chunks not yet used as window bounds.
+   *
+   * @return the start time of these chunks, or Long.MIN_VALUE if all sequence chunks are used and
+   * the last window should cover the rest
+   */
+  private long nextWindowStart() throws IOException {
+    while (unvisitedSeqChunks.isEmpty() && !unvisitedSeqFiles.isEmpty()) {
+      TimeseriesMetadata timeseriesMetadata = FileLoaderUtils
+          .loadTimeSeriesMetadata(unvisitedSeqFiles.pollFirst(), seriesPath, context, timeFilter,
+              allSensors);
+      if (timeseriesMetadata == null) {
+        continue;
+      }
+      List<ChunkMetadata> chunkMetadataList = timeseriesMetadata.loadChunkMetadataList();
+      for (int i = chunkMetadataList.size() - 1; i >= 0; i--) {
+        unvisitedSeqChunks.addLast(chunkMetadataList.get(i));
+      }
+    }
+    if (unvisitedSeqChunks.isEmpty()) {
+      return Long.MIN_VALUE;
+    }
+    long startTime = unvisitedSeqChunks.peekFirst().getStartTime();
+    // chunks sharing a start time make one window
+    while (!unvisitedSeqChunks.isEmpty()
+        && unvisitedSeqChunks.peekFirst().getStartTime() >= startTime) {
+      cachedChunks.add(unvisitedSeqChunks.pollFirst());
+    }
+    return startTime;
+  }
+
+  /**
+   * Cache the chunks of the unsequence files that may have data at or after the start time.
+   */
+  private void unpackUnseqFiles(long startTime) throws IOException {
+    while (!unvisitedUnseqFiles.isEmpty()
+        && getEndTime(unvisitedUnseqFiles.peekFirst()) >= startTime) {
+      TimeseriesMetadata timeseriesMetadata = FileLoaderUtils
+          .loadTimeSeriesMetadata(unvisitedUnseqFiles.pollFirst(), seriesPath, context,
+              timeFilter, allSensors);
+      if (timeseriesMetadata != null) {
+        cachedChunks.addAll(timeseriesMetadata.loadChunkMetadataList());
+      }
+    }
+  }
+
+  private long getEndTime(TsFileResource resource) {
+    String device = seriesPath.getDevice();
+    if (!resource.containsDevice(device)) {
+      return Long.MIN_VALUE;
+    }
+    // an unsealed file has no end time
+    if (!resource.isClosed()) {
+      return Long.MAX_VALUE;
+    }
+    return resource.getEndTime(device);
+  }
+
+  private BatchData readWindow(long start, long end) throws IOException {
+    Filter windowFilter = FilterFactory.and(TimeFilter.gtEq(start), TimeFilter.ltEq(end));
+    if (timeFilter != null) {
+      windowFilter = FilterFactory.and(timeFilter, windowFilter);
+    }
+    List<ChunkMetadata> overlappedChunks = new ArrayList<>();
+    for (ChunkMetadata chunkMetadata : cachedChunks) {
+      if (chunkMetadata.getStartTime() <= end && chunkMetadata.getEndTime() >= start) {
+        overlappedChunks.add(chunkMetadata);
+      }
+    }
+
+    BatchData descendingBatch = new BatchData(dataType);
+    if (overlappedChunks.size() == 1) {
+      // the pages of a chunk do not overlap each other
+      context.getQueryStatistics().increaseLoadedChunkNum();
+      List<IPageReader> pageReaders = FileLoaderUtils
+          .loadPageReaderList(overlappedChunks.get(0), windowFilter);
+      for (int i = pageReaders.size() - 1; i >= 0; i--) {
+        context.getQueryStatistics().increaseLoadedPageNum();
+        putReversely(pageReaders.get(i).getAllSatisfiedPageData(), descendingBatch);
+      }
+    } else if (!overlappedChunks.isEmpty()) {
+      putReversely(mergeChunks(overlappedChunks, windowFilter), descendingBatch);
+    }
+    return descendingBatch;
+  }
+
+  /**
+   * @return the points of the overlapped chunks in ascending order, a point of a chunk with a
+   * larger version overwrites the ones of the same time
+   */
+  private BatchData mergeChunks(List<ChunkMetadata> chunkMetadataList, Filter windowFilter)
+      throws IOException {
+    PriorityMergeReader mergeReader = new PriorityMergeReader();
+    long memSize = 0;
+    try {
+      for (ChunkMetadata chunkMetadata : chunkMetadataList) {
+        context.getQueryStatistics().increaseLoadedChunkNum();
+        for (IPageReader pageReader : FileLoaderUtils
+            .loadPageReaderList(chunkMetadata, windowFilter)) {
+          long pageMemSize = MemUtils
+              .getRecordsSize(dataType, pageReader.getStatistics().getCount());
+          context.getMemoryTracker().allocate(pageMemSize);
+          memSize += pageMemSize;
+          context.getQueryStatistics().increaseLoadedPageNum();
+          context.getQueryStatistics().increaseMergedPageNum();
+          mergeReader.addReader(pageReader.getAllSatisfiedPageData().getBatchDataIterator(),
+              chunkMetadata.getVersion(), pageReader.getStatistics().getEndTime());
+        }
+      }
+      BatchData ascendingBatch = new BatchData(dataType);
+      while (mergeReader.hasNextTimeValuePair()) {
+        TimeValuePair timeValuePair = mergeReader.nextTimeValuePair();
+        ascendingBatch.putAnObject(timeValuePair.getTimestamp(),
+            timeValuePair.getValue().getValue());
+      }
+      return ascendingBatch;
+    } finally {
+      mergeReader.close();
+      context.getMemoryTracker().release(memSize);
+    }
+  }
+
+  private void putReversely(BatchData source, BatchData target) {
+    for (int i = source.length() - 1; i >= 0; i--) {
+      long time = source.getTimeByIndex(i);
+      switch (dataType) {
+        case BOOLEAN:
+          target.putBoolean(time, source.getBooleanByIndex(i));
+          break;
+        case INT32:
+          target.putInt(time, source.getIntByIndex(i));
+          break;
+        case INT64:
+          target.putLong(time, source.getLongByIndex(i));
+          break;
+        case FLOAT:
+          target.putFloat(time, source.getFloatByIndex(i));
+          break;
+        case DOUBLE:
+          target.putDouble(time, source.getDoubleByIndex(i));
+          break;
+        case TEXT:
+          target.putBinary(time, source.getBinaryByIndex(i));
+          break;
+        default:
+          throw new UnSupportedDataTypeException(String.valueOf(dataType));
+      }
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    //no resources need to close
+  }
+
+  @Override
+  public boolean isManagedByQueryManager() {
+    return managedByQueryManager;
+  }
+
+  @Override
+  public void setManagedByQueryManager(boolean managedByQueryManager) {
+    this.managedByQueryManager = managedByQueryManager;
+  }
+
+  @Override
+  public boolean hasRemaining() {
+    return hasRemaining;
+  }
+
+  @Override
+  public void setHasRemaining(boolean hasRemaining) {
+    this.hasRemaining = hasRemaining;
+  }
+}
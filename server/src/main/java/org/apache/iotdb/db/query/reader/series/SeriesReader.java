@@ -20,10 +20,12 @@ package org.apache.iotdb.db.query.reader.series;
 
 import org.apache.iotdb.db.engine.querycontext.QueryDataSource;
 import org.apache.iotdb.db.engine.storagegroup.TsFileResource;
+import org.apache.iotdb.db.engine.storagegroup.timeindex.UnseqOverlapIndex;
 import org.apache.iotdb.db.query.context.QueryContext;
 import org.apache.iotdb.db.query.filter.TsFileFilter;
 import org.apache.iotdb.db.query.reader.universal.PriorityMergeReader;
 import org.apache.iotdb.db.utils.FileLoaderUtils;
+import org.apache.iotdb.db.utils.MemUtils;
 import org.apache.iotdb.db.utils.QueryUtils;
 import org.apache.iotdb.db.utils.TestOnly;
 import org.apache.iotdb.tsfile.file.metadata.ChunkMetadata;
@@ -107,10 +109,10 @@ class SeriesReader {
     this.dataType = dataType;
     this.context = context;
     QueryUtils.filterQueryDataSource(dataSource, fileFilter);
-    this.seqFileResource = new LinkedList<>(dataSource.getSeqResources());
-    this.unseqFileResource = sortUnSeqFileResources(dataSource.getUnseqResources());
     this.timeFilter = timeFilter;
     this.valueFilter = valueFilter;
+    this.seqFileResource = new LinkedList<>(dataSource.getSeqResources());
+    this.unseqFileResource = sortUnSeqFileResources(dataSource.getUnseqResources());
   }
 
   @TestOnly
@@ -121,10 +123,10 @@ class SeriesReader {
     this.allSensors = allSensors;
     this.dataType = dataType;
     this.context = context;
-    this.seqFileResource = new LinkedList<>(seqFileResource);
-    this.unseqFileResource = sortUnSeqFileResources(unseqFileResource);
     this.timeFilter = timeFilter;
     this.valueFilter = valueFilter;
+    this.seqFileResource = new LinkedList<>(seqFileResource);
+    this.unseqFileResource = sortUnSeqFileResources(unseqFileResource);
   }
 
   boolean hasNextFile() throws IOException {
@@ -152,6 +154,14 @@ class SeriesReader {
     // init first time series metadata whose startTime is minimum
     tryToUnpackAllOverlappedFilesToTimeSeriesMetadata();
 
+    // skip the non-overlapped files whose statistics can not satisfy the filter
+    while (firstTimeSeriesMetadata != null && !isFileOverlapped()
+        && canBePruned(firstTimeSeriesMetadata.getStatistics())) {
+      context.getQueryStatistics().increasePrunedFileNum();
+      firstTimeSeriesMetadata = null;
+      tryToUnpackAllOverlappedFilesToTimeSeriesMetadata();
+    }
+
     return firstTimeSeriesMetadata != null;
   }
 
@@ -220,17 +230,29 @@ class SeriesReader {
       /*
        * first time series metadata is already unpacked, consume cached ChunkMetadata
        */
-      if (!cachedChunkMetadata.isEmpty()) {
-        firstChunkMetadata = cachedChunkMetadata.poll();
-        unpackAllOverlappedTsFilesToTimeSeriesMetadata(firstChunkMetadata.getEndTime());
-        unpackAllOverlappedTimeSeriesMetadataToCachedChunkMetadata(
-            firstChunkMetadata.getEndTime(), false);
-      }
+      unpackFirstCachedChunkMetadata();
+    }
+
+    // skip the non-overlapped chunks whose statistics can not satisfy the filter
+    while (firstChunkMetadata != null && !isChunkOverlapped()
+        && canBePruned(firstChunkMetadata.getStatistics())) {
+      context.getQueryStatistics().increasePrunedChunkNum();
+      firstChunkMetadata = null;
+      unpackFirstCachedChunkMetadata();
     }
 
     return firstChunkMetadata != null;
   }
 
+  private void unpackFirstCachedChunkMetadata() throws IOException {
+    if (!cachedChunkMetadata.isEmpty()) {
+      firstChunkMetadata = cachedChunkMetadata.poll();
+      unpackAllOverlappedTsFilesToTimeSeriesMetadata(firstChunkMetadata.getEndTime());
+      unpackAllOverlappedTimeSeriesMetadataToCachedChunkMetadata(
+          firstChunkMetadata.getEndTime(), false);
+    }
+  }
+
   private void unpackAllOverlappedTimeSeriesMetadataToCachedChunkMetadata(
       long endTime, boolean init) throws IOException {
     while (!seqTimeSeriesMetadata.isEmpty()
@@ -254,6 +276,7 @@ class SeriesReader {
 
   private void unpackOneTimeSeriesMetadata(TimeseriesMetadata timeSeriesMetadata)
       throws IOException {
+    context.getQueryStatistics().increaseLoadedFileNum();
     cachedChunkMetadata.addAll(FileLoaderUtils.loadChunkMetadataList(timeSeriesMetadata));
   }
 
@@ -374,6 +397,7 @@ class SeriesReader {
   }
 
   private void unpackOneChunkMetaData(ChunkMetadata chunkMetaData) throws IOException {
+    context.getQueryStatistics().increaseLoadedChunkNum();
     FileLoaderUtils.loadPageReaderList(chunkMetaData, timeFilter)
         .forEach(
             pageReader ->
@@ -424,6 +448,9 @@ class SeriesReader {
   }
 
   void skipCurrentPage() {
+    if (firstPageReader != null) {
+      firstPageReader.release();
+    }
     firstPageReader = null;
   }
 
@@ -440,12 +467,22 @@ class SeriesReader {
     } else {
 
       /*
-       * next page is not overlapped, push down value filter if it exists
+       * next page is not overlapped, push down value filter if it exists, and the page need not
+       * be decoded if its statistics can not satisfy the value filter
        */
       if (valueFilter != null) {
+        if (!valueFilter.satisfy(firstPageReader.getStatistics())) {
+          context.getQueryStatistics().increasePrunedPageNum();
+          firstPageReader.release();
+          firstPageReader = null;
+          return new BatchData(dataType);
+        }
         firstPageReader.setFilter(valueFilter);
       }
+      context.getQueryStatistics().increaseLoadedPageNum();
+      context.getQueryStatistics().increaseFastPathPageNum();
       BatchData batchData = firstPageReader.getAllSatisfiedPageData();
+      firstPageReader.release();
       firstPageReader = null;
 
       return batchData;
@@ -486,7 +523,7 @@ class SeriesReader {
           unpackAllOverlappedTimeSeriesMetadataToCachedChunkMetadata(
               timeValuePair.getTimestamp(), false);
           unpackAllOverlappedChunkMetadataToCachedPageReaders(timeValuePair.getTimestamp(), false);
-          unpackAllOverlappedCachedPageReadersToMergeReader(timeValuePair.getTimestamp());
+          unpackAllOverlappedCachedPageReadersToBatch(timeValuePair.getTimestamp());
 
           /*
            * get the latest first point in mergeReader
@@ -554,11 +591,69 @@ class SeriesReader {
     }
   }
 
+  /**
+   * Put the pages starting no later than the current point of the merge reader into it, except
+   * the leading ones that nothing else overlaps, which are appended to cachedBatchData as a whole.
+   * All data before the current point is in the pages being unpacked, so a page can be appended if
+   * it ends before the current point, does not overlap its neighbours among these pages and no
+   * earlier page has been put into the merge reader, e.g., the sequence pages between two sparse
+   * unsequence points. Once a page goes to the merge reader, the later ones follow it, as their
+   * points must not be emitted before the merged ones.
+   */
+  private void unpackAllOverlappedCachedPageReadersToBatch(long currentTime) throws IOException {
+    List<VersionPageReader> pageReaders = new ArrayList<>();
+    while (!cachedPageReaders.isEmpty() && currentTime >= cachedPageReaders.peek().getStartTime()) {
+      pageReaders.add(cachedPageReaders.poll());
+    }
+    if (firstPageReader != null && currentTime >= firstPageReader.getStartTime()) {
+      pageReaders.add(firstPageReader);
+      pageReaders.sort(Comparator.comparingLong(VersionPageReader::getStartTime));
+      firstPageReader = null;
+    }
+
+    boolean merging = false;
+    for (int i = 0; i < pageReaders.size(); i++) {
+      VersionPageReader pageReader = pageReaders.get(i);
+      if (!merging
+          && pageReader.getEndTime() < currentTime
+          && (i + 1 == pageReaders.size()
+          || pageReader.getEndTime() < pageReaders.get(i + 1).getStartTime())) {
+        appendPageToBatch(pageReader);
+      } else {
+        putPageReaderToMergeReader(pageReader);
+        merging = true;
+      }
+    }
+  }
+
+  private void appendPageToBatch(VersionPageReader pageReader) throws IOException {
+    // no other data covers the points of the page, so the value filter can be pushed down
+    if (valueFilter != null) {
+      if (!valueFilter.satisfy(pageReader.getStatistics())) {
+        context.getQueryStatistics().increasePrunedPageNum();
+        pageReader.release();
+        return;
+      }
+      pageReader.setFilter(valueFilter);
+    }
+    context.getQueryStatistics().increaseLoadedPageNum();
+    context.getQueryStatistics().increaseFastPathPageNum();
+    BatchData batchData = pageReader.getAllSatisfiedPageData();
+    while (batchData.hasCurrent()) {
+      cachedBatchData.putAnObject(batchData.currentTime(), batchData.currentValue());
+      batchData.next();
+    }
+    pageReader.release();
+  }
+
   private void putPageReaderToMergeReader(VersionPageReader pageReader) throws IOException {
+    context.getQueryStatistics().increaseLoadedPageNum();
+    context.getQueryStatistics().increaseMergedPageNum();
     mergeReader.addReader(
         pageReader.getAllSatisfiedPageData().getBatchDataIterator(),
         pageReader.version,
         pageReader.getEndTime());
+    pageReader.release();
   }
 
   private BatchData nextOverlappedPage() throws IOException {
@@ -569,14 +664,48 @@ class SeriesReader {
     throw new IOException("No more batch data");
   }
 
+  /**
+   * Sort the unsequence files by the time the series starts in them, skipping the files that the
+   * series is not in or whose data of the series the time filter rejects, according to their
+   * overlap indexes.
+   */
   private LinkedList<TsFileResource> sortUnSeqFileResources(List<TsFileResource> tsFileResources) {
     return tsFileResources.stream()
-        .sorted(
-            Comparator.comparingLong(
-                tsFileResource -> tsFileResource.getStartTimeMap().get(seriesPath.getDevice())))
+        .filter(this::mayContainSeries)
+        .sorted(Comparator.comparingLong(this::getUnseqStartTime))
         .collect(Collectors.toCollection(LinkedList::new));
   }
 
+  private boolean mayContainSeries(TsFileResource unseqResource) {
+    UnseqOverlapIndex overlapIndex = unseqResource.getOverlapIndex();
+    if (overlapIndex == null) {
+      return true;
+    }
+    long[] ranges = overlapIndex.getRanges(seriesPath.getDevice(), seriesPath.getMeasurement());
+    boolean mayContain = ranges != null;
+    if (mayContain && timeFilter != null) {
+      mayContain = false;
+      for (int i = 0; i < ranges.length && !mayContain; i += 2) {
+        mayContain = timeFilter.satisfyStartEndTime(ranges[i], ranges[i + 1]);
+      }
+    }
+    if (!mayContain) {
+      context.getQueryStatistics().increasePrunedFileNum();
+    }
+    return mayContain;
+  }
+
+  /**
+   * @return the time the series starts in the unsequence file, or the start time of the device if
+   * the file has no overlap index
+   */
+  private long getUnseqStartTime(TsFileResource unseqResource) {
+    UnseqOverlapIndex overlapIndex = unseqResource.getOverlapIndex();
+    long[] ranges = overlapIndex == null ? null
+        : overlapIndex.getRanges(seriesPath.getDevice(), seriesPath.getMeasurement());
+    return ranges != null ? ranges[0] : unseqResource.getStartTime(seriesPath.getDevice());
+  }
+
   /**
    * unpack all overlapped seq/unseq files and find the first TimeSeriesMetadata
    *
@@ -660,7 +789,7 @@ class SeriesReader {
 
   private void unpackAllOverlappedTsFilesToTimeSeriesMetadata(long endTime) throws IOException {
     while (!unseqFileResource.isEmpty()
-        && endTime >= unseqFileResource.get(0).getStartTimeMap().get(seriesPath.getDevice())) {
+        && endTime >= getUnseqStartTime(unseqFileResource.get(0))) {
       TimeseriesMetadata timeseriesMetadata =
           FileLoaderUtils.loadTimeSeriesMetadata(
               unseqFileResource.remove(0), seriesPath, context, getAnyFilter(), allSensors);
@@ -670,7 +799,7 @@ class SeriesReader {
       }
     }
     while (!seqFileResource.isEmpty()
-        && endTime >= seqFileResource.get(0).getStartTimeMap().get(seriesPath.getDevice())) {
+        && endTime >= seqFileResource.get(0).getStartTime(seriesPath.getDevice())) {
       TimeseriesMetadata timeseriesMetadata =
           FileLoaderUtils.loadTimeSeriesMetadata(
               seqFileResource.remove(0), seriesPath, context, getAnyFilter(), allSensors);
@@ -684,6 +813,17 @@ class SeriesReader {
     return timeFilter != null ? timeFilter : valueFilter;
   }
 
+  /**
+   * Only used for non-overlapped files or chunks. The time filter can always be checked, while the
+   * value filter can only be checked if no other data could cover the points in this range, which
+   * is the same rule as pushing the value filter down to non-overlapped pages. Statistics of
+   * modified data still bound the remaining points, so they can also be used here.
+   */
+  private boolean canBePruned(Statistics statistics) {
+    Filter filter = getAnyFilter();
+    return filter != null && !filter.satisfy(statistics);
+  }
+
   void setTimeFilter(long timestamp) {
     ((UnaryFilter) timeFilter).setValue(timestamp);
   }
@@ -696,10 +836,18 @@ class SeriesReader {
 
     protected long version;
     protected IPageReader data;
+    // estimated memory of the page, counted in the memory tracker of the query while cached
+    private final long memSize;
 
     VersionPageReader(long version, IPageReader data) {
       this.version = version;
       this.data = data;
+      this.memSize = MemUtils.getRecordsSize(dataType, data.getStatistics().getCount());
+      context.getMemoryTracker().allocate(memSize);
+    }
+
+    void release() {
+      context.getMemoryTracker().release(memSize);
     }
 
     Statistics getStatistics() {
@@ -32,6 +32,7 @@ import org.apache.iotdb.db.engine.merge.manage.MergeManager;
 import org.apache.iotdb.db.exception.StartupException;
 import org.apache.iotdb.db.metadata.MManager;
 import org.apache.iotdb.db.monitor.StatMonitor;
+import org.apache.iotdb.db.query.control.QueryMemoryManager;
 import org.apache.iotdb.db.rescon.TVListAllocator;
 import org.apache.iotdb.db.sync.receiver.SyncServerManager;
 import org.apache.iotdb.db.writelog.manager.MultiFileLogNodeManager;
@@ -96,6 +97,7 @@ public class IoTDB implements IoTDBMBean {
     registerManager.register(SyncServerManager.getInstance());
     registerManager.register(TVListAllocator.getInstance());
     registerManager.register(CacheHitRatioMonitor.getInstance());
+    registerManager.register(QueryMemoryManager.getInstance());
     JMXService.registerMBean(getInstance(), mbeanName);
     registerManager.register(UpgradeSevice.getINSTANCE());
     registerManager.register(MergeManager.getINSTANCE());
@@ -121,12 +123,16 @@ public class IoTDB implements IoTDBMBean {
   private void deactivate() {
     logger.info("Deactivating IoTDB...");
     registerManager.deregisterAll();
+    // all data has been flushed, so the cached last values are consistent with the TsFiles
+    MManager.getInstance().saveLastCacheSnapshot();
+    MManager.getInstance().createMTreeSnapshot();
     JMXService.deregisterMBean(mbeanName);
     logger.info("IoTDB is deactivated.");
   }
 
   private void initMManager() {
     MManager.getInstance().init();
+    MManager.getInstance().loadLastCacheSnapshot();
     IoTDBConfigDynamicAdapter.getInstance().setInitialized(true);
     logger.info(
         "After initializing, max memTable num is {}, tsFile threshold is {}, memtableSize is {}",
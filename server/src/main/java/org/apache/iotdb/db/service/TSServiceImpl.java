@@ -46,10 +46,12 @@ import org.apache.iotdb.db.conf.IoTDBConstant;
 import org.apache.iotdb.db.conf.IoTDBDescriptor;
 import org.apache.iotdb.db.cost.statistic.Measurement;
 import org.apache.iotdb.db.cost.statistic.Operation;
+import org.apache.iotdb.db.engine.merge.manage.MergeRateLimiter;
 import org.apache.iotdb.db.exception.QueryInBatchStatementException;
 import org.apache.iotdb.db.exception.StorageEngineException;
 import org.apache.iotdb.db.exception.metadata.MetadataException;
 import org.apache.iotdb.db.exception.metadata.StorageGroupNotSetException;
+import org.apache.iotdb.db.exception.query.QueryMemoryExceededException;
 import org.apache.iotdb.db.exception.query.QueryProcessException;
 import org.apache.iotdb.db.exception.runtime.SQLParserException;
 import org.apache.iotdb.db.metadata.MManager;
@@ -74,6 +76,7 @@ import org.apache.iotdb.db.qp.physical.sys.DeleteTimeSeriesPlan;
 import org.apache.iotdb.db.qp.physical.sys.SetStorageGroupPlan;
 import org.apache.iotdb.db.qp.physical.sys.ShowPlan;
 import org.apache.iotdb.db.query.context.QueryContext;
+import org.apache.iotdb.db.query.control.QueryMemoryManager;
 import org.apache.iotdb.db.query.control.QueryResourceManager;
 import org.apache.iotdb.db.query.dataset.NonAlignEngineDataSet;
 import org.apache.iotdb.db.query.dataset.RawQueryDataSetWithoutValueFilter;
@@ -160,6 +163,9 @@ public class TSServiceImpl implements TSIService.Iface, ServerContext {
   // (queryId -> QueryDataSet)
   private Map<Long, QueryDataSet> queryId2DataSet = new ConcurrentHashMap<>();
 
+  // (queryId -> QueryContext)
+  private Map<Long, QueryContext> queryId2Context = new ConcurrentHashMap<>();
+
   private IoTDBConfig config = IoTDBDescriptor.getInstance().getConfig();
 
   // When the client abnormally exits, we can still know who to disconnect
@@ -310,6 +316,11 @@ public class TSServiceImpl implements TSIService.Iface, ServerContext {
   protected void releaseQueryResource(long queryId) throws StorageEngineException {
     // remove the corresponding Physical Plan
     queryId2DataSet.remove(queryId);
+    QueryContext context = queryId2Context.remove(queryId);
+    if (context != null && logger.isDebugEnabled()) {
+      logger.debug("Query {} finished, {}, {}", queryId, context.getQueryStatistics(),
+          context.getMemoryTracker());
+    }
     QueryResourceManager.getInstance().endQuery(queryId);
   }
 
@@ -535,6 +546,11 @@ public class TSServiceImpl implements TSIService.Iface, ServerContext {
       long statementId, PhysicalPlan plan, int fetchSize, String username) {
     long startTime = System.currentTimeMillis();
     long queryId = -1;
+    // merges give way to the data queries being executed
+    boolean isDataQuery = plan instanceof QueryPlan;
+    if (isDataQuery) {
+      MergeRateLimiter.getInstance().startQuery();
+    }
     try {
       TSExecuteStatementResp resp = getQueryResp(plan, username); // column headers
 
@@ -589,6 +605,18 @@ public class TSServiceImpl implements TSIService.Iface, ServerContext {
       }
 
       return resp;
+    } catch (QueryMemoryExceededException e) {
+      // the budget is exhausted by other queries, the stack trace tells nothing
+      logger.warn(e.getMessage());
+      if (queryId != -1) {
+        try {
+          releaseQueryResource(queryId);
+        } catch (StorageEngineException ex) {
+          logger.error("Error happened while releasing query resource: ", ex);
+        }
+      }
+      return RpcUtils
+          .getTSExecuteStatementResp(TSStatusCode.QUERY_MEMORY_EXCEEDED_ERROR, e.getMessage());
     } catch (Exception e) {
       logger.error("{}: Internal server error: ", IoTDBConstant.GLOBAL_DB_NAME, e);
       if (queryId != -1) {
@@ -600,6 +628,9 @@ public class TSServiceImpl implements TSIService.Iface, ServerContext {
       }
       return RpcUtils.getTSExecuteStatementResp(TSStatusCode.INTERNAL_SERVER_ERROR, e.getMessage());
     } finally {
+      if (isDataQuery) {
+        MergeRateLimiter.getInstance().endQuery();
+      }
       Measurement.INSTANCE.addOperationLatency(Operation.EXECUTE_QUERY, startTime);
     }
   }
@@ -796,6 +827,7 @@ public class TSServiceImpl implements TSIService.Iface, ServerContext {
 
   @Override
   public TSFetchResultsResp fetchResults(TSFetchResultsReq req) {
+    boolean isFetching = false;
     try {
       if (!checkLogin(req.getSessionId())) {
         return RpcUtils.getTSFetchResultsResp(TSStatusCode.NOT_LOGIN_ERROR);
@@ -807,6 +839,9 @@ public class TSServiceImpl implements TSIService.Iface, ServerContext {
       }
 
       QueryDataSet queryDataSet = queryId2DataSet.get(req.queryId);
+      // merges give way to the results being fetched
+      MergeRateLimiter.getInstance().startQuery();
+      isFetching = true;
       if (req.isAlign) {
         TSQueryDataSet result =
             fillRpcReturnData(req.fetchSize, queryDataSet, sessionIdUsernameMap.get(req.sessionId));
@@ -847,6 +882,10 @@ public class TSServiceImpl implements TSIService.Iface, ServerContext {
         logger.error("Error happened while releasing query resource: ", ex);
       }
       return RpcUtils.getTSFetchResultsResp(TSStatusCode.INTERNAL_SERVER_ERROR, e.getMessage());
+    } finally {
+      if (isFetching) {
+        MergeRateLimiter.getInstance().endQuery();
+      }
     }
   }
 
@@ -922,6 +961,8 @@ public class TSServiceImpl implements TSIService.Iface, ServerContext {
       IOException, MetadataException, SQLException {
 
     QueryContext context = genQueryContext(queryId);
+    queryId2Context.put(queryId, context);
+    QueryMemoryManager.getInstance().admit(queryId, physicalPlan, context.getMemoryTracker());
     QueryDataSet queryDataSet = executor.processQuery(physicalPlan, context);
     queryId2DataSet.put(queryId, queryDataSet);
     return queryDataSet;
@@ -1066,17 +1107,29 @@ public class TSServiceImpl implements TSIService.Iface, ServerContext {
       return resp;
     }
 
-    InsertPlan plan = new InsertPlan();
+    InsertPlan[] plans = new InsertPlan[req.deviceIds.size()];
+    TSStatus[] authorityStatuses = new TSStatus[req.deviceIds.size()];
+    List<PhysicalPlan> authorizedPlans = new ArrayList<>(req.deviceIds.size());
     for (int i = 0; i < req.deviceIds.size(); i++) {
+      InsertPlan plan = new InsertPlan();
       plan.setDeviceId(req.getDeviceIds().get(i));
       plan.setTime(req.getTimestamps().get(i));
       plan.setMeasurements(req.getMeasurementsList().get(i).toArray(new String[0]));
       plan.setValues(req.getValuesList().get(i).toArray(new String[0]));
-      TSStatus status = checkAuthority(plan, req.getSessionId());
-      if (status != null) {
-        resp.addToStatusList(status);
+      plans[i] = plan;
+      authorityStatuses[i] = checkAuthority(plan, req.getSessionId());
+      if (authorityStatuses[i] == null) {
+        authorizedPlans.add(plan);
+      }
+    }
+
+    // create the new timeseries of all records at once instead of one by one
+    executor.createMissingTimeseries(authorizedPlans);
+    for (int i = 0; i < plans.length; i++) {
+      if (authorityStatuses[i] != null) {
+        resp.addToStatusList(authorityStatuses[i]);
       } else {
-        resp.addToStatusList(executePlan(plan));
+        resp.addToStatusList(executePlan(plans[i]));
       }
     }
 
@@ -1135,6 +1188,14 @@ public class TSServiceImpl implements TSIService.Iface, ServerContext {
 
     DeletePlan plan = new DeletePlan();
     plan.setDeleteTime(req.getTimestamp());
+    if (req.isSetStartTime()) {
+      if (req.getStartTime() > req.getTimestamp()) {
+        return RpcUtils.getStatus(TSStatusCode.EXECUTE_STATEMENT_ERROR, String.format(
+            "The start time %d of the deletion is greater than its end time %d",
+            req.getStartTime(), req.getTimestamp()));
+      }
+      plan.setDeleteStartTime(req.getStartTime());
+    }
     List<Path> paths = new ArrayList<>();
     for (String path : req.getPaths()) {
       paths.add(new Path(path));
@@ -1206,7 +1267,9 @@ public class TSServiceImpl implements TSIService.Iface, ServerContext {
         return RpcUtils.getTSBatchExecuteStatementResp(TSStatusCode.NOT_LOGIN_ERROR);
       }
 
-      List<TSStatus> statusList = new ArrayList<>();
+      InsertTabletPlan[] plans = new InsertTabletPlan[req.deviceIds.size()];
+      TSStatus[] authorityStatuses = new TSStatus[req.deviceIds.size()];
+      List<PhysicalPlan> authorizedPlans = new ArrayList<>(req.deviceIds.size());
       for (int i = 0; i < req.deviceIds.size(); i++) {
         InsertTabletPlan insertTabletPlan = new InsertTabletPlan(req.deviceIds.get(i),
             req.measurementsList.get(i));
@@ -1218,14 +1281,23 @@ public class TSServiceImpl implements TSIService.Iface, ServerContext {
                 req.sizeList.get(i)));
         insertTabletPlan.setRowCount(req.sizeList.get(i));
         insertTabletPlan.setDataTypes(req.typesList.get(i));
+        plans[i] = insertTabletPlan;
+        authorityStatuses[i] = checkAuthority(insertTabletPlan, req.getSessionId());
+        if (authorityStatuses[i] == null) {
+          authorizedPlans.add(insertTabletPlan);
+        }
+      }
 
+      // create the new timeseries of all tablets at once instead of one by one
+      executor.createMissingTimeseries(authorizedPlans);
+      List<TSStatus> statusList = new ArrayList<>();
+      for (int i = 0; i < plans.length; i++) {
         boolean isCurrentTabletSuccessful = true;
-        TSStatus status = checkAuthority(insertTabletPlan, req.getSessionId());
-        if (status != null) {
-          statusList.add(status);
+        if (authorityStatuses[i] != null) {
+          statusList.add(authorityStatuses[i]);
           continue;
         }
-        TSStatus[] tsStatusArray = executor.insertTablet(insertTabletPlan);
+        TSStatus[] tsStatusArray = executor.insertTablet(plans[i]);
         TSStatus failed = RpcUtils.getStatus(TSStatusCode.INTERNAL_SERVER_ERROR);
 
         for (TSStatus tsStatus : tsStatusArray) {
@@ -1320,7 +1392,9 @@ public class TSServiceImpl implements TSIService.Iface, ServerContext {
       return RpcUtils.getTSBatchExecuteStatementResp(TSStatusCode.NOT_LOGIN_ERROR);
     }
 
-    List<TSStatus> statusList = new ArrayList<>(req.paths.size());
+    TSStatus[] statuses = new TSStatus[req.paths.size()];
+    List<CreateTimeSeriesPlan> plans = new ArrayList<>(req.paths.size());
+    List<Integer> planIndexes = new ArrayList<>(req.paths.size());
     for (int i = 0; i < req.paths.size(); i++) {
       CreateTimeSeriesPlan plan = new CreateTimeSeriesPlan(new Path(req.getPaths().get(i)),
           TSDataType.values()[req.dataTypes.get(i)], TSEncoding.values()[req.encodings.get(i)],
@@ -1333,19 +1407,35 @@ public class TSServiceImpl implements TSIService.Iface, ServerContext {
       TSStatus status = checkPathValidity(req.paths.get(i));
       if (status != null) {
         // path naming is not valid
-        statusList.add(status);
+        statuses[i] = status;
         continue;
       }
 
       status = checkAuthority(plan, req.getSessionId());
       if (status != null) {
         // not authorized
-        statusList.add(status);
+        statuses[i] = status;
         continue;
       }
 
-      statusList.add(executePlan(plan));
+      plans.add(plan);
+      planIndexes.add(i);
+    }
+
+    if (!plans.isEmpty()) {
+      // create all timeseries in one batch instead of one by one
+      try {
+        TSStatus[] batchStatuses = executor.createTimeseries(plans);
+        for (int k = 0; k < plans.size(); k++) {
+          statuses[planIndexes.get(k)] = batchStatuses[k];
+        }
+      } catch (QueryProcessException e) {
+        for (int index : planIndexes) {
+          statuses[index] = RpcUtils.getStatus(e.getErrorCode(), e.getMessage());
+        }
+      }
     }
+    List<TSStatus> statusList = Arrays.asList(statuses);
 
     boolean isAllSuccessful = true;
     for (TSStatus tsStatus : statusList) {
@@ -113,6 +113,7 @@ public class FileLoaderUtils {
       if (filter != null && !filter
           .satisfyStartEndTime(timeSeriesMetadata.getStatistics().getStartTime(),
               timeSeriesMetadata.getStatistics().getEndTime())) {
+        context.getQueryStatistics().increasePrunedFileNum();
         return null;
       }
     }
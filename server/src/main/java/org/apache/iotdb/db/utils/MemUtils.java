@@ -21,6 +21,7 @@ package org.apache.iotdb.db.utils;
 import org.apache.iotdb.db.conf.IoTDBConstant;
 import org.apache.iotdb.db.qp.physical.crud.InsertTabletPlan;
 import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
+import org.apache.iotdb.tsfile.read.common.BatchData;
 import org.apache.iotdb.tsfile.utils.Binary;
 import org.apache.iotdb.tsfile.utils.RamUsageEstimator;
 import org.apache.iotdb.tsfile.write.record.TSRecord;
@@ -65,6 +66,36 @@ public class MemUtils {
     }
   }
 
+  /**
+   * function for getting the size of pointNum values of the given type, the content of binary
+   * values is not counted.
+   */
+  public static long getRecordsSize(TSDataType dataType, long pointNum) {
+    switch (dataType) {
+      case INT32:
+      case FLOAT:
+        return pointNum * (8L + 4L);
+      case BOOLEAN:
+        return pointNum * (8L + 1L);
+      default:
+        return pointNum * (8L + 8L);
+    }
+  }
+
+  /**
+   * function for getting the size of the points in the given batch data.
+   */
+  public static long getBatchDataSize(BatchData batchData) {
+    if (batchData.getDataType() != TSDataType.TEXT) {
+      return getRecordsSize(batchData.getDataType(), batchData.length());
+    }
+    long memSize = 0;
+    for (int i = 0; i < batchData.length(); i++) {
+      memSize += 8L + getBinarySize(batchData.getBinaryByIndex(i));
+    }
+    return memSize;
+  }
+
   public static long getBinarySize(Binary value) {
     return RamUsageEstimator.NUM_BYTES_OBJECT_HEADER + RamUsageEstimator
         .sizeOf(value.getValues());
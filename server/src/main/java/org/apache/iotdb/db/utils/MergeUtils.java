@@ -204,7 +204,10 @@ public class MergeUtils {
     while (!chunkMetaHeap.isEmpty()) {
       MetaListEntry metaListEntry = chunkMetaHeap.poll();
       ChunkMetadata currMeta = metaListEntry.current();
-      Chunk chunk = tsFileReader.readMemChunk(currMeta);
+      Chunk chunk;
+      synchronized (tsFileReader) {
+        chunk = tsFileReader.readMemChunk(currMeta);
+      }
       ret[metaListEntry.pathId].add(chunk);
       if (metaListEntry.hasNext()) {
         metaListEntry.next();
@@ -45,46 +45,35 @@ public class QueryUtils {
    */
   public static void modifyChunkMetaData(List<ChunkMetadata> chunkMetaData,
                                          List<Modification> modifications) {
-    int modIndex = 0;
-
-    for (int metaIndex = 0; metaIndex < chunkMetaData.size(); metaIndex++) {
-      ChunkMetadata metaData = chunkMetaData.get(metaIndex);
-      for (int j = modIndex; j < modifications.size(); j++) {
-        // iterate each modification to find the max deletion time
-        Modification modification = modifications.get(j);
+    for (ChunkMetadata metaData : chunkMetaData) {
+      for (Modification modification : modifications) {
+        // only the modifications after the Chunk apply to it
         if (modification.getVersionNum() > metaData.getVersion()) {
-          // this modification is after the Chunk, try modifying the chunk
-          // if this modification succeeds, update modIndex so in the next loop the previous
-          // modifications will not be examined
-          modIndex = doModifyChunkMetaData(modification, metaData)? j : modIndex;
-        } else {
-          // skip old modifications for next metadata
-          modIndex++;
+          doModifyChunkMetaData(modification, metaData);
         }
       }
     }
     // remove chunks that are completely deleted
     chunkMetaData.removeIf(metaData -> {
-      if (metaData.getDeletedAt() >= metaData.getEndTime()) {
+      if (metaData.isFullyDeleted()) {
         return true;
-      } else {
-        if (metaData.getDeletedAt() >= metaData.getStartTime()) {
-          metaData.setModified(true);
-        }
-        return false;
       }
+      if (metaData.getDeleteIntervalList() != null) {
+        metaData.setModified(true);
+      }
+      return false;
     });
   }
 
-  private static boolean doModifyChunkMetaData(Modification modification, ChunkMetadata metaData) {
+  private static void doModifyChunkMetaData(Modification modification, ChunkMetadata metaData) {
     if (modification instanceof Deletion) {
       Deletion deletion = (Deletion) modification;
-      if (metaData.getDeletedAt() < deletion.getTimestamp()) {
-        metaData.setDeletedAt(deletion.getTimestamp());
-        return true;
+      // only keep the deleted ranges within the chunk
+      if (deletion.getStartTime() <= metaData.getEndTime()
+          && deletion.getEndTime() >= metaData.getStartTime()) {
+        metaData.insertIntoSortedDeletions(deletion.getStartTime(), deletion.getEndTime());
       }
     }
-    return false;
   }
 
   // remove files that do not satisfy the filter
@@ -202,12 +202,15 @@ public abstract class TVList {
     PrimitiveArrayPool.getInstance().release(timestamps.remove(timestamps.size() - 1));
   }
 
-  public void delete(long upperBound) {
+  /**
+   * Delete the points whose timestamp is within [lowerBound, upperBound].
+   */
+  public void delete(long lowerBound, long upperBound) {
     int newSize = 0;
     minTime = Long.MAX_VALUE;
     for (int i = 0; i < size; i++) {
       long time = getTime(i);
-      if (time > upperBound) {
+      if (time < lowerBound || time > upperBound) {
         set(i, newSize++);
         minTime = time < minTime ? time : minTime;
       }
@@ -218,7 +221,7 @@ public abstract class TVList {
     if (newSize % ARRAY_SIZE != 0) {
       newArrayNum++;
     }
-    for (int releaseIdx = newArrayNum; releaseIdx < timestamps.size(); releaseIdx++) {
+    while (timestamps.size() > newArrayNum) {
       releaseLastTimeArray();
       releaseLastValueArray();
     }
@@ -117,9 +117,10 @@ public class LogReplayer {
   private void replayDelete(DeletePlan deletePlan) throws IOException {
     List<Path> paths = deletePlan.getPaths();
     for (Path path : paths) {
-      recoverMemTable.delete(path.getDevice(), path.getMeasurement(), deletePlan.getDeleteTime());
-      modFile
-          .write(new Deletion(path, versionController.nextVersion(), deletePlan.getDeleteTime()));
+      recoverMemTable.delete(path.getDevice(), path.getMeasurement(),
+          deletePlan.getDeleteStartTime(), deletePlan.getDeleteTime());
+      modFile.write(new Deletion(path, versionController.nextVersion(),
+          deletePlan.getDeleteStartTime(), deletePlan.getDeleteTime()));
     }
   }
 
@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.engine.merge;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.apache.commons.io.FileUtils;
+import org.apache.iotdb.db.conf.IoTDBDescriptor;
+import org.apache.iotdb.db.constant.TestConstant;
+import org.apache.iotdb.db.engine.cache.ChunkMetadataCache;
+import org.apache.iotdb.db.engine.merge.task.CompactionTask;
+import org.apache.iotdb.db.engine.storagegroup.TsFileResource;
+import org.apache.iotdb.db.metadata.MManager;
+import org.apache.iotdb.db.query.context.QueryContext;
+import org.apache.iotdb.db.query.control.FileReaderManager;
+import org.apache.iotdb.db.query.reader.series.SeriesRawDataBatchReader;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSEncoding;
+import org.apache.iotdb.tsfile.read.common.Path;
+import org.apache.iotdb.tsfile.read.reader.IBatchReader;
+
+/**
+ * Compares the time of querying every timeseries over many small sequence files with that over
+ * the file they are compacted into.
+ */
+public class CompactionPerfTest extends MergeTest {
+
+  private long queryTimeBefore;
+  private long queryTimeAfter;
+  private long compactionTime;
+  private File tempSGDir;
+
+  public void test() throws Exception {
+    MManager.getInstance().init();
+    tempSGDir = new File(TestConstant.BASE_OUTPUT_PATH.concat("tempSG"));
+    tempSGDir.mkdirs();
+    setUp();
+    IoTDBDescriptor.getInstance().getConfig().setChunkMergePointThreshold(100000);
+
+    queryTimeBefore = queryAll(seqResources);
+
+    compactionTime = System.currentTimeMillis();
+    CompactionTask compactionTask = new CompactionTask(seqResources, tempSGDir.getPath(),
+        (sources, target, logFile) -> logFile.delete(), "test");
+    compactionTask.call();
+    compactionTime = System.currentTimeMillis() - compactionTime;
+
+    TsFileResource targetFile = compactionTask.getTargetFile();
+    queryTimeAfter = queryAll(Collections.singletonList(targetFile));
+
+    FileReaderManager.getInstance().closeAndRemoveAllOpenedReaders();
+    targetFile.remove();
+    tearDown();
+    FileUtils.deleteDirectory(tempSGDir);
+  }
+
+  private long queryAll(List<TsFileResource> resources) throws Exception {
+    ChunkMetadataCache.getInstance().clear();
+    FileReaderManager.getInstance().closeAndRemoveAllOpenedReaders();
+    long startTime = System.currentTimeMillis();
+    for (String deviceId : deviceIds) {
+      for (int i = 0; i < measurementNum; i++) {
+        Path path = new Path(deviceId, measurementSchemas[i].getMeasurementId());
+        IBatchReader reader = new SeriesRawDataBatchReader(path, measurementSchemas[i].getType(),
+            new QueryContext(), new ArrayList<>(resources), new ArrayList<>(), null, null);
+        while (reader.hasNextBatch()) {
+          reader.nextBatch();
+        }
+        reader.close();
+      }
+    }
+    return System.currentTimeMillis() - startTime;
+  }
+
+  public static void main(String[] args) throws Exception {
+    CompactionPerfTest perfTest = new CompactionPerfTest();
+
+    // many small files with small chunks, as produced by frequent flushes
+    perfTest.seqFileNum = 200;
+    perfTest.unseqFileNum = 0;
+    perfTest.measurementNum = 20;
+    perfTest.deviceNum = 10;
+    perfTest.ptNum = 500;
+    perfTest.flushInterval = 100;
+    perfTest.encoding = TSEncoding.PLAIN;
+
+    for (int i = 0; i < 2; i++) {
+      // the first round is a cache warm-up
+      perfTest.test();
+    }
+    System.out.println(String.format("Query before compaction: %dms, compaction: %dms, query "
+            + "after compaction: %dms", perfTest.queryTimeBefore, perfTest.compactionTime,
+        perfTest.queryTimeAfter));
+  }
+}
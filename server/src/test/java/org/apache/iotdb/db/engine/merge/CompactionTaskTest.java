@@ -0,0 +1,320 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.engine.merge;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.apache.commons.io.FileUtils;
+import org.apache.iotdb.db.conf.IoTDBDescriptor;
+import org.apache.iotdb.db.constant.TestConstant;
+import org.apache.iotdb.db.engine.merge.recover.CompactionLogger;
+import org.apache.iotdb.db.engine.merge.selector.CompactionFileSelector;
+import org.apache.iotdb.db.engine.merge.task.CompactionTask;
+import org.apache.iotdb.db.engine.merge.task.RecoverCompactionTask;
+import org.apache.iotdb.db.engine.modification.Deletion;
+import org.apache.iotdb.db.engine.storagegroup.TsFileResource;
+import org.apache.iotdb.db.exception.StorageEngineException;
+import org.apache.iotdb.db.exception.metadata.MetadataException;
+import org.apache.iotdb.db.query.context.QueryContext;
+import org.apache.iotdb.db.query.reader.series.SeriesRawDataBatchReader;
+import org.apache.iotdb.tsfile.exception.write.WriteProcessException;
+import org.apache.iotdb.tsfile.file.metadata.ChunkMetadata;
+import org.apache.iotdb.tsfile.read.TsFileSequenceReader;
+import org.apache.iotdb.tsfile.read.common.BatchData;
+import org.apache.iotdb.tsfile.read.common.Path;
+import org.apache.iotdb.tsfile.read.reader.IBatchReader;
+import org.apache.iotdb.tsfile.write.TsFileWriter;
+import org.apache.iotdb.tsfile.write.record.TSRecord;
+import org.apache.iotdb.tsfile.write.record.datapoint.DoubleDataPoint;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CompactionTaskTest extends MergeTest {
+
+  private File tempSGDir;
+  private TsFileResource targetFile;
+
+  @Before
+  public void setUp() throws IOException, WriteProcessException, MetadataException {
+    super.setUp();
+    IoTDBDescriptor.getInstance().getConfig().setChunkMergePointThreshold(200);
+    tempSGDir = new File(TestConstant.BASE_OUTPUT_PATH.concat("tempSG"));
+    tempSGDir.mkdirs();
+  }
+
+  @After
+  public void tearDown() throws IOException, StorageEngineException {
+    if (targetFile != null) {
+      targetFile.remove();
+    }
+    super.tearDown();
+    FileUtils.deleteDirectory(tempSGDir);
+  }
+
+  @Test
+  public void testCompaction() throws Exception {
+    CompactionTask compactionTask = new CompactionTask(seqResources, tempSGDir.getPath(),
+        (sources, target, logFile) -> logFile.delete(), "test");
+    targetFile = compactionTask.getTargetFile();
+    compactionTask.call();
+
+    Path path = new Path(deviceIds[0], measurementSchemas[0].getMeasurementId());
+    try (TsFileSequenceReader reader = new TsFileSequenceReader(targetFile.getPath())) {
+      // 5 files of 100 points each are rewritten into chunks of at most 200 points, whose pages
+      // are appended from the source chunks of 20 points
+      List<ChunkMetadata> chunkMetadataList = reader.getChunkMetadataList(path);
+      assertEquals(3, chunkMetadataList.size());
+      int[] expectedPageNums = {10, 10, 5};
+      for (int i = 0; i < chunkMetadataList.size(); i++) {
+        assertEquals(expectedPageNums[i],
+            reader.readMemChunk(chunkMetadataList.get(i)).getHeader().getNumOfPages());
+      }
+    }
+    assertEquals(0, targetFile.getStartTime(deviceIds[0]));
+    assertEquals(seqFileNum * ptNum - 1, targetFile.getEndTime(deviceIds[0]));
+    Set<Long> expectedVersions = new HashSet<>();
+    for (long i = 0; i < seqFileNum; i++) {
+      expectedVersions.add(i);
+    }
+    assertEquals(expectedVersions, targetFile.getHistoricalVersions());
+    assertFalse(new File(tempSGDir, CompactionLogger.COMPACTION_LOG_NAME).exists());
+
+    long count = 0;
+    IBatchReader tsFilesReader = createReader(path);
+    while (tsFilesReader.hasNextBatch()) {
+      BatchData batchData = tsFilesReader.nextBatch();
+      for (int i = 0; i < batchData.length(); i++) {
+        assertEquals(count, batchData.getTimeByIndex(i));
+        assertEquals(batchData.getTimeByIndex(i), batchData.getDoubleByIndex(i), 0.001);
+        count++;
+      }
+    }
+    tsFilesReader.close();
+    assertEquals(seqFileNum * ptNum, count);
+  }
+
+  @Test
+  public void testCompactionWithDeletion() throws Exception {
+    Path path = new Path(deviceIds[0], measurementSchemas[0].getMeasurementId());
+    try {
+      seqResources.get(0).getModFile().write(new Deletion(path, 10000, 50));
+    } finally {
+      seqResources.get(0).getModFile().close();
+    }
+
+    // the chunk of [40, 59] is decoded and the following chunks are appended
+    CompactionTask compactionTask = new CompactionTask(seqResources, tempSGDir.getPath(),
+        (sources, target, logFile) -> logFile.delete(), "test");
+    targetFile = compactionTask.getTargetFile();
+    compactionTask.call();
+
+    long count = 0;
+    IBatchReader tsFilesReader = createReader(path);
+    while (tsFilesReader.hasNextBatch()) {
+      BatchData batchData = tsFilesReader.nextBatch();
+      for (int i = 0; i < batchData.length(); i++) {
+        assertEquals(count + 51, batchData.getTimeByIndex(i));
+        count++;
+      }
+    }
+    tsFilesReader.close();
+    assertEquals(seqFileNum * ptNum - 51, count);
+  }
+
+  @Test
+  public void testCompactionTrimsExpiredData() throws Exception {
+    // the first file is entirely expired and the second one is half expired
+    CompactionTask compactionTask = new CompactionTask(seqResources, tempSGDir.getPath(),
+        (sources, target, logFile) -> logFile.delete(), "test", 150, Collections.emptySet());
+    targetFile = compactionTask.getTargetFile();
+    compactionTask.call();
+    assertEquals(150, targetFile.getStartTime(deviceIds[0]));
+
+    Path path = new Path(deviceIds[0], measurementSchemas[0].getMeasurementId());
+    long count = 0;
+    IBatchReader tsFilesReader = createReader(path);
+    while (tsFilesReader.hasNextBatch()) {
+      BatchData batchData = tsFilesReader.nextBatch();
+      for (int i = 0; i < batchData.length(); i++) {
+        assertEquals(count + 150, batchData.getTimeByIndex(i));
+        count++;
+      }
+    }
+    tsFilesReader.close();
+    assertEquals(seqFileNum * ptNum - 150, count);
+  }
+
+  @Test
+  public void testCompactionKeepsVersionsOverlappedByUnseq() throws Exception {
+    Path path = new Path(deviceIds[0], measurementSchemas[0].getMeasurementId());
+    List<TsFileResource> sourceFiles = new ArrayList<>();
+    TsFileResource unseqFile = null;
+    try {
+      sourceFiles.add(prepareVersionedFile("100-100-0.tsfile", path, 0, 100, 5, 0));
+      sourceFiles.add(prepareVersionedFile("101-101-0.tsfile", path, 100, 100, 9, 0));
+      // the unsequence data is newer than the first source file but older than the second one
+      unseqFile = prepareVersionedFile("102-102-0.tsfile", path, 50, 100, 7, 10000);
+
+      CompactionTask compactionTask = new CompactionTask(sourceFiles, tempSGDir.getPath(),
+          (sources, target, logFile) -> logFile.delete(), "test", Long.MIN_VALUE,
+          Collections.singleton(deviceIds[0]));
+      targetFile = compactionTask.getTargetFile();
+      compactionTask.call();
+
+      try (TsFileSequenceReader reader = new TsFileSequenceReader(targetFile.getPath())) {
+        List<ChunkMetadata> chunkMetadataList = reader.getChunkMetadataList(path);
+        assertEquals(2, chunkMetadataList.size());
+        assertEquals(5, chunkMetadataList.get(0).getVersion());
+        assertEquals(9, chunkMetadataList.get(1).getVersion());
+      }
+
+      long count = 0;
+      IBatchReader tsFilesReader = new SeriesRawDataBatchReader(path,
+          measurementSchemas[0].getType(), new QueryContext(),
+          new ArrayList<>(Collections.singletonList(targetFile)),
+          new ArrayList<>(Collections.singletonList(unseqFile)), null, null);
+      while (tsFilesReader.hasNextBatch()) {
+        BatchData batchData = tsFilesReader.nextBatch();
+        for (int i = 0; i < batchData.length(); i++) {
+          long time = batchData.getTimeByIndex(i);
+          assertEquals(count, time);
+          // the unsequence data only overwrites the data of the lower version
+          double expectedValue = time >= 50 && time < 100 ? time + 10000 : time;
+          assertEquals(expectedValue, batchData.getDoubleByIndex(i), 0.001);
+          count++;
+        }
+      }
+      tsFilesReader.close();
+      assertEquals(200, count);
+    } finally {
+      for (TsFileResource sourceFile : sourceFiles) {
+        sourceFile.remove();
+      }
+      if (unseqFile != null) {
+        unseqFile.remove();
+      }
+    }
+  }
+
+  @Test
+  public void testSelector() {
+    long fileSize = seqResources.get(0).getFileSize();
+    CompactionFileSelector selector = new CompactionFileSelector(2, Long.MAX_VALUE,
+        Long.MIN_VALUE);
+    assertEquals(seqResources, selector.select(seqResources));
+
+    // a file being merged splits the files into runs that are too short
+    seqResources.get(2).setMerging(true);
+    selector = new CompactionFileSelector(3, Long.MAX_VALUE, Long.MIN_VALUE);
+    assertTrue(selector.select(seqResources).isEmpty());
+    selector = new CompactionFileSelector(2, Long.MAX_VALUE, Long.MIN_VALUE);
+    assertEquals(seqResources.subList(0, 2), selector.select(seqResources));
+    seqResources.get(2).setMerging(false);
+
+    // only 3 files fit in the target size
+    selector = new CompactionFileSelector(2, fileSize * 3 + 1, Long.MIN_VALUE);
+    assertEquals(seqResources.subList(0, 3), selector.select(seqResources));
+  }
+
+  @Test
+  public void testModificationSelector() throws IOException {
+    // no run is long enough, so only a file with modifications can be selected
+    CompactionFileSelector selector = new CompactionFileSelector(Integer.MAX_VALUE,
+        Long.MAX_VALUE, Long.MIN_VALUE, 1);
+    assertTrue(selector.select(seqResources).isEmpty());
+
+    seqResources.get(1).getModFile().write(new Deletion(new Path(deviceIds[0],
+        measurementSchemas[0].getMeasurementId()), 10000, 50));
+    seqResources.get(1).getModFile().close();
+    assertEquals(Collections.singletonList(seqResources.get(1)), selector.select(seqResources));
+
+    // a file being merged is not selected
+    seqResources.get(1).setMerging(true);
+    assertTrue(selector.select(seqResources).isEmpty());
+    seqResources.get(1).setMerging(false);
+  }
+
+  @Test
+  public void testExpiredSelector() {
+    // the first file [0, 99] is entirely expired and left to the TTL check, while less than half
+    // of the second file [100, 199] is expired
+    CompactionFileSelector selector = new CompactionFileSelector(Integer.MAX_VALUE,
+        Long.MAX_VALUE, 140);
+    assertTrue(selector.select(seqResources).isEmpty());
+
+    selector = new CompactionFileSelector(Integer.MAX_VALUE, Long.MAX_VALUE, 160);
+    assertEquals(Collections.singletonList(seqResources.get(1)), selector.select(seqResources));
+  }
+
+  @Test
+  public void testRecover() throws Exception {
+    // the log stays as if the system crashed before the source files are removed
+    CompactionTask compactionTask = new CompactionTask(seqResources, tempSGDir.getPath(),
+        (sources, target, logFile) -> {
+        }, "test");
+    targetFile = compactionTask.getTargetFile();
+    compactionTask.call();
+    File logFile = new File(tempSGDir, CompactionLogger.COMPACTION_LOG_NAME);
+    assertTrue(logFile.exists());
+
+    new RecoverCompactionTask(tempSGDir.getPath()).recoverCompaction();
+    for (TsFileResource seqResource : seqResources) {
+      assertFalse(seqResource.getFile().exists());
+    }
+    assertTrue(targetFile.getFile().exists());
+    assertFalse(logFile.exists());
+  }
+
+  private TsFileResource prepareVersionedFile(String fileName, Path path, long timeOffset,
+      long ptNum, long version, long valueOffset) throws IOException, WriteProcessException {
+    TsFileResource resource = new TsFileResource(
+        new File(TestConstant.BASE_OUTPUT_PATH.concat(fileName)));
+    resource.setClosed(true);
+    resource.setHistoricalVersions(Collections.singleton(version));
+    TsFileWriter fileWriter = new TsFileWriter(resource.getFile());
+    fileWriter.registerTimeseries(path, measurementSchemas[0]);
+    for (long i = timeOffset; i < timeOffset + ptNum; i++) {
+      TSRecord record = new TSRecord(i, path.getDevice());
+      record.addTuple(new DoubleDataPoint(path.getMeasurement(), i + valueOffset));
+      fileWriter.write(record);
+      resource.updateStartTime(path.getDevice(), i);
+      resource.updateEndTime(path.getDevice(), i);
+    }
+    fileWriter.flushAllChunkGroups();
+    fileWriter.writeVersion(version);
+    fileWriter.close();
+    return resource;
+  }
+
+  private IBatchReader createReader(Path path) throws IOException {
+    List<TsFileResource> resources = new ArrayList<>(Collections.singletonList(targetFile));
+    return new SeriesRawDataBatchReader(path, measurementSchemas[0].getType(), new QueryContext(),
+        resources, new ArrayList<>(), null, null);
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.engine.merge;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.iotdb.db.constant.TestConstant;
+import org.apache.iotdb.db.engine.merge.manage.MergeResource;
+import org.apache.iotdb.db.engine.merge.selector.CostBasedMergeFileSelector;
+import org.apache.iotdb.db.engine.merge.selector.IMergeFileSelector;
+import org.apache.iotdb.db.engine.storagegroup.TsFileResource;
+import org.apache.iotdb.db.exception.MergeException;
+import org.junit.Test;
+
+public class CostBasedMergeFileSelectorTest extends MergeTest {
+
+  @Test
+  public void testRankByQueryHeat() throws IOException {
+    long currentTime = System.currentTimeMillis();
+    for (int i = 0; i < 100; i++) {
+      unseqResources.get(3).recordQuery(currentTime);
+    }
+    MergeResource resource = new MergeResource(seqResources, unseqResources);
+    List<TsFileResource> rankedFiles = new CostBasedMergeFileSelector(resource, Long.MAX_VALUE)
+        .rank(unseqResources);
+    assertEquals(unseqResources.get(3), rankedFiles.get(0));
+    resource.clear();
+  }
+
+  @Test
+  public void testConcurrentRecordQuery() throws InterruptedException {
+    TsFileResource resource = unseqResources.get(0);
+    long currentTime = System.currentTimeMillis();
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      threads.add(new Thread(() -> {
+        for (int j = 0; j < 1000; j++) {
+          resource.recordQuery(currentTime);
+        }
+      }));
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    // no query is lost, and the heat halves every hour
+    assertEquals(4000, resource.getQueryHeat(currentTime), 0.001);
+    assertEquals(2000, resource.getQueryHeat(currentTime + 3600_000L), 0.001);
+  }
+
+  @Test
+  public void testRankByOverlap() throws IOException {
+    // an unseqFile that overlaps no seqFile does not reduce the cost of merge reads
+    TsFileResource noOverlapFile = new TsFileResource(
+        new File(TestConstant.BASE_OUTPUT_PATH.concat("noOverlap.tsfile")));
+    noOverlapFile.updateStartTime(deviceIds[0], seqFileNum * ptNum + 100);
+    noOverlapFile.updateEndTime(deviceIds[0], seqFileNum * ptNum + 200);
+    List<TsFileResource> unseqFiles = Arrays.asList(noOverlapFile, unseqResources.get(0));
+    MergeResource resource = new MergeResource(seqResources, unseqFiles);
+    List<TsFileResource> rankedFiles = new CostBasedMergeFileSelector(resource, Long.MAX_VALUE)
+        .rank(unseqFiles);
+    assertEquals(Arrays.asList(unseqResources.get(0), noOverlapFile), rankedFiles);
+    resource.clear();
+  }
+
+  @Test
+  public void testFullSelection() throws MergeException, IOException {
+    long currentTime = System.currentTimeMillis();
+    unseqResources.get(4).recordQuery(currentTime);
+    MergeResource resource = new MergeResource(seqResources, unseqResources);
+    IMergeFileSelector mergeFileSelector = new CostBasedMergeFileSelector(resource,
+        Long.MAX_VALUE);
+    List[] result = mergeFileSelector.select();
+    // the selected unseqFiles are still in the order of their versions
+    assertEquals(seqResources, result[0]);
+    assertEquals(unseqResources, result[1]);
+    assertEquals(unseqResources, resource.getUnseqFiles());
+    resource.clear();
+  }
+
+  @Test
+  public void testNonSelection() throws MergeException, IOException {
+    MergeResource resource = new MergeResource(seqResources, new ArrayList<>(unseqResources));
+    IMergeFileSelector mergeFileSelector = new CostBasedMergeFileSelector(resource, 1);
+    List[] result = mergeFileSelector.select();
+    assertEquals(0, result.length);
+    resource.clear();
+  }
+}
@@ -20,14 +20,22 @@
 package org.apache.iotdb.db.engine.merge;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
+import org.apache.iotdb.db.constant.TestConstant;
 import org.apache.iotdb.db.engine.merge.manage.MergeResource;
 import org.apache.iotdb.db.engine.merge.selector.MaxFileMergeFileSelector;
 import org.apache.iotdb.db.engine.merge.selector.IMergeFileSelector;
 import org.apache.iotdb.db.engine.storagegroup.TsFileResource;
 import org.apache.iotdb.db.exception.MergeException;
+import org.apache.iotdb.tsfile.read.common.Path;
+import org.apache.iotdb.tsfile.write.TsFileWriter;
+import org.apache.iotdb.tsfile.write.record.TSRecord;
+import org.apache.iotdb.tsfile.write.record.datapoint.DoubleDataPoint;
 import org.junit.Test;
 
 public class MaxFileMergeFileSelectorTest extends MergeTest {
@@ -82,4 +90,41 @@ public class MaxFileMergeFileSelectorTest extends MergeTest {
     assertEquals(unseqResources.subList(0, 3), unseqSelected);
     resource.clear();
   }
+
+  @Test
+  public void testDegradedSeqFileSelection() throws Exception {
+    // a sequence file of device1 only, whose time index is degraded
+    TsFileResource degradedFile = new TsFileResource(
+        new File(TestConstant.BASE_OUTPUT_PATH.concat("100-100-0.tsfile")));
+    try {
+      TsFileWriter fileWriter = new TsFileWriter(degradedFile.getFile());
+      Path path = new Path(deviceIds[1], measurementSchemas[0].getMeasurementId());
+      fileWriter.registerTimeseries(path, measurementSchemas[0]);
+      for (long i = 0; i < ptNum; i++) {
+        TSRecord record = new TSRecord(i, deviceIds[1]);
+        record.addTuple(new DoubleDataPoint(path.getMeasurement(), i));
+        fileWriter.write(record);
+        degradedFile.updateStartTime(deviceIds[1], i);
+        degradedFile.updateEndTime(deviceIds[1], i);
+      }
+      fileWriter.close();
+      degradedFile.serialize();
+      degradedFile.close();
+      degradedFile.degradeTimeIndex();
+      assertTrue(degradedFile.isTimeIndexDegraded());
+
+      // the other devices of the unseqFile go to the next seqFile, as they are not in the
+      // degraded one, though the time range of the whole file covers them
+      List<TsFileResource> seqFiles = Arrays.asList(degradedFile, seqResources.get(1));
+      MergeResource resource = new MergeResource(seqFiles, unseqResources.subList(0, 1));
+      IMergeFileSelector mergeFileSelector = new MaxFileMergeFileSelector(resource,
+          Long.MAX_VALUE);
+      List[] result = mergeFileSelector.select();
+      assertEquals(seqFiles, result[0]);
+      assertEquals(unseqResources.subList(0, 1), result[1]);
+      resource.clear();
+    } finally {
+      degradedFile.remove();
+    }
+  }
 }
@@ -0,0 +1,201 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.engine.merge;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.apache.commons.io.FileUtils;
+import org.apache.iotdb.db.constant.TestConstant;
+import org.apache.iotdb.db.engine.merge.manage.MergeResource;
+import org.apache.iotdb.db.engine.merge.selector.CostBasedMergeFileSelector;
+import org.apache.iotdb.db.engine.storagegroup.TsFileResource;
+
+/**
+ * Replays a synthetic file layout and query workload to compare the order in which the unseqFiles
+ * are merged: the order of their versions, which MaxFileMergeFileSelector follows, and the order of
+ * CostBasedMergeFileSelector. With the same budget of rewritten bytes, the strategy that leaves
+ * fewer unseqFiles to be read by the queries is better.
+ *
+ * The files only have their sizes (as sparse files) and time ranges, so a large layout can be
+ * simulated without writing any data.
+ */
+public class MergeFileSelectionSimulator {
+
+  private int seqFileNum = 200;
+  private int unseqFileNum = 200;
+  private int deviceNum = 20;
+  private long seqFileTimeRange = 100_000;
+  private long seqFileSize = 64L * 1024 * 1024;
+  private int queryNum = 10_000;
+  private long queryTimeRange = 50_000;
+  // the budget of bytes rewritten by the merge, as a ratio of all seqFiles
+  private double budgetRatio = 0.1;
+
+  private Random random = new Random(1);
+  private File dir = new File(TestConstant.BASE_OUTPUT_PATH.concat("mergeSimulation"));
+  private List<TsFileResource> seqFiles = new ArrayList<>();
+  private List<TsFileResource> unseqFiles = new ArrayList<>();
+  private List<long[]> queries = new ArrayList<>();
+
+  private void prepareLayout() throws IOException {
+    dir.mkdirs();
+    for (int i = 0; i < seqFileNum; i++) {
+      TsFileResource seqFile = createFile("seq" + i, seqFileSize);
+      for (int d = 0; d < deviceNum; d++) {
+        seqFile.updateStartTime(device(d), i * seqFileTimeRange);
+        seqFile.updateEndTime(device(d), (i + 1) * seqFileTimeRange - 1);
+      }
+      seqFiles.add(seqFile);
+    }
+    long totalTime = seqFileNum * seqFileTimeRange;
+    for (int i = 0; i < unseqFileNum; i++) {
+      // most unseqFiles hold a few late points spread over a long range, some hold a lot of
+      // points in a short range
+      boolean dense = random.nextInt(4) == 0;
+      long timeRange = dense ? seqFileTimeRange / 2 : seqFileTimeRange * (1 + random.nextInt(20));
+      long size = dense ? seqFileSize / 2 : seqFileSize / 64;
+      long startTime = (long) (random.nextDouble() * (totalTime - timeRange));
+      TsFileResource unseqFile = createFile("unseq" + i, size);
+      int devices = 1 + random.nextInt(deviceNum);
+      for (int d = 0; d < devices; d++) {
+        unseqFile.updateStartTime(device(d), startTime);
+        unseqFile.updateEndTime(device(d), startTime + timeRange - 1);
+      }
+      unseqFiles.add(unseqFile);
+    }
+    // recent data are queried more
+    for (int i = 0; i < queryNum; i++) {
+      double recency = Math.pow(random.nextDouble(), 3);
+      long endTime = (long) (totalTime * (1 - recency));
+      queries.add(new long[]{Math.max(0, endTime - queryTimeRange), endTime});
+    }
+  }
+
+  private TsFileResource createFile(String name, long size) throws IOException {
+    File file = new File(dir, name + ".tsfile");
+    try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+      randomAccessFile.setLength(size);
+    }
+    TsFileResource resource = new TsFileResource(file);
+    resource.setClosed(true);
+    return resource;
+  }
+
+  private static String device(int index) {
+    return "root.sim.d" + index;
+  }
+
+  private static boolean overlaps(TsFileResource file, long[] query) {
+    return file.getStartTime(device(0)) <= query[1] && file.getEndTime(device(0)) >= query[0];
+  }
+
+  /**
+   * Warm up the query heats of the files with the first half of the queries.
+   */
+  private void recordQueries() {
+    long currentTime = System.currentTimeMillis();
+    for (long[] query : queries.subList(0, queryNum / 2)) {
+      for (TsFileResource file : seqFiles) {
+        if (overlaps(file, query)) {
+          file.recordQuery(currentTime);
+        }
+      }
+      for (TsFileResource file : unseqFiles) {
+        if (overlaps(file, query)) {
+          file.recordQuery(currentTime);
+        }
+      }
+    }
+  }
+
+  /**
+   * Merge the unseqFiles in the given order until the budget is used up.
+   *
+   * @return the average number of unmerged unseqFiles read by the second half of the queries
+   */
+  private double replay(List<TsFileResource> order) {
+    long budget = (long) (seqFileNum * seqFileSize * budgetRatio);
+    Set<TsFileResource> mergedSeqFiles = new HashSet<>();
+    Set<TsFileResource> mergedUnseqFiles = new HashSet<>();
+    long rewrittenBytes = 0;
+    for (TsFileResource unseqFile : order) {
+      long cost = unseqFile.getFileSize();
+      List<TsFileResource> overlappedSeqFiles = new ArrayList<>();
+      for (TsFileResource seqFile : seqFiles) {
+        if (!mergedSeqFiles.contains(seqFile) && seqFile.getStartTime(device(0))
+            <= unseqFile.getEndTime(device(0))
+            && seqFile.getEndTime(device(0)) >= unseqFile.getStartTime(device(0))) {
+          overlappedSeqFiles.add(seqFile);
+          cost += seqFile.getFileSize();
+        }
+      }
+      if (rewrittenBytes + cost > budget) {
+        continue;
+      }
+      rewrittenBytes += cost;
+      mergedSeqFiles.addAll(overlappedSeqFiles);
+      mergedUnseqFiles.add(unseqFile);
+    }
+
+    long unseqFileReads = 0;
+    List<long[]> replayedQueries = queries.subList(queryNum / 2, queryNum);
+    for (long[] query : replayedQueries) {
+      for (TsFileResource unseqFile : unseqFiles) {
+        if (!mergedUnseqFiles.contains(unseqFile) && overlaps(unseqFile, query)) {
+          unseqFileReads++;
+        }
+      }
+    }
+    System.out.println(String.format("%d unseqFiles are merged with %d seqFiles, %d bytes "
+            + "rewritten", mergedUnseqFiles.size(), mergedSeqFiles.size(), rewrittenBytes));
+    return (double) unseqFileReads / replayedQueries.size();
+  }
+
+  private void simulate() throws IOException {
+    try {
+      prepareLayout();
+      recordQueries();
+      System.out.println(String.format("Before merge: %.2f unseqFiles per query",
+          replay(new ArrayList<>())));
+      System.out.println(String.format("Version order: %.2f unseqFiles per query",
+          replay(unseqFiles)));
+
+      MergeResource resource = new MergeResource(seqFiles, unseqFiles);
+      long startTime = System.currentTimeMillis();
+      List<TsFileResource> rankedFiles = new CostBasedMergeFileSelector(resource, Long.MAX_VALUE)
+          .rank(unseqFiles);
+      long rankTime = System.currentTimeMillis() - startTime;
+      System.out.println(String.format("Cost based order: %.2f unseqFiles per query, ranked in "
+          + "%dms", replay(rankedFiles), rankTime));
+      resource.clear();
+    } finally {
+      FileUtils.deleteDirectory(dir);
+    }
+  }
+
+  public static void main(String[] args) throws IOException {
+    new MergeFileSelectionSimulator().simulate();
+  }
+}
@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.engine.merge;
+
+import static org.junit.Assert.assertTrue;
+
+import org.apache.iotdb.db.conf.IoTDBConfig;
+import org.apache.iotdb.db.conf.IoTDBDescriptor;
+import org.apache.iotdb.db.engine.merge.manage.MergeRateLimiter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MergeRateLimiterTest {
+
+  private static final long MB = 1024L * 1024L;
+
+  private IoTDBConfig config = IoTDBDescriptor.getInstance().getConfig();
+  private MergeRateLimiter limiter = MergeRateLimiter.getInstance();
+  private long prevYieldTime;
+
+  @Before
+  public void setUp() {
+    prevYieldTime = config.getMergeYieldTimeMs();
+  }
+
+  @After
+  public void tearDown() {
+    limiter.setThroughputMbPerSec(config.getMergeThroughputMbPerSec());
+    config.setMergeYieldTimeMs(prevYieldTime);
+  }
+
+  @Test
+  public void testThrottle() throws Exception {
+    limiter.setThroughputMbPerSec(10);
+    long throttledTime = limiter.getThrottledTimeMs();
+    long startTime = System.currentTimeMillis();
+    // 2MB at 10MB/s takes at least 200ms
+    limiter.acquire(MB);
+    limiter.acquire(MB);
+    long elapsedTime = System.currentTimeMillis() - startTime;
+    assertTrue(elapsedTime >= 150);
+    assertTrue(limiter.getThrottledTimeMs() - throttledTime >= 150);
+
+    limiter.setThroughputMbPerSec(0);
+    startTime = System.currentTimeMillis();
+    limiter.acquire(100 * MB);
+    assertTrue(System.currentTimeMillis() - startTime < 100);
+  }
+
+  @Test
+  public void testYield() throws Exception {
+    limiter.setThroughputMbPerSec(0);
+    config.setMergeYieldTimeMs(10_000);
+    limiter.startFlush();
+    Thread flushThread = new Thread(() -> {
+      try {
+        Thread.sleep(100);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      limiter.endFlush();
+    });
+    long startTime = System.currentTimeMillis();
+    flushThread.start();
+    // the merge waits until the flush ends instead of the max yield time
+    limiter.acquire(MB);
+    long elapsedTime = System.currentTimeMillis() - startTime;
+    flushThread.join();
+    assertTrue(elapsedTime >= 50);
+    assertTrue(elapsedTime < 5_000);
+
+    // a merge does not wait longer than the max yield time
+    config.setMergeYieldTimeMs(100);
+    limiter.startQuery();
+    startTime = System.currentTimeMillis();
+    limiter.acquire(MB);
+    elapsedTime = System.currentTimeMillis() - startTime;
+    limiter.endQuery();
+    assertTrue(elapsedTime >= 50);
+    assertTrue(elapsedTime < 5_000);
+  }
+}
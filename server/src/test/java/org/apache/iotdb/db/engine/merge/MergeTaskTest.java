@@ -22,6 +22,7 @@ package org.apache.iotdb.db.engine.merge;
 import org.apache.commons.io.FileUtils;
 import org.apache.iotdb.db.conf.IoTDBDescriptor;
 import org.apache.iotdb.db.constant.TestConstant;
+import org.apache.iotdb.db.engine.merge.manage.MergeManager;
 import org.apache.iotdb.db.engine.merge.manage.MergeResource;
 import org.apache.iotdb.db.engine.merge.task.MergeTask;
 import org.apache.iotdb.db.engine.modification.Deletion;
@@ -34,6 +35,7 @@ import org.apache.iotdb.tsfile.exception.write.WriteProcessException;
 import org.apache.iotdb.tsfile.read.common.BatchData;
 import org.apache.iotdb.tsfile.read.common.Path;
 import org.apache.iotdb.tsfile.read.reader.IBatchReader;
+import org.apache.iotdb.tsfile.write.schema.MeasurementSchema;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -44,6 +46,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class MergeTaskTest extends MergeTest {
 
@@ -109,6 +112,48 @@ public class MergeTaskTest extends MergeTest {
     tsFilesReader.close();
   }
 
+  @Test
+  public void testParallelMerge() throws Exception {
+    int prevSeriesSubThreadNum = IoTDBDescriptor.getInstance().getConfig()
+        .getMergeSeriesSubThreadNum();
+    IoTDBDescriptor.getInstance().getConfig().setMergeSeriesSubThreadNum(4);
+    // restart to create the series sub-task pool with the new number of threads
+    MergeManager.getINSTANCE().stop();
+    MergeManager.getINSTANCE().start();
+    try {
+      MergeTask mergeTask =
+          new MergeTask(new MergeResource(seqResources, unseqResources), tempSGDir.getPath(),
+              (k, v, l) -> {
+              }, "test", true, 8, MERGE_TEST_SG);
+      mergeTask.call();
+    } finally {
+      IoTDBDescriptor.getInstance().getConfig().setMergeSeriesSubThreadNum(prevSeriesSubThreadNum);
+    }
+
+    QueryContext context = new QueryContext();
+    for (String deviceId : deviceIds) {
+      for (MeasurementSchema measurementSchema : measurementSchemas) {
+        Path path = new Path(deviceId, measurementSchema.getMeasurementId());
+        IBatchReader tsFilesReader = new SeriesRawDataBatchReader(path,
+            measurementSchema.getType(), context, seqResources, new ArrayList<>(), null, null);
+        long count = 0;
+        long lastTime = Long.MIN_VALUE;
+        while (tsFilesReader.hasNextBatch()) {
+          BatchData batchData = tsFilesReader.nextBatch();
+          for (int i = 0; i < batchData.length(); i++) {
+            assertTrue(batchData.getTimeByIndex(i) > lastTime);
+            lastTime = batchData.getTimeByIndex(i);
+            assertEquals(batchData.getTimeByIndex(i) + 20000.0, batchData.getDoubleByIndex(i),
+                0.001);
+            count++;
+          }
+        }
+        tsFilesReader.close();
+        assertEquals(seqFileNum * ptNum, count);
+      }
+    }
+  }
+
   @Test
   public void testChunkNumThreshold() throws Exception {
     IoTDBDescriptor.getInstance().getConfig().setChunkMergePointThreshold(Integer.MAX_VALUE);
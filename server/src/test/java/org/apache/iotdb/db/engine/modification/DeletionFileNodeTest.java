@@ -25,7 +25,7 @@ import static org.apache.iotdb.db.utils.EnvironmentUtils.TEST_QUERY_CONTEXT;
 import static org.apache.iotdb.db.utils.EnvironmentUtils.TEST_QUERY_JOB_ID;
 import org.apache.iotdb.db.conf.directories.DirectoryManager;
 import org.apache.iotdb.db.engine.StorageEngine;
-import org.apache.iotdb.db.engine.modification.io.LocalTextModificationAccessor;
+import org.apache.iotdb.db.engine.modification.io.LocalBinaryModificationAccessor;
 import org.apache.iotdb.db.engine.querycontext.QueryDataSource;
 import org.apache.iotdb.db.exception.metadata.MetadataException;
 import org.apache.iotdb.db.engine.querycontext.ReadOnlyMemChunk;
@@ -157,8 +157,8 @@ public class DeletionFileNodeTest {
 
     assertEquals(1, modFiles.size());
 
-    LocalTextModificationAccessor accessor =
-        new LocalTextModificationAccessor(modFiles.get(0).getPath());
+    LocalBinaryModificationAccessor accessor =
+        new LocalBinaryModificationAccessor(modFiles.get(0).getPath());
     try {
       Collection<Modification> modifications = accessor.read();
       assertEquals(3, modifications.size());
@@ -269,8 +269,8 @@ public class DeletionFileNodeTest {
     }
     assertEquals(1, modFiles.size());
 
-    LocalTextModificationAccessor accessor =
-        new LocalTextModificationAccessor(modFiles.get(0).getPath());
+    LocalBinaryModificationAccessor accessor =
+        new LocalBinaryModificationAccessor(modFiles.get(0).getPath());
     Collection<Modification> modifications = accessor.read();
     assertEquals(3, modifications.size());
     int i = 0;
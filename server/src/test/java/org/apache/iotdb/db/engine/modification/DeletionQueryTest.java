@@ -21,6 +21,7 @@ package org.apache.iotdb.db.engine.modification;
 
 import static org.apache.iotdb.db.utils.EnvironmentUtils.TEST_QUERY_CONTEXT;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -324,4 +325,50 @@ public class DeletionQueryTest {
     }
     assertEquals(100, count);
   }
+
+  @Test
+  public void testRangeDeletion()
+      throws StorageEngineException, IOException, QueryProcessException {
+    for (int i = 1; i <= 100; i++) {
+      TSRecord record = new TSRecord(i, processorName);
+      for (int j = 0; j < 10; j++) {
+        record.addTuple(new DoubleDataPoint(measurements[j], i * 1.0));
+      }
+      StorageEngine.getInstance().insert(new InsertPlan(record));
+    }
+    StorageEngine.getInstance().syncCloseAllProcessor();
+
+    for (int i = 101; i <= 200; i++) {
+      TSRecord record = new TSRecord(i, processorName);
+      for (int j = 0; j < 10; j++) {
+        record.addTuple(new DoubleDataPoint(measurements[j], i * 1.0));
+      }
+      StorageEngine.getInstance().insert(new InsertPlan(record));
+    }
+
+    // across the sealed file and the memtable
+    StorageEngine.getInstance().delete(processorName, measurements[3], 41, 150);
+    // within the sealed file only, in two overlapping parts
+    StorageEngine.getInstance().delete(processorName, measurements[4], 11, 30);
+    StorageEngine.getInstance().delete(processorName, measurements[4], 21, 40);
+
+    int[] expectedCounts = {90, 170};
+    for (int i = 0; i < expectedCounts.length; i++) {
+      List<Path> pathList = Collections.singletonList(new Path(processorName, measurements[3 + i]));
+      RawDataQueryPlan queryPlan = new RawDataQueryPlan();
+      queryPlan.setDeduplicatedDataTypes(Collections.singletonList(dataType));
+      queryPlan.setDeduplicatedPaths(pathList);
+      QueryDataSet dataSet = router.rawDataQuery(queryPlan, TEST_QUERY_CONTEXT);
+
+      int count = 0;
+      while (dataSet.hasNext()) {
+        long time = dataSet.next().getTimestamp();
+        if (i == 0) {
+          assertTrue(time <= 40 || time > 150);
+        }
+        count++;
+      }
+      assertEquals(expectedCounts[i], count);
+    }
+  }
 }
@@ -20,13 +20,18 @@
 package org.apache.iotdb.db.engine.modification;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.fail;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import org.apache.iotdb.db.constant.TestConstant;
+import org.apache.iotdb.db.engine.cache.ModificationCache;
 import org.apache.iotdb.tsfile.read.common.Path;
 import org.junit.Ignore;
 import org.junit.Test;
@@ -98,4 +103,35 @@ public class ModificationFileTest {
       new File(tempFileName).delete();
     }
   }
-}
\ No newline at end of file
+
+  @Test
+  public void testCachedPathModifications() throws IOException {
+    String tempFileName = TestConstant.BASE_OUTPUT_PATH.concat("mod.temp");
+    Modification[] modifications = new Modification[]{
+        new Deletion(new Path("d1", "s1"), 1, 1),
+        new Deletion(new Path("d1", "s2"), 2, 2),
+        new Deletion(new Path("d1", "s1"), 3, 3),
+    };
+    ModificationFile mFile = new ModificationFile(tempFileName);
+    try {
+      mFile.write(modifications[0]);
+      mFile.write(modifications[1]);
+      // a deletion closes the file after writing it
+      mFile.close();
+      assertEquals(Collections.singletonList(modifications[0]), mFile.getModifications("d1.s1"));
+      assertNotNull(ModificationCache.getInstance().get(tempFileName));
+
+      // a new modification drops the cached ones, and the file is appended after being reopened
+      mFile.write(modifications[2]);
+      assertNull(ModificationCache.getInstance().get(tempFileName));
+      mFile.close();
+      assertEquals(Arrays.asList(modifications[0], modifications[2]),
+          mFile.getModifications("d1.s1"));
+      assertEquals(Collections.singletonList(modifications[1]), mFile.getModifications("d1.s2"));
+      assertEquals(Arrays.asList(modifications), mFile.getModifications());
+    } finally {
+      mFile.remove();
+    }
+    assertNull(ModificationCache.getInstance().get(tempFileName));
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.engine.modification.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import org.apache.iotdb.db.constant.TestConstant;
+import org.apache.iotdb.db.engine.modification.Deletion;
+import org.apache.iotdb.db.engine.modification.Modification;
+import org.apache.iotdb.tsfile.read.common.Path;
+import org.junit.After;
+import org.junit.Test;
+
+public class LocalBinaryModificationAccessorTest {
+
+  private String tempFileName = TestConstant.BASE_OUTPUT_PATH.concat("mod.bin.temp");
+
+  private Modification[] modifications = new Modification[]{
+      new Deletion(new Path("d1", "s1"), 1, 1),
+      new Deletion(new Path("d1", "s2"), 2, 2),
+      new Deletion(new Path("d1", "s3"), 3, 3),
+      new Deletion(new Path("d1", "s4"), 4, 4),
+  };
+
+  @After
+  public void tearDown() {
+    new File(tempFileName).delete();
+  }
+
+  @Test
+  public void readMyWrite() throws IOException {
+    try (LocalBinaryModificationAccessor accessor =
+        new LocalBinaryModificationAccessor(tempFileName)) {
+      for (int i = 0; i < 2; i++) {
+        accessor.write(modifications[i]);
+      }
+      assertEquals(Arrays.asList(modifications).subList(0, 2), accessor.read());
+      for (int i = 2; i < 4; i++) {
+        accessor.write(modifications[i]);
+      }
+      assertEquals(Arrays.asList(modifications), accessor.read());
+    }
+    assertTrue(LocalBinaryModificationAccessor.isBinaryFile(new File(tempFileName)));
+  }
+
+  @Test
+  public void abortNotLast() throws IOException {
+    try (LocalBinaryModificationAccessor accessor =
+        new LocalBinaryModificationAccessor(tempFileName)) {
+      for (Modification modification : modifications) {
+        accessor.write(modification);
+      }
+      accessor.abort(modifications[1]);
+    }
+    LocalBinaryModificationAccessor accessor = new LocalBinaryModificationAccessor(tempFileName);
+    assertEquals(Arrays.asList(modifications[0], modifications[2], modifications[3]),
+        accessor.read());
+  }
+
+  @Test
+  public void readTruncated() throws IOException {
+    try (LocalBinaryModificationAccessor accessor =
+        new LocalBinaryModificationAccessor(tempFileName)) {
+      for (int i = 0; i < 2; i++) {
+        accessor.write(modifications[i]);
+      }
+    }
+    // cut the last record as if the system crashed when writing it
+    File file = new File(tempFileName);
+    try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+      randomAccessFile.setLength(file.length() - 3);
+    }
+
+    try (LocalBinaryModificationAccessor accessor =
+        new LocalBinaryModificationAccessor(tempFileName)) {
+      assertEquals(Arrays.asList(modifications).subList(0, 1), accessor.read());
+      // the incomplete record is dropped before appending
+      accessor.write(modifications[2]);
+      assertEquals(Arrays.asList(modifications[0], modifications[2]), accessor.read());
+    }
+  }
+
+  @Test
+  public void readNull() {
+    LocalBinaryModificationAccessor accessor = new LocalBinaryModificationAccessor(tempFileName);
+    Collection<Modification> modificationList = accessor.read();
+    assertEquals(new ArrayList<>(), modificationList);
+    assertFalse(LocalBinaryModificationAccessor.isBinaryFile(new File(tempFileName)));
+  }
+}
@@ -0,0 +1,206 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.engine.storagegroup;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.apache.commons.io.FileUtils;
+import org.apache.iotdb.db.conf.IoTDBConfig;
+import org.apache.iotdb.db.conf.IoTDBDescriptor;
+import org.apache.iotdb.db.conf.directories.DirectoryManager;
+import org.apache.iotdb.db.constant.TestConstant;
+import org.apache.iotdb.db.engine.flush.TsFileFlushPolicy.DirectFlushPolicy;
+import org.apache.iotdb.db.engine.modification.ModificationFile;
+import org.apache.iotdb.db.engine.querycontext.QueryDataSource;
+import org.apache.iotdb.db.exception.StorageEngineException;
+import org.apache.iotdb.db.exception.StorageGroupProcessorException;
+import org.apache.iotdb.db.exception.WriteProcessException;
+import org.apache.iotdb.db.exception.metadata.MetadataException;
+import org.apache.iotdb.db.exception.query.QueryProcessException;
+import org.apache.iotdb.db.metadata.MManager;
+import org.apache.iotdb.db.qp.physical.crud.InsertPlan;
+import org.apache.iotdb.db.query.reader.series.SeriesRawDataBatchReader;
+import org.apache.iotdb.db.utils.EnvironmentUtils;
+import org.apache.iotdb.tsfile.file.metadata.enums.CompressionType;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSEncoding;
+import org.apache.iotdb.tsfile.read.common.BatchData;
+import org.apache.iotdb.tsfile.read.common.Path;
+import org.apache.iotdb.tsfile.read.reader.IBatchReader;
+import org.apache.iotdb.tsfile.write.schema.MeasurementSchema;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ColdTierTest {
+
+  private String sg = "root.COLD_SG";
+  private String s1 = "s1";
+  private File coldDir = new File(TestConstant.BASE_OUTPUT_PATH.concat("cold"));
+  private StorageGroupProcessor storageGroupProcessor;
+  private String[] prevColdDataDirs;
+
+  @Before
+  public void setUp() throws MetadataException, StorageGroupProcessorException {
+    IoTDBConfig config = IoTDBDescriptor.getInstance().getConfig();
+    prevColdDataDirs = config.getColdDataDirs();
+    config.setColdDataDirs(new String[]{coldDir.getAbsolutePath()});
+    EnvironmentUtils.envSetUp();
+    MManager.getInstance().setStorageGroup(sg);
+    MManager.getInstance().createTimeseries(sg + "." + s1, TSDataType.INT64, TSEncoding.PLAIN,
+        CompressionType.UNCOMPRESSED, Collections.emptyMap());
+    storageGroupProcessor = new StorageGroupProcessor(config.getSystemDir(), sg,
+        new DirectFlushPolicy());
+  }
+
+  @After
+  public void tearDown() throws IOException, StorageEngineException {
+    storageGroupProcessor.syncCloseAllWorkingTsFileProcessors();
+    EnvironmentUtils.cleanEnv();
+    FileUtils.deleteDirectory(coldDir);
+    IoTDBDescriptor.getInstance().getConfig().setColdDataDirs(prevColdDataDirs);
+  }
+
+  private void insert(long time) throws WriteProcessException {
+    InsertPlan insertPlan = new InsertPlan();
+    insertPlan.setDeviceId(sg);
+    insertPlan.setTime(time);
+    insertPlan.setMeasurements(new String[]{s1});
+    insertPlan.setValues(new String[]{"1"});
+    insertPlan.setSchemas(
+        new MeasurementSchema[]{new MeasurementSchema(s1, TSDataType.INT64, TSEncoding.PLAIN)});
+    storageGroupProcessor.insert(insertPlan);
+  }
+
+  private void prepareData() throws WriteProcessException {
+    // sequence data, which are far older than the cold data age
+    for (int i = 101; i <= 300; i++) {
+      insert(i);
+      if (i % 100 == 0) {
+        storageGroupProcessor.syncCloseAllWorkingTsFileProcessors();
+      }
+    }
+    // unsequence data
+    for (int i = 1; i <= 100; i++) {
+      insert(i);
+    }
+    storageGroupProcessor.syncCloseAllWorkingTsFileProcessors();
+    // the latest data in an unsealed file stay in the data dirs
+    insert(System.currentTimeMillis());
+  }
+
+  private int count() throws StorageEngineException, QueryProcessException, IOException {
+    QueryDataSource dataSource = storageGroupProcessor
+        .query(sg, s1, EnvironmentUtils.TEST_QUERY_CONTEXT, null, null);
+    IBatchReader reader = new SeriesRawDataBatchReader(new Path(sg, s1),
+        Collections.singleton(s1), TSDataType.INT64, EnvironmentUtils.TEST_QUERY_CONTEXT,
+        dataSource, null, null, null);
+    int cnt = 0;
+    while (reader.hasNextBatch()) {
+      BatchData batchData = reader.nextBatch();
+      while (batchData.hasCurrent()) {
+        batchData.next();
+        cnt++;
+      }
+    }
+    reader.close();
+    return cnt;
+  }
+
+  private List<TsFileResource> getAllFiles() {
+    List<TsFileResource> files = new ArrayList<>(storageGroupProcessor.getSequenceFileTreeSet());
+    files.addAll(storageGroupProcessor.getUnSequenceFileList());
+    return files;
+  }
+
+  @Test
+  public void testMigration()
+      throws WriteProcessException, StorageEngineException, QueryProcessException, IOException {
+    prepareData();
+    assertEquals(301, count());
+    List<File> sealedFiles = new ArrayList<>();
+    for (TsFileResource resource : getAllFiles()) {
+      if (resource.isClosed()) {
+        sealedFiles.add(resource.getFile());
+      }
+    }
+    // 2 sequence files and 1 unsequence file
+    assertEquals(3, sealedFiles.size());
+
+    storageGroupProcessor.migrateColdFiles();
+    for (TsFileResource resource : getAllFiles()) {
+      if (resource.isClosed()) {
+        assertTrue(resource.isCold());
+        assertTrue(resource.getPath().startsWith(coldDir.getAbsolutePath()));
+        assertTrue(resource.getFile().exists());
+        assertTrue(resource.fileExists());
+      } else {
+        assertFalse(resource.isCold());
+      }
+    }
+    for (File sealedFile : sealedFiles) {
+      assertFalse(sealedFile.exists());
+      assertFalse(new File(sealedFile.getPath() + TsFileResource.RESOURCE_SUFFIX).exists());
+    }
+    assertEquals(301, count());
+  }
+
+  @Test
+  public void testDeleteAndRecoverColdFiles()
+      throws WriteProcessException, StorageEngineException, QueryProcessException, IOException,
+      StorageGroupProcessorException {
+    prepareData();
+    storageGroupProcessor.migrateColdFiles();
+    storageGroupProcessor.delete(sg, s1, 51, 150);
+    assertEquals(201, count());
+
+    // the modifications of the cold files stay in the first data dir
+    String hotFolder = DirectoryManager.getInstance().getAllSequenceFileFolders().get(0);
+    for (TsFileResource resource : storageGroupProcessor.getSequenceFileTreeSet()) {
+      if (resource.isCold() && resource.getStartTime(sg) <= 150) {
+        File modFile = new File(DirectoryManager.getInstance().getHotPath(resource.getFile())
+            + ModificationFile.FILE_SUFFIX);
+        assertTrue(modFile.getPath().startsWith(hotFolder));
+        assertTrue(modFile.exists());
+        assertFalse(new File(resource.getPath() + ModificationFile.FILE_SUFFIX).exists());
+      }
+    }
+
+    storageGroupProcessor.syncCloseAllWorkingTsFileProcessors();
+    storageGroupProcessor = new StorageGroupProcessor(
+        IoTDBDescriptor.getInstance().getConfig().getSystemDir(), sg, new DirectFlushPolicy());
+    int coldFileNum = 0;
+    for (TsFileResource resource : getAllFiles()) {
+      if (resource.isCold()) {
+        assertTrue(resource.isClosed());
+        coldFileNum++;
+      }
+    }
+    assertEquals(3, coldFileNum);
+    assertEquals(4, getAllFiles().size());
+    assertEquals(201, count());
+  }
+}
@@ -28,6 +28,10 @@ import org.apache.iotdb.db.engine.querycontext.ReadOnlyMemChunk;
 import org.apache.iotdb.db.exception.StorageGroupProcessorException;
 import org.apache.iotdb.db.exception.WriteProcessException;
 import org.apache.iotdb.db.exception.query.QueryProcessException;
+import org.apache.iotdb.db.metadata.MManager;
+import org.apache.iotdb.db.metadata.mnode.InternalMNode;
+import org.apache.iotdb.db.metadata.mnode.LeafMNode;
+import org.apache.iotdb.db.metadata.mnode.MNode;
 import org.apache.iotdb.db.qp.physical.crud.InsertTabletPlan;
 import org.apache.iotdb.db.qp.physical.crud.InsertPlan;
 import org.apache.iotdb.db.query.context.QueryContext;
@@ -35,9 +39,12 @@ import org.apache.iotdb.db.utils.EnvironmentUtils;
 import org.apache.iotdb.tsfile.read.reader.IPointReader;
 import org.apache.iotdb.tsfile.read.TimeValuePair;
 import org.apache.iotdb.tsfile.file.metadata.ChunkMetadata;
+import org.apache.iotdb.tsfile.file.metadata.enums.CompressionType;
 import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
 import org.apache.iotdb.tsfile.file.metadata.enums.TSEncoding;
 import org.apache.iotdb.tsfile.utils.Pair;
+import org.apache.iotdb.tsfile.utils.TsPrimitiveType.TsInt;
+import org.apache.iotdb.tsfile.utils.TsPrimitiveType.TsLong;
 import org.apache.iotdb.tsfile.write.record.TSRecord;
 import org.apache.iotdb.tsfile.write.record.datapoint.DataPoint;
 import org.apache.iotdb.tsfile.write.schema.MeasurementSchema;
@@ -49,6 +56,7 @@ import org.junit.Test;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicLong;
@@ -107,7 +115,7 @@ public class StorageGroupProcessorTest {
       processor.insert(new InsertPlan(record));
     }
 
-    processor.delete(deviceId, measurementId, 15L);
+    processor.delete(deviceId, measurementId, Long.MIN_VALUE, 15L);
 
     Pair<List<ReadOnlyMemChunk>, List<ChunkMetadata>> pair = null;
     for (TsFileProcessor tsfileProcessor : processor.getWorkUnsequenceTsFileProcessor()) {
@@ -131,6 +139,40 @@ public class StorageGroupProcessorTest {
     Assert.assertEquals(0, pair.right.size());
   }
 
+  @Test
+  public void testUpdateLastCacheWithMeasurementMNodes() throws Exception {
+    MNode deviceNode = MManager.getInstance().getDeviceNodeWithAutoCreateAndReadLock(deviceId);
+    try {
+      // nodes not in the MTree are only updated if the nodes carried by the plans are used
+      LeafMNode s0Node = new LeafMNode(deviceNode, "s0", null, TSDataType.INT32,
+          TSEncoding.PLAIN, CompressionType.UNCOMPRESSED, Collections.emptyMap());
+      LeafMNode s1Node = new LeafMNode(deviceNode, "s1", null, TSDataType.INT64,
+          TSEncoding.PLAIN, CompressionType.UNCOMPRESSED, Collections.emptyMap());
+
+      InsertPlan insertPlan = new InsertPlan(deviceId, 100, "s0", "1000");
+      insertPlan.setSchemas(new MeasurementSchema[]{s0Node.getSchema()});
+      insertPlan.setMeasurementMNodes(new LeafMNode[]{s0Node});
+      processor.insert(insertPlan);
+      Assert.assertEquals(new TimeValuePair(100, new TsInt(1000)), s0Node.getCachedLast());
+
+      InsertTabletPlan insertTabletPlan = new InsertTabletPlan(deviceId, new String[]{"s0", "s1"},
+          Arrays.asList(TSDataType.INT32.ordinal(), TSDataType.INT64.ordinal()));
+      insertTabletPlan.setSchemas(new MeasurementSchema[]{s0Node.getSchema(), s1Node.getSchema()});
+      insertTabletPlan.setTimes(new long[]{200, 300});
+      insertTabletPlan.setColumns(new Object[]{new int[]{2000, 3000}, new long[]{20, 30}});
+      insertTabletPlan.setRowCount(2);
+      insertTabletPlan.setMeasurementMNodes(new LeafMNode[]{s0Node, s1Node});
+      processor.insertTablet(insertTabletPlan);
+      Assert.assertEquals(new TimeValuePair(300, new TsInt(3000)), s0Node.getCachedLast());
+      Assert.assertEquals(new TimeValuePair(300, new TsLong(30)), s1Node.getCachedLast());
+
+      Assert.assertNull(((LeafMNode) deviceNode.getChild("s0")).getCachedLast());
+      Assert.assertNull(((LeafMNode) deviceNode.getChild("s1")).getCachedLast());
+    } finally {
+      ((InternalMNode) deviceNode).readUnlock();
+    }
+  }
+
   @Test
   public void testSequenceSyncClose() throws WriteProcessException, QueryProcessException {
     for (int j = 1; j <= 10; j++) {
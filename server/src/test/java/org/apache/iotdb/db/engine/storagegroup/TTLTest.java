@@ -23,6 +23,7 @@ package org.apache.iotdb.db.engine.storagegroup;
 import org.apache.iotdb.db.conf.IoTDBConstant;
 import org.apache.iotdb.db.conf.IoTDBDescriptor;
 import org.apache.iotdb.db.conf.directories.DirectoryManager;
+import org.apache.iotdb.db.engine.StorageEngine;
 import org.apache.iotdb.db.engine.flush.TsFileFlushPolicy.DirectFlushPolicy;
 import org.apache.iotdb.db.engine.querycontext.QueryDataSource;
 import org.apache.iotdb.db.exception.StartupException;
@@ -291,6 +292,44 @@ public class TTLTest {
     assertEquals(0, unseqFiles.size());
   }
 
+  @Test
+  public void testTTLDropPartition() throws WriteProcessException {
+    InsertPlan insertPlan = new InsertPlan();
+    insertPlan.setDeviceId(sg1);
+    insertPlan.setMeasurements(new String[]{"s1"});
+    insertPlan.setValues(new String[]{"1"});
+    insertPlan.setSchemas(
+        new MeasurementSchema[]{new MeasurementSchema("s1", TSDataType.INT64, TSEncoding.PLAIN)});
+
+    long initTime = System.currentTimeMillis();
+    long partitionInterval = StorageEngine.getTimePartitionInterval();
+    long currentPartition = StorageEngine.getTimePartition(initTime);
+    // a sequence file and an unsequence file in each of the 3 partitions before the current one
+    for (long partition = currentPartition - 3; partition < currentPartition; partition++) {
+      for (long time : new long[]{100, 200, 150}) {
+        insertPlan.setTime(partition * partitionInterval + time);
+        storageGroupProcessor.insert(insertPlan);
+        if (time == 200) {
+          storageGroupProcessor.syncCloseAllWorkingTsFileProcessors();
+        }
+      }
+      storageGroupProcessor.syncCloseAllWorkingTsFileProcessors();
+    }
+    insertPlan.setTime(initTime);
+    storageGroupProcessor.insert(insertPlan);
+    assertEquals(4, storageGroupProcessor.getSequenceFileTreeSet().size());
+    assertEquals(3, storageGroupProcessor.getUnSequenceFileList().size());
+
+    // the TTL bound is in the current partition, so the previous partitions are dropped
+    storageGroupProcessor.setDataTTL(initTime - currentPartition * partitionInterval);
+    assertEquals(1, storageGroupProcessor.getSequenceFileTreeSet().size());
+    assertEquals(0, storageGroupProcessor.getUnSequenceFileList().size());
+    File seqDir = new File(DirectoryManager.getInstance().getNextFolderForSequenceFile(), sg1);
+    for (long partition = currentPartition - 3; partition < currentPartition; partition++) {
+      assertFalse(new File(seqDir, String.valueOf(partition)).exists());
+    }
+  }
+
   @Test
   public void testParseSetTTL() throws QueryProcessException {
     Planner planner = new Planner();
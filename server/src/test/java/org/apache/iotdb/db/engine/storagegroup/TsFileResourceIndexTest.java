@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.engine.storagegroup;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TsFileResourceIndexTest {
+
+  private File dir = new File("target" + File.separator + "resourceIndex");
+  private List<TsFileResource> resources = new ArrayList<>();
+
+  @Before
+  public void setUp() throws IOException {
+    dir.mkdirs();
+    for (int i = 0; i < 3; i++) {
+      TsFileResource resource = new TsFileResource(
+          new File(dir, (i + 1) + "-" + (i + 1) + "-0.tsfile"));
+      for (int j = 0; j < 10; j++) {
+        resource.updateStartTime("root.sg.d" + j, i * 100 + j);
+        resource.updateEndTime("root.sg.d" + j, i * 100 + j + 10);
+      }
+      // the devices of the last file are partially written
+      if (i == 2) {
+        resource.updateStartTime("root.sg.d10", 50);
+        resource.updateEndTime("root.sg.d10", 60);
+      }
+      resource.setHistoricalVersions(Collections.singleton((long) i + 1));
+      resource.serialize();
+      resource.close();
+      resources.add(resource);
+    }
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    FileUtils.deleteDirectory(dir);
+  }
+
+  @Test
+  public void testLoad() throws IOException {
+    new TsFileResourceIndex(dir, true).write(resources, true);
+    TsFileResourceIndex index = new TsFileResourceIndex(dir, true);
+    index.read();
+    assertTrue(index.coversExactly(resources));
+    assertFalse(index.coversExactly(resources.subList(0, 2)));
+    assertEquals(11, index.getLatestTimeForEachDevice().size());
+    assertEquals(219, (long) index.getLatestTimeForEachDevice().get("root.sg.d9"));
+    assertEquals(60, (long) index.getLatestTimeForEachDevice().get("root.sg.d10"));
+
+    TsFileResource resource = new TsFileResource(resources.get(1).getFile());
+    index.getEntry(resource).load(resource);
+    assertEquals(resources.get(1).getStartTimeMap(), resource.getStartTimeMap());
+    assertEquals(resources.get(1).getEndTimeMap(), resource.getEndTimeMap());
+    assertEquals(Collections.singleton(2L), resource.getHistoricalVersions());
+
+    resource = new TsFileResource(resources.get(2).getFile());
+    index.getEntry(resource).loadLazily(resource);
+    resource.setClosed(true);
+    assertTrue(resource.isTimeIndexDegraded());
+    assertEquals(50, resource.getFileStartTime());
+    assertEquals(219, resource.getFileEndTime());
+    assertEquals(Collections.singleton(3L), resource.getHistoricalVersions());
+    // the device times are read from the .resource file when needed
+    assertEquals(60, (long) resource.getEndTimeMap().get("root.sg.d10"));
+  }
+
+  @Test
+  public void testInvalidEntry() throws IOException {
+    new TsFileResourceIndex(dir, false).write(resources, false);
+    TsFileResource changed = resources.get(0);
+    changed.updateEndTime("root.sg.d10", 1000);
+    changed.serialize();
+
+    TsFileResourceIndex index = new TsFileResourceIndex(dir, false);
+    index.read();
+    assertTrue(index.getLatestTimeForEachDevice().isEmpty());
+    assertNull(index.getEntry(changed));
+    assertNotNull(index.getEntry(resources.get(1)));
+    assertFalse(index.coversExactly(resources));
+
+    // a missing index has no entries
+    index.delete();
+    index = new TsFileResourceIndex(dir, false);
+    index.read();
+    assertNull(index.getEntry(resources.get(1)));
+  }
+}
@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.engine.storagegroup;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.iotdb.db.engine.storagegroup.timeindex.DeviceTimeIndex;
+import org.junit.After;
+import org.junit.Test;
+
+public class TsFileResourceTest {
+
+  private File file = new File("target" + File.separator + "1-1-0.tsfile");
+
+  @After
+  public void tearDown() {
+    new TsFileResource(file).remove();
+  }
+
+  @Test
+  public void testTimeIndex() throws IOException {
+    DeviceTimeIndex index = new DeviceTimeIndex();
+    Map<String, Long> startTimes = new HashMap<>();
+    for (int i = 0; i < 100; i++) {
+      String device = "root.sg.d" + (99 - i);
+      index.updateStartTime(device, 100 + i);
+      index.updateStartTime(device, 200 + i);
+      index.updateEndTime(device, 300 + i);
+      startTimes.put(device, 100L + i);
+    }
+    index.updateStartTime("root.sg.d0", 50);
+    startTimes.put("root.sg.d0", 50L);
+    index.compact();
+
+    assertEquals(startTimes, index.getStartTimeMap());
+    assertEquals(300, index.getEndTime("root.sg.d99"));
+    assertEquals(50, index.getMinStartTime());
+    assertEquals(399, index.getMaxEndTime());
+    assertFalse(index.containsDevice("root.sg.d100"));
+    assertEquals(Long.MAX_VALUE, index.getStartTime("root.sg.d100"));
+    assertNull(index.getEndTimeMap().get("root.sg.d100"));
+
+    // a compact index accepts new devices
+    index.updateStartTime("root.sg.d100", 1000);
+    startTimes.put("root.sg.d100", 1000L);
+    assertTrue(index.containsDevice("root.sg.d100"));
+    assertEquals(Long.MIN_VALUE, index.getEndTime("root.sg.d100"));
+
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    index.serialize(outputStream);
+    DeviceTimeIndex deserialized = DeviceTimeIndex
+        .deserialize(new ByteArrayInputStream(outputStream.toByteArray()));
+    assertEquals(startTimes, deserialized.getStartTimeMap());
+    assertEquals(index.getEndTimeMap(), deserialized.getEndTimeMap());
+    assertEquals(100, deserialized.getEndTimeMap().size());
+  }
+
+  @Test
+  public void testTimeIndexRange() {
+    DeviceTimeIndex index = new DeviceTimeIndex();
+    assertEquals(Long.MAX_VALUE, index.getMinStartTime());
+    assertEquals(Long.MIN_VALUE, index.getMaxEndTime());
+    index.updateStartTime("root.sg.d0", 10);
+    index.updateEndTime("root.sg.d0", 20);
+    index.updateStartTime("root.sg.d1", 5);
+    index.updateEndTime("root.sg.d1", 15);
+    assertEquals(5, index.getMinStartTime());
+    assertEquals(20, index.getMaxEndTime());
+
+    // putting a time may narrow the range
+    index.putStartTime("root.sg.d1", 12);
+    index.putEndTime("root.sg.d0", 13);
+    assertEquals(10, index.getMinStartTime());
+    assertEquals(15, index.getMaxEndTime());
+
+    index.clearEndTimes();
+    assertEquals(Long.MIN_VALUE, index.getMaxEndTime());
+    index.updateEndTime("root.sg.d1", 30);
+    index.compact();
+    assertEquals(10, index.getMinStartTime());
+    assertEquals(30, index.getMaxEndTime());
+  }
+
+  @Test
+  public void testDegradeTimeIndex() throws IOException {
+    TsFileResource resource = new TsFileResource(file);
+    for (int i = 0; i < 10; i++) {
+      resource.updateStartTime("root.sg.d" + i, i);
+      resource.updateEndTime("root.sg.d" + i, i + 10);
+    }
+    resource.serialize();
+    // an unsealed file keeps its index
+    resource.degradeTimeIndex();
+    assertFalse(resource.isTimeIndexDegraded());
+
+    resource.close();
+    resource.degradeTimeIndex();
+    assertTrue(resource.isTimeIndexDegraded());
+    // the range of the whole file is used
+    assertTrue(resource.containsDevice("root.sg.d10"));
+    assertEquals(0, resource.getStartTime("root.sg.d5"));
+    assertEquals(19, resource.getEndTime("root.sg.d5"));
+    assertTrue(resource.stillLives(19));
+    assertFalse(resource.stillLives(20));
+
+    // the index is read back from the resource file
+    assertEquals(15, (long) resource.getEndTimeMap().get("root.sg.d5"));
+    assertFalse(resource.isTimeIndexDegraded());
+    assertEquals(5, resource.getStartTime("root.sg.d5"));
+    assertFalse(resource.containsDevice("root.sg.d10"));
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.engine.storagegroup.timeindex;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.apache.iotdb.db.engine.storagegroup.TsFileResource;
+
+/**
+ * Bench selecting the files of a device in a short time range from many sequence files, by
+ * checking every file and through a FileIntervalIndex. The first argument is the number of files,
+ * 50000 by default, the second is the number of devices in each file, 100 by default, and the
+ * third is the number of queries, 10000 by default.
+ */
+public class FileIntervalIndexBenchmark {
+
+  private static final long FILE_TIME_RANGE = 3600 * 1000L;
+
+  public static void main(String[] args) {
+    int fileNum = args.length > 0 ? Integer.parseInt(args[0]) : 50000;
+    int deviceNum = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+    int queryNum = args.length > 2 ? Integer.parseInt(args[2]) : 10000;
+
+    List<TsFileResource> resources = new ArrayList<>(fileNum);
+    for (int i = 0; i < fileNum; i++) {
+      TsFileResource resource = new TsFileResource(new File(i + "-" + i + "-0.tsfile"));
+      for (int j = 0; j < deviceNum; j++) {
+        resource.updateStartTime("root.bench.d" + j, i * FILE_TIME_RANGE);
+        resource.updateEndTime("root.bench.d" + j, (i + 1) * FILE_TIME_RANGE - 1);
+      }
+      resource.setClosed(true);
+      resources.add(resource);
+    }
+    long startTime = System.currentTimeMillis();
+    FileIntervalIndex index = new FileIntervalIndex(resources, 0);
+    System.out.println("Built the index of " + fileNum + " files in "
+        + (System.currentTimeMillis() - startTime) + "ms");
+
+    Random random = new Random(0);
+    long[] queryStartTimes = new long[queryNum];
+    for (int i = 0; i < queryNum; i++) {
+      queryStartTimes[i] = (long) (random.nextDouble() * fileNum * FILE_TIME_RANGE);
+    }
+    String device = "root.bench.d" + (deviceNum / 2);
+
+    long selectedNum = 0;
+    startTime = System.currentTimeMillis();
+    for (long queryStartTime : queryStartTimes) {
+      long queryEndTime = queryStartTime + FILE_TIME_RANGE;
+      for (TsFileResource resource : resources) {
+        if (resource.containsDevice(device)
+            && resource.getStartTime(device) <= queryEndTime
+            && resource.getEndTime(device) >= queryStartTime) {
+          selectedNum++;
+        }
+      }
+    }
+    System.out.println("Selected " + selectedNum + " files by checking every file in "
+        + (System.currentTimeMillis() - startTime) + "ms");
+
+    selectedNum = 0;
+    startTime = System.currentTimeMillis();
+    for (long queryStartTime : queryStartTimes) {
+      long queryEndTime = queryStartTime + FILE_TIME_RANGE;
+      for (TsFileResource resource : index.query(queryStartTime, queryEndTime)) {
+        if (resource.containsDevice(device)
+            && resource.getStartTime(device) <= queryEndTime
+            && resource.getEndTime(device) >= queryStartTime) {
+          selectedNum++;
+        }
+      }
+    }
+    System.out.println("Selected " + selectedNum + " files through the index in "
+        + (System.currentTimeMillis() - startTime) + "ms");
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.engine.storagegroup.timeindex;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.apache.iotdb.db.engine.storagegroup.TsFileResource;
+import org.apache.iotdb.tsfile.read.filter.GroupByFilter;
+import org.apache.iotdb.tsfile.read.filter.TimeFilter;
+import org.apache.iotdb.tsfile.read.filter.ValueFilter;
+import org.apache.iotdb.tsfile.read.filter.basic.Filter;
+import org.apache.iotdb.tsfile.read.filter.factory.FilterFactory;
+import org.junit.Test;
+
+public class FileIntervalIndexTest {
+
+  @Test
+  public void testQuery() {
+    Random random = new Random(0);
+    List<TsFileResource> resources = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      TsFileResource resource = new TsFileResource(new File(i + "-" + i + "-0.tsfile"));
+      long startTime = random.nextInt(100000);
+      resource.updateStartTime("root.sg.d" + random.nextInt(10), startTime);
+      resource.updateEndTime("root.sg.d" + random.nextInt(10), startTime + random.nextInt(1000));
+      // some files are unsealed
+      resource.setClosed(random.nextInt(50) != 0);
+      resources.add(resource);
+    }
+    FileIntervalIndex index = new FileIntervalIndex(resources, 0);
+    assertEquals(1000, index.size());
+
+    for (int i = 0; i < 1000; i++) {
+      long minTime = random.nextInt(110000) - 5000;
+      long maxTime = minTime + random.nextInt(5000);
+      List<TsFileResource> expected = new ArrayList<>();
+      for (TsFileResource resource : resources) {
+        if (!resource.isClosed() || resource.getFileStartTime() <= maxTime
+            && resource.getFileEndTime() >= minTime) {
+          expected.add(resource);
+        }
+      }
+      assertEquals(expected, index.query(minTime, maxTime));
+    }
+    assertEquals(resources, index.query(null, Long.MIN_VALUE));
+    assertTrue(index.query(TimeFilter.gt(Long.MAX_VALUE), Long.MIN_VALUE).isEmpty());
+  }
+
+  @Test
+  public void testGetTimeRange() {
+    assertArrayEquals(new long[]{11, 19}, FileIntervalIndex
+        .getTimeRange(FilterFactory.and(TimeFilter.gt(10L), TimeFilter.lt(20L))));
+    assertArrayEquals(new long[]{0, 30}, FileIntervalIndex.getTimeRange(
+        FilterFactory.or(TimeFilter.eq(0L), FilterFactory.and(TimeFilter.gtEq(10L),
+            TimeFilter.ltEq(30L)))));
+    assertArrayEquals(new long[]{100, 200},
+        FileIntervalIndex.getTimeRange(new GroupByFilter(10, 10, 100, 200)));
+    // filters not on time cannot narrow the range
+    Filter filter = FilterFactory.and(TimeFilter.gtEq(10L), ValueFilter.gt(5));
+    assertArrayEquals(new long[]{10, Long.MAX_VALUE}, FileIntervalIndex.getTimeRange(filter));
+    assertArrayEquals(new long[]{Long.MIN_VALUE, Long.MAX_VALUE},
+        FileIntervalIndex.getTimeRange(TimeFilter.not(TimeFilter.gt(10L))));
+  }
+}
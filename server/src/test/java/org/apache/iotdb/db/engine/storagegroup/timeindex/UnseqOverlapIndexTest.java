@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.engine.storagegroup.timeindex;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.apache.iotdb.db.utils.datastructure.TVList;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
+import org.junit.Test;
+
+public class UnseqOverlapIndexTest {
+
+  private static final String DEVICE = "root.sg.d0";
+
+  @Test
+  public void testSplit() {
+    UnseqOverlapIndex index = new UnseqOverlapIndex();
+    TVList tvList = TVList.newList(TSDataType.INT64);
+    for (long time = 0; time < 100; time++) {
+      tvList.putLong(time, time);
+    }
+    // a few late points far from the others
+    tvList.putLong(1000, 0);
+    tvList.putLong(5000, 0);
+    tvList.putLong(5001, 0);
+    index.update(DEVICE, "s0", tvList);
+
+    assertArrayEquals(new long[]{0, 99, 1000, 1000, 5000, 5001}, index.getRanges(DEVICE, "s0"));
+    assertNull(index.getRanges(DEVICE, "s1"));
+    assertNull(index.getRanges("root.sg.d1", "s0"));
+  }
+
+  @Test
+  public void testLimitedRanges() {
+    Random random = new Random(0);
+    UnseqOverlapIndex index = new UnseqOverlapIndex();
+    long minTime = Long.MAX_VALUE;
+    long maxTime = Long.MIN_VALUE;
+    for (int i = 0; i < 10; i++) {
+      TVList tvList = TVList.newList(TSDataType.INT64);
+      long time = random.nextInt(100000);
+      for (int j = 0; j < 100; j++) {
+        tvList.putLong(time, j);
+        minTime = Math.min(minTime, time);
+        maxTime = Math.max(maxTime, time);
+        time += 1 + random.nextInt(100);
+      }
+      index.update(DEVICE, "s0", tvList);
+    }
+
+    long[] ranges = index.getRanges(DEVICE, "s0");
+    assertTrue(ranges.length <= UnseqOverlapIndex.MAX_RANGE_NUM * 2);
+    assertEquals(minTime, ranges[0]);
+    assertEquals(maxTime, ranges[ranges.length - 1]);
+    for (int i = 1; i < ranges.length; i++) {
+      assertTrue(ranges[i - 1] <= ranges[i]);
+    }
+  }
+
+  @Test
+  public void testUnion() {
+    long[] ranges = UnseqOverlapIndex.union(new long[]{0, 10, 50, 60}, new long[]{5, 20, 61, 70});
+    assertArrayEquals(new long[]{0, 20, 50, 70}, ranges);
+
+    long[] manyRanges = new long[UnseqOverlapIndex.MAX_RANGE_NUM * 2];
+    for (int i = 0; i < UnseqOverlapIndex.MAX_RANGE_NUM; i++) {
+      manyRanges[2 * i] = i * 100L;
+      manyRanges[2 * i + 1] = i * 100L + 10;
+    }
+    // the closest neighbours are joined
+    ranges = UnseqOverlapIndex.union(manyRanges, new long[]{15, 16});
+    assertEquals(UnseqOverlapIndex.MAX_RANGE_NUM * 2, ranges.length);
+    assertArrayEquals(new long[]{0, 16, 100, 110}, Arrays.copyOf(ranges, 4));
+  }
+}
@@ -264,6 +264,51 @@ public class IoTDBFillIT {
     }
   }
 
+  @Test
+  public void LinearFillAcrossFilesTest() throws SQLException {
+    String[] retArray1 = new String[]{
+        "1000,200.0",
+        "960,100.0",
+        "1000,null",
+    };
+    try (Connection connection = DriverManager.
+        getConnection("jdbc:iotdb://127.0.0.1:6667/", "root", "root");
+        Statement statement = connection.createStatement()) {
+
+      // the points before and after the query time are in two different unseq files
+      statement.execute("INSERT INTO root.ln.wf01.wt02(timestamp,temperature) values(960, 100.0)");
+      statement.execute("flush");
+      statement.execute("INSERT INTO root.ln.wf01.wt02(timestamp,temperature) values(1040, 300.0)");
+      statement.execute("flush");
+
+      int cnt = 0;
+      for (String sql : new String[]{
+          "select temperature from root.ln.wf01.wt02 where time = 1000 "
+              + "Fill(double[linear, 100ms, 100ms])",
+          // the point at the query time needs no point after it
+          "select temperature from root.ln.wf01.wt02 where time = 960 "
+              + "Fill(double[linear, 100ms, 100ms])",
+          // no point in the before range
+          "select temperature from root.ln.wf01.wt02 where time = 1000 "
+              + "Fill(double[linear, 30ms, 100ms])"}) {
+        boolean hasResultSet = statement.execute(sql);
+        Assert.assertTrue(hasResultSet);
+        try (ResultSet resultSet = statement.getResultSet()) {
+          while (resultSet.next()) {
+            String ans = resultSet.getString(TIMESTAMP_STR) + ","
+                + resultSet.getString(TEMPERATURE_STR_2);
+            Assert.assertEquals(retArray1[cnt], ans);
+            cnt++;
+          }
+        }
+      }
+      Assert.assertEquals(retArray1.length, cnt);
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail(e.getMessage());
+    }
+  }
+
   @Test
   public void PreviousFillTest() {
     String[] retArray1 = new String[]{
@@ -570,6 +570,115 @@ public class IoTDBGroupByFillIT {
     }
   }
 
+  @Test
+  public void previousAcrossFilesTest() {
+    // the previous value of temperature is in an earlier file than the latest one
+    String[] retArray = new String[] {
+            "62,50,66.6",
+            "67,50,66.6",
+            "72,50,66.6",
+    };
+
+    try (Connection connection = DriverManager.
+            getConnection("jdbc:iotdb://127.0.0.1:6667/", "root", "root");
+         Statement statement = connection.createStatement()) {
+      statement.execute("INSERT INTO root.ln.wf01.wt01(timestamp,temperature) values(50, 50)");
+      statement.execute("flush");
+      statement.execute("INSERT INTO root.ln.wf01.wt01(timestamp,hardware) values(60, 66.6)");
+      statement.execute("flush");
+      boolean hasResultSet = statement.execute(
+              "select last_value(temperature), last_value(hardware) from "
+                      + "root.ln.wf01.wt01 "
+                      + "GROUP BY ([62, 77), 5ms) FILL(ALL[previous])");
+
+      assertTrue(hasResultSet);
+      int cnt;
+      try (ResultSet resultSet = statement.getResultSet()) {
+        cnt = 0;
+        while (resultSet.next()) {
+          String ans = resultSet.getString(TIMESTAMP_STR) + "," + resultSet
+                  .getString(last_value("root.ln.wf01.wt01.temperature")) + "," + resultSet
+                  .getString(last_value("root.ln.wf01.wt01.hardware"));
+          assertEquals(retArray[cnt], ans);
+          cnt++;
+        }
+        assertEquals(retArray.length, cnt);
+      }
+
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail(e.getMessage());
+    }
+  }
+
+  @Test
+  public void previousAcrossEmptyWindowsTest() {
+    // the value of the last bucket with data is carried over the empty buckets after it
+    String[] retArray = new String[] {
+            "37,40",
+            "42,40",
+            "47,50",
+            "52,50",
+            "57,50",
+            "62,50",
+    };
+    // the last point of temperature is at 50
+    String[] untilLastRetArray = new String[] {
+            "37,40",
+            "42,40",
+            "47,50",
+            "52,null",
+            "57,null",
+            "62,null",
+    };
+
+    try (Connection connection = DriverManager.
+            getConnection("jdbc:iotdb://127.0.0.1:6667/", "root", "root");
+         Statement statement = connection.createStatement()) {
+      statement.execute("INSERT INTO root.ln.wf01.wt01(timestamp,temperature) values(50, 50)");
+      statement.execute("flush");
+      statement.execute("INSERT INTO root.ln.wf01.wt01(timestamp,hardware) values(60, 66.6)");
+      boolean hasResultSet = statement.execute(
+              "select last_value(temperature) from "
+                      + "root.ln.wf01.wt01 "
+                      + "GROUP BY ([37, 67), 5ms) FILL(int32[previous])");
+
+      assertTrue(hasResultSet);
+      int cnt;
+      try (ResultSet resultSet = statement.getResultSet()) {
+        cnt = 0;
+        while (resultSet.next()) {
+          String ans = resultSet.getString(TIMESTAMP_STR) + "," + resultSet
+                  .getString(last_value("root.ln.wf01.wt01.temperature"));
+          assertEquals(retArray[cnt], ans);
+          cnt++;
+        }
+        assertEquals(retArray.length, cnt);
+      }
+
+      hasResultSet = statement.execute(
+              "select last_value(temperature) from "
+                      + "root.ln.wf01.wt01 "
+                      + "GROUP BY ([37, 67), 5ms) FILL(int32[previousUntilLast])");
+
+      assertTrue(hasResultSet);
+      try (ResultSet resultSet = statement.getResultSet()) {
+        cnt = 0;
+        while (resultSet.next()) {
+          String ans = resultSet.getString(TIMESTAMP_STR) + "," + resultSet
+                  .getString(last_value("root.ln.wf01.wt01.temperature"));
+          assertEquals(untilLastRetArray[cnt], ans);
+          cnt++;
+        }
+        assertEquals(untilLastRetArray.length, cnt);
+      }
+
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail(e.getMessage());
+    }
+  }
+
   private void prepareData() {
     try (Connection connection = DriverManager
             .getConnection(Config.IOTDB_URL_PREFIX + "127.0.0.1:6667/", "root",
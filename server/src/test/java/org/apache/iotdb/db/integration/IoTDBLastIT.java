@@ -268,6 +268,59 @@ public class IoTDBLastIT {
     }
   }
 
+  @Test
+  public void lastWithRangeDeletionTest() throws SQLException {
+    String[] retArray =
+        new String[] {
+            "410,root.ln.wf01.wt01.temperature,30.1",
+            "410,root.ln.wf01.wt01.temperature,30.1",
+            "400,root.ln.wf01.wt01.temperature,16.2",
+        };
+
+    try (Connection connection =
+        DriverManager.getConnection("jdbc:iotdb://127.0.0.1:6667/", "root", "root");
+        Statement statement = connection.createStatement()) {
+
+      // an unseq file whose newest point is older than that of the seq file
+      statement.execute("INSERT INTO root.ln.wf01.wt01(timestamp,temperature) values(410, 30.1)");
+      statement.execute("INSERT INTO root.ln.wf01.wt01(timestamp,temperature) values(450, 30.5)");
+      statement.execute("flush");
+      // the newest points of both the seq file and the unseq file are deleted
+      statement.execute(
+          "DELETE FROM root.ln.wf01.wt01.temperature WHERE time > 420 and time <= 500");
+
+      int cnt = 0;
+      // the second query reads the cache filled by the first one
+      for (int i = 0; i < 2; i++) {
+        cnt = checkLast(statement, "select last temperature from root.ln.wf01.wt01", retArray,
+            cnt);
+      }
+
+      statement.execute(
+          "DELETE FROM root.ln.wf01.wt01.temperature WHERE time > 405 and time <= 420");
+      cnt = checkLast(statement, "select last temperature from root.ln.wf01.wt01", retArray,
+          cnt);
+      Assert.assertEquals(retArray.length, cnt);
+    }
+  }
+
+  private int checkLast(Statement statement, String sql, String[] retArray, int cnt)
+      throws SQLException {
+    boolean hasResultSet = statement.execute(sql);
+    Assert.assertTrue(hasResultSet);
+    try (ResultSet resultSet = statement.getResultSet()) {
+      while (resultSet.next()) {
+        String ans =
+            resultSet.getString(TIMESTAMP_STR) + ","
+                + resultSet.getString(TIMESEIRES_STR) + ","
+                + resultSet.getString(VALUE_STR);
+        Assert.assertEquals(retArray[cnt], ans);
+        cnt++;
+      }
+    }
+    return cnt;
+  }
+
   private void prepareData() {
     try (Connection connection = DriverManager
         .getConnection(Config.IOTDB_URL_PREFIX + "127.0.0.1:6667/", "root",
@@ -255,4 +255,95 @@ public class IoTDBSimpleQueryIT {
     }
   }
 
+  @Test
+  public void testOrderByTimeDesc() throws SQLException, ClassNotFoundException {
+    Class.forName(Config.JDBC_DRIVER_NAME);
+    try(Connection connection = DriverManager
+        .getConnection(Config.IOTDB_URL_PREFIX + "127.0.0.1:6667/",
+            "root", "root");
+        Statement statement = connection.createStatement()){
+      statement.execute("SET STORAGE GROUP TO root.sg1");
+      statement.execute("CREATE TIMESERIES root.sg1.d0.s0 WITH DATATYPE=INT32,ENCODING=PLAIN");
+      statement.execute("CREATE TIMESERIES root.sg1.d0.s1 WITH DATATYPE=TEXT,ENCODING=PLAIN");
+
+      // two sealed seq files, s1 only has even timestamps
+      for (int i = 1; i <= 20; i++) {
+        statement.execute(
+            String.format("INSERT INTO root.sg1.d0(timestamp, s0) VALUES (%d, %d)", i, i));
+        if (i % 2 == 0) {
+          statement.execute(
+              String.format("INSERT INTO root.sg1.d0(timestamp, s1) VALUES (%d, 'v%d')", i, i));
+        }
+        if (i == 10) {
+          statement.execute("flush");
+        }
+      }
+      statement.execute("flush");
+      // unseq data overwriting some seq points and data in the working memtable
+      statement.execute("INSERT INTO root.sg1.d0(timestamp, s0) VALUES (5, 500)");
+      statement.execute("INSERT INTO root.sg1.d0(timestamp, s0) VALUES (15, 1500)");
+      statement.execute("INSERT INTO root.sg1.d0(timestamp, s0) VALUES (30, 30)");
+
+      ResultSet resultSet = statement.executeQuery(
+          "select s0, s1 from root.sg1.d0 where time > 2 order by time desc");
+      long expectedTime = 30;
+      while (resultSet.next()) {
+        long time = resultSet.getLong(1);
+        Assert.assertEquals(expectedTime, time);
+        int expectedValue = time == 5 || time == 15 ? (int) time * 100 : (int) time;
+        Assert.assertEquals(expectedValue, resultSet.getInt(2));
+        if (time % 2 == 0 && time <= 20) {
+          Assert.assertEquals("v" + time, resultSet.getString(3));
+        } else {
+          Assert.assertNull(resultSet.getString(3));
+        }
+        expectedTime = expectedTime == 30 ? 20 : expectedTime - 1;
+      }
+      Assert.assertEquals(2, expectedTime);
+
+      resultSet = statement.executeQuery(
+          "select s0 from root.sg1.d0 order by time desc limit 3 offset 1");
+      long[] expectedTimes = new long[]{20, 19, 18};
+      int count = 0;
+      while (resultSet.next()) {
+        Assert.assertEquals(expectedTimes[count++], resultSet.getLong(1));
+      }
+      Assert.assertEquals(expectedTimes.length, count);
+
+      try {
+        statement.executeQuery("select s0 from root.sg1.d0 where s0 > 5 order by time desc");
+        fail();
+      } catch (SQLException e) {
+        Assert.assertTrue(e.getMessage().contains("does not support value filter"));
+      }
+
+      resultSet = statement.executeQuery(
+          "select s0 from root.sg1.d0 order by value desc limit 3");
+      expectedTimes = new long[]{15, 5, 30};
+      int[] expectedValues = new int[]{1500, 500, 30};
+      count = 0;
+      while (resultSet.next()) {
+        Assert.assertEquals(expectedTimes[count], resultSet.getLong(1));
+        Assert.assertEquals(expectedValues[count++], resultSet.getInt(2));
+      }
+      Assert.assertEquals(expectedTimes.length, count);
+
+      resultSet = statement.executeQuery(
+          "select s0 from root.sg1.d0 where time > 2 order by value limit 2 offset 1");
+      expectedTimes = new long[]{4, 6};
+      count = 0;
+      while (resultSet.next()) {
+        Assert.assertEquals(expectedTimes[count], resultSet.getLong(1));
+        Assert.assertEquals(expectedTimes[count++], resultSet.getInt(2));
+      }
+      Assert.assertEquals(expectedTimes.length, count);
+
+      try {
+        statement.executeQuery("select s1 from root.sg1.d0 order by value desc limit 1");
+        fail();
+      } catch (SQLException e) {
+        Assert.assertTrue(e.getMessage().contains("numeric type"));
+      }
+    }
+  }
 }
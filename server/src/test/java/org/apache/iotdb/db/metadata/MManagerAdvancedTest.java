@@ -33,6 +33,7 @@ import org.apache.iotdb.tsfile.common.conf.TSFileDescriptor;
 import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
 import org.apache.iotdb.tsfile.file.metadata.enums.TSEncoding;
 import org.apache.iotdb.tsfile.read.TimeValuePair;
+import org.apache.iotdb.tsfile.utils.Binary;
 import org.apache.iotdb.tsfile.utils.TsPrimitiveType;
 import org.junit.After;
 import org.junit.Assert;
@@ -156,4 +157,38 @@ public class MManagerAdvancedTest {
     Assert.assertEquals(tv2.getTimestamp(), ((LeafMNode)node).getCachedLast().getTimestamp());
   }
 
+  @Test
+  public void testLastCacheSnapshot() throws MetadataException {
+    TimeValuePair tv1 = new TimeValuePair(1000, TsPrimitiveType.getByType(TSDataType.INT32, 10));
+    TimeValuePair tv2 = new TimeValuePair(2000,
+        TsPrimitiveType.getByType(TSDataType.TEXT, new Binary("last")));
+    ((LeafMNode) mmanager.getNodeByPath("root.vehicle.d0.s0")).updateCachedLast(tv1, true,
+        Long.MIN_VALUE);
+    ((LeafMNode) mmanager.getNodeByPath("root.vehicle.d1.s5")).updateCachedLast(tv2, true,
+        Long.MIN_VALUE);
+    mmanager.saveLastCacheSnapshot();
+
+    ((LeafMNode) mmanager.getNodeByPath("root.vehicle.d0.s0")).resetCache();
+    ((LeafMNode) mmanager.getNodeByPath("root.vehicle.d1.s5")).resetCache();
+    mmanager.loadLastCacheSnapshot();
+    assertEquals(tv1, ((LeafMNode) mmanager.getNodeByPath("root.vehicle.d0.s0")).getCachedLast());
+    assertEquals(tv2, ((LeafMNode) mmanager.getNodeByPath("root.vehicle.d1.s5")).getCachedLast());
+    Assert.assertNull(((LeafMNode) mmanager.getNodeByPath("root.vehicle.d0.s1")).getCachedLast());
+
+    // the snapshot can only be loaded once
+    ((LeafMNode) mmanager.getNodeByPath("root.vehicle.d0.s0")).resetCache();
+    mmanager.loadLastCacheSnapshot();
+    Assert.assertNull(((LeafMNode) mmanager.getNodeByPath("root.vehicle.d0.s0")).getCachedLast());
+  }
+
+  @Test
+  public void testResetCachedLastByDeletion() throws MetadataException {
+    LeafMNode node = (LeafMNode) mmanager.getNodeByPath("root.vehicle.d0.s1");
+    node.updateCachedLast(new TimeValuePair(100, TsPrimitiveType.getByType(TSDataType.INT64, 1L)),
+        true, Long.MIN_VALUE);
+    node.resetCache(50);
+    assertEquals(100, node.getCachedLast().getTimestamp());
+    node.resetCache(100);
+    Assert.assertNull(node.getCachedLast());
+  }
 }
@@ -23,19 +23,31 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 import org.apache.iotdb.db.conf.IoTDBDescriptor;
 import org.apache.iotdb.db.exception.metadata.MetadataException;
+import org.apache.iotdb.db.exception.metadata.PathAlreadyExistException;
 import org.apache.iotdb.db.exception.query.PathException;
+import org.apache.iotdb.db.metadata.mnode.InternalMNode;
+import org.apache.iotdb.db.metadata.mnode.MNode;
+import org.apache.iotdb.db.metadata.tag.TagFilter;
+import org.apache.iotdb.db.qp.physical.sys.CreateTimeSeriesPlan;
+import org.apache.iotdb.db.qp.physical.sys.ShowTimeSeriesPlan;
+import org.apache.iotdb.db.query.dataset.ShowTimeSeriesResult;
 import org.apache.iotdb.db.utils.EnvironmentUtils;
 import org.apache.iotdb.tsfile.common.conf.TSFileDescriptor;
 import org.apache.iotdb.tsfile.file.metadata.enums.CompressionType;
 import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
 import org.apache.iotdb.tsfile.file.metadata.enums.TSEncoding;
+import org.apache.iotdb.tsfile.read.common.Path;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
@@ -412,4 +424,277 @@ public class MManagerBasicTest {
       fail(e.getMessage());
     }
   }
+
+  @Test
+  public void testRecoverFromMTreeSnapshot() throws MetadataException, IOException {
+    MManager manager = MManager.getInstance();
+    manager.setStorageGroup("root.laptop");
+    manager.createTimeseries(new CreateTimeSeriesPlan(new Path("root.laptop.d1.s0"),
+        TSDataType.INT32, TSEncoding.RLE, compressionType, Collections.emptyMap(),
+        Collections.singletonMap("unit", "c"), Collections.singletonMap("owner", "a"),
+        "temperature"));
+    manager.createTimeseries("root.laptop.d1.s1", TSDataType.FLOAT, TSEncoding.GORILLA,
+        compressionType, Collections.emptyMap());
+    manager.setStorageGroup("root.vehicle");
+    manager.createTimeseries("root.vehicle.d0.s0", TSDataType.TEXT, TSEncoding.PLAIN,
+        compressionType, Collections.emptyMap());
+    manager.setTTL("root.vehicle", 1000);
+    manager.createMTreeSnapshot();
+
+    // logged after the snapshot, they are replayed from the log
+    manager.deleteTimeseries("root.laptop.d1.s1");
+    manager.createTimeseries("root.vehicle.d0.s1", TSDataType.INT64, TSEncoding.RLE,
+        compressionType, Collections.emptyMap());
+
+    manager.clear();
+    manager.init();
+
+    assertTrue(manager.isPathExist("root.laptop.d1.s0"));
+    assertFalse(manager.isPathExist("root.laptop.d1.s1"));
+    assertTrue(manager.isPathExist("root.vehicle.d0.s0"));
+    assertTrue(manager.isPathExist("root.vehicle.d0.s1"));
+    assertEquals(TSDataType.INT32, manager.getSeriesType("root.laptop.d1.temperature"));
+    assertEquals(1000, manager.getStorageGroupNode("root.vehicle").getDataTTL());
+    assertEquals(TSEncoding.PLAIN,
+        manager.getSeriesSchema("root.vehicle.d0", "s0").getEncodingType());
+
+    List<ShowTimeSeriesResult> results = manager.getAllTimeseriesSchema(
+        new ShowTimeSeriesPlan(new Path("root"), TagFilter.equal("unit", "c"), 0, 0));
+    assertEquals(1, results.size());
+    assertEquals("root.laptop.d1.s0", results.get(0).getName());
+    assertEquals("a", results.get(0).getTagAndAttribute().get("owner"));
+  }
+
+  @Test
+  public void testFilterByTags() throws MetadataException, IOException {
+    MManager manager = MManager.getInstance();
+    manager.setStorageGroup("root.turbine");
+    for (int d = 0; d < 4; d++) {
+      for (int s = 0; s < 2; s++) {
+        Map<String, String> tags = new HashMap<>();
+        tags.put("unit", s == 0 ? "c" : "kw");
+        tags.put("owner", d % 2 == 0 ? "a" : "b");
+        tags.put("description", "turbine d" + d);
+        manager.createTimeseries(new CreateTimeSeriesPlan(new Path("root.turbine.d" + d + ".s" + s),
+            TSDataType.FLOAT, TSEncoding.RLE, compressionType, Collections.emptyMap(), tags,
+            null, null));
+      }
+    }
+
+    TagFilter filter = TagFilter.and(Arrays.asList(TagFilter.equal("unit", "c"),
+        TagFilter.or(Arrays.asList(TagFilter.equal("owner", "a"),
+            TagFilter.contains("description", "d3")))));
+    assertEquals(Arrays.asList("root.turbine.d0.s0", "root.turbine.d2.s0", "root.turbine.d3.s0"),
+        manager.getAllTimeseriesNameByTags("root", filter));
+    // with and without a wildcard in the prefix path
+    assertEquals(Collections.singletonList("root.turbine.d2.s0"),
+        manager.getAllTimeseriesNameByTags("root.turbine.d2", filter));
+    assertEquals(Arrays.asList("root.turbine.d0.s0", "root.turbine.d2.s0", "root.turbine.d3.s0"),
+        manager.getAllTimeseriesNameByTags("root.*.*.s0", filter));
+    assertTrue(manager.getAllTimeseriesNameByTags("root.turbine.d5", filter).isEmpty());
+
+    List<ShowTimeSeriesResult> results = manager.getAllTimeseriesSchema(
+        new ShowTimeSeriesPlan(new Path("root.turbine"), filter, 1, 1));
+    assertEquals(1, results.size());
+    assertEquals("root.turbine.d2.s0", results.get(0).getName());
+
+    manager.deleteTimeseries("root.turbine.d0.s0");
+    manager.setTagsOrAttributesValue(Collections.singletonMap("owner", "a"), "root.turbine.d1.s0");
+    manager.dropTagsOrAttributes(Collections.singleton("unit"), "root.turbine.d3.s0");
+    assertEquals(Arrays.asList("root.turbine.d1.s0", "root.turbine.d2.s0"),
+        manager.getAllTimeseriesNameByTags("root", filter));
+
+    try {
+      manager.getAllTimeseriesNameByTags("root",
+          TagFilter.or(Arrays.asList(filter, TagFilter.equal("H_Alarm", "90"))));
+      fail();
+    } catch (MetadataException e) {
+      assertEquals("The key H_Alarm is not a tag.", e.getMessage());
+    }
+  }
+
+  @Test
+  public void testAlterTagsAfterMTreeSnapshot() throws MetadataException, IOException {
+    testAlterTagsAndRestart(true);
+  }
+
+  @Test
+  public void testAlterTagsWithoutMTreeSnapshot() throws MetadataException, IOException {
+    testAlterTagsAndRestart(false);
+  }
+
+  private void testAlterTagsAndRestart(boolean createMTreeSnapshot)
+      throws MetadataException, IOException {
+    MManager manager = MManager.getInstance();
+    manager.setStorageGroup("root.laptop");
+    Map<String, String> tags = new HashMap<>();
+    tags.put("unit", "c");
+    tags.put("owner", "a");
+    manager.createTimeseries(new CreateTimeSeriesPlan(new Path("root.laptop.d1.s0"),
+        TSDataType.INT32, TSEncoding.RLE, compressionType, Collections.emptyMap(), tags, null,
+        null));
+    manager.createTimeseries("root.laptop.d1.s1", TSDataType.FLOAT, TSEncoding.GORILLA,
+        compressionType, Collections.emptyMap());
+    manager.createTimeseries(new CreateTimeSeriesPlan(new Path("root.laptop.d1.s2"),
+        TSDataType.INT32, TSEncoding.RLE, compressionType, Collections.emptyMap(),
+        Collections.singletonMap("unit", "c"), null, null));
+    if (createMTreeSnapshot) {
+      manager.createMTreeSnapshot();
+    }
+
+    // the tags are altered in place in the tag file
+    manager.setTagsOrAttributesValue(Collections.singletonMap("unit", "f"), "root.laptop.d1.s0");
+    manager.setTagsOrAttributesValue(Collections.singletonMap("unit", "k"), "root.laptop.d1.s0");
+    manager.setTagsOrAttributesValue(Collections.singletonMap("unit", "f"), "root.laptop.d1.s0");
+    manager.renameTagOrAttributeKey("owner", "user", "root.laptop.d1.s0");
+    // the tags of the log record may contain its separators
+    manager.upsertTagsAndAttributes(Collections.singletonMap("site", "x,y"),
+        Collections.emptyMap(), "root.laptop.d1.s0");
+    manager.dropTagsOrAttributes(Collections.singleton("unit"), "root.laptop.d1.s2");
+    manager.addTags(Collections.singletonMap("unit", "c"), "root.laptop.d1.s1");
+
+    manager.clear();
+    manager.init();
+
+    assertEquals(Collections.singletonList("root.laptop.d1.s1"),
+        manager.getAllTimeseriesNameByTags("root", TagFilter.equal("unit", "c")));
+    assertEquals(Collections.singletonList("root.laptop.d1.s0"),
+        manager.getAllTimeseriesNameByTags("root", TagFilter.equal("unit", "f")));
+    assertTrue(manager.getAllTimeseriesNameByTags("root", TagFilter.equal("unit", "k")).isEmpty());
+    assertEquals(Collections.singletonList("root.laptop.d1.s0"),
+        manager.getAllTimeseriesNameByTags("root", TagFilter.equal("user", "a")));
+    assertEquals(Collections.singletonList("root.laptop.d1.s0"),
+        manager.getAllTimeseriesNameByTags("root", TagFilter.equal("site", "x,y")));
+    try {
+      manager.getAllTimeseriesNameByTags("root", TagFilter.equal("owner", "a"));
+      fail();
+    } catch (MetadataException e) {
+      assertEquals("The key owner is not a tag.", e.getMessage());
+    }
+  }
+
+  @Test
+  public void testCreateTimeseriesInBatch() throws MetadataException {
+    MManager manager = MManager.getInstance();
+    manager.setStorageGroup("root.laptop");
+    manager.createTimeseries("root.laptop.d1.s0", TSDataType.INT32, TSEncoding.RLE,
+        compressionType, Collections.emptyMap());
+    boolean autoCreateSchema = IoTDBDescriptor.getInstance().getConfig()
+        .isAutoCreateSchemaEnabled();
+    IoTDBDescriptor.getInstance().getConfig().setAutoCreateSchemaEnabled(true);
+    try {
+      List<CreateTimeSeriesPlan> plans = new ArrayList<>();
+      for (String path : Arrays.asList("root.laptop.d1.s0", "root.laptop.d1.s1",
+          "root.laptop.d2.s1", "root.laptop.d1.s1", "root.turbine.d1.s1")) {
+        plans.add(new CreateTimeSeriesPlan(new Path(path), TSDataType.INT64, TSEncoding.RLE,
+            compressionType, Collections.emptyMap(), Collections.singletonMap("unit", "c"), null,
+            null));
+      }
+      MetadataException[] failures = manager.createTimeseries(plans);
+
+      assertTrue(failures[0] instanceof PathAlreadyExistException);
+      assertEquals(null, failures[1]);
+      assertEquals(null, failures[2]);
+      assertTrue(failures[3] instanceof PathAlreadyExistException);
+      assertEquals(null, failures[4]);
+    } finally {
+      IoTDBDescriptor.getInstance().getConfig().setAutoCreateSchemaEnabled(autoCreateSchema);
+    }
+    assertEquals(3, manager.getMaximalSeriesNumberAmongStorageGroups());
+
+    // the batch is logged as the timeseries created one by one
+    manager.clear();
+    manager.init();
+    assertEquals(Arrays.asList("root.laptop.d1.s0", "root.laptop.d1.s1", "root.laptop.d2.s1",
+        "root.turbine.d1.s1"), new ArrayList<>(new TreeSet<>(manager.getAllTimeseriesName("root"))));
+    assertEquals(Arrays.asList("root.laptop.d1.s1", "root.laptop.d2.s1", "root.turbine.d1.s1"),
+        manager.getAllTimeseriesNameByTags("root", TagFilter.equal("unit", "c")));
+  }
+
+  @Test
+  public void testConcurrentAutoCreate() throws InterruptedException, MetadataException {
+    MManager manager = MManager.getInstance();
+    int threadNum = 4;
+    int seriesNum = 200;
+    List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < threadNum; t++) {
+      // every two threads auto create the same storage group, and the same devices in it
+      String device = "root.sg" + t % 2 + ".d" + t / 2;
+      threads.add(new Thread(() -> {
+        try {
+          for (int i = 0; i < seriesNum; i++) {
+            MNode node = manager.getDeviceNodeWithAutoCreateAndReadLock(device, true, 1);
+            try {
+              if (!node.hasChild("s" + i)) {
+                manager.createTimeseries(device + ".s" + i, TSDataType.INT64, TSEncoding.RLE,
+                    compressionType, Collections.emptyMap());
+              }
+            } catch (PathAlreadyExistException e) {
+              // created by the other thread
+            } finally {
+              ((InternalMNode) node).readUnlock();
+            }
+          }
+        } catch (Throwable e) {
+          errors.add(e);
+        }
+      }));
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertTrue(errors.toString(), errors.isEmpty());
+    assertEquals(Arrays.asList("root.sg0", "root.sg1"),
+        new ArrayList<>(new TreeSet<>(manager.getAllStorageGroupNames())));
+    assertEquals(threadNum / 2 * seriesNum, manager.getAllTimeseriesName("root.sg0").size());
+    assertEquals(threadNum / 2 * seriesNum, manager.getAllTimeseriesName("root.sg1").size());
+    assertEquals(threadNum / 2 * seriesNum, manager.getMaximalSeriesNumberAmongStorageGroups());
+  }
+
+  @Test(timeout = 60000)
+  public void testConcurrentAutoCreateStorageGroup()
+      throws InterruptedException, MetadataException {
+    MManager manager = MManager.getInstance();
+    boolean autoCreateSchema = IoTDBDescriptor.getInstance().getConfig()
+        .isAutoCreateSchemaEnabled();
+    IoTDBDescriptor.getInstance().getConfig().setAutoCreateSchemaEnabled(true);
+    int threadNum = 4;
+    int sgNum = 50;
+    List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+    List<Thread> threads = new ArrayList<>();
+    try {
+      for (int t = 0; t < threadNum; t++) {
+        // all threads auto create the same storage groups while holding no metadata lock
+        String measurement = "s" + t;
+        threads.add(new Thread(() -> {
+          try {
+            for (int i = 0; i < sgNum; i++) {
+              manager.createTimeseries(new CreateTimeSeriesPlan(
+                  new Path("root.sg" + i + ".d0." + measurement), TSDataType.INT64,
+                  TSEncoding.RLE, compressionType, Collections.emptyMap(), null, null, null));
+            }
+          } catch (Throwable e) {
+            errors.add(e);
+          }
+        }));
+      }
+      for (Thread thread : threads) {
+        thread.start();
+      }
+      for (Thread thread : threads) {
+        thread.join();
+      }
+    } finally {
+      IoTDBDescriptor.getInstance().getConfig().setAutoCreateSchemaEnabled(autoCreateSchema);
+    }
+
+    assertTrue(errors.toString(), errors.isEmpty());
+    assertEquals(sgNum, manager.getAllStorageGroupNames().size());
+    assertEquals(threadNum * sgNum, manager.getAllTimeseriesName("root").size());
+  }
 }
@@ -0,0 +1,157 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.metadata;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.iotdb.db.conf.IoTDBConfig;
+import org.apache.iotdb.db.conf.IoTDBDescriptor;
+import org.apache.iotdb.db.exception.metadata.MetadataException;
+import org.apache.iotdb.db.metadata.mnode.InternalMNode;
+import org.apache.iotdb.db.metadata.mnode.MNode;
+import org.apache.iotdb.db.utils.EnvironmentUtils;
+import org.apache.iotdb.tsfile.common.conf.TSFileDescriptor;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSEncoding;
+
+/**
+ * Bench the schema lookups of insertions into existing devices of one storage group, alone and
+ * while new devices are auto created in other storage groups, as a new device fleet does. The
+ * arguments are the number of inserting threads and creating threads, 4 and 4 by default.
+ */
+public class MManagerConcurrencyBenchmark {
+
+  private static final String STEADY_STORAGE_GROUP = "root.steady";
+  private static final String FLEET_STORAGE_GROUP = "root.fleet";
+  private static final int DEVICE_NUM = 100;
+  private static final int MEASUREMENT_NUM = 10;
+  private static final long DURATION_IN_MS = 5000;
+
+  private static final MManager manager = MManager.getInstance();
+
+  public static void main(String[] args)
+      throws MetadataException, InterruptedException, IOException {
+    int insertThreadNum = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+    int createThreadNum = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+    IoTDBConfig config = IoTDBDescriptor.getInstance().getConfig();
+    config.setEnableParameterAdapter(false);
+    config.setMtreeSnapshotInterval(0);
+    EnvironmentUtils.cleanAllDir();
+    manager.init();
+
+    for (int i = 0; i < DEVICE_NUM; i++) {
+      for (int j = 0; j < MEASUREMENT_NUM; j++) {
+        createTimeseries(STEADY_STORAGE_GROUP + ".d" + i + ".s" + j);
+      }
+    }
+
+    run(insertThreadNum, 0);
+    run(insertThreadNum, createThreadNum);
+
+    manager.clear();
+    EnvironmentUtils.cleanAllDir();
+  }
+
+  private static void run(int insertThreadNum, int createThreadNum) throws InterruptedException {
+    AtomicBoolean running = new AtomicBoolean(true);
+    AtomicLong insertNum = new AtomicLong();
+    AtomicLong maxInsertLatency = new AtomicLong();
+    AtomicLong createdNum = new AtomicLong();
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < insertThreadNum; t++) {
+      threads.add(new Thread(() -> insert(running, insertNum, maxInsertLatency)));
+    }
+    for (int t = 0; t < createThreadNum; t++) {
+      // each creating thread has its own storage group
+      String storageGroup = FLEET_STORAGE_GROUP + createThreadNum + "_" + t;
+      threads.add(new Thread(() -> autoCreate(storageGroup, running, createdNum)));
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    Thread.sleep(DURATION_IN_MS);
+    running.set(false);
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    System.out.println(String.format(
+        "%d inserting threads, %d creating threads: %d insertions/s, max latency %d us, "
+            + "%d timeseries created/s", insertThreadNum, createThreadNum,
+        insertNum.get() * 1000 / DURATION_IN_MS, maxInsertLatency.get() / 1000,
+        createdNum.get() * 1000 / DURATION_IN_MS));
+  }
+
+  /**
+   * Look up the schemas of a device as PlanExecutor.insert() does.
+   */
+  private static void insert(AtomicBoolean running, AtomicLong insertNum,
+      AtomicLong maxInsertLatency) {
+    long i = 0;
+    while (running.get()) {
+      long startTime = System.nanoTime();
+      try {
+        MNode node = manager.getDeviceNodeWithAutoCreateAndReadLock(
+            STEADY_STORAGE_GROUP + ".d" + i++ % DEVICE_NUM, false, 1);
+        try {
+          for (int j = 0; j < MEASUREMENT_NUM; j++) {
+            node.getChild("s" + j);
+          }
+        } finally {
+          ((InternalMNode) node).readUnlock();
+        }
+      } catch (MetadataException e) {
+        throw new IllegalStateException(e);
+      }
+      long latency = System.nanoTime() - startTime;
+      maxInsertLatency.accumulateAndGet(latency, Math::max);
+      insertNum.incrementAndGet();
+    }
+  }
+
+  private static void autoCreate(String storageGroup, AtomicBoolean running,
+      AtomicLong createdNum) {
+    long i = 0;
+    while (running.get()) {
+      String device = storageGroup + ".d" + i++;
+      try {
+        MNode node = manager.getDeviceNodeWithAutoCreateAndReadLock(device, true, 1);
+        try {
+          for (int j = 0; j < MEASUREMENT_NUM; j++) {
+            createTimeseries(device + ".s" + j);
+          }
+        } finally {
+          ((InternalMNode) node).readUnlock();
+        }
+      } catch (MetadataException e) {
+        throw new IllegalStateException(e);
+      }
+      createdNum.addAndGet(MEASUREMENT_NUM);
+    }
+  }
+
+  private static void createTimeseries(String path) throws MetadataException {
+    manager.createTimeseries(path, TSDataType.INT64, TSEncoding.RLE,
+        TSFileDescriptor.getInstance().getConfig().getCompressor(), Collections.emptyMap());
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.metadata;
+
+import java.io.IOException;
+import java.util.Collections;
+import org.apache.iotdb.db.conf.IoTDBConfig;
+import org.apache.iotdb.db.conf.IoTDBDescriptor;
+import org.apache.iotdb.db.exception.metadata.MetadataException;
+import org.apache.iotdb.db.utils.EnvironmentUtils;
+import org.apache.iotdb.tsfile.common.conf.TSFileDescriptor;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSEncoding;
+
+/**
+ * Bench the startup time of MManager with and without the MTree snapshot. The first argument is
+ * the number of timeseries, 1,000,000 by default, e.g., run it with 10000000 and -Xmx8g to bench
+ * 10M timeseries.
+ */
+public class MManagerStartupBenchmark {
+
+  private static final int MEASUREMENT_NUM_PER_DEVICE = 1000;
+  private static final String STORAGE_GROUP = "root.bench";
+
+  public static void main(String[] args) throws MetadataException, IOException {
+    long seriesNum = args.length > 0 ? Long.parseLong(args[0]) : 1_000_000L;
+    IoTDBConfig config = IoTDBDescriptor.getInstance().getConfig();
+    config.setEnableParameterAdapter(false);
+    // only the snapshot created below is used
+    config.setMtreeSnapshotInterval(0);
+    EnvironmentUtils.cleanAllDir();
+
+    MManager manager = MManager.getInstance();
+    manager.init();
+    manager.setStorageGroup(STORAGE_GROUP);
+    long startTime = System.currentTimeMillis();
+    for (long i = 0; i < seriesNum; i++) {
+      manager.createTimeseries(
+          STORAGE_GROUP + ".d" + i / MEASUREMENT_NUM_PER_DEVICE + ".s"
+              + i % MEASUREMENT_NUM_PER_DEVICE, TSDataType.INT64, TSEncoding.RLE,
+          TSFileDescriptor.getInstance().getConfig().getCompressor(), Collections.emptyMap());
+    }
+    System.out.println(
+        "Created " + seriesNum + " timeseries in " + (System.currentTimeMillis() - startTime)
+            + "ms");
+
+    manager.clear();
+    startTime = System.currentTimeMillis();
+    manager.init();
+    System.out.println(
+        "Startup by replaying the whole log: " + (System.currentTimeMillis() - startTime) + "ms");
+
+    startTime = System.currentTimeMillis();
+    manager.createMTreeSnapshot();
+    System.out.println(
+        "Created the MTree snapshot in " + (System.currentTimeMillis() - startTime) + "ms");
+
+    manager.clear();
+    startTime = System.currentTimeMillis();
+    manager.init();
+    System.out.println(
+        "Startup by loading the MTree snapshot: " + (System.currentTimeMillis() - startTime)
+            + "ms");
+
+    manager.clear();
+    EnvironmentUtils.cleanAllDir();
+  }
+}
@@ -0,0 +1,61 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.metadata;
+
+import java.util.Collections;
+import org.apache.iotdb.db.exception.metadata.MetadataException;
+import org.apache.iotdb.db.metadata.mnode.LeafMNode;
+import org.apache.iotdb.tsfile.file.metadata.enums.CompressionType;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSEncoding;
+import org.apache.iotdb.tsfile.read.TimeValuePair;
+import org.apache.iotdb.tsfile.utils.RamUsageEstimator;
+import org.apache.iotdb.tsfile.utils.TsPrimitiveType;
+
+/**
+ * Estimate the memory taken by each timeseries in the MTree with RamUsageEstimator. The arguments
+ * are the number of devices and the number of measurements of each device, 1000 and 100 by
+ * default.
+ */
+public class MTreeMemoryBenchmark {
+
+  public static void main(String[] args) throws MetadataException {
+    int deviceNum = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+    int measurementNum = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+    long seriesNum = (long) deviceNum * measurementNum;
+
+    MTree mtree = new MTree();
+    mtree.setStorageGroup("root.bench");
+    for (int i = 0; i < deviceNum; i++) {
+      for (int j = 0; j < measurementNum; j++) {
+        mtree.createTimeseries("root.bench.d" + i + ".s" + j, TSDataType.INT64, TSEncoding.RLE,
+            CompressionType.SNAPPY, Collections.emptyMap(), null);
+      }
+    }
+    System.out.println("Without last cache: "
+        + RamUsageEstimator.sizeOf(mtree) / seriesNum + " bytes per timeseries");
+
+    for (LeafMNode leafMNode : mtree.getAllLeafMNodes()) {
+      leafMNode.updateCachedLast(new TimeValuePair(100, new TsPrimitiveType.TsLong(100)), false,
+          Long.MIN_VALUE);
+    }
+    System.out.println("With last cache: "
+        + RamUsageEstimator.sizeOf(mtree) / seriesNum + " bytes per timeseries");
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.metadata;
+
+import java.util.Collections;
+import org.apache.iotdb.db.conf.IoTDBConfig;
+import org.apache.iotdb.db.conf.IoTDBDescriptor;
+import org.apache.iotdb.db.exception.metadata.MetadataException;
+import org.apache.iotdb.db.utils.EnvironmentUtils;
+import org.apache.iotdb.tsfile.common.conf.TSFileDescriptor;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSEncoding;
+
+/**
+ * Bench resolving wildcard paths in a deep MTree, e.g., root.bench.*.*.d1*, with and without the
+ * path pattern cache. The first argument is the fan-out of each level, 10 by default, and the
+ * second is the number of times each pattern is resolved, 1000 by default.
+ */
+public class PathPatternCacheBenchmark {
+
+  private static final String STORAGE_GROUP = "root.bench";
+  private static final String[] PATTERNS = {"root.bench.*.*.d1*.s1", "root.bench.*.*.d*",
+      "root.bench.r1.*.*.*", "root.bench.*.m2.d3.*"};
+
+  public static void main(String[] args) throws MetadataException {
+    int fanOut = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+    int times = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+    IoTDBConfig config = IoTDBDescriptor.getInstance().getConfig();
+    config.setEnableParameterAdapter(false);
+    int cacheSize = config.getPathPatternCacheSize();
+    EnvironmentUtils.cleanAllDir();
+
+    MManager manager = MManager.getInstance();
+    manager.init();
+    manager.setStorageGroup(STORAGE_GROUP);
+    for (int r = 0; r < fanOut; r++) {
+      for (int m = 0; m < fanOut; m++) {
+        for (int d = 0; d < fanOut; d++) {
+          for (int s = 0; s < fanOut; s++) {
+            manager.createTimeseries(
+                STORAGE_GROUP + ".r" + r + ".m" + m + ".d" + d + ".s" + s, TSDataType.INT64,
+                TSEncoding.RLE, TSFileDescriptor.getInstance().getConfig().getCompressor(),
+                Collections.emptyMap());
+          }
+        }
+      }
+    }
+    System.out.println("Created " + (long) Math.pow(fanOut, 4) + " timeseries");
+
+    for (int size : new int[]{0, cacheSize}) {
+      config.setPathPatternCacheSize(size);
+      manager.clear();
+      manager.init();
+      long startTime = System.currentTimeMillis();
+      for (int i = 0; i < times; i++) {
+        for (String pattern : PATTERNS) {
+          manager.getAllTimeseriesPath(pattern);
+        }
+      }
+      System.out.println(
+          "Resolved " + PATTERNS.length + " patterns " + times + " times with cache size " + size
+              + ": " + (System.currentTimeMillis() - startTime) + "ms, hit ratio "
+              + manager.getPathPatternCacheHitRatio());
+    }
+
+    config.setPathPatternCacheSize(cacheSize);
+    manager.clear();
+    EnvironmentUtils.cleanAllDir();
+  }
+}
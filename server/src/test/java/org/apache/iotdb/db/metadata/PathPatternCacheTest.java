@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.metadata;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.apache.iotdb.tsfile.read.common.Path;
+import org.junit.Test;
+
+public class PathPatternCacheTest {
+
+  private static List<Path> paths(String... paths) {
+    List<Path> result = new ArrayList<>();
+    for (String path : paths) {
+      result.add(new Path(path));
+    }
+    return result;
+  }
+
+  @Test
+  public void testGet() {
+    PathPatternCache cache = new PathPatternCache(100);
+    assertNull(cache.get("root.sg.*.s1"));
+    cache.put("root.sg.*.s1", paths("root.sg.d1.s1", "root.sg.d2.s1"));
+    assertEquals(paths("root.sg.d1.s1", "root.sg.d2.s1"), cache.get("root.sg.*.s1"));
+    assertEquals(0.5, cache.calculateHitRatio(), 0.0);
+  }
+
+  @Test
+  public void testInvalidate() {
+    PathPatternCache cache = new PathPatternCache(100);
+    cache.put("root.sg.*.s1", Collections.emptyList());
+    cache.put("root.sg.d*", Collections.emptyList());
+    cache.put("root.sg.d1.s1.a", Collections.emptyList());
+    cache.put("root.other", Collections.emptyList());
+    cache.put("root.sg.d1.temperature", Collections.emptyList());
+
+    cache.invalidate(MetaUtils.getNodeNames("root.sg.d1.s1"), "temperature");
+    // a pattern longer than the timeseries or in another subtree is kept
+    assertNotNull(cache.get("root.sg.d1.s1.a"));
+    assertNotNull(cache.get("root.other"));
+    assertNull(cache.get("root.sg.*.s1"));
+    assertNull(cache.get("root.sg.d*"));
+    // matched by the alias
+    assertNull(cache.get("root.sg.d1.temperature"));
+
+    cache.put("root.sg.e*.s1", Collections.emptyList());
+    cache.invalidate(MetaUtils.getNodeNames("root.sg.d2.s1"), null);
+    assertNotNull(cache.get("root.sg.e*.s1"));
+  }
+
+  @Test
+  public void testInvalidateSubtree() {
+    PathPatternCache cache = new PathPatternCache(100);
+    cache.put("root.*", Collections.emptyList());
+    cache.put("root.sg1.d1.*", Collections.emptyList());
+    cache.put("root.sg2.d1.*", Collections.emptyList());
+
+    cache.invalidateSubtree(MetaUtils.getNodeNames("root.sg1"));
+    assertNull(cache.get("root.*"));
+    assertNull(cache.get("root.sg1.d1.*"));
+    assertNotNull(cache.get("root.sg2.d1.*"));
+  }
+
+  @Test
+  public void testEviction() {
+    PathPatternCache cache = new PathPatternCache(3);
+    cache.put("root.sg.d1.*", paths("root.sg.d1.s1", "root.sg.d1.s2"));
+    cache.put("root.sg.d2.*", paths("root.sg.d2.s1"));
+    // d1 becomes the most recently used one
+    assertNotNull(cache.get("root.sg.d1.*"));
+    cache.put("root.sg.d3.*", paths("root.sg.d3.s1"));
+    assertNull(cache.get("root.sg.d2.*"));
+    assertNotNull(cache.get("root.sg.d1.*"));
+    assertEquals(3, cache.size());
+
+    // too many timeseries to be cached
+    cache.put("root.sg.*", paths("root.sg.d1.s1", "root.sg.d1.s2", "root.sg.d2.s1",
+        "root.sg.d3.s1"));
+    assertNull(cache.get("root.sg.*"));
+    assertEquals(3, cache.size());
+  }
+
+  @Test
+  public void testDisabled() {
+    PathPatternCache cache = new PathPatternCache(0);
+    cache.put("root.sg.d1.*", paths("root.sg.d1.s1"));
+    assertNull(cache.get("root.sg.d1.*"));
+    assertEquals(0, cache.size());
+  }
+}
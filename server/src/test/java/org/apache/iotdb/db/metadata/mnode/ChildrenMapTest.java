@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.metadata.mnode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Test;
+
+public class ChildrenMapTest {
+
+  private InternalMNode parent = new InternalMNode(null, "root");
+
+  @Test
+  public void testSmallMap() {
+    ChildrenMap children = new ChildrenMap();
+    MNode s1 = new InternalMNode(parent, "s1");
+    MNode s2 = new InternalMNode(parent, "s2");
+    assertNull(children.put("s1", s1));
+    assertNull(children.put("s2", s2));
+    assertEquals(2, children.size());
+    assertSame(s1, children.get("s1"));
+    assertTrue(children.containsKey("s2"));
+    assertFalse(children.containsKey("s3"));
+
+    assertSame(s1, children.remove("s1"));
+    assertNull(children.remove("s1"));
+    assertNull(children.get("s1"));
+    assertEquals(1, children.size());
+    assertEquals("s2", children.keySet().iterator().next());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testPutWithAnotherName() {
+    new ChildrenMap().put("s1", new InternalMNode(parent, "s2"));
+  }
+
+  /**
+   * Apply the same random operations to a ChildrenMap and a LinkedHashMap, both through the small
+   * array and the hash index.
+   */
+  @Test
+  public void testRandomOperations() {
+    Random random = new Random(0);
+    ChildrenMap children = new ChildrenMap();
+    Map<String, MNode> expected = new LinkedHashMap<>();
+    for (int i = 0; i < 20000; i++) {
+      String name = "s" + random.nextInt(i < 10000 ? 12 : 500);
+      int operation = random.nextInt(3);
+      if (operation < 2) {
+        MNode node = new InternalMNode(parent, name);
+        assertSame(expected.put(name, node), children.put(name, node));
+      } else {
+        assertSame(expected.remove(name), children.remove(name));
+      }
+      assertEquals(expected.size(), children.size());
+      if (i % 100 == 0) {
+        assertEquals(new ArrayList<>(expected.values()), new ArrayList<>(children.values()));
+        for (String key : expected.keySet()) {
+          assertSame(expected.get(key), children.get(key));
+        }
+      }
+    }
+    assertEquals(expected, children);
+  }
+
+  @Test
+  public void testIteratorRemove() {
+    ChildrenMap children = new ChildrenMap();
+    for (int i = 0; i < 20; i++) {
+      children.put("s" + i, new InternalMNode(parent, "s" + i));
+    }
+    Iterator<MNode> iterator = children.values().iterator();
+    while (iterator.hasNext()) {
+      if (Integer.parseInt(iterator.next().getName().substring(1)) % 2 == 0) {
+        iterator.remove();
+      }
+    }
+    assertEquals(10, children.size());
+    int i = 1;
+    for (String name : children.keySet()) {
+      assertEquals("s" + i, name);
+      assertTrue(children.containsKey(name));
+      i += 2;
+    }
+    assertFalse(children.containsKey("s0"));
+  }
+}
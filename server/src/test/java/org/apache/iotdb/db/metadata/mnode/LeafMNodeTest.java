@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.metadata.mnode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.apache.iotdb.tsfile.file.metadata.enums.CompressionType;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSEncoding;
+import org.apache.iotdb.tsfile.read.TimeValuePair;
+import org.apache.iotdb.tsfile.utils.Binary;
+import org.apache.iotdb.tsfile.utils.TsPrimitiveType;
+import org.junit.Test;
+
+public class LeafMNodeTest {
+
+  private InternalMNode device = new InternalMNode(new InternalMNode(null, "root"), "d1");
+
+  @Test
+  public void testSharedSchema() {
+    InternalMNode anotherDevice = new InternalMNode(device.getParent(), "d2");
+    LeafMNode s1 = new LeafMNode(device, "s1", null, TSDataType.INT64, TSEncoding.RLE,
+        CompressionType.SNAPPY, Collections.emptyMap());
+    LeafMNode anotherS1 = new LeafMNode(anotherDevice, "s1", null, TSDataType.INT64,
+        TSEncoding.RLE, CompressionType.SNAPPY, null);
+    LeafMNode s1WithProps = new LeafMNode(anotherDevice, "s1", null, TSDataType.INT64,
+        TSEncoding.RLE, CompressionType.SNAPPY, Collections.singletonMap("max_point_number", "2"));
+    assertSame(s1.getSchema(), anotherS1.getSchema());
+    assertSame(s1.getName(), anotherS1.getName());
+    assertNotSame(s1.getSchema(), s1WithProps.getSchema());
+    assertEquals("2", s1WithProps.getSchema().getProps().get("max_point_number"));
+    assertEquals("root.d2.s1", anotherS1.getFullPath());
+  }
+
+  @Test
+  public void testCachedLast() {
+    TsPrimitiveType[] values = new TsPrimitiveType[]{new TsPrimitiveType.TsBoolean(true),
+        new TsPrimitiveType.TsInt(-3), new TsPrimitiveType.TsLong(Long.MIN_VALUE),
+        new TsPrimitiveType.TsFloat(-1.5f), new TsPrimitiveType.TsDouble(Double.MAX_VALUE),
+        new TsPrimitiveType.TsBinary(Binary.valueOf("last"))};
+    for (TsPrimitiveType value : values) {
+      LeafMNode leaf = new LeafMNode(device, "s_" + value.getDataType(), null,
+          value.getDataType(), TSEncoding.PLAIN, CompressionType.UNCOMPRESSED, null);
+      assertNull(leaf.getCachedLast());
+
+      leaf.updateCachedLast(new TimeValuePair(10, value), true, Long.MIN_VALUE);
+      assertEquals(new TimeValuePair(10, value), leaf.getCachedLast());
+      // each read builds its own pair, so the cached value cannot be modified by a caller
+      assertNotSame(leaf.getCachedLast(), leaf.getCachedLast());
+      // an older value does not replace the cached one
+      leaf.updateCachedLast(new TimeValuePair(5, value), true, Long.MIN_VALUE);
+      assertEquals(10, leaf.getCachedLast().getTimestamp());
+
+      leaf.resetCache(9);
+      assertEquals(10, leaf.getCachedLast().getTimestamp());
+      leaf.resetCache(10);
+      assertNull(leaf.getCachedLast());
+    }
+  }
+
+  @Test
+  public void testConcurrentUpdateCachedLast() throws InterruptedException {
+    LeafMNode leaf = new LeafMNode(device, "s1", null, TSDataType.INT64, TSEncoding.RLE,
+        CompressionType.SNAPPY, null);
+    int threadNum = 4;
+    int pointNum = 10000;
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < threadNum; t++) {
+      int offset = t;
+      threads.add(new Thread(() -> {
+        for (int i = offset; i < pointNum; i += threadNum) {
+          leaf.updateCachedLast(new TimeValuePair(i, new TsPrimitiveType.TsLong(i)), false,
+              Long.MIN_VALUE);
+        }
+      }));
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    // the latest value wins whatever the order of the updates
+    assertEquals(new TimeValuePair(pointNum - 1, new TsPrimitiveType.TsLong(pointNum - 1)),
+        leaf.getCachedLast());
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.metadata.tag;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import org.junit.Test;
+
+public class PostingListTest {
+
+  /**
+   * Apply the same random operations to a PostingList and a TreeSet, with the list turning into a
+   * bitmap as it becomes dense and back into an array as it becomes sparse.
+   */
+  @Test
+  public void testRandomOperations() {
+    Random random = new Random(0);
+    PostingList postingList = new PostingList();
+    Set<Integer> expected = new TreeSet<>();
+    for (int i = 0; i < 20000; i++) {
+      int id = random.nextInt(1000);
+      // add more than remove in the first half, and the opposite in the second half
+      boolean add = random.nextInt(4) < (i < 10000 ? 3 : 1);
+      if (add) {
+        assertEquals(expected.add(id), postingList.add(id));
+      } else {
+        assertEquals(expected.remove(id), postingList.remove(id));
+      }
+      assertEquals(expected.size(), postingList.size());
+      assertEquals(expected.contains(id), postingList.contains(id));
+    }
+    assertEquals(new ArrayList<>(expected), toList(postingList));
+  }
+
+  @Test
+  public void testAndOr() {
+    Random random = new Random(0);
+    // sparse and dense lists, so that every combination of arrays and bitmaps is covered
+    int[] densities = {200, 2};
+    for (int density1 : densities) {
+      for (int density2 : densities) {
+        PostingList list1 = new PostingList();
+        PostingList list2 = new PostingList();
+        Set<Integer> set1 = new TreeSet<>();
+        Set<Integer> set2 = new TreeSet<>();
+        for (int id = 0; id < 10000; id++) {
+          if (random.nextInt(density1) == 0) {
+            list1.add(id);
+            set1.add(id);
+          }
+          if (random.nextInt(density2) == 0 && id < 8000) {
+            list2.add(id);
+            set2.add(id);
+          }
+        }
+
+        Set<Integer> and = new TreeSet<>(set1);
+        and.retainAll(set2);
+        assertEquals(new ArrayList<>(and), toList(list1.and(list2)));
+        assertEquals(new ArrayList<>(and), toList(list2.and(list1)));
+        Set<Integer> or = new TreeSet<>(set1);
+        or.addAll(set2);
+        assertEquals(new ArrayList<>(or), toList(list1.or(list2)));
+        assertEquals(new ArrayList<>(or), toList(list2.or(list1)));
+        assertEquals(or.size(), list1.or(list2).size());
+      }
+    }
+    assertTrue(new PostingList().or(new PostingList()).isEmpty());
+  }
+
+  @Test
+  public void testSerialize() throws IOException {
+    PostingList sparse = new PostingList();
+    sparse.add(3);
+    sparse.add(100000);
+    PostingList dense = new PostingList();
+    for (int id = 0; id < 1000; id += 3) {
+      dense.add(id);
+    }
+
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    sparse.serialize(outputStream);
+    dense.serialize(outputStream);
+    ByteArrayInputStream inputStream = new ByteArrayInputStream(outputStream.toByteArray());
+    PostingList sparseCopy = PostingList.deserialize(inputStream);
+    PostingList denseCopy = PostingList.deserialize(inputStream);
+    assertEquals(toList(sparse), toList(sparseCopy));
+    assertEquals(toList(dense), toList(denseCopy));
+    assertFalse(denseCopy.contains(1));
+    assertTrue(denseCopy.add(1));
+    assertEquals(dense.size() + 1, denseCopy.size());
+  }
+
+  private static List<Integer> toList(PostingList postingList) {
+    List<Integer> list = new ArrayList<>();
+    for (PrimitiveIterator.OfInt iterator = postingList.iterator(); iterator.hasNext(); ) {
+      list.add(iterator.nextInt());
+    }
+    return list;
+  }
+}
@@ -20,9 +20,11 @@ package org.apache.iotdb.db.qp;
 
 import org.antlr.v4.runtime.misc.ParseCancellationException;
 import org.apache.iotdb.db.exception.query.QueryProcessException;
+import org.apache.iotdb.db.exception.runtime.SQLParserException;
 import org.apache.iotdb.db.metadata.MManager;
 import org.apache.iotdb.db.qp.logical.Operator.OperatorType;
 import org.apache.iotdb.db.qp.physical.PhysicalPlan;
+import org.apache.iotdb.db.qp.physical.crud.DeletePlan;
 import org.apache.iotdb.db.utils.EnvironmentUtils;
 import org.apache.iotdb.tsfile.common.conf.TSFileDescriptor;
 import org.apache.iotdb.tsfile.file.metadata.enums.CompressionType;
@@ -35,6 +37,7 @@ import org.junit.Test;
 import java.util.Collections;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 
 public class PlannerTest {
 
@@ -146,6 +149,32 @@ public class PlannerTest {
     assertEquals(OperatorType.QUERY, plan13.getOperatorType());
   }
 
+  @Test
+  public void parseDeleteTimeRange() throws QueryProcessException {
+    DeletePlan plan = (DeletePlan) processor.parseSQLToPhysicalPlan(
+        "delete from root.vehicle.device1.sensor1 where time > 100 and time < 200");
+    assertEquals(101, plan.getDeleteStartTime());
+    assertEquals(199, plan.getDeleteTime());
+
+    plan = (DeletePlan) processor.parseSQLToPhysicalPlan(
+        "delete from root.vehicle.device1.sensor1 where time < 9223372036854775808");
+    assertEquals(Long.MIN_VALUE, plan.getDeleteStartTime());
+    assertEquals(Long.MAX_VALUE, plan.getDeleteTime());
+
+    String[] emptyRanges = {"time < -9223372036854775808", "time > 9223372036854775807",
+        "time >= 9223372036854775808", "time > 200 and time < 100"};
+    for (String emptyRange : emptyRanges) {
+      try {
+        processor.parseSQLToPhysicalPlan(
+            "delete from root.vehicle.device1.sensor1 where " + emptyRange);
+        fail(emptyRange);
+      } catch (SQLParserException e) {
+        assertEquals("For delete command, the time range of the where clause is empty",
+            e.getMessage());
+      }
+    }
+  }
+
   @Test(expected = ParseCancellationException.class)
   public void parseErrorSQLToPhysicalPlan() throws QueryProcessException {
     String createTSStatement = "create timeseriess root.vehicle.d1.s1 with datatype=INT32,encoding=RLE";
@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.qp.executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.Collections;
+import org.apache.iotdb.db.metadata.MManager;
+import org.apache.iotdb.db.metadata.mnode.LeafMNode;
+import org.apache.iotdb.db.qp.physical.crud.InsertPlan;
+import org.apache.iotdb.db.qp.physical.crud.InsertTabletPlan;
+import org.apache.iotdb.db.qp.physical.sys.CreateTimeSeriesPlan;
+import org.apache.iotdb.db.utils.EnvironmentUtils;
+import org.apache.iotdb.tsfile.file.metadata.enums.CompressionType;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSEncoding;
+import org.apache.iotdb.tsfile.read.common.Path;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PlanExecutorTest {
+
+  private static final String DEVICE_ID = "root.executor.d0";
+
+  private PlanExecutor executor;
+  private LeafMNode measurementMNode;
+
+  @Before
+  public void setUp() throws Exception {
+    EnvironmentUtils.envSetUp();
+    MManager.getInstance().setStorageGroup("root.executor");
+    MManager.getInstance().createTimeseries(new CreateTimeSeriesPlan(
+        new Path(DEVICE_ID + ".s0"), TSDataType.INT64, TSEncoding.PLAIN,
+        CompressionType.UNCOMPRESSED, null, null, null, "temperature"));
+    measurementMNode = (LeafMNode) MManager.getInstance().getNodeByPath(DEVICE_ID + ".s0");
+    executor = new PlanExecutor();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    EnvironmentUtils.cleanEnv();
+  }
+
+  @Test
+  public void testInsertInternsIds() throws Exception {
+    // the ids of a request are new String instances
+    InsertPlan insertPlan = new InsertPlan(new String(DEVICE_ID), 100,
+        new String[]{new String("s0")}, new String[]{"1"});
+    executor.insert(insertPlan);
+
+    assertSame(measurementMNode.getParent().getFullPath(), insertPlan.getDeviceId());
+    assertSame(measurementMNode.getName(), insertPlan.getMeasurements()[0]);
+    assertSame(measurementMNode, insertPlan.getMeasurementMNodes()[0]);
+    assertEquals(100, measurementMNode.getCachedLast().getTimestamp());
+    assertEquals(1L, measurementMNode.getCachedLast().getValue().getLong());
+  }
+
+  @Test
+  public void testInsertTabletInternsIdsAndResolvesAlias() throws Exception {
+    InsertTabletPlan insertTabletPlan = new InsertTabletPlan(new String(DEVICE_ID),
+        new String[]{"temperature"}, Collections.singletonList(TSDataType.INT64.ordinal()));
+    insertTabletPlan.setTimes(new long[]{100, 200});
+    insertTabletPlan.setColumns(new Object[]{new long[]{1, 2}});
+    insertTabletPlan.setRowCount(2);
+    executor.insertTablet(insertTabletPlan);
+
+    assertSame(measurementMNode.getParent().getFullPath(), insertTabletPlan.getDeviceId());
+    assertSame(measurementMNode.getName(), insertTabletPlan.getMeasurements()[0]);
+    assertSame(measurementMNode, insertTabletPlan.getMeasurementMNodes()[0]);
+    assertEquals(200, measurementMNode.getCachedLast().getTimestamp());
+    assertEquals(2L, measurementMNode.getCachedLast().getValue().getLong());
+  }
+}
@@ -21,6 +21,8 @@ package org.apache.iotdb.db.qp.plan;
 import static org.junit.Assert.assertEquals;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
 import org.antlr.v4.runtime.RecognitionException;
 import org.apache.iotdb.db.exception.metadata.MetadataException;
 import org.apache.iotdb.db.exception.query.QueryProcessException;
@@ -28,6 +30,7 @@ import org.apache.iotdb.db.metadata.MManager;
 import org.apache.iotdb.db.qp.Planner;
 import org.apache.iotdb.db.qp.physical.PhysicalPlan;
 import org.apache.iotdb.db.qp.physical.crud.RawDataQueryPlan;
+import org.apache.iotdb.db.qp.physical.sys.CreateTimeSeriesPlan;
 import org.apache.iotdb.db.qp.strategy.optimizer.ConcatPathOptimizer;
 import org.apache.iotdb.db.utils.EnvironmentUtils;
 import org.apache.iotdb.tsfile.file.metadata.enums.CompressionType;
@@ -81,6 +84,27 @@ public class ConcatOptimizerTest {
     assertEquals("root.laptop.d1.s1", plan.getPaths().get(0).toString());
   }
 
+  @Test
+  public void testConcatWithTags() throws MetadataException, QueryProcessException {
+    MManager.getInstance().createTimeseries(new CreateTimeSeriesPlan(
+        new Path("root.laptop.d4.s1"), TSDataType.INT64, TSEncoding.PLAIN,
+        CompressionType.UNCOMPRESSED, null, Collections.singletonMap("unit", "c"), null, null));
+    MManager.getInstance().createTimeseries(new CreateTimeSeriesPlan(
+        new Path("root.laptop.d5.s1"), TSDataType.INT64, TSEncoding.PLAIN,
+        CompressionType.UNCOMPRESSED, null, Collections.singletonMap("unit", "f"), null, null));
+
+    PhysicalPlan plan = processor.parseSQLToPhysicalPlan(
+        "select * from root.laptop.* tags(unit=c)");
+    assertEquals(Collections.singletonList(new Path("root.laptop.d4.s1")), plan.getPaths());
+    plan = processor.parseSQLToPhysicalPlan(
+        "select s1 from root.laptop.d1, root.laptop.d4, root.laptop.d5 tags(unit=c or unit=f)");
+    assertEquals(Arrays.asList(new Path("root.laptop.d4.s1"), new Path("root.laptop.d5.s1")),
+        plan.getPaths());
+    plan = processor.parseSQLToPhysicalPlan(
+        "select last s1 from root.laptop.* tags(unit=f)");
+    assertEquals(Collections.singletonList(new Path("root.laptop.d5.s1")), plan.getPaths());
+  }
+
   @Test
   public void testConcat2() throws QueryProcessException, RecognitionException {
     String inputSQL = "select s1 from root.laptop.*";
@@ -205,6 +205,18 @@ public class LogicalPlanSmallTest {
     Assert.assertFalse(((QueryOperator) operator).isAlignByTime());
   }
 
+  @Test
+  public void testShowTimeseriesWithTagFilter() {
+    String sqlStr = "show timeseries root.ln where unit=c and (owner=a or description contains 'test1')";
+    RootOperator operator = (RootOperator) parseDriver
+        .parse(sqlStr, IoTDBDescriptor.getInstance().getConfig().getZoneID());
+    Assert.assertEquals(ShowTimeSeriesOperator.class, operator.getClass());
+    ShowTimeSeriesOperator showTimeSeriesOperator = (ShowTimeSeriesOperator) operator;
+    Assert.assertEquals(new Path("root.ln"), showTimeSeriesOperator.getPath());
+    Assert.assertEquals("(unit=c) and ((owner=a) or (description contains test1))",
+        showTimeSeriesOperator.getTagFilter().toString());
+  }
+
   @Test
   public void testNotDisableAlign() {
     String sqlStr = "select * from root.vehicle";
@@ -475,6 +475,50 @@ public class PhysicalPlanTest {
     // because the SLIMIT clause takes effect before the physicalPlan is finally generated.
   }
 
+  @Test
+  public void testOrderByTimeDesc() throws QueryProcessException {
+    String sqlStr = "SELECT s1 FROM root.vehicle.d1 WHERE time < 10 order by time desc limit 5";
+    QueryPlan plan = (QueryPlan) processor.parseSQLToPhysicalPlan(sqlStr);
+    assertFalse(plan.isAscending());
+    assertEquals(5, plan.getRowLimit());
+
+    sqlStr = "SELECT s1 FROM root.vehicle.d1 order by time asc";
+    plan = (QueryPlan) processor.parseSQLToPhysicalPlan(sqlStr);
+    assertTrue(plan.isAscending());
+
+    try {
+      processor.parseSQLToPhysicalPlan("SELECT count(s1) FROM root.vehicle.d1 order by time desc");
+      fail();
+    } catch (QueryProcessException e) {
+      assertEquals("Order by time desc can only be applied to raw data query aligned by time.",
+          e.getMessage());
+    }
+  }
+
+  @Test
+  public void testOrderByValue() throws QueryProcessException {
+    String sqlStr = "SELECT s1 FROM root.vehicle.d1 WHERE time < 10 order by value desc limit 5";
+    QueryPlan plan = (QueryPlan) processor.parseSQLToPhysicalPlan(sqlStr);
+    assertTrue(plan.isOrderByValue());
+    assertFalse(plan.isAscending());
+    assertEquals(5, plan.getRowLimit());
+
+    try {
+      processor.parseSQLToPhysicalPlan("SELECT s1 FROM root.vehicle.d1 order by value");
+      fail();
+    } catch (QueryProcessException e) {
+      assertEquals("Order by value must be used with a limit.", e.getMessage());
+    }
+
+    try {
+      processor.parseSQLToPhysicalPlan(
+          "SELECT s1 FROM root.vehicle.d1, root.vehicle.d2 order by value limit 1");
+      fail();
+    } catch (QueryProcessException e) {
+      assertEquals("Order by value can only be applied to a single series.", e.getMessage());
+    }
+  }
+
   @Test
   public void testQueryFloat1() throws QueryProcessException {
     String sqlStr = "SELECT s1 FROM root.vehicle.d1 WHERE s1 > 20.5e3";
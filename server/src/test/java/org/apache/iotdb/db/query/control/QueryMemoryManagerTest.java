@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.query.control;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.apache.iotdb.db.conf.IoTDBConfig;
+import org.apache.iotdb.db.conf.IoTDBDescriptor;
+import org.apache.iotdb.db.exception.query.QueryMemoryExceededException;
+import org.apache.iotdb.db.exception.query.QueryProcessException;
+import org.apache.iotdb.db.qp.physical.crud.RawDataQueryPlan;
+import org.apache.iotdb.db.query.context.QueryMemoryTracker;
+import org.apache.iotdb.rpc.TSStatusCode;
+import org.apache.iotdb.tsfile.common.conf.TSFileDescriptor;
+import org.apache.iotdb.tsfile.read.common.Path;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class QueryMemoryManagerTest {
+
+  private IoTDBConfig config = IoTDBDescriptor.getInstance().getConfig();
+  private QueryMemoryManager manager = QueryMemoryManager.getInstance();
+  private long prevTotalMemory;
+  private long prevWaitTime;
+  private boolean prevEnableControl;
+
+  @Before
+  public void setUp() {
+    prevTotalMemory = manager.getTotalMemory();
+    prevWaitTime = config.getQueryMemoryWaitTimeInMs();
+    prevEnableControl = config.isEnableQueryMemoryControl();
+    config.setEnableQueryMemoryControl(true);
+    manager.setTotalMemory(100);
+  }
+
+  @After
+  public void tearDown() {
+    manager.setTotalMemory(prevTotalMemory);
+    manager.resetRawSeriesMemory();
+    config.setQueryMemoryWaitTimeInMs(prevWaitTime);
+    config.setEnableQueryMemoryControl(prevEnableControl);
+  }
+
+  @Test
+  public void testAdmitAndRelease() throws QueryProcessException, InterruptedException {
+    config.setQueryMemoryWaitTimeInMs(10000);
+    manager.admit(1, 60);
+    assertEquals(60, manager.getUsedMemory());
+
+    CountDownLatch admitted = new CountDownLatch(1);
+    Thread waitingQuery = new Thread(() -> {
+      try {
+        // larger than the total memory, it can only run alone
+        manager.admit(2, 1000);
+        admitted.countDown();
+      } catch (QueryProcessException e) {
+        fail(e.getMessage());
+      }
+    });
+    long queuedQueryNum = manager.getQueuedQueryNum();
+    waitingQuery.start();
+    assertTrue(!admitted.await(200, TimeUnit.MILLISECONDS));
+    assertEquals(1, manager.getWaitingQueryNum());
+
+    manager.release(1);
+    assertTrue(admitted.await(5, TimeUnit.SECONDS));
+    waitingQuery.join();
+    assertEquals(100, manager.getUsedMemory());
+    assertEquals(queuedQueryNum + 1, manager.getQueuedQueryNum());
+
+    manager.release(2);
+    assertEquals(0, manager.getUsedMemory());
+    assertEquals(0, manager.getRunningQueryNum());
+  }
+
+  @Test
+  public void testReject() throws QueryProcessException {
+    config.setQueryMemoryWaitTimeInMs(100);
+    manager.admit(1, 60);
+    long rejectedQueryNum = manager.getRejectedQueryNum();
+    try {
+      manager.admit(2, 50);
+      fail();
+    } catch (QueryMemoryExceededException e) {
+      assertTrue(e.getMessage().contains("rejected"));
+      assertEquals(TSStatusCode.QUERY_MEMORY_EXCEEDED_ERROR.getStatusCode(), e.getErrorCode());
+    }
+    assertEquals(rejectedQueryNum + 1, manager.getRejectedQueryNum());
+    assertEquals(60, manager.getUsedMemory());
+
+    manager.admit(3, 40);
+    manager.release(1);
+    manager.release(3);
+    assertEquals(0, manager.getUsedMemory());
+  }
+
+  @Test
+  public void testLearnRawSeriesMemory() throws QueryProcessException {
+    long pageSize = TSFileDescriptor.getInstance().getConfig().getPageSizeInByte();
+    manager.setTotalMemory(Long.MAX_VALUE);
+    long rawSeriesMemory = manager.getRawSeriesMemory();
+    RawDataQueryPlan plan = new RawDataQueryPlan();
+    plan.setDeduplicatedPaths(Arrays.asList(new Path("root.sg.d1", "s1"),
+        new Path("root.sg.d1", "s2")));
+    assertEquals(2 * rawSeriesMemory, manager.estimateMemory(plan));
+
+    // the finished raw data queries held far less memory than estimated
+    for (long queryId = 1; queryId <= 200; queryId++) {
+      QueryMemoryTracker tracker = new QueryMemoryTracker();
+      manager.admit(queryId, plan, tracker);
+      tracker.allocate(2 * pageSize);
+      tracker.release(2 * pageSize);
+      manager.release(queryId);
+    }
+    assertTrue(manager.getRawSeriesMemory() < rawSeriesMemory);
+    // a series takes at least a page
+    assertEquals(pageSize, manager.getRawSeriesMemory());
+    assertEquals(2 * pageSize, manager.estimateMemory(plan));
+
+    // a query without data does not change it
+    manager.admit(201, plan, new QueryMemoryTracker());
+    manager.release(201);
+    assertEquals(pageSize, manager.getRawSeriesMemory());
+    assertEquals(0, manager.getUsedMemory());
+  }
+}
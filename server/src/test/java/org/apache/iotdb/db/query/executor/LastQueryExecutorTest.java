@@ -0,0 +1,197 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.query.executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.iotdb.db.engine.StorageEngine;
+import org.apache.iotdb.db.engine.querycontext.QueryDataSource;
+import org.apache.iotdb.db.exception.query.QueryProcessException;
+import org.apache.iotdb.db.metadata.MManager;
+import org.apache.iotdb.db.metadata.mnode.LeafMNode;
+import org.apache.iotdb.db.qp.Planner;
+import org.apache.iotdb.db.qp.executor.PlanExecutor;
+import org.apache.iotdb.db.qp.physical.crud.InsertPlan;
+import org.apache.iotdb.db.qp.physical.crud.LastQueryPlan;
+import org.apache.iotdb.db.qp.physical.sys.CreateTimeSeriesPlan;
+import org.apache.iotdb.db.query.context.QueryContext;
+import org.apache.iotdb.db.query.control.QueryResourceManager;
+import org.apache.iotdb.db.query.pool.QueryTaskPoolManager;
+import org.apache.iotdb.db.utils.EnvironmentUtils;
+import org.apache.iotdb.tsfile.file.metadata.enums.CompressionType;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSEncoding;
+import org.apache.iotdb.tsfile.read.TimeValuePair;
+import org.apache.iotdb.tsfile.read.common.Path;
+import org.apache.iotdb.tsfile.read.common.RowRecord;
+import org.apache.iotdb.tsfile.read.query.dataset.QueryDataSet;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LastQueryExecutorTest {
+
+  private static final String DEVICE_ID = "root.cold.d0";
+  private static final int SERIES_NUM = 16;
+
+  private LastQueryPlan lastQueryPlan;
+  private long queryId;
+  private QueryContext context;
+
+  @Before
+  public void setUp() throws Exception {
+    EnvironmentUtils.envSetUp();
+    MManager.getInstance().setStorageGroup("root.cold");
+    StringBuilder sql = new StringBuilder("select last ");
+    for (int i = 0; i < SERIES_NUM; i++) {
+      MManager.getInstance().createTimeseries(new CreateTimeSeriesPlan(
+          new Path(DEVICE_ID + ".s" + i), TSDataType.INT64, TSEncoding.PLAIN,
+          CompressionType.UNCOMPRESSED, null, null, null, null));
+      sql.append(i == 0 ? "" : ", ").append("s").append(i);
+    }
+    sql.append(" from ").append(DEVICE_ID);
+
+    // the last points of the even series are sealed in a file, the odd ones are in memory
+    PlanExecutor planExecutor = new PlanExecutor();
+    for (int i = 0; i < SERIES_NUM; i++) {
+      planExecutor.insert(new InsertPlan(DEVICE_ID, 1, new String[]{"s" + i},
+          new String[]{"0"}));
+      if (i % 2 == 0) {
+        planExecutor.insert(new InsertPlan(DEVICE_ID, 100 + i, new String[]{"s" + i},
+            new String[]{String.valueOf(i)}));
+      }
+    }
+    StorageEngine.getInstance().syncCloseAllProcessor();
+    for (int i = 1; i < SERIES_NUM; i += 2) {
+      planExecutor.insert(new InsertPlan(DEVICE_ID, 100 + i, new String[]{"s" + i},
+          new String[]{String.valueOf(i)}));
+    }
+    // a cold cache, as after a restart without the last cache
+    for (int i = 0; i < SERIES_NUM; i++) {
+      getLeafMNode(i).resetCache();
+    }
+
+    lastQueryPlan = (LastQueryPlan) new Planner().parseSQLToPhysicalPlan(sql.toString());
+    queryId = QueryResourceManager.getInstance().assignQueryId(true);
+    context = new QueryContext(queryId);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    QueryResourceManager.getInstance().endQuery(queryId);
+    EnvironmentUtils.cleanEnv();
+  }
+
+  @Test
+  public void testColdLastInOrder() throws Exception {
+    QueryDataSet dataSet = new LastQueryExecutor(lastQueryPlan).execute(context, lastQueryPlan);
+
+    for (int i = 0; i < SERIES_NUM; i++) {
+      assertTrue(dataSet.hasNext());
+      RowRecord record = dataSet.next();
+      assertEquals(100 + i, record.getTimestamp());
+      assertEquals(DEVICE_ID + ".s" + i, record.getFields().get(0).getStringValue());
+      assertEquals(String.valueOf(i), record.getFields().get(1).getStringValue());
+      // the calculated last points are cached
+      assertEquals(100 + i, getLeafMNode(i).getCachedLast().getTimestamp());
+    }
+    assertFalse(dataSet.hasNext());
+  }
+
+  @Test
+  public void testFailedSeries() throws Exception {
+    LastQueryExecutor executor = new LastQueryExecutor(lastQueryPlan) {
+      @Override
+      protected TimeValuePair calculateLastPair(Path seriesPath, TSDataType tsDataType,
+          QueryContext context, Set<String> sensors, QueryDataSource dataSource)
+          throws IOException {
+        if (seriesPath.getMeasurement().equals("s5")) {
+          throw new IOException("s5 cannot be read");
+        }
+        return super.calculateLastPair(seriesPath, tsDataType, context, sensors, dataSource);
+      }
+    };
+
+    try {
+      executor.execute(context, lastQueryPlan);
+      fail();
+    } catch (IOException e) {
+      assertEquals("s5 cannot be read", e.getMessage());
+    }
+    assertNull(getLeafMNode(5).getCachedLast());
+  }
+
+  @Test
+  public void testInterruptedQueryReleasesWorkers() throws Exception {
+    AtomicInteger calculatedSeriesNum = new AtomicInteger();
+    LastQueryExecutor executor = new LastQueryExecutor(lastQueryPlan) {
+      @Override
+      protected TimeValuePair calculateLastPair(Path seriesPath, TSDataType tsDataType,
+          QueryContext context, Set<String> sensors, QueryDataSource dataSource)
+          throws IOException {
+        calculatedSeriesNum.incrementAndGet();
+        try {
+          Thread.sleep(50);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        return super.calculateLastPair(seriesPath, tsDataType, context, sensors, dataSource);
+      }
+    };
+
+    Thread.currentThread().interrupt();
+    try {
+      executor.execute(context, lastQueryPlan);
+      fail();
+    } catch (QueryProcessException e) {
+      assertNotNull(e.getMessage());
+    } finally {
+      // the interruption is kept for the caller
+      assertTrue(Thread.interrupted());
+    }
+
+    // the workers only finish the series they have started
+    assertTrue(calculatedSeriesNum.get() < SERIES_NUM);
+    long deadline = System.currentTimeMillis() + 1000;
+    while (QueryTaskPoolManager.getInstance().getTotalTasks() > 0
+        && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertEquals(0, QueryTaskPoolManager.getInstance().getTotalTasks());
+    int cachedSeriesNum = 0;
+    for (int i = 0; i < SERIES_NUM; i++) {
+      if (getLeafMNode(i).getCachedLast() != null) {
+        cachedSeriesNum++;
+      }
+    }
+    assertEquals(calculatedSeriesNum.get(), cachedSeriesNum);
+  }
+
+  private LeafMNode getLeafMNode(int seriesIndex) throws Exception {
+    return (LeafMNode) MManager.getInstance().getNodeByPath(DEVICE_ID + ".s" + seriesIndex);
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.db.query.reader.series;
+
+import static org.apache.iotdb.db.conf.IoTDBConstant.PATH_SEPARATOR;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import org.apache.iotdb.db.engine.querycontext.QueryDataSource;
+import org.apache.iotdb.db.engine.storagegroup.TsFileResource;
+import org.apache.iotdb.db.exception.StorageEngineException;
+import org.apache.iotdb.db.exception.metadata.MetadataException;
+import org.apache.iotdb.db.exception.query.PathException;
+import org.apache.iotdb.db.query.context.QueryContext;
+import org.apache.iotdb.tsfile.exception.write.WriteProcessException;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
+import org.apache.iotdb.tsfile.read.common.BatchData;
+import org.apache.iotdb.tsfile.read.common.Path;
+import org.apache.iotdb.tsfile.read.filter.TimeFilter;
+import org.apache.iotdb.tsfile.read.filter.basic.Filter;
+import org.apache.iotdb.tsfile.write.schema.MeasurementSchema;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SeriesRawDataDescBatchReaderTest {
+
+  private static final String SERIES_READER_TEST_SG = "root.seriesReaderTest";
+  private List<String> deviceIds = new ArrayList<>();
+  private List<MeasurementSchema> measurementSchemas = new ArrayList<>();
+
+  private List<TsFileResource> seqResources = new ArrayList<>();
+  private List<TsFileResource> unseqResources = new ArrayList<>();
+
+  @Before
+  public void setUp() throws MetadataException, PathException, IOException, WriteProcessException {
+    SeriesReaderTestUtil.setUp(measurementSchemas, deviceIds, seqResources, unseqResources);
+  }
+
+  @After
+  public void tearDown() throws IOException, StorageEngineException {
+    SeriesReaderTestUtil.tearDown(seqResources, unseqResources);
+  }
+
+  @Test
+  public void testDescOrder() throws IOException {
+    checkReversed(null);
+  }
+
+  @Test
+  public void testDescOrderWithTimeFilter() throws IOException {
+    checkReversed(TimeFilter.gtEq(130));
+    checkReversed(TimeFilter.lt(270));
+  }
+
+  /**
+   * The descending reader returns the points of the ascending reader in the reversed order.
+   */
+  private void checkReversed(Filter timeFilter) throws IOException {
+    Path path = new Path(SERIES_READER_TEST_SG + PATH_SEPARATOR + "device0", "sensor0");
+    Set<String> allSensors = Collections.singleton("sensor0");
+
+    List<Long> ascendingTimes = new ArrayList<>();
+    List<Object> ascendingValues = new ArrayList<>();
+    SeriesRawDataBatchReader ascendingReader = new SeriesRawDataBatchReader(path, allSensors,
+        TSDataType.INT32, new QueryContext(),
+        new QueryDataSource(path, seqResources, unseqResources), timeFilter, null, null);
+    while (ascendingReader.hasNextBatch()) {
+      BatchData batchData = ascendingReader.nextBatch();
+      while (batchData.hasCurrent()) {
+        ascendingTimes.add(batchData.currentTime());
+        ascendingValues.add(batchData.currentValue());
+        batchData.next();
+      }
+    }
+
+    List<Long> descendingTimes = new ArrayList<>();
+    List<Object> descendingValues = new ArrayList<>();
+    SeriesRawDataDescBatchReader descendingReader = new SeriesRawDataDescBatchReader(path,
+        allSensors, TSDataType.INT32, new QueryContext(),
+        new QueryDataSource(path, seqResources, unseqResources), timeFilter);
+    while (descendingReader.hasNextBatch()) {
+      BatchData batchData = descendingReader.nextBatch();
+      while (batchData.hasCurrent()) {
+        descendingTimes.add(batchData.currentTime());
+        descendingValues.add(batchData.currentValue());
+        batchData.next();
+      }
+    }
+
+    Collections.reverse(descendingTimes);
+    Collections.reverse(descendingValues);
+    assertEquals(ascendingTimes, descendingTimes);
+    assertEquals(ascendingValues, descendingValues);
+  }
+}
@@ -19,31 +19,42 @@
 
 package org.apache.iotdb.db.query.reader.series;
 
+import org.apache.iotdb.db.constant.TestConstant;
 import org.apache.iotdb.db.engine.storagegroup.TsFileResource;
+import org.apache.iotdb.db.engine.storagegroup.timeindex.UnseqOverlapIndex;
 import org.apache.iotdb.db.exception.StorageEngineException;
 import org.apache.iotdb.db.exception.metadata.MetadataException;
 import org.apache.iotdb.db.exception.query.PathException;
 import org.apache.iotdb.db.query.context.QueryContext;
+import org.apache.iotdb.db.utils.datastructure.TVList;
 import org.apache.iotdb.tsfile.exception.write.WriteProcessException;
 import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
 import org.apache.iotdb.tsfile.read.TimeValuePair;
 import org.apache.iotdb.tsfile.read.common.BatchData;
 import org.apache.iotdb.tsfile.read.common.Path;
+import org.apache.iotdb.tsfile.read.filter.ValueFilter;
 import org.apache.iotdb.tsfile.read.reader.IBatchReader;
 import org.apache.iotdb.tsfile.read.reader.IPointReader;
+import org.apache.iotdb.tsfile.write.TsFileWriter;
+import org.apache.iotdb.tsfile.write.record.TSRecord;
+import org.apache.iotdb.tsfile.write.record.datapoint.IntDataPoint;
 import org.apache.iotdb.tsfile.write.schema.MeasurementSchema;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
 import static org.apache.iotdb.db.conf.IoTDBConstant.PATH_SEPARATOR;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 public class SeriesReaderTest {
@@ -131,4 +142,150 @@ public class SeriesReaderTest {
     }
 
   }
+
+  @Test
+  public void valueFilterPruningTest() {
+    try {
+      Set<String> allSensors = new HashSet<>();
+      allSensors.add("sensor0");
+      QueryContext context = new QueryContext();
+      SeriesReader seriesReader = new SeriesReader(
+          new Path(SERIES_READER_TEST_SG + PATH_SEPARATOR + "device0", "sensor0"), allSensors,
+          TSDataType.INT32, context, seqResources, unseqResources, null,
+          ValueFilter.gt(20000));
+      IBatchReader batchReader = new SeriesRawDataBatchReader(seriesReader);
+      long expectedTime = 1;
+      while (batchReader.hasNextBatch()) {
+        BatchData batchData = batchReader.nextBatch();
+        while (batchData.hasCurrent()) {
+          assertEquals(expectedTime, batchData.currentTime());
+          assertEquals(20000 + expectedTime, batchData.getInt());
+          expectedTime++;
+          batchData.next();
+        }
+      }
+      assertEquals(200, expectedTime);
+      // the non-overlapped sequence chunks only contain values less than 20000
+      assertTrue(context.getQueryStatistics().getPrunedChunkNum() > 0);
+    } catch (IOException e) {
+      e.printStackTrace();
+      fail();
+    }
+  }
+
+  @Test
+  public void sparseUnseqFastPathTest() throws IOException, WriteProcessException {
+    String device = SERIES_READER_TEST_SG + PATH_SEPARATOR + "device0";
+    // an unsequence file with two late points of sensor0 far from each other
+    TsFileResource sparseResource = prepareUnseqFile(device, 100L, new long[]{10, 490}, 30000);
+
+    Set<String> allSensors = new HashSet<>();
+    allSensors.add("sensor0");
+    QueryContext context = new QueryContext();
+    SeriesReader seriesReader = new SeriesReader(new Path(device, "sensor0"), allSensors,
+        TSDataType.INT32, context, seqResources, Collections.singletonList(sparseResource), null,
+        null);
+    IPointReader pointReader = new SeriesRawDataPointReader(seriesReader);
+    long expectedTime = 0;
+    while (pointReader.hasNextTimeValuePair()) {
+      TimeValuePair timeValuePair = pointReader.nextTimeValuePair();
+      assertEquals(expectedTime, timeValuePair.getTimestamp());
+      if (expectedTime == 10 || expectedTime == 490) {
+        assertEquals(30000 + expectedTime, timeValuePair.getValue().getInt());
+      } else {
+        assertEquals(expectedTime, timeValuePair.getValue().getInt());
+      }
+      expectedTime++;
+    }
+    assertEquals(500, expectedTime);
+    // the sequence pages between the two late points are not merged point by point
+    assertTrue(context.getQueryStatistics().getFastPathPageNum() > 0);
+    assertTrue(context.getQueryStatistics().getMergedPageNum() > 0);
+
+    // sensor1 is not in the sparse file, which is skipped by its overlap index
+    allSensors.add("sensor1");
+    context = new QueryContext();
+    seriesReader = new SeriesReader(new Path(device, "sensor1"), allSensors,
+        TSDataType.INT32, context, seqResources, Collections.singletonList(sparseResource), null,
+        null);
+    pointReader = new SeriesRawDataPointReader(seriesReader);
+    expectedTime = 0;
+    while (pointReader.hasNextTimeValuePair()) {
+      TimeValuePair timeValuePair = pointReader.nextTimeValuePair();
+      assertEquals(expectedTime, timeValuePair.getTimestamp());
+      assertEquals(expectedTime, timeValuePair.getValue().getInt());
+      expectedTime++;
+    }
+    assertEquals(500, expectedTime);
+    assertEquals(1, context.getQueryStatistics().getPrunedFileNum());
+    assertEquals(0, context.getQueryStatistics().getMergedPageNum());
+  }
+
+  @Test
+  public void sparseUnseqFastPathOrderTest() throws IOException, WriteProcessException {
+    String device = SERIES_READER_TEST_SG + PATH_SEPARATOR + "device0";
+    TsFileResource sparseResource = prepareUnseqFile(device, 100L, new long[]{10, 490}, 30000);
+    long[] denseTimes = new long[11];
+    for (int i = 0; i < denseTimes.length; i++) {
+      denseTimes[i] = 150 + i;
+    }
+    TsFileResource denseResource = prepareUnseqFile(device, 101L, denseTimes, 40000);
+
+    // when the merge point jumps to 490, the sequence pages around [150, 160] are merged, so the
+    // pages after them must not be appended directly before them
+    Set<String> allSensors = new HashSet<>();
+    allSensors.add("sensor0");
+    QueryContext context = new QueryContext();
+    SeriesReader seriesReader = new SeriesReader(new Path(device, "sensor0"), allSensors,
+        TSDataType.INT32, context, seqResources, Arrays.asList(sparseResource, denseResource),
+        null, null);
+    IPointReader pointReader = new SeriesRawDataPointReader(seriesReader);
+    long expectedTime = 0;
+    while (pointReader.hasNextTimeValuePair()) {
+      TimeValuePair timeValuePair = pointReader.nextTimeValuePair();
+      assertEquals(expectedTime, timeValuePair.getTimestamp());
+      if (expectedTime == 10 || expectedTime == 490) {
+        assertEquals(30000 + expectedTime, timeValuePair.getValue().getInt());
+      } else if (expectedTime >= 150 && expectedTime <= 160) {
+        assertEquals(40000 + expectedTime, timeValuePair.getValue().getInt());
+      } else {
+        assertEquals(expectedTime, timeValuePair.getValue().getInt());
+      }
+      expectedTime++;
+    }
+    assertEquals(500, expectedTime);
+    assertTrue(context.getQueryStatistics().getFastPathPageNum() > 0);
+    assertTrue(context.getQueryStatistics().getMergedPageNum() > 0);
+  }
+
+  /**
+   * Write an unsequence file holding the given times of sensor0 of the device, with an overlap
+   * index as a flush would build.
+   */
+  private TsFileResource prepareUnseqFile(String device, long version, long[] times,
+      int valueOffset) throws IOException, WriteProcessException {
+    TsFileResource resource = new TsFileResource(new File(
+        TestConstant.BASE_OUTPUT_PATH.concat(version + "-" + version + "-0.tsfile")));
+    unseqResources.add(resource);
+    resource.setClosed(true);
+    resource.setHistoricalVersions(Collections.singleton(version));
+    TsFileWriter fileWriter = new TsFileWriter(resource.getFile());
+    fileWriter.registerTimeseries(new Path(device, "sensor0"), measurementSchemas.get(0));
+    UnseqOverlapIndex overlapIndex = new UnseqOverlapIndex();
+    TVList tvList = TVList.newList(TSDataType.INT32);
+    for (long time : times) {
+      TSRecord record = new TSRecord(time, device);
+      record.addTuple(new IntDataPoint("sensor0", (int) (valueOffset + time)));
+      fileWriter.write(record);
+      tvList.putInt(time, (int) (valueOffset + time));
+      resource.updateStartTime(device, time);
+      resource.updateEndTime(device, time);
+    }
+    fileWriter.flushAllChunkGroups();
+    fileWriter.writeVersion(version);
+    fileWriter.close();
+    overlapIndex.update(device, "sensor0", tvList);
+    resource.setOverlapIndex(overlapIndex);
+    return resource;
+  }
 }
@@ -37,6 +37,7 @@ import org.apache.iotdb.db.conf.directories.DirectoryManager;
 import org.apache.iotdb.db.constant.TestConstant;
 import org.apache.iotdb.db.engine.StorageEngine;
 import org.apache.iotdb.db.engine.cache.ChunkMetadataCache;
+import org.apache.iotdb.db.engine.cache.ModificationCache;
 import org.apache.iotdb.db.exception.StorageEngineException;
 import org.apache.iotdb.db.metadata.MManager;
 import org.apache.iotdb.db.query.context.QueryContext;
@@ -134,6 +135,7 @@ public class EnvironmentUtils {
     if (config.isMetaDataCacheEnable()) {
       ChunkMetadataCache.getInstance().clear();
     }
+    ModificationCache.getInstance().clear();
     // close metadata
     MManager.getInstance().clear();
 
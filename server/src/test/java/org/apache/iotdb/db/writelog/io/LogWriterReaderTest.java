@@ -25,6 +25,7 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import org.apache.iotdb.db.qp.physical.PhysicalPlan;
 import org.apache.iotdb.db.qp.physical.crud.DeletePlan;
@@ -49,9 +50,12 @@ public class LogWriterReaderTest {
     InsertPlan insertPlan2 = new InsertPlan("d1", 10L, new String[]{"s1", "s2"},
         new String[]{"1", "2"});
     DeletePlan deletePlan = new DeletePlan(10L, new Path("root.d1.s1"));
+    DeletePlan rangeDeletePlan = new DeletePlan(5L, 10L,
+        Collections.singletonList(new Path("root.d1.s2")));
     plans.add(insertPlan1);
     plans.add(insertPlan2);
     plans.add(deletePlan);
+    plans.add(rangeDeletePlan);
     for (PhysicalPlan plan : plans) {
       plan.serializeTo(logsBuffer);
     }
@@ -57,6 +57,7 @@ public enum TSStatusCode {
   PATH_ERROR(410),
   QUERY_PROCESS_ERROR(411),
   WRITE_PROCESS_ERROR(412),
+  QUERY_MEMORY_EXCEEDED_ERROR(413),
 
   INTERNAL_SERVER_ERROR(500),
   CLOSE_OPERATION_ERROR(501),
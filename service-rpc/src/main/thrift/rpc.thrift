@@ -201,10 +201,13 @@ struct TSInsertRecordsReq {
     5: required list<i64> timestamps
 }
 
+// the data within [startTime, timestamp] are deleted, or all data before timestamp if startTime
+// is not set
 struct TSDeleteDataReq {
     1: required i64 sessionId
     2: required list<string> paths
     3: required i64 timestamp
+    4: optional i64 startTime
 }
 
 struct TSCreateTimeseriesReq {
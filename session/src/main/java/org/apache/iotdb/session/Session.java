@@ -500,6 +500,28 @@ public class Session {
     }
   }
 
+  /**
+   * delete data within [startTime, endTime] in multiple timeseries
+   *
+   * @param paths     data in which time series to delete
+   * @param startTime data with time stamp greater than or equal to startTime will be deleted
+   * @param endTime   data with time stamp less than or equal to endTime will be deleted
+   */
+  public void deleteData(List<String> paths, long startTime, long endTime)
+      throws IoTDBConnectionException, StatementExecutionException {
+    TSDeleteDataReq request = new TSDeleteDataReq();
+    request.setSessionId(sessionId);
+    request.setPaths(paths);
+    request.setStartTime(startTime);
+    request.setTimestamp(endTime);
+
+    try {
+      RpcUtils.verifySuccess(client.deleteData(request));
+    } catch (TException e) {
+      throw new IoTDBConnectionException(e);
+    }
+  }
+
   public void setStorageGroup(String storageGroupId)
       throws IoTDBConnectionException, StatementExecutionException {
     try {
@@ -532,6 +532,31 @@ public class SessionPool {
     }
   }
 
+  /**
+   * delete data within [startTime, endTime] in multiple timeseries
+   *
+   * @param paths data in which time series to delete
+   * @param startTime data with time stamp greater than or equal to startTime will be deleted
+   * @param endTime data with time stamp less than or equal to endTime will be deleted
+   */
+  public void deleteData(List<String> paths, long startTime, long endTime)
+      throws IoTDBConnectionException, StatementExecutionException {
+    for (int i = 0; i < RETRY; i++) {
+      Session session = getSession();
+      try {
+        session.deleteData(paths, startTime, endTime);
+        putBack(session);
+        return;
+      } catch (IoTDBConnectionException e) {
+        // TException means the connection is broken, remove it and get a new one.
+        cleanSessionAndMayThrowConnectionException(session, i, e);
+      } catch (StatementExecutionException e) {
+        putBack(session);
+        throw e;
+      }
+    }
+  }
+
   public void setStorageGroup(String storageGroupId)
       throws IoTDBConnectionException, StatementExecutionException {
     for (int i = 0; i < RETRY; i++) {
@@ -21,10 +21,13 @@ package org.apache.iotdb.tsfile.file.metadata;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 import org.apache.iotdb.tsfile.common.cache.Accountable;
 import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
 import org.apache.iotdb.tsfile.file.metadata.statistics.Statistics;
+import org.apache.iotdb.tsfile.read.common.TimeRange;
 import org.apache.iotdb.tsfile.read.controller.IChunkLoader;
 import org.apache.iotdb.tsfile.utils.RamUsageEstimator;
 import org.apache.iotdb.tsfile.utils.ReadWriteIOUtils;
@@ -50,9 +53,10 @@ public class ChunkMetadata implements Accountable {
   private long version;
 
   /**
-   * All data with timestamp <= deletedAt are considered deleted.
+   * All data within these closed time ranges are considered deleted. The ranges are sorted and do
+   * not overlap, and the list is null if no data is deleted.
    */
-  private long deletedAt = Long.MIN_VALUE;
+  private List<TimeRange> deleteIntervalList;
 
   private boolean modified;
 
@@ -91,8 +95,8 @@ public class ChunkMetadata implements Accountable {
 
   @Override
   public String toString() {
-    return String.format("measurementId: %s, datatype: %s, version: %d, deletedAt: %d, "
-        + "Statistics: %s", measurementUid, tsDataType, version, deletedAt, statistics);
+    return String.format("measurementId: %s, datatype: %s, version: %d, deleteIntervalList: %s, "
+        + "Statistics: %s", measurementUid, tsDataType, version, deleteIntervalList, statistics);
   }
 
   public long getNumOfPoints() {
@@ -171,12 +175,57 @@ public class ChunkMetadata implements Accountable {
     this.version = version;
   }
 
-  public long getDeletedAt() {
-    return deletedAt;
+  public List<TimeRange> getDeleteIntervalList() {
+    return deleteIntervalList;
   }
 
-  public void setDeletedAt(long deletedAt) {
-    this.deletedAt = deletedAt;
+  public void setDeleteIntervalList(List<TimeRange> deleteIntervalList) {
+    this.deleteIntervalList = deleteIntervalList;
+  }
+
+  /**
+   * Add the deleted range [startTime, endTime], which is merged with the ranges it overlaps or
+   * adjoins so that the list stays sorted and disjoint.
+   */
+  public void insertIntoSortedDeletions(long startTime, long endTime) {
+    List<TimeRange> newList = new ArrayList<>();
+    boolean inserted = false;
+    if (deleteIntervalList != null) {
+      for (TimeRange range : deleteIntervalList) {
+        // adjacent ranges are merged too, written so as not to overflow
+        if (range.getMax() < startTime && range.getMax() + 1 != startTime) {
+          newList.add(range);
+        } else if (range.getMin() > endTime && range.getMin() - 1 != endTime) {
+          if (!inserted) {
+            newList.add(new TimeRange(startTime, endTime));
+            inserted = true;
+          }
+          newList.add(range);
+        } else {
+          startTime = Math.min(startTime, range.getMin());
+          endTime = Math.max(endTime, range.getMax());
+        }
+      }
+    }
+    if (!inserted) {
+      newList.add(new TimeRange(startTime, endTime));
+    }
+    deleteIntervalList = newList;
+  }
+
+  /**
+   * @return whether the data of the chunk are all deleted according to its statistics
+   */
+  public boolean isFullyDeleted() {
+    if (deleteIntervalList == null) {
+      return false;
+    }
+    for (TimeRange range : deleteIntervalList) {
+      if (range.contains(getStartTime(), getEndTime())) {
+        return true;
+      }
+    }
+    return false;
   }
 
   public IChunkLoader getChunkLoader() {
@@ -198,7 +247,7 @@ public class ChunkMetadata implements Accountable {
     ChunkMetadata that = (ChunkMetadata) o;
     return offsetOfChunkHeader == that.offsetOfChunkHeader &&
         version == that.version &&
-        deletedAt == that.deletedAt &&
+        Objects.equals(deleteIntervalList, that.deleteIntervalList) &&
         Objects.equals(measurementUid, that.measurementUid) &&
         tsDataType == that.tsDataType &&
         Objects.equals(statistics, that.statistics);
@@ -206,7 +255,7 @@ public class ChunkMetadata implements Accountable {
 
   @Override
   public int hashCode() {
-    return Objects.hash(measurementUid, deletedAt, tsDataType, statistics,
+    return Objects.hash(measurementUid, deleteIntervalList, tsDataType, statistics,
         version, offsetOfChunkHeader);
   }
 
@@ -30,8 +30,17 @@ import org.apache.iotdb.tsfile.fileSystem.fsFactory.FSFactory;
 import org.apache.iotdb.tsfile.fileSystem.fsFactory.HDFSFactory;
 import org.apache.iotdb.tsfile.fileSystem.fsFactory.LocalFSFactory;
 
+/**
+ * FSFactoryProducer provides the factories of the file system of the server, i.e.,
+ * TSFileConfig.getTSFileStorageFs(), and those of the file system of a given path, so that a
+ * server on the local file system can also access the files on HDFS given with the hdfs scheme,
+ * e.g., the cold tier of the data. The HDFS factories are created on their first use, as they need
+ * the Hadoop module.
+ */
 public class FSFactoryProducer {
 
+  public static final String HDFS_SCHEME = "hdfs://";
+
   private static FSType fSType = TSFileDescriptor.getInstance().getConfig().getTSFileStorageFs();
 
   private static FSFactory fsFactory;
@@ -40,13 +49,13 @@ public class FSFactoryProducer {
 
   static {
     if (fSType.equals(FSType.HDFS)) {
-      fsFactory = new HDFSFactory();
-      fileInputFactory = new HDFSInputFactory();
-      fileOutputFactory = new HDFSOutputFactory();
+      fsFactory = HDFSFactories.FS_FACTORY;
+      fileInputFactory = HDFSFactories.FILE_INPUT_FACTORY;
+      fileOutputFactory = HDFSFactories.FILE_OUTPUT_FACTORY;
     } else {
-      fsFactory = new LocalFSFactory();
-      fileInputFactory = new LocalFSInputFactory();
-      fileOutputFactory = new LocalFSOutputFactory();
+      fsFactory = LocalFactories.FS_FACTORY;
+      fileInputFactory = LocalFactories.FILE_INPUT_FACTORY;
+      fileOutputFactory = LocalFactories.FILE_OUTPUT_FACTORY;
     }
   }
 
@@ -61,4 +70,53 @@ public class FSFactoryProducer {
   public static FileOutputFactory getFileOutputFactory() {
     return fileOutputFactory;
   }
+
+  /**
+   * @return HDFS if the path has the hdfs scheme, otherwise the file system of the server
+   */
+  public static FSType getFSType(String path) {
+    return path.startsWith(HDFS_SCHEME) ? FSType.HDFS : fSType;
+  }
+
+  public static FSFactory getFSFactory(FSType type) {
+    return type.equals(FSType.HDFS) ? HDFSFactories.FS_FACTORY : LocalFactories.FS_FACTORY;
+  }
+
+  public static FileInputFactory getFileInputFactory(FSType type) {
+    return type.equals(FSType.HDFS) ? HDFSFactories.FILE_INPUT_FACTORY
+        : LocalFactories.FILE_INPUT_FACTORY;
+  }
+
+  public static FileOutputFactory getFileOutputFactory(FSType type) {
+    return type.equals(FSType.HDFS) ? HDFSFactories.FILE_OUTPUT_FACTORY
+        : LocalFactories.FILE_OUTPUT_FACTORY;
+  }
+
+  /**
+   * @return the factory of the file system the path is on
+   */
+  public static FSFactory getFSFactory(String path) {
+    return getFSFactory(getFSType(path));
+  }
+
+  /**
+   * @return the input factory of the file system the path is on
+   */
+  public static FileInputFactory getFileInputFactory(String path) {
+    return getFileInputFactory(getFSType(path));
+  }
+
+  private static class LocalFactories {
+
+    private static final FSFactory FS_FACTORY = new LocalFSFactory();
+    private static final FileInputFactory FILE_INPUT_FACTORY = new LocalFSInputFactory();
+    private static final FileOutputFactory FILE_OUTPUT_FACTORY = new LocalFSOutputFactory();
+  }
+
+  private static class HDFSFactories {
+
+    private static final FSFactory FS_FACTORY = new HDFSFactory();
+    private static final FileInputFactory FILE_INPUT_FACTORY = new HDFSInputFactory();
+    private static final FileOutputFactory FILE_OUTPUT_FACTORY = new HDFSOutputFactory();
+  }
 }
@@ -105,7 +105,7 @@ public class TsFileSequenceReader implements AutoCloseable {
       resourceLogger.debug("{} reader is opened. {}", file, getClass().getName());
     }
     this.file = file;
-    tsFileInput = FSFactoryProducer.getFileInputFactory().getTsFileInput(file);
+    tsFileInput = FSFactoryProducer.getFileInputFactory(file).getTsFileInput(file);
     try {
       if (loadMetadataSize) {
         loadMetadataSize();
@@ -681,7 +681,7 @@ public class TsFileSequenceReader implements AutoCloseable {
     ChunkHeader header = readChunkHeader(metaData.getOffsetOfChunkHeader(), chunkHeadSize, false);
     ByteBuffer buffer = readChunk(metaData.getOffsetOfChunkHeader() + header.getSerializedSize(),
         header.getDataSize());
-    return new Chunk(header, buffer, metaData.getDeletedAt());
+    return new Chunk(header, buffer, metaData.getDeleteIntervalList());
   }
 
   /**
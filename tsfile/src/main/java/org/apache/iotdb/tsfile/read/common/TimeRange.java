@@ -22,6 +22,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Objects;
 
 import org.apache.iotdb.tsfile.read.expression.IExpression;
 import org.apache.iotdb.tsfile.read.expression.impl.BinaryExpression;
@@ -61,21 +62,27 @@ public class TimeRange implements Comparable<TimeRange> {
     if (r == null) {
       throw new NullPointerException("The input cannot be null!");
     }
-    long res1 = this.min - r.min;
-    if (res1 > 0) {
-      return 1;
-    } else if (res1 < 0) {
-      return -1;
-    } else {
-      long res2 = this.max - r.max;
-      if (res2 > 0) {
-        return 1;
-      } else if (res2 < 0) {
-        return -1;
-      } else {
-        return 0;
-      }
+    // compare instead of subtracting, which overflows for Long.MIN_VALUE
+    int res = Long.compare(this.min, r.min);
+    return res != 0 ? res : Long.compare(this.max, r.max);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
     }
+    TimeRange that = (TimeRange) o;
+    return min == that.min && max == that.max && leftClose == that.leftClose
+        && rightClose == that.rightClose;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(min, max, leftClose, rightClose);
   }
 
   public void setMin(long min) {
@@ -28,6 +28,7 @@ import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
 import org.apache.iotdb.tsfile.file.metadata.enums.TSEncoding;
 import org.apache.iotdb.tsfile.read.common.BatchData;
 import org.apache.iotdb.tsfile.read.common.Chunk;
+import org.apache.iotdb.tsfile.read.common.TimeRange;
 import org.apache.iotdb.tsfile.read.reader.IPageReader;
 import org.apache.iotdb.tsfile.read.filter.basic.Filter;
 import org.apache.iotdb.tsfile.read.reader.IChunkReader;
@@ -55,9 +56,9 @@ public class ChunkReader implements IChunkReader {
   private boolean isFromOldTsFile = false;
 
   /**
-   * Data whose timestamp <= deletedAt should be considered deleted(not be returned).
+   * Data within these time ranges should be considered deleted(not be returned).
    */
-  protected long deletedAt;
+  protected List<TimeRange> deleteIntervalList;
 
   /**
    * constructor of ChunkReader.
@@ -68,7 +69,7 @@ public class ChunkReader implements IChunkReader {
   public ChunkReader(Chunk chunk, Filter filter) throws IOException {
     this.filter = filter;
     this.chunkDataBuffer = chunk.getData();
-    this.deletedAt = chunk.getDeletedAt();
+    this.deleteIntervalList = chunk.getDeleteIntervalList();
     chunkHeader = chunk.getHeader();
     this.unCompressor = IUnCompressor.getUnCompressor(chunkHeader.getCompressionType());
 
@@ -79,7 +80,7 @@ public class ChunkReader implements IChunkReader {
   public ChunkReader(Chunk chunk, Filter filter, boolean isFromOldFile) throws IOException {
     this.filter = filter;
     this.chunkDataBuffer = chunk.getData();
-    this.deletedAt = chunk.getDeletedAt();
+    this.deleteIntervalList = chunk.getDeleteIntervalList();
     chunkHeader = chunk.getHeader();
     this.unCompressor = IUnCompressor.getUnCompressor(chunkHeader.getCompressionType());
     this.isFromOldTsFile = isFromOldFile;
@@ -131,14 +132,39 @@ public class ChunkReader implements IChunkReader {
   }
 
   public boolean pageSatisfied(PageHeader pageHeader) {
-    if (pageHeader.getEndTime() <= deletedAt) {
+    if (isDeleted(pageHeader)) {
       return false;
-    } else if (pageHeader.getStartTime() <= deletedAt) {
-      pageHeader.setModified(true);
     }
     return filter == null || filter.satisfy(pageHeader.getStatistics());
   }
 
+  /**
+   * Check the page against the deleted ranges by its statistics, and mark it as modified if only
+   * some of its data may be deleted.
+   *
+   * @return whether the page is entirely deleted
+   */
+  protected boolean isDeleted(PageHeader pageHeader) {
+    if (deleteIntervalList == null) {
+      return false;
+    }
+    long startTime = pageHeader.getStartTime();
+    long endTime = pageHeader.getEndTime();
+    for (TimeRange range : deleteIntervalList) {
+      if (range.getMin() > endTime) {
+        // the ranges are sorted
+        break;
+      }
+      if (range.contains(startTime, endTime)) {
+        return true;
+      }
+      if (range.getMax() >= startTime) {
+        pageHeader.setModified(true);
+      }
+    }
+    return false;
+  }
+
   private PageReader constructPageReaderForNextPage(PageHeader pageHeader)
       throws IOException {
     int compressedPageBodyLength = pageHeader.getCompressedSize();
@@ -156,7 +182,10 @@ public class ChunkReader implements IChunkReader {
     ByteBuffer pageData = ByteBuffer.wrap(unCompressor.uncompress(compressedPageBody));
     PageReader reader = new PageReader(pageHeader, pageData, chunkHeader.getDataType(),
         valueDecoder, timeDecoder, filter);
-    reader.setDeletedAt(deletedAt);
+    if (pageHeader.isModified()) {
+      // the points of an unmodified page need no check
+      reader.setDeleteIntervalList(deleteIntervalList);
+    }
     return reader;
   }
 
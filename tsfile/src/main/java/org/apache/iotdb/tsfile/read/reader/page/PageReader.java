@@ -24,6 +24,7 @@ import org.apache.iotdb.tsfile.file.header.PageHeader;
 import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
 import org.apache.iotdb.tsfile.file.metadata.statistics.Statistics;
 import org.apache.iotdb.tsfile.read.common.BatchData;
+import org.apache.iotdb.tsfile.read.common.TimeRange;
 import org.apache.iotdb.tsfile.read.reader.IPageReader;
 import org.apache.iotdb.tsfile.read.filter.basic.Filter;
 import org.apache.iotdb.tsfile.utils.Binary;
@@ -31,6 +32,7 @@ import org.apache.iotdb.tsfile.utils.ReadWriteForEncodingUtils;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.List;
 
 public class PageReader implements IPageReader {
 
@@ -61,9 +63,12 @@ public class PageReader implements IPageReader {
   private Filter filter;
 
   /**
-   * Data whose timestamp <= deletedAt should be considered deleted(not be returned).
+   * Data within these sorted time ranges should be considered deleted(not be returned).
    */
-  private long deletedAt = Long.MIN_VALUE;
+  private List<TimeRange> deleteIntervalList;
+
+  // the first range in deleteIntervalList that may contain the next timestamp
+  private int deleteCursor = 0;
 
   public PageReader(ByteBuffer pageData, TSDataType dataType, Decoder valueDecoder,
       Decoder timeDecoder, Filter filter) {
@@ -102,43 +107,44 @@ public class PageReader implements IPageReader {
   public BatchData getAllSatisfiedPageData() throws IOException {
 
     BatchData pageData = new BatchData(dataType);
+    deleteCursor = 0;
 
     while (timeDecoder.hasNext(timeBuffer)) {
       long timestamp = timeDecoder.readLong(timeBuffer);
       switch (dataType) {
         case BOOLEAN:
           boolean aBoolean = valueDecoder.readBoolean(valueBuffer);
-          if (timestamp > deletedAt && (filter == null || filter.satisfy(timestamp, aBoolean))) {
+          if (!isDeleted(timestamp) && (filter == null || filter.satisfy(timestamp, aBoolean))) {
             pageData.putBoolean(timestamp, aBoolean);
           }
           break;
         case INT32:
           int anInt = valueDecoder.readInt(valueBuffer);
-          if (timestamp > deletedAt && (filter == null || filter.satisfy(timestamp, anInt))) {
+          if (!isDeleted(timestamp) && (filter == null || filter.satisfy(timestamp, anInt))) {
             pageData.putInt(timestamp, anInt);
           }
           break;
         case INT64:
           long aLong = valueDecoder.readLong(valueBuffer);
-          if (timestamp > deletedAt && (filter == null || filter.satisfy(timestamp, aLong))) {
+          if (!isDeleted(timestamp) && (filter == null || filter.satisfy(timestamp, aLong))) {
             pageData.putLong(timestamp, aLong);
           }
           break;
         case FLOAT:
           float aFloat = valueDecoder.readFloat(valueBuffer);
-          if (timestamp > deletedAt && (filter == null || filter.satisfy(timestamp, aFloat))) {
+          if (!isDeleted(timestamp) && (filter == null || filter.satisfy(timestamp, aFloat))) {
             pageData.putFloat(timestamp, aFloat);
           }
           break;
         case DOUBLE:
           double aDouble = valueDecoder.readDouble(valueBuffer);
-          if (timestamp > deletedAt && (filter == null || filter.satisfy(timestamp, aDouble))) {
+          if (!isDeleted(timestamp) && (filter == null || filter.satisfy(timestamp, aDouble))) {
             pageData.putDouble(timestamp, aDouble);
           }
           break;
         case TEXT:
           Binary aBinary = valueDecoder.readBinary(valueBuffer);
-          if (timestamp > deletedAt && (filter == null || filter.satisfy(timestamp, aBinary))) {
+          if (!isDeleted(timestamp) && (filter == null || filter.satisfy(timestamp, aBinary))) {
             pageData.putBinary(timestamp, aBinary);
           }
           break;
@@ -159,8 +165,25 @@ public class PageReader implements IPageReader {
     this.filter = filter;
   }
 
-  public void setDeletedAt(long deletedAt) {
-    this.deletedAt = deletedAt;
+  public void setDeleteIntervalList(List<TimeRange> deleteIntervalList) {
+    this.deleteIntervalList = deleteIntervalList;
+  }
+
+  /**
+   * @param timestamp a timestamp not less than the ones checked before
+   */
+  private boolean isDeleted(long timestamp) {
+    if (deleteIntervalList == null) {
+      return false;
+    }
+    while (deleteCursor < deleteIntervalList.size()) {
+      TimeRange range = deleteIntervalList.get(deleteCursor);
+      if (range.getMax() >= timestamp) {
+        return range.getMin() <= timestamp;
+      }
+      deleteCursor++;
+    }
+    return false;
   }
 
   @Override
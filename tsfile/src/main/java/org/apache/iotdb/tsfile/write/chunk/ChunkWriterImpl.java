@@ -221,6 +221,7 @@ public class ChunkWriterImpl implements IChunkWriter {
 
     // reinit this chunk writer
     pageBuffer.reset();
+    numOfPages = 0;
     this.statistics = Statistics.getStatsByType(measurementSchema.getType());
   }
 
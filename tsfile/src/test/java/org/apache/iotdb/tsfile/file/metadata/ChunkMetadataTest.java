@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.iotdb.tsfile.file.metadata;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import org.apache.iotdb.tsfile.file.metadata.enums.TSDataType;
+import org.apache.iotdb.tsfile.file.metadata.statistics.Statistics;
+import org.apache.iotdb.tsfile.read.common.TimeRange;
+import org.junit.Test;
+
+public class ChunkMetadataTest {
+
+  private ChunkMetadata createChunkMetadata(long startTime, long endTime) {
+    Statistics statistics = Statistics.getStatsByType(TSDataType.INT64);
+    statistics.update(startTime, 1L);
+    statistics.update(endTime, 2L);
+    return new ChunkMetadata("s1", TSDataType.INT64, 0, statistics);
+  }
+
+  @Test
+  public void testInsertIntoSortedDeletions() {
+    ChunkMetadata chunkMetadata = createChunkMetadata(0, 100);
+    assertNull(chunkMetadata.getDeleteIntervalList());
+
+    chunkMetadata.insertIntoSortedDeletions(50, 60);
+    chunkMetadata.insertIntoSortedDeletions(10, 20);
+    chunkMetadata.insertIntoSortedDeletions(80, 90);
+    assertEquals(Arrays.asList(new TimeRange(10, 20), new TimeRange(50, 60),
+        new TimeRange(80, 90)), chunkMetadata.getDeleteIntervalList());
+
+    // overlaps the last two ranges
+    chunkMetadata.insertIntoSortedDeletions(55, 85);
+    assertEquals(Arrays.asList(new TimeRange(10, 20), new TimeRange(50, 90)),
+        chunkMetadata.getDeleteIntervalList());
+
+    chunkMetadata.insertIntoSortedDeletions(Long.MIN_VALUE, 15);
+    assertEquals(Arrays.asList(new TimeRange(Long.MIN_VALUE, 20), new TimeRange(50, 90)),
+        chunkMetadata.getDeleteIntervalList());
+  }
+
+  @Test
+  public void testIsFullyDeleted() {
+    ChunkMetadata chunkMetadata = createChunkMetadata(0, 100);
+    assertFalse(chunkMetadata.isFullyDeleted());
+
+    chunkMetadata.insertIntoSortedDeletions(0, 50);
+    chunkMetadata.insertIntoSortedDeletions(52, 100);
+    assertFalse(chunkMetadata.isFullyDeleted());
+
+    chunkMetadata.insertIntoSortedDeletions(51, 51);
+    assertTrue(chunkMetadata.isFullyDeleted());
+  }
+}